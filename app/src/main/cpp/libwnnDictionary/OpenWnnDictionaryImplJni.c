@@ -19,11 +19,16 @@
 #include "nj_err.h"
 #include "nj_ext.h"
 #include "nj_dic.h"
+#include "njd.h"
 
 
 #include <stdlib.h>
 #include <string.h>
 #include <dlfcn.h>
+#include <fcntl.h>
+#include <unistd.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
 
 #include "OpenWnnJni.h"
 
@@ -42,6 +47,219 @@ static void clearDictionaryStructure( NJ_DIC_INFO* dicInfo ) {
 	dicInfo->dic_freq[ NJ_MODE_TYPE_HENKAN ].high = 0;
 }
 
+static NJ_UINT32 readImageUint32( const NJ_UINT8* src )
+{
+    /* 32bit little endian */
+    return ( NJ_UINT32 )src[ 0 ] | ( ( NJ_UINT32 )src[ 1 ] << 8 ) |
+           ( ( NJ_UINT32 )src[ 2 ] << 16 ) | ( ( NJ_UINT32 )src[ 3 ] << 24 );
+}
+
+static int setDictionaryImage( NJ_JNIDICDATA* dicData, NJ_UINT8* image, size_t size )
+{
+    NJ_UINT32   count, offset, length;
+    int         i;
+
+    if( size < NJ_DIC_IMAGE_HEADER_SIZE ||
+        memcmp( image, NJ_DIC_IMAGE_MAGIC, NJ_DIC_IMAGE_MAGIC_LEN ) != 0 ||
+        readImageUint32( image + 0x08 ) != NJ_DIC_IMAGE_VERSION ) {
+        /* Not a dictionary image file */
+        return -1;
+    }
+
+    count = readImageUint32( image + 0x0C );
+    if( count > NJ_MAX_DIC ||
+        size < NJ_DIC_IMAGE_HEADER_SIZE + ( size_t )count * NJ_DIC_IMAGE_ENTRY_SIZE ) {
+        return -1;
+    }
+
+    for( i = 0 ; i < ( int )count ; i++ ) {
+        const NJ_UINT8* entry = image + NJ_DIC_IMAGE_HEADER_SIZE + i * NJ_DIC_IMAGE_ENTRY_SIZE;
+
+        offset = readImageUint32( entry + 4 );
+        length = readImageUint32( entry + 8 );
+        if( offset == 0 ) {
+            /* The dictionary does not exist */
+            continue;
+        }
+        if( offset > size || length > size - offset ) {
+            /* The data is out of the file */
+            return -1;
+        }
+        dicData->dicHandle[ i ]    = image + offset;
+        dicData->dicSize[ i ]      = length;
+        dicData->dicType[ i ]      = ( NJ_UINT8 )readImageUint32( entry );
+    }
+
+    /* Set the rule dictionary if the rule data exist */
+    offset = readImageUint32( image + 0x10 );
+    length = readImageUint32( image + 0x14 );
+    if( offset != 0 ) {
+        if( offset > size || length > size - offset ) {
+            return -1;
+        }
+        dicData->ruleHandle = image + offset;
+    }
+    return 0;
+}
+
+static void releaseDictionary( NJ_JNIDICDATA* dicData )
+{
+    int     i;
+
+    /* Release the dictionaries when no other work area refers them */
+    if( __sync_sub_and_fetch( &( dicData->refCount ), 1 ) > 0 ) {
+        return;
+    }
+
+    if( dicData->dicLibHandle != NULL ) {
+        dlclose( dicData->dicLibHandle );
+    }
+    if( dicData->dicImage != NULL ) {
+        munmap( dicData->dicImage, dicData->dicImageSize );
+    }
+    for( i = 0 ; i < NJ_MAX_DIC ; i++ ) {
+        if( dicData->dicWritable[ i ] ) {
+            free( dicData->dicHandle[ i ] );
+        }
+    }
+    free( dicData );
+}
+
+static NJ_JNIWORK* createWorkWithDictionary( NJ_JNIDICDATA* dicData )
+{
+	NJ_JNIWORK*		work;
+
+	/* Allocating the internal work area */
+	work = ( NJ_JNIWORK* )malloc( sizeof( NJ_JNIWORK ) );
+	if( work == NULL ) {
+		return NULL;
+	}
+
+	/* Initialize the work area */
+	memset( work, 0x00, sizeof( NJ_JNIWORK ) );
+	work->dicData = dicData;
+	work->dicSet.rHandle[ NJ_MODE_TYPE_HENKAN ] = dicData->ruleHandle;
+
+	/* Execute the initialize method to initialize the internal work area */
+	if( njx_init( &( work->wnnClass ) ) < 0 ) {
+		free( work );
+		return NULL;
+	}
+
+	__sync_add_and_fetch( &( dicData->refCount ), 1 );
+	return work;
+}
+
+static int isSearchCacheReusable( NJ_JNIWORK* work )
+{
+    int     i;
+
+    /* The search cache is invalid after the writable dictionaries are changed */
+    if( work->cacheGeneration != __sync_fetch_and_add( &( work->dicData->writeGeneration ), 0 ) ) {
+        return 0;
+    }
+
+    /* The search cache is valid only for the same dictionaries and approximate patterns */
+    for( i = 0 ; i < NJ_MAX_DIC ; i++ ) {
+        NJ_DIC_INFO* dic   = &( work->dicSet.dic[ i ] );
+        NJ_DIC_INFO* cache = &( work->cacheDic[ i ] );
+
+        if( dic->type != cache->type || dic->handle != cache->handle || dic->srhCache != cache->srhCache ||
+            dic->dic_freq[ NJ_MODE_TYPE_HENKAN ].base != cache->dic_freq[ NJ_MODE_TYPE_HENKAN ].base ||
+            dic->dic_freq[ NJ_MODE_TYPE_HENKAN ].high != cache->dic_freq[ NJ_MODE_TYPE_HENKAN ].high ) {
+            return 0;
+        }
+    }
+
+    if( work->approxSet.charset_count != work->cacheApproxSet.charset_count ) {
+        return 0;
+    }
+    for( i = 0 ; i < work->approxSet.charset_count ; i++ ) {
+        if( nj_strcmp( work->approxSet.from[ i ], work->cacheApproxSet.from[ i ] ) != 0 ||
+            nj_strcmp( work->approxSet.to[ i ], work->cacheApproxSet.to[ i ] ) != 0 ) {
+            return 0;
+        }
+    }
+    return 1;
+}
+
+static void saveSearchCondition( NJ_JNIWORK* work )
+{
+    int     i;
+
+    work->cacheGeneration = __sync_fetch_and_add( &( work->dicData->writeGeneration ), 0 );
+    memcpy( work->cacheDic, work->dicSet.dic, sizeof( work->cacheDic ) );
+
+    /* Copy the approximate patterns with the pointers into the copied strings */
+    memcpy( work->cacheApproxStr, work->approxStr, sizeof( work->cacheApproxStr ) );
+    work->cacheApproxSet.charset_count = work->approxSet.charset_count;
+    for( i = 0 ; i < NJ_MAX_CHARSET ; i++ ) {
+        if( i < work->approxSet.charset_count ) {
+            work->cacheApproxSet.from[ i ] = work->cacheApproxStr + ( work->approxSet.from[ i ] - work->approxStr );
+            work->cacheApproxSet.to[ i ]   = work->cacheApproxStr + ( work->approxSet.to[ i ] - work->approxStr );
+        } else {
+            work->cacheApproxSet.from[ i ] = NULL;
+            work->cacheApproxSet.to[ i ]   = NULL;
+        }
+    }
+}
+
+static void touchWritableDictionary( NJ_JNIDICDATA* dicData )
+{
+    /* Invalidate the search caches of all work areas sharing the dictionaries */
+    __sync_add_and_fetch( &( dicData->writeGeneration ), 1 );
+}
+
+static int getWritableDictionaryIndex( jint index )
+{
+    /* The user and learning dictionaries of the Java layer */
+    switch( index ) {
+    case -1:
+        return NJ_JNI_INDEX_USER_DICTIONARY;
+    case -2:
+        return NJ_JNI_INDEX_LEARN_DICTIONARY;
+    default:
+        return -1;
+    }
+}
+
+static NJ_UINT32 getWritableDictionarySize( int slot, jint maxWords )
+{
+    NJ_UINT32   ques, queSize;
+
+    if( slot == NJ_JNI_INDEX_USER_DICTIONARY ) {
+        ques    = ( NJ_UINT32 )maxWords;
+        queSize = NJ_USER_QUE_SIZE;
+    } else {
+        ques    = ( NJ_UINT32 )maxWords * NJ_JNI_LEARN_QUES_PER_WORD;
+        queSize = LEARN_DIC_QUE_SIZE;
+    }
+    if( ques > 0xFFFF ) {
+        /* The queues are counted in 16bit */
+        return 0;
+    }
+    return ( queSize + NJ_INDEX_SIZE * 2 ) * ques + NJ_INDEX_SIZE * 2 + NJ_LEARN_DIC_HEADER_SIZE + NJ_DIC_ID_LEN;
+}
+
+static int checkWritableDictionary( NJ_CLASS* wnnClass, NJ_UINT8* handle, NJ_UINT32 size, int slot )
+{
+    NJ_UINT32   queSize;
+
+    queSize = ( slot == NJ_JNI_INDEX_USER_DICTIONARY ) ? NJ_USER_QUE_SIZE : LEARN_DIC_QUE_SIZE;
+
+    /* Check the header before reading the words */
+    if( ( NJ_UINT32 )NJ_INT32_READ( handle ) != NJ_DIC_IDENTIFIER ||
+        ( NJ_UINT32 )NJ_INT32_READ( handle + 0x04 ) != NJ_DIC_VERSION2 ||
+        NJ_GET_DIC_TYPE( handle ) != NJ_DIC_TYPE_USER ||
+        ( NJ_UINT32 )NJ_INT32_READ( handle + NJ_DIC_POS_DATA_SIZE ) != size - NJ_DIC_COMMON_HEADER_SIZE ||
+        ( NJ_UINT32 )NJ_INT32_READ( handle + NJ_DIC_POS_EXT_SIZE ) != 0 ||
+        ( NJ_UINT32 )NJ_INT32_READ( handle + 0x2C ) != queSize ||
+        ( NJ_UINT32 )NJ_INT32_READ( handle + size - NJ_DIC_ID_LEN ) != NJ_DIC_IDENTIFIER ) {
+        return 0;
+    }
+    return ( njd_l_check_dic( wnnClass, handle ) == 0 );
+}
+
 static NJ_CHAR convertUTFCharToNjChar( NJ_UINT8* src )
 {
     NJ_CHAR     ret;
@@ -197,6 +415,20 @@ static int convertNjCharToString( JNIEnv* env, jstring* dstJ, NJ_CHAR* src, int
 	return ( *dstJ == NULL ) ? NJ_SET_ERR_VAL(NJ_FUNC_JNI_CONVERT_NJC_TO_STR, NJ_ERR_JNI_FUNC_FAILED) : 0;
 }
 
+static int convertNjCharToJchar( jchar* dst, NJ_CHAR* src, int maxChars )
+{
+	int		i;
+
+	/* convert UTF-16BE to UTF-16 in the native byte order (no conversion to UTF-8 is needed) */
+	for( i = 0 ; src[ i ] != 0x0000 && i < maxChars ; i++ ) {
+		NJ_UINT8* src_tmp;
+		src_tmp = ( NJ_UINT8* )&( src[ i ] );
+
+		dst[ i ] = ( jchar )( ( src_tmp[ 0 ] << 8 ) | src_tmp[ 1 ] );
+	}
+	return i;
+}
+
 /*
  * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
  * Method:    createWnnWork
@@ -205,72 +437,170 @@ static int convertNjCharToString( JNIEnv* env, jstring* dstJ, NJ_CHAR* src, int
 JNIEXPORT jlong JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_createWnnWork
   (JNIEnv *env, jobject obj, jstring dicLibPathJ)
 {
-	NJ_JNIWORK*		work;
+	NJ_JNIDICDATA*	dicData;
 
-	/* Allocating the internal work area */
-	work = ( NJ_JNIWORK* )malloc( sizeof( NJ_JNIWORK ) );
-	if( work != NULL ) {
+	/* Allocating the dictionary area */
+	dicData = ( NJ_JNIDICDATA* )malloc( sizeof( NJ_JNIDICDATA ) );
+	if( dicData != NULL ) {
+		NJ_JNIWORK*		work;
 		NJ_UINT32*		dic_size;
 		NJ_UINT8*		dic_type;
         NJ_UINT8**      dic_data;
         NJ_UINT8**      con_data;
 		const char*		dicLibPath;
-		NJ_INT16		result;
 		int				i;
 
-		/* Initialize the work area */
-		memset( work, 0x00, sizeof( NJ_JNIWORK ) );
+		/* Initialize the dictionary area */
+		memset( dicData, 0x00, sizeof( NJ_JNIDICDATA ) );
 
 		/* Load the dictionary library which is specified by dicLibPathJ */
 		if( dicLibPathJ == NULL ||
 			( dicLibPath = ( *env )->GetStringUTFChars( env, dicLibPathJ, 0 ) ) == NULL ) {
-			free( work );
+			free( dicData );
 			return 0;
 		}
 
-		work->dicLibHandle = ( void* )dlopen( dicLibPath, RTLD_LAZY );
+		dicData->dicLibHandle = ( void* )dlopen( dicLibPath, RTLD_LAZY );
 		( *env )->ReleaseStringUTFChars( env, dicLibPathJ, dicLibPath );
 
-		if( work->dicLibHandle == NULL ) {
-			free( work );
+		if( dicData->dicLibHandle == NULL ) {
+			free( dicData );
 			return 0;
 		}
 
-		/* Retrieve data pointers of dictionary from the dictionary library, and put to internal work area */
-		dic_size = ( NJ_UINT32* )dlsym( work->dicLibHandle, "dic_size" );
-		dic_type = ( NJ_UINT8* )dlsym( work->dicLibHandle, "dic_type" );
-        dic_data = ( NJ_UINT8** )dlsym( work->dicLibHandle, "dic_data" );
+		/* Retrieve data pointers of dictionary from the dictionary library, and put to dictionary area */
+		dic_size = ( NJ_UINT32* )dlsym( dicData->dicLibHandle, "dic_size" );
+		dic_type = ( NJ_UINT8* )dlsym( dicData->dicLibHandle, "dic_type" );
+        dic_data = ( NJ_UINT8** )dlsym( dicData->dicLibHandle, "dic_data" );
 		if( dic_size == NULL || dic_type == NULL || dic_data == NULL ) {
-			dlclose( work->dicLibHandle );
-			free( work );
+			dlclose( dicData->dicLibHandle );
+			free( dicData );
 			return 0;
 		}
 
 		for( i = 0 ; i < NJ_MAX_DIC ; i++ ) {
-            work->dicHandle[ i ]    = dic_data[ i ];
-			work->dicSize[ i ]      = dic_size[ i ];
-			work->dicType[ i ]      = dic_type[ i ];
+            dicData->dicHandle[ i ]    = dic_data[ i ];
+			dicData->dicSize[ i ]      = dic_size[ i ];
+			dicData->dicType[ i ]      = dic_type[ i ];
 		}
 
         /* Set the rule dictionary if the rule data exist */
-        con_data = ( NJ_UINT8** )dlsym( work->dicLibHandle, "con_data" );
+        con_data = ( NJ_UINT8** )dlsym( dicData->dicLibHandle, "con_data" );
         if( con_data != NULL ) {
-            work->dicSet.rHandle[ NJ_MODE_TYPE_HENKAN ] = con_data[ 0 ];
+            dicData->ruleHandle = con_data[ 0 ];
         }
 
-		/* Execute the initialize method to initialize the internal work area */
-		result = njx_init( &( work->wnnClass ) );
-
-		if( result >= 0 ) {
+		/* Create the internal work area which refers the dictionaries */
+		work = createWorkWithDictionary( dicData );
+		if( work != NULL ) {
             jlong   jresult;
 
             *( NJ_JNIWORK** )&jresult = work;
 			return jresult;
 		}
 
-		/* If allocating a byte array failed, free all resource, and return NULL */
-		dlclose( work->dicLibHandle );
-		free( work );
+		/* If initializing the work area failed, free all resource, and return NULL */
+		dlclose( dicData->dicLibHandle );
+		free( dicData );
+	}
+	/* If allocating the internal work area failed, return NULL */
+	return 0;
+}
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    createWnnWorkFromImage
+ * Signature: (Ljava/lang/String;)J
+ */
+JNIEXPORT jlong JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_createWnnWorkFromImage
+  (JNIEnv *env, jobject obj, jstring dicImagePathJ)
+{
+	NJ_JNIDICDATA*	dicData;
+
+	/* Allocating the dictionary area */
+	dicData = ( NJ_JNIDICDATA* )malloc( sizeof( NJ_JNIDICDATA ) );
+	if( dicData != NULL ) {
+		NJ_JNIWORK*		work;
+		const char*		dicImagePath;
+		struct stat		st;
+		void*			image;
+		int				fd;
+
+		/* Initialize the dictionary area */
+		memset( dicData, 0x00, sizeof( NJ_JNIDICDATA ) );
+
+		/* Map the dictionary image file which is specified by dicImagePathJ */
+		if( dicImagePathJ == NULL ||
+			( dicImagePath = ( *env )->GetStringUTFChars( env, dicImagePathJ, 0 ) ) == NULL ) {
+			free( dicData );
+			return 0;
+		}
+
+		fd = open( dicImagePath, O_RDONLY );
+		( *env )->ReleaseStringUTFChars( env, dicImagePathJ, dicImagePath );
+
+		if( fd < 0 ) {
+			free( dicData );
+			return 0;
+		}
+		if( fstat( fd, &st ) != 0 || st.st_size <= 0 ) {
+			close( fd );
+			free( dicData );
+			return 0;
+		}
+
+		/* The pages are shared with other processes through the page cache */
+		image = mmap( NULL, ( size_t )st.st_size, PROT_READ, MAP_SHARED, fd, 0 );
+		close( fd );
+		if( image == MAP_FAILED ) {
+			free( dicData );
+			return 0;
+		}
+
+		/* Retrieve data pointers of dictionary from the image, and put to dictionary area */
+		if( setDictionaryImage( dicData, ( NJ_UINT8* )image, ( size_t )st.st_size ) == 0 ) {
+			dicData->dicImage = image;
+			dicData->dicImageSize = ( size_t )st.st_size;
+
+			/* Create the internal work area which refers the dictionaries */
+			work = createWorkWithDictionary( dicData );
+			if( work != NULL ) {
+	            jlong   jresult;
+
+	            *( NJ_JNIWORK** )&jresult = work;
+				return jresult;
+			}
+		}
+
+		munmap( image, ( size_t )st.st_size );
+		free( dicData );
+	}
+	/* If allocating the internal work area failed, return NULL */
+	return 0;
+}
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    createWnnCursor
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_createWnnCursor
+  (JNIEnv *env, jobject obj, jlong wnnWork)
+{
+	NJ_JNIWORK*	work;
+
+	work = *( NJ_JNIWORK** )&wnnWork;
+	if( work != NULL ) {
+		NJ_JNIWORK*		cursor;
+
+		/* Create the internal work area which shares the dictionaries of the specified work area */
+		cursor = createWorkWithDictionary( work->dicData );
+		if( cursor != NULL ) {
+            jlong   jresult;
+
+            *( NJ_JNIWORK** )&jresult = cursor;
+			return jresult;
+		}
 	}
 	/* If allocating the internal work area failed, return NULL */
 	return 0;
@@ -289,10 +619,7 @@ JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_fre
 	work = *( NJ_JNIWORK** )&wnnWork;
 	if( work != NULL ) {
 		/* If the internal work area was not yet released, remove that */ 
-        if( work->dicLibHandle != NULL ) {
-        	dlclose( work->dicLibHandle );
-            work->dicLibHandle = NULL;
-        }
+        releaseDictionary( work->dicData );
 		free( work );
 
 		return 0;
@@ -322,8 +649,10 @@ JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_cle
 		}
         work->flag = NJ_JNI_FLAG_NONE;
 
-        /* Clear the cache information */
-        memset( work->dicSet.keyword, 0x00, sizeof( work->dicSet.keyword ) );
+        /*
+         * The cache information is kept; it is cleared in searchWord if the dictionaries
+         * are not set as same as the last search.
+         */
 
 		return 0;
 	}
@@ -342,24 +671,29 @@ JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_set
 {
 	NJ_JNIWORK*	work;
 
-	if( ( index < 0  || index > NJ_MAX_DIC-1 ) ||
+	if( ( index < -2 || index > NJ_MAX_DIC-1 ) ||
 		( base <  -1 || base > 1000 ) ||
 		( high <  -1 || high > 1000 ) ) {
 		/* If a invalid parameter was specified, return an error code */
 		return NJ_SET_ERR_VAL(NJ_FUNC_JNI_SET_DICTIONARY_PARAMETERS, NJ_ERR_INVALID_PARAM);
 	}
+    if( index < 0 ) {
+        /* The writable dictionaries are at the last slots */
+        index = getWritableDictionaryIndex( index );
+    }
 
 	work = *( NJ_JNIWORK** )&wnnWork;
 	if( work != NULL ) {
 		/* Create the dictionary set information structure */
-		if( base < 0 || high < 0 || base > high ) {
+		if( base < 0 || high < 0 || base > high || work->dicData->dicHandle[ index ] == NULL ) {
 			/* If -1 was specified to base or high, clear that dictionary information structure */
             /* If base is larger than high, clear that dictionary information structure */
+            /* If the dictionary does not exist (e.g. the writable dictionary is not set), clear that too */
     		clearDictionaryStructure( &( work->dicSet.dic[ index ] ) );
 		} else {
 			/* Set the dictionary informatin structure */
-    		work->dicSet.dic[ index ].type		= work->dicType[ index ];
-    		work->dicSet.dic[ index ].handle	= work->dicHandle[ index ];
+    		work->dicSet.dic[ index ].type		= work->dicData->dicType[ index ];
+    		work->dicSet.dic[ index ].handle	= work->dicData->dicHandle[ index ];
     		work->dicSet.dic[ index ].srhCache	= &( work->srhCache[ index ] );
 
     		work->dicSet.dic[ index ].dic_freq[ NJ_MODE_TYPE_HENKAN ].base = base;
@@ -422,6 +756,17 @@ JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_sea
                 work->cursor.cond.kanji = work->previousCandidate;
             }
 
+            /*
+             * Reuse the search cache of the last key if the search condition is not changed.
+             * The search engine compares the key with the last one, and resumes from the
+             * cached nodes of the common prefix (on both extending and shortening the key).
+             */
+            if( !isSearchCacheReusable( work ) ) {
+                memset( work->dicSet.keyword, 0x00, sizeof( work->dicSet.keyword ) );
+                memset( work->srhCache, 0x00, sizeof( work->srhCache ) );
+                saveSearchCondition( work );
+            }
+
 			/* Search a specified word */
             memcpy( &( work->wnnClass.dic_set ), &( work->dicSet ), sizeof( NJ_DIC_SET ) );
 			result = ( jint )njx_search_word( &( work->wnnClass ), &( work->cursor ) );
@@ -488,6 +833,117 @@ JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_get
 	return NJ_SET_ERR_VAL(NJ_FUNC_JNI_GET_WORD, NJ_ERR_NOT_ALLOCATED);
 }
 
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    getNextWords
+ * Signature: (JII[I[I[I[I[C)I
+ */
+JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_getNextWords
+  (JNIEnv *env, jclass obj, jlong wnnWork, jint length, jint max,
+   jintArray frequencyJ, jintArray leftPartOfSpeechJ, jintArray rightPartOfSpeechJ, jintArray lengthJ, jcharArray stringJ)
+{
+	NJ_JNIWORK*	work;
+
+	if( max <= 0 ||
+		frequencyJ == NULL || ( *env )->GetArrayLength( env, frequencyJ ) < max ||
+		leftPartOfSpeechJ == NULL || ( *env )->GetArrayLength( env, leftPartOfSpeechJ ) < max ||
+		rightPartOfSpeechJ == NULL || ( *env )->GetArrayLength( env, rightPartOfSpeechJ ) < max ||
+		lengthJ == NULL || ( *env )->GetArrayLength( env, lengthJ ) < max * 2 ||
+		stringJ == NULL ) {
+		/* If a invalid parameter was specified, return an error code */
+		return NJ_SET_ERR_VAL(NJ_FUNC_JNI_GET_WORDS, NJ_ERR_INVALID_PARAM);
+	}
+
+	work = *( NJ_JNIWORK** )&wnnWork;
+	if( work != NULL ) {
+        if( work->flag & NJ_JNI_FLAG_ENABLE_CURSOR ) {
+            jint*       frequency;
+            jint*       leftPartOfSpeech;
+            jint*       rightPartOfSpeech;
+            jint*       strLength;
+            jchar*      string;
+            jint        stringSize, stringPtr, count, result;
+            NJ_CHAR     stroke[ NJ_MAX_LEN + NJ_TERM_LEN ];
+            NJ_CHAR     candidate[ NJ_MAX_RESULT_LEN + NJ_TERM_LEN ];
+
+            stringSize          = ( *env )->GetArrayLength( env, stringJ );
+            frequency           = ( *env )->GetIntArrayElements( env, frequencyJ, NULL );
+            leftPartOfSpeech    = ( *env )->GetIntArrayElements( env, leftPartOfSpeechJ, NULL );
+            rightPartOfSpeech   = ( *env )->GetIntArrayElements( env, rightPartOfSpeechJ, NULL );
+            strLength           = ( *env )->GetIntArrayElements( env, lengthJ, NULL );
+            string              = ( *env )->GetCharArrayElements( env, stringJ, NULL );
+
+            result = NJ_SET_ERR_VAL(NJ_FUNC_JNI_GET_WORDS, NJ_ERR_ALLOC_FAILED);
+            count  = 0;
+
+            if( frequency != NULL && leftPartOfSpeech != NULL && rightPartOfSpeech != NULL &&
+                strLength != NULL && string != NULL ) {
+                /* Retrieve words while the packed string buffer can hold another stroke and candidate */
+                for( stringPtr = 0 ; count < max && stringPtr + NJ_MAX_LEN + NJ_MAX_RESULT_LEN <= stringSize ; count++ ) {
+                    /* Get a specified word and search a next word */
+                    do {
+                        result = ( jint )njx_get_word( &( work->wnnClass ), &( work->cursor ), &( work->result ) );
+                        if( length <= 0 ||
+                            length == ( NJ_GET_YLEN_FROM_STEM( &( work->result.word ) ) + NJ_GET_YLEN_FROM_FZK( &( work->result.word ) ) ) ) {
+                            break;
+                        }
+                    } while( result > 0 );
+
+                    if( result <= 0 ) {
+                        break;
+                    }
+
+                    if( njx_get_stroke( &( work->wnnClass ), &( work->result ), stroke, sizeof( NJ_CHAR ) * ( NJ_MAX_LEN + NJ_TERM_LEN ) ) < 0 ||
+                        njx_get_candidate( &( work->wnnClass ), &( work->result ), candidate, sizeof( NJ_CHAR ) * ( NJ_MAX_RESULT_LEN + NJ_TERM_LEN ) ) < 0 ) {
+                        result = NJ_SET_ERR_VAL(NJ_FUNC_JNI_GET_WORDS, NJ_ERR_INTERNAL);
+                        break;
+                    }
+
+                    /* Store the word information and pack the strings into the buffer */
+                    frequency[ count ]          = ( jint )( work->result.word.stem.hindo );
+                    leftPartOfSpeech[ count ]   = NJ_GET_FPOS_FROM_STEM( &( work->result.word ) );
+                    rightPartOfSpeech[ count ]  = NJ_GET_BPOS_FROM_STEM( &( work->result.word ) );
+
+                    strLength[ count * 2 + 0 ]  = convertNjCharToJchar( &string[ stringPtr ], stroke, NJ_MAX_LEN );
+                    stringPtr += strLength[ count * 2 + 0 ];
+                    strLength[ count * 2 + 1 ]  = convertNjCharToJchar( &string[ stringPtr ], candidate, NJ_MAX_RESULT_LEN );
+                    stringPtr += strLength[ count * 2 + 1 ];
+                }
+            }
+
+            if( string != NULL ) {
+                ( *env )->ReleaseCharArrayElements( env, stringJ, string, 0 );
+            }
+            if( strLength != NULL ) {
+                ( *env )->ReleaseIntArrayElements( env, lengthJ, strLength, 0 );
+            }
+            if( rightPartOfSpeech != NULL ) {
+                ( *env )->ReleaseIntArrayElements( env, rightPartOfSpeechJ, rightPartOfSpeech, 0 );
+            }
+            if( leftPartOfSpeech != NULL ) {
+                ( *env )->ReleaseIntArrayElements( env, leftPartOfSpeechJ, leftPartOfSpeech, 0 );
+            }
+            if( frequency != NULL ) {
+                ( *env )->ReleaseIntArrayElements( env, frequencyJ, frequency, 0 );
+            }
+
+            /* The last retrieved word stays as the current word information */
+            if( count > 0 ) {
+                work->flag |= NJ_JNI_FLAG_ENABLE_RESULT;
+                return count;
+            }
+            work->flag &= ~NJ_JNI_FLAG_ENABLE_RESULT;
+            return ( result < 0 ) ? result : 0;
+        } else {
+            /* When njx_search_word() was not yet called, return "No result is found" */
+            return 0;
+        }
+	}
+
+	/* If the internal work area was already released, return an error code */
+	return NJ_SET_ERR_VAL(NJ_FUNC_JNI_GET_WORDS, NJ_ERR_NOT_ALLOCATED);
+}
+
 /*
  * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
  * Method:    getStroke
@@ -602,8 +1058,10 @@ JNIEXPORT void JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_cle
 			work->approxSet.to[ i ]   = NULL;
 		}
 
-        /* Clear the cache information */
-        memset( work->dicSet.keyword, 0x00, sizeof( work->dicSet.keyword ) );
+        /*
+         * The cache information is kept; it is cleared in searchWord if the approximate
+         * patterns are not set as same as the last search.
+         */
 	}
 }
 
@@ -1113,6 +1571,50 @@ JNIEXPORT jbyteArray JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJ
     return NULL;
 }
 
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    getConnectBitArray
+ * Signature: (J)[B
+ */
+JNIEXPORT jbyteArray JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_getConnectBitArray
+  (JNIEnv *env, jclass obj, jlong wnnWork)
+{
+	NJ_JNIWORK*	work;
+
+	work = *( NJ_JNIWORK** )&wnnWork;
+	if( work != NULL ) {
+        NJ_UINT16   lcount = 0, rcount = 0;
+        jsize       stride;
+        jbyteArray  resultJ;
+
+        if( work->dicSet.rHandle[ NJ_MODE_TYPE_HENKAN ] == NULL ) {
+            /* No rule dictionary was set */
+        	return NULL;
+        }
+
+        njd_r_get_count( work->dicSet.rHandle[ NJ_MODE_TYPE_HENKAN ], &lcount, &rcount );
+
+        /* The packed rows of the left POS 1 to lcount */
+        stride = ( rcount + 7 ) / 8;
+        resultJ = ( *env )->NewByteArray( env, lcount * stride );
+
+        if( resultJ != NULL ) {
+            int         i;
+            NJ_UINT8*   connect;
+
+            for( i = 1 ; i <= lcount ; i++ ) {
+                njd_r_get_connect( work->dicSet.rHandle[ NJ_MODE_TYPE_HENKAN ], i, NJ_RULE_TYPE_FTOB, &connect );
+                ( *env )->SetByteArrayRegion( env, resultJ, ( i - 1 ) * stride, stride, ( jbyte* )connect );
+            }
+            return resultJ;
+        }
+		/* If allocating the return area failed, return an error code */
+       	return NULL;
+    }
+	/* If the internal work area was already released, return an error code */
+	return NULL;
+}
+
 /*
  * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
  * Method:    getNumberOfLeftPOS
@@ -1395,3 +1897,260 @@ JNIEXPORT jstring JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_
 	return retJ;
 }
 
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    setWritableDictionary
+ * Signature: (JI[BI)I
+ */
+JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_setWritableDictionary
+  (JNIEnv *env, jclass obj, jlong wnnWork, jint index, jbyteArray imageJ, jint maxWords)
+{
+	NJ_JNIWORK*	work;
+    int         slot;
+
+    slot = getWritableDictionaryIndex( index );
+    if( slot < 0 || maxWords <= 0 || maxWords > 0x7FFF ) {
+		/* If a invalid parameter was specified, return an error code */
+		return NJ_SET_ERR_VAL(NJ_FUNC_JNI_SET_WRITABLE_DICTIONARY, NJ_ERR_INVALID_PARAM);
+    }
+
+	work = *( NJ_JNIWORK** )&wnnWork;
+	if( work != NULL ) {
+        NJ_JNIDICDATA*  dicData = work->dicData;
+        NJ_UINT8*       handle;
+        NJ_UINT32       size;
+        jint            loaded = 0;
+
+        if( dicData->dicHandle[ slot ] != NULL && !dicData->dicWritable[ slot ] ) {
+            /* The slot is used by a dictionary of the library */
+            return NJ_SET_ERR_VAL(NJ_FUNC_JNI_SET_WRITABLE_DICTIONARY, NJ_ERR_INVALID_PARAM);
+        }
+
+        size = getWritableDictionarySize( slot, maxWords );
+        if( size == 0 ) {
+            return NJ_SET_ERR_VAL(NJ_FUNC_JNI_SET_WRITABLE_DICTIONARY, NJ_ERR_INVALID_PARAM);
+        }
+        handle = ( NJ_UINT8* )malloc( size );
+        if( handle == NULL ) {
+            return NJ_SET_ERR_VAL(NJ_FUNC_JNI_SET_WRITABLE_DICTIONARY, NJ_ERR_ALLOC_FAILED);
+        }
+
+        /* Use the saved image if it is valid and has the same size */
+        if( imageJ != NULL && ( NJ_UINT32 )( *env )->GetArrayLength( env, imageJ ) == size ) {
+            ( *env )->GetByteArrayRegion( env, imageJ, 0, size, ( jbyte* )handle );
+            loaded = checkWritableDictionary( &( work->wnnClass ), handle, size, slot );
+        }
+
+        /* Otherwise, create an empty dictionary */
+        if( !loaded ) {
+            NJ_INT8     type;
+
+            type = ( slot == NJ_JNI_INDEX_USER_DICTIONARY ) ? ADD_WORD_DIC_TYPE_USER : ADD_WORD_DIC_TYPE_LEARN;
+            if( njx_create_dic( &( work->wnnClass ), handle, type, size ) < 0 ) {
+                free( handle );
+                return NJ_SET_ERR_VAL(NJ_FUNC_JNI_SET_WRITABLE_DICTIONARY, NJ_ERR_INTERNAL);
+            }
+        }
+
+        if( dicData->dicWritable[ slot ] ) {
+            free( dicData->dicHandle[ slot ] );
+        }
+        dicData->dicHandle[ slot ]   = handle;
+        dicData->dicSize[ slot ]     = size;
+        dicData->dicType[ slot ]     = NJ_DIC_H_TYPE_NORMAL;
+        dicData->dicWritable[ slot ] = 1;
+        touchWritableDictionary( dicData );
+
+        /* The dictionary set refers the old dictionary */
+        clearDictionaryStructure( &( work->dicSet.dic[ slot ] ) );
+        work->flag = NJ_JNI_FLAG_NONE;
+
+        return loaded;
+	}
+
+	/* If the internal work area was already released, return an error code */
+	return NJ_SET_ERR_VAL(NJ_FUNC_JNI_SET_WRITABLE_DICTIONARY, NJ_ERR_NOT_ALLOCATED);
+}
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    addWordToWritableDictionary
+ * Signature: (JILjava/lang/String;Ljava/lang/String;II)I
+ */
+JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_addWordToWritableDictionary
+  (JNIEnv *env, jclass obj, jlong wnnWork, jint index, jstring strokeJ, jstring candidateJ, jint left, jint right)
+{
+	NJ_JNIWORK*	work;
+    int         slot;
+
+    slot = getWritableDictionaryIndex( index );
+    if( slot < 0 || strokeJ == NULL || candidateJ == NULL ||
+        ( left < 0 || left > 0x1FF ) || ( right < 0 || right > 0x1FF ) ||
+        ( *env )->GetStringLength( env, strokeJ ) > NJ_MAX_USER_LEN ||
+        ( *env )->GetStringLength( env, candidateJ ) > NJ_MAX_USER_KOUHO_LEN ) {
+		/* If a invalid parameter was specified, return an error code */
+		return NJ_SET_ERR_VAL(NJ_FUNC_JNI_WRITE_WORD, NJ_ERR_INVALID_PARAM);
+    }
+
+	work = *( NJ_JNIWORK** )&wnnWork;
+	if( work != NULL && work->dicData->dicWritable[ slot ] ) {
+        NJ_LEARN_WORD_INFO  info;
+
+        memset( &info, 0x00, sizeof( NJ_LEARN_WORD_INFO ) );
+        if( convertStringToNjChar( env, info.yomi, strokeJ, NJ_MAX_USER_LEN ) < 0 ||
+            convertStringToNjChar( env, info.hyouki, candidateJ, NJ_MAX_USER_KOUHO_LEN ) < 0 ) {
+    		/* If converting the string failed, return an error code */
+            return NJ_SET_ERR_VAL(NJ_FUNC_JNI_WRITE_WORD, NJ_ERR_INTERNAL);
+        }
+        info.yomi_len     = ( NJ_UINT8 )nj_strlen( info.yomi );
+        info.hyouki_len   = ( NJ_UINT8 )nj_strlen( info.hyouki );
+        info.f_hinsi      = ( NJ_UINT16 )left;
+        info.b_hinsi      = ( NJ_UINT16 )right;
+        info.stem_b_hinsi = ( NJ_UINT16 )right;
+
+        /*
+         * The learning dictionary overwrites the words at the next position if it is full;
+         * the number of them is returned
+         */
+        touchWritableDictionary( work->dicData );
+        return njd_l_write_word( &( work->wnnClass ), work->dicData->dicHandle[ slot ], &info,
+                                 ( slot == NJ_JNI_INDEX_LEARN_DICTIONARY ) );
+	}
+
+	/* If the internal work area or the dictionary was not allocated, return an error code */
+	return NJ_SET_ERR_VAL(NJ_FUNC_JNI_WRITE_WORD, NJ_ERR_NOT_ALLOCATED);
+}
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    removeWordFromWritableDictionary
+ * Signature: (JILjava/lang/String;Ljava/lang/String;)I
+ */
+JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_removeWordFromWritableDictionary
+  (JNIEnv *env, jclass obj, jlong wnnWork, jint index, jstring strokeJ, jstring candidateJ)
+{
+	NJ_JNIWORK*	work;
+    int         slot;
+
+    slot = getWritableDictionaryIndex( index );
+    if( slot < 0 || strokeJ == NULL || candidateJ == NULL ) {
+		/* If a invalid parameter was specified, return an error code */
+		return NJ_SET_ERR_VAL(NJ_FUNC_JNI_WRITE_WORD, NJ_ERR_INVALID_PARAM);
+    }
+    if( ( *env )->GetStringLength( env, strokeJ ) > NJ_MAX_USER_LEN ||
+        ( *env )->GetStringLength( env, candidateJ ) > NJ_MAX_USER_KOUHO_LEN ) {
+        /* The word cannot be registered */
+        return 0;
+    }
+
+	work = *( NJ_JNIWORK** )&wnnWork;
+	if( work != NULL && work->dicData->dicWritable[ slot ] ) {
+        NJ_CHAR     yomi[ NJ_MAX_USER_LEN + NJ_TERM_LEN ];
+        NJ_CHAR     hyouki[ NJ_MAX_USER_KOUHO_LEN + NJ_TERM_LEN ];
+        NJ_INT16    ret;
+
+        if( convertStringToNjChar( env, yomi, strokeJ, NJ_MAX_USER_LEN ) < 0 ||
+            convertStringToNjChar( env, hyouki, candidateJ, NJ_MAX_USER_KOUHO_LEN ) < 0 ) {
+    		/* If converting the string failed, return an error code */
+            return NJ_SET_ERR_VAL(NJ_FUNC_JNI_WRITE_WORD, NJ_ERR_INTERNAL);
+        }
+
+        touchWritableDictionary( work->dicData );
+        ret = njd_l_delete_word_by_string( &( work->wnnClass ), work->dicData->dicHandle[ slot ], yomi, hyouki );
+        if( ret < 0 && NJ_GET_ERR_CODE( ret ) == NJ_ERR_WORD_NOT_FOUND ) {
+            /* Not an error */
+            return 0;
+        }
+        return ret;
+	}
+
+	/* If the internal work area or the dictionary was not allocated, return an error code */
+	return NJ_SET_ERR_VAL(NJ_FUNC_JNI_WRITE_WORD, NJ_ERR_NOT_ALLOCATED);
+}
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    clearWritableDictionary
+ * Signature: (JI)I
+ */
+JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_clearWritableDictionary
+  (JNIEnv *env, jclass obj, jlong wnnWork, jint index)
+{
+	NJ_JNIWORK*	work;
+    int         slot;
+
+    slot = getWritableDictionaryIndex( index );
+    if( slot < 0 ) {
+		/* If a invalid parameter was specified, return an error code */
+		return NJ_SET_ERR_VAL(NJ_FUNC_JNI_WRITE_WORD, NJ_ERR_INVALID_PARAM);
+    }
+
+	work = *( NJ_JNIWORK** )&wnnWork;
+	if( work != NULL && work->dicData->dicWritable[ slot ] ) {
+        touchWritableDictionary( work->dicData );
+        return njd_l_init_area( work->dicData->dicHandle[ slot ] );
+	}
+
+	/* If the internal work area or the dictionary was not allocated, return an error code */
+	return NJ_SET_ERR_VAL(NJ_FUNC_JNI_WRITE_WORD, NJ_ERR_NOT_ALLOCATED);
+}
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    getWritableDictionaryWordCount
+ * Signature: (JI)I
+ */
+JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_getWritableDictionaryWordCount
+  (JNIEnv *env, jclass obj, jlong wnnWork, jint index)
+{
+	NJ_JNIWORK*	work;
+    int         slot;
+
+    slot = getWritableDictionaryIndex( index );
+    if( slot < 0 ) {
+		/* If a invalid parameter was specified, return an error code */
+		return NJ_SET_ERR_VAL(NJ_FUNC_JNI_WRITE_WORD, NJ_ERR_INVALID_PARAM);
+    }
+
+	work = *( NJ_JNIWORK** )&wnnWork;
+	if( work != NULL && work->dicData->dicWritable[ slot ] ) {
+        return njd_l_get_word_count( work->dicData->dicHandle[ slot ] );
+	}
+
+	/* If the internal work area or the dictionary was not allocated, return an error code */
+	return NJ_SET_ERR_VAL(NJ_FUNC_JNI_WRITE_WORD, NJ_ERR_NOT_ALLOCATED);
+}
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    getWritableDictionaryImage
+ * Signature: (JI)[B
+ */
+JNIEXPORT jbyteArray JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_getWritableDictionaryImage
+  (JNIEnv *env, jclass obj, jlong wnnWork, jint index)
+{
+	NJ_JNIWORK*	work;
+    int         slot;
+
+    slot = getWritableDictionaryIndex( index );
+    if( slot < 0 ) {
+		/* If a invalid parameter was specified, return NULL */
+		return NULL;
+    }
+
+	work = *( NJ_JNIWORK** )&wnnWork;
+	if( work != NULL && work->dicData->dicWritable[ slot ] ) {
+        jbyteArray  imageJ;
+
+        imageJ = ( *env )->NewByteArray( env, work->dicData->dicSize[ slot ] );
+        if( imageJ != NULL ) {
+            ( *env )->SetByteArrayRegion( env, imageJ, 0, work->dicData->dicSize[ slot ],
+                                          ( jbyte* )work->dicData->dicHandle[ slot ] );
+        }
+        return imageJ;
+	}
+
+	/* If the internal work area or the dictionary was not allocated, return NULL */
+	return NULL;
+}
@@ -39,6 +39,9 @@
 #define NJ_FUNC_JNI_GET_RIGHT_PART_OF_SPEECH_SPECIFIED_TYPE (0x00ED)
 #define NJ_FUNC_JNI_GET_NUMBER_OF_LEFT_POS                  (0x00EC)
 #define NJ_FUNC_JNI_GET_NUMBER_OF_RIGHT_POS                 (0x00EB)
+#define NJ_FUNC_JNI_GET_WORDS                               (0x00EA)
+#define NJ_FUNC_JNI_SET_WRITABLE_DICTIONARY                 (0x00E9)
+#define NJ_FUNC_JNI_WRITE_WORD                              (0x00E8)
 
 #define NJ_ERR_JNI_FUNC_FAILED						        (0x7E00)
 #define NJ_ERR_ALLOC_FAILED							        (0x7D00)
@@ -58,11 +61,77 @@
 #define NJ_JNI_FLAG_ENABLE_CURSOR                   (0x01)
 #define NJ_JNI_FLAG_ENABLE_RESULT                   (0x02)
 
+/**
+ * Dictionary image file
+ *
+ * The dictionary data of a dictionary library (dic_data, dic_size, dic_type and
+ * con_data) stored in a file which is mapped into memory read-only.
+ * All integers are 32bit little endian.
+ *
+ *   0x00  magic "OWNNDIC\0"
+ *   0x08  version (NJ_DIC_IMAGE_VERSION)
+ *   0x0C  number of dictionaries (up to NJ_MAX_DIC)
+ *   0x10  offset of the rule data (con_data; 0 if not exist)
+ *   0x14  size of the rule data
+ *   0x18  entries of the dictionaries { type, offset (0 if not exist), size }
+ *
+ * The offsets are counted from the top of the file.
+ */
+#define NJ_DIC_IMAGE_MAGIC                          "OWNNDIC"
+#define NJ_DIC_IMAGE_MAGIC_LEN                      8
+#define NJ_DIC_IMAGE_VERSION                        1
+#define NJ_DIC_IMAGE_HEADER_SIZE                    0x18
+#define NJ_DIC_IMAGE_ENTRY_SIZE                     12
+
+/**
+ * Writable dictionaries in native memory
+ *
+ * The user and learning dictionaries (index -1 and -2 of the Java layer) are
+ * NJ_DIC_TYPE_USER dictionaries kept at the last slots of the dictionary set.
+ * The learning dictionary has NJ_JNI_LEARN_QUES_PER_WORD queues for a word, the
+ * number of the queues of the longest word (a queue has 5 bytes of header and
+ * each following queue has 1 byte), so the words written in order always fit.
+ * It is a ring buffer, though: the words at the next position are overwritten
+ * even if the removed words have left enough room elsewhere, so the number of
+ * the overwritten words is reported to the Java layer.
+ */
+#define NJ_JNI_INDEX_USER_DICTIONARY                (NJ_MAX_DIC - 2)
+#define NJ_JNI_INDEX_LEARN_DICTIONARY               (NJ_MAX_DIC - 1)
+#define NJ_JNI_LEARN_QUES_PER_WORD                  \
+    ( 1 + ( ( NJ_MAX_USER_LEN + NJ_MAX_USER_KOUHO_LEN ) * sizeof( NJ_CHAR ) - ( LEARN_DIC_QUE_SIZE - 5 ) \
+            + ( LEARN_DIC_QUE_SIZE - 2 ) ) / ( LEARN_DIC_QUE_SIZE - 1 ) )
+
+/**
+ * The loaded dictionaries
+ *
+ * The data is read-only and shared by the internal work areas (cursors) created
+ * from the same work area.  It is released when the last work area is freed.
+ * Only the writable dictionaries (dicWritable) are allocated and changed; the
+ * Java layer must not search with the cursors while it changes them.
+ * writeGeneration is counted up at every change of them, so that the work areas
+ * can tell that their search caches refer to the words before the change.
+ */
 typedef struct {
 	void*				dicLibHandle;
+	void*				dicImage;
+	size_t				dicImageSize;
 	NJ_DIC_HANDLE		dicHandle[ NJ_MAX_DIC ];
 	NJ_UINT32			dicSize[ NJ_MAX_DIC ];
 	NJ_UINT8			dicType[ NJ_MAX_DIC ];
+	NJ_UINT8			dicWritable[ NJ_MAX_DIC ];
+	NJ_DIC_HANDLE		ruleHandle;
+	int					refCount;
+	NJ_UINT32			writeGeneration;
+} NJ_JNIDICDATA;
+
+/**
+ * The internal work area
+ *
+ * Every search state is kept in the work area, so the work areas sharing
+ * the same dictionaries can be used concurrently on different threads.
+ */
+typedef struct {
+	NJ_JNIDICDATA*		dicData;
 	NJ_CHAR				keyString[ NJ_MAX_LEN + NJ_TERM_LEN ];
 	NJ_RESULT			result;
 	NJ_CURSOR			cursor;
@@ -74,6 +143,10 @@ typedef struct {
     NJ_CHAR             previousStroke[ NJ_MAX_LEN + NJ_TERM_LEN ];
     NJ_CHAR             previousCandidate[ NJ_MAX_RESULT_LEN + NJ_TERM_LEN ];
     NJ_UINT8            flag;
+    NJ_DIC_INFO         cacheDic[ NJ_MAX_DIC ];
+    NJ_CHARSET          cacheApproxSet;
+    NJ_CHAR             cacheApproxStr[ NJ_MAX_CHARSET * NJ_APPROXSTORE_SIZE ];
+    NJ_UINT32           cacheGeneration;
 } NJ_JNIWORK;
 
 /**
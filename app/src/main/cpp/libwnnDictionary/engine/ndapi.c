@@ -23,6 +23,9 @@
 #define NJ_DIC_UNCOMP_EXT_HEADER_SIZE   0x002C      
 #define CREATE_DIC_TYPE_USER            0           
 
+#define NJ_MERGE_ST_NO_INIT             0           
+#define NJ_MERGE_ST_READY               1           
+
 #define GET_HYOKI_INDEX_OFFSET(cnt)                             \
     (NJ_LEARN_DIC_HEADER_SIZE + NJ_INDEX_SIZE * ((cnt)+1))
 
@@ -42,6 +45,14 @@ static NJ_INT16 check_search_cursor(NJ_CLASS *iwnn, NJ_CURSOR *cursor);
 static NJ_INT16 search_word(NJ_CLASS *iwnn, NJ_CURSOR *cursor, NJ_UINT8 comp_flg, NJ_UINT8 *exit_flag);
 static void set_operation_id(NJ_SEARCH_LOCATION *dicinfo, NJ_UINT8 reverse, NJ_RESULT *result);
 static NJ_INT16 get_word_and_search_next_word(NJ_CLASS *iwnn, NJ_CURSOR *cursor, NJ_RESULT *result, NJ_UINT8 comp_flg);
+static NJ_INT16 get_word_by_linear_search(NJ_CLASS *iwnn, NJ_CURSOR *cursor, NJ_RESULT *result, NJ_UINT8 comp_flg);
+static NJ_INT16 get_word_by_merge(NJ_CLASS *iwnn, NJ_CURSOR *cursor, NJ_RESULT *result, NJ_UINT8 comp_flg);
+static NJ_UINT8 is_aimai_cache_used(NJ_CURSOR *cursor);
+static NJ_INT16 fetch_merge_word(NJ_CLASS *iwnn, NJ_CURSOR *cursor, NJ_INT16 idx);
+static NJ_INT16 is_merge_prior(NJ_CURSOR *cursor, NJ_UINT8 a, NJ_UINT8 b);
+static void push_merge_heap(NJ_CURSOR *cursor, NJ_UINT8 idx);
+static NJ_UINT8 pop_merge_heap(NJ_CURSOR *cursor);
+static NJ_INT16 search_next_word(NJ_CLASS *iwnn, NJ_CURSOR *cursor, NJ_INT16 idx, NJ_UINT8 comp_flg);
 
 static NJ_INT16 njd_check_dic(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle);
 
@@ -55,6 +66,8 @@ static NJ_INT16 check_search_cursor(NJ_CLASS *iwnn, NJ_CURSOR *cursor) {
         return NJ_SET_ERR_VAL(NJ_FUNC_CHECK_SEARCH_CURSOR, NJ_ERR_PARAM_DIC_NULL);
     }
 
+    
+    cursor->merge.status = NJ_MERGE_ST_NO_INIT;
 
     for (i = 0; i < NJ_MAX_DIC; i++) {
         loctset = &(cursor->loctset[i]);
@@ -185,6 +198,229 @@ static NJ_INT16 search_word(NJ_CLASS *iwnn, NJ_CURSOR *cursor, NJ_UINT8 comp_flg
 
 static NJ_INT16 get_word_and_search_next_word(NJ_CLASS *iwnn, NJ_CURSOR *cursor, NJ_RESULT *result,
                                               NJ_UINT8 comp_flg) {
+
+    
+    if (is_aimai_cache_used(cursor)) {
+        cursor->merge.status = NJ_MERGE_ST_NO_INIT;
+        return get_word_by_linear_search(iwnn, cursor, result, comp_flg);
+    }
+    return get_word_by_merge(iwnn, cursor, result, comp_flg);
+}
+
+static NJ_UINT8 is_aimai_cache_used(NJ_CURSOR *cursor) {
+    NJ_INT16 i;
+    NJ_SEARCH_LOCATION_SET *loctset;
+
+
+    if ((cursor->cond.mode != NJ_CUR_MODE_FREQ) ||
+        (cursor->cond.operation != NJ_CUR_OP_FORE) ||
+        !(cursor->cond.ds->mode & (NJ_CACHE_MODE_VALID))) {
+        return 0;
+    }
+
+    for (i = 0; i < NJ_MAX_DIC; i++) {
+        loctset = &(cursor->loctset[i]);
+        if ((loctset->loct.handle == NULL) ||
+            (GET_LOCATION_STATUS(loctset->loct.status) == NJ_ST_SEARCH_END) ||
+            (GET_LOCATION_STATUS(loctset->loct.status) == NJ_ST_SEARCH_END_EXT)) {
+            continue;
+        }
+        if ((cursor->cond.ds->dic[i].srhCache != NULL) &&
+            (NJ_GET_AIMAI_FROM_SCACHE(cursor->cond.ds->dic[i].srhCache))) {
+            return 1;
+        }
+    }
+    return 0;
+}
+
+static NJ_INT16 get_word_by_merge(NJ_CLASS *iwnn, NJ_CURSOR *cursor, NJ_RESULT *result,
+                                  NJ_UINT8 comp_flg) {
+    NJ_SEARCH_MERGE *merge = &(cursor->merge);
+    NJ_INT16 ret;
+    NJ_INT16 i;
+    NJ_UINT8 next;
+
+
+    if (merge->status != NJ_MERGE_ST_READY) {
+        
+        merge->count = 0;
+        merge->advanced = -1;
+        for (i = 0; i < NJ_MAX_DIC; i++) {
+            ret = fetch_merge_word(iwnn, cursor, i);
+            if (ret < 0) {
+                return ret;
+            }
+            if (ret > 0) {
+                push_merge_heap(cursor, (NJ_UINT8)i);
+            }
+        }
+        merge->status = NJ_MERGE_ST_READY;
+    } else if (merge->advanced >= 0) {
+        
+        ret = fetch_merge_word(iwnn, cursor, merge->advanced);
+        if (ret < 0) {
+            merge->status = NJ_MERGE_ST_NO_INIT;
+            return ret;
+        }
+        if (ret > 0) {
+            push_merge_heap(cursor, (NJ_UINT8)merge->advanced);
+        }
+        merge->advanced = -1;
+    }
+
+    if (merge->count == 0) {
+        njd_init_word(&(result->word));
+        return 0;
+    }
+
+    next = pop_merge_heap(cursor);
+    set_operation_id(&(cursor->loctset[next].loct), 0, result);
+    result->word = merge->word[next];
+
+    
+    merge->advanced = next;
+    ret = search_next_word(iwnn, cursor, next, comp_flg);
+    if (ret < 0) {
+        merge->status = NJ_MERGE_ST_NO_INIT;
+        return ret;
+    }
+    return 1;
+}
+
+static NJ_INT16 fetch_merge_word(NJ_CLASS *iwnn, NJ_CURSOR *cursor, NJ_INT16 idx) {
+    NJ_SEARCH_LOCATION_SET *loctset = &(cursor->loctset[idx]);
+    NJ_WORD   *word = &(cursor->merge.word[idx]);
+    NJ_RESULT tmp_result;
+    NJ_INT16  ret;
+
+
+    if ((loctset->loct.handle == NULL) ||
+        (GET_LOCATION_STATUS(loctset->loct.status) == NJ_ST_SEARCH_END) ||
+        (GET_LOCATION_STATUS(loctset->loct.status) == NJ_ST_SEARCH_END_EXT)) {
+        return 0;
+    }
+
+    njd_init_word(word);
+    switch (NJ_GET_DIC_TYPE_EX(loctset->loct.type, loctset->loct.handle)) {
+    case NJ_DIC_TYPE_JIRITSU:               
+    case NJ_DIC_TYPE_FZK:                   
+    case NJ_DIC_TYPE_TANKANJI:              
+    case NJ_DIC_TYPE_STDFORE:               
+    case NJ_DIC_TYPE_CUSTOM_COMPRESS:       
+    case NJ_DIC_TYPE_FORECONV:              
+        word->yomi = cursor->cond.yomi;
+        word->stem.info1 = cursor->cond.ylen;
+        break;
+    default:
+        break;
+    }
+
+    loctset->loct.status |= SET_LOCATION_OPERATION(cursor->cond.operation);
+    ret = njd_get_word_data(iwnn, cursor->cond.ds, loctset, (NJ_UINT16)idx, word);
+    if (ret < 0) {
+        return ret; 
+    }
+
+    if (cursor->cond.mode != NJ_CUR_MODE_FREQ) {
+        
+        tmp_result.word = *word;
+        ret = njd_get_stroke(iwnn, &tmp_result, cursor->merge.stroke[idx], sizeof(cursor->merge.stroke[idx]));
+        if (ret <= 0) {
+            if ((ret == 0) || (NJ_GET_ERR_CODE(ret) == NJ_ERR_BUFFER_NOT_ENOUGH)) { 
+                return NJ_SET_ERR_VAL(NJ_FUNC_GET_WORD_AND_SEARCH_NEXT_WORD, NJ_ERR_INVALID_RESULT); 
+            } else {
+                return ret; 
+            }
+        }
+    }
+    return 1;
+}
+
+static NJ_INT16 is_merge_prior(NJ_CURSOR *cursor, NJ_UINT8 a, NJ_UINT8 b) {
+    NJ_INT16 ret;
+
+
+    if (cursor->cond.mode == NJ_CUR_MODE_FREQ) {
+        if (cursor->loctset[a].cache_freq != cursor->loctset[b].cache_freq) {
+            return (cursor->loctset[a].cache_freq > cursor->loctset[b].cache_freq);
+        }
+    } else {
+        ret = nj_strcmp(cursor->merge.stroke[a], cursor->merge.stroke[b]);
+        if (ret != 0) {
+            return (ret < 0);
+        }
+    }
+    
+    return (a < b);
+}
+
+static void push_merge_heap(NJ_CURSOR *cursor, NJ_UINT8 idx) {
+    NJ_SEARCH_MERGE *merge = &(cursor->merge);
+    NJ_UINT8 pos, parent;
+
+
+    pos = merge->count++;
+    while (pos > 0) {
+        parent = (NJ_UINT8)((pos - 1) / 2);
+        if (!is_merge_prior(cursor, idx, merge->heap[parent])) {
+            break;
+        }
+        merge->heap[pos] = merge->heap[parent];
+        pos = parent;
+    }
+    merge->heap[pos] = idx;
+}
+
+static NJ_UINT8 pop_merge_heap(NJ_CURSOR *cursor) {
+    NJ_SEARCH_MERGE *merge = &(cursor->merge);
+    NJ_UINT8 top, last, pos, child;
+
+
+    top = merge->heap[0];
+    last = merge->heap[--merge->count];
+    pos = 0;
+    while ((child = (NJ_UINT8)(pos * 2 + 1)) < merge->count) {
+        if ((child + 1 < merge->count) &&
+            is_merge_prior(cursor, merge->heap[child + 1], merge->heap[child])) {
+            child++;
+        }
+        if (!is_merge_prior(cursor, merge->heap[child], last)) {
+            break;
+        }
+        merge->heap[pos] = merge->heap[child];
+        pos = child;
+    }
+    merge->heap[pos] = last;
+    return top;
+}
+
+static NJ_INT16 search_next_word(NJ_CLASS *iwnn, NJ_CURSOR *cursor, NJ_INT16 idx, NJ_UINT8 comp_flg) {
+    NJ_SEARCH_LOCATION_SET *loctset = &(cursor->loctset[idx]);
+
+
+    switch (NJ_GET_DIC_TYPE_EX(loctset->loct.type, loctset->loct.handle)) {
+    case NJ_DIC_TYPE_JIRITSU:                       
+    case NJ_DIC_TYPE_FZK:                           
+    case NJ_DIC_TYPE_TANKANJI:                      
+    case NJ_DIC_TYPE_STDFORE:                       
+    case NJ_DIC_TYPE_CUSTOM_COMPRESS:               
+    case NJ_DIC_TYPE_FORECONV:                      
+        return njd_b_search_word(&cursor->cond, loctset);
+
+    case NJ_DIC_TYPE_USER:                          
+    case NJ_DIC_TYPE_CUSTOM_INCOMPRESS:             
+        return njd_l_search_word(iwnn, &cursor->cond, loctset, comp_flg);
+
+    case NJ_DIC_TYPE_YOMINASHI:                     
+        return njd_f_search_word(&cursor->cond, loctset);
+
+    default:
+        return NJ_SET_ERR_VAL(NJ_FUNC_GET_WORD_AND_SEARCH_NEXT_WORD, NJ_ERR_DIC_TYPE_INVALID); 
+    }
+}
+
+static NJ_INT16 get_word_by_linear_search(NJ_CLASS *iwnn, NJ_CURSOR *cursor, NJ_RESULT *result,
+                                          NJ_UINT8 comp_flg) {
     NJ_INT16  ret = -1;
     NJ_INT32  i, next, first;
     NJ_WORD   tmp_word;
@@ -864,6 +1100,61 @@ NJ_EXTERN NJ_INT16 njx_check_dic(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle, NJ_UINT8
     return njd_check_dic(iwnn, handle);
 }
 
+NJ_EXTERN NJ_INT16 njx_create_dic(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle, NJ_INT8 type, NJ_UINT32 size) {
+    NJ_UINT32 que_size, max;
+
+
+    if (iwnn == NULL) {
+        return NJ_SET_ERR_VAL(NJ_FUNC_NJ_CREATE_DIC, NJ_ERR_PARAM_ENV_NULL);
+    }
+
+    if (handle == NULL) {
+        return NJ_SET_ERR_VAL(NJ_FUNC_NJ_CREATE_DIC, NJ_ERR_DIC_HANDLE_NULL);
+    }
+
+    switch (type) {
+    case ADD_WORD_DIC_TYPE_USER:
+        que_size = NJ_USER_QUE_SIZE;
+        break;
+    case ADD_WORD_DIC_TYPE_LEARN:
+        que_size = LEARN_DIC_QUE_SIZE;
+        break;
+    default:
+        return NJ_SET_ERR_VAL(NJ_FUNC_NJ_CREATE_DIC, NJ_ERR_CREATE_TYPE_INVALID);
+    }
+
+    
+    if (size < GET_DATA_AREA_OFFSET(1) + que_size + NJ_DIC_ID_LEN) {
+        return NJ_SET_ERR_VAL(NJ_FUNC_NJ_CREATE_DIC, NJ_ERR_AREASIZE_INVALID);
+    }
+    max = (size - GET_DATA_AREA_OFFSET(0) - NJ_DIC_ID_LEN) / (que_size + NJ_INDEX_SIZE * 2);
+    if (max > 0xFFFF) {
+        max = 0xFFFF;
+    }
+
+    NJ_INT32_WRITE(handle, NJ_DIC_IDENTIFIER);
+    NJ_INT32_WRITE(handle + 0x04, NJ_DIC_VERSION2);
+    NJ_INT32_WRITE(handle + 0x08, NJ_DIC_TYPE_USER);
+    NJ_INT32_WRITE(handle + NJ_DIC_POS_DATA_SIZE, size - NJ_DIC_COMMON_HEADER_SIZE);
+    NJ_INT32_WRITE(handle + NJ_DIC_POS_EXT_SIZE, 0);
+    NJ_INT32_WRITE(handle + 0x14, NJ_MAX_USER_LEN * sizeof(NJ_CHAR));
+    NJ_INT32_WRITE(handle + 0x18, NJ_MAX_USER_KOUHO_LEN * sizeof(NJ_CHAR));
+    NJ_INT32_WRITE(handle + 0x1C, 0);
+    NJ_INT32_WRITE(handle + 0x20, GET_DATA_AREA_OFFSET(max));
+    NJ_INT32_WRITE(handle + 0x24, 0);
+    NJ_INT32_WRITE(handle + 0x28, max);
+    NJ_INT32_WRITE(handle + 0x2C, que_size);
+    NJ_INT32_WRITE(handle + 0x30, 0);
+    NJ_INT32_WRITE(handle + 0x34, 0);
+    NJ_INT32_WRITE(handle + 0x38, 0);
+    NJ_INT32_WRITE(handle + 0x3C, NJ_LEARN_DIC_HEADER_SIZE);
+    NJ_INT32_WRITE(handle + 0x40, GET_HYOKI_INDEX_OFFSET(max));
+    NJ_INT32_WRITE(handle + 0x44, 0);
+    NJ_INT32_WRITE(handle + size - NJ_DIC_ID_LEN, NJ_DIC_IDENTIFIER);
+
+    return njd_l_init_area(handle);
+}
+
 NJ_INT16 njd_init_search_location_set(NJ_SEARCH_LOCATION_SET* loctset)
 {
 
@@ -2426,3 +2426,366 @@ static NJ_INT16 search_range_by_yomi2(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle, NJ_U
     return 1;
 }
 
+
+static NJ_UINT16 get_que_count(NJ_UINT16 que_size, NJ_UINT16 str_size) {
+
+    if (str_size <= (que_size - LEARN_QUE_STRING_OFFSET)) {
+        return 1;
+    }
+    str_size -= que_size - LEARN_QUE_STRING_OFFSET;
+    return (NJ_UINT16)(1 + USE_QUE_NUM(que_size, str_size));
+}
+
+static NJ_UINT16 get_word_que_count(NJ_DIC_HANDLE handle, NJ_UINT16 que_id) {
+    NJ_UINT8 *ptr;
+
+
+    ptr = POS_TO_ADDRESS(handle, que_id);
+    return get_que_count(QUE_SIZE(handle),
+                         (NJ_UINT16)(GET_YSIZE_FROM_DATA(ptr) + GET_KSIZE_FROM_DATA(ptr)));
+}
+
+static NJ_INT32 get_word_head(NJ_DIC_HANDLE handle, NJ_UINT16 que_id) {
+    NJ_UINT16 max, span, i, id;
+    NJ_UINT8 *ptr;
+
+
+    max = GET_LEARN_MAX_WORD_COUNT(handle);
+    span = get_que_count(QUE_SIZE(handle),
+                         (NJ_MAX_USER_LEN + NJ_MAX_USER_KOUHO_LEN) * sizeof(NJ_CHAR));
+    if (span > max) {
+        span = max;
+    }
+
+    
+    id = que_id;
+    for (i = 0; i < span; i++) {
+        ptr = POS_TO_ADDRESS(handle, id);
+        if (GET_TYPE_FROM_DATA(ptr) != QUE_TYPE_EMPTY) {
+            if (get_word_que_count(handle, id) > i) {
+                return id;
+            }
+            return -1;
+        }
+        id = PREV_QUE(id, max);
+    }
+    return -1;
+}
+
+static void remove_index_entry(NJ_UINT8 *index, NJ_UINT16 count, NJ_UINT16 que_id) {
+    NJ_UINT16 i;
+
+
+    for (i = 0; i < count; i++) {
+        if (GET_UINT16(index + i * NJ_INDEX_SIZE) == que_id) {
+            break;
+        }
+    }
+    for (; (i + 1) < count; i++) {
+        index[i * NJ_INDEX_SIZE]     = index[(i + 1) * NJ_INDEX_SIZE];
+        index[i * NJ_INDEX_SIZE + 1] = index[(i + 1) * NJ_INDEX_SIZE + 1];
+    }
+}
+
+static NJ_INT16 search_index_pos(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle, NJ_UINT8 *index,
+                                 NJ_UINT16 count, NJ_CHAR *key, NJ_UINT8 by_hyouki,
+                                 NJ_UINT8 upper, NJ_UINT16 *pos) {
+    NJ_UINT16 left, right, mid;
+    NJ_CHAR *str;
+    NJ_INT16 cmp;
+    NJ_UINT8 slen;
+
+
+    left = 0;
+    right = count;
+    while (left < right) {
+        mid = left + (right - left) / 2;
+        if (by_hyouki) {
+            str = get_hyouki(iwnn, handle, GET_UINT16(index + mid * NJ_INDEX_SIZE), &slen);
+        } else {
+            str = get_string(iwnn, handle, GET_UINT16(index + mid * NJ_INDEX_SIZE), &slen);
+        }
+        if (str == NULL) {
+            return NJ_SET_ERR_VAL(NJ_FUNC_NJD_L_ADD_WORD, NJ_ERR_DIC_BROKEN);
+        }
+        cmp = nj_strcmp(key, str);
+        if ((cmp < 0) || ((cmp == 0) && !upper)) {
+            right = mid;
+        } else {
+            left = mid + 1;
+        }
+    }
+    *pos = left;
+    return 0;
+}
+
+static NJ_INT16 insert_index_entry(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle, NJ_UINT8 *index,
+                                   NJ_UINT16 count, NJ_CHAR *key, NJ_UINT8 by_hyouki,
+                                   NJ_UINT16 que_id) {
+    NJ_UINT16 pos, i;
+    NJ_INT16 ret;
+
+
+    ret = search_index_pos(iwnn, handle, index, count, key, by_hyouki, 1, &pos);
+    if (ret < 0) {
+        return ret;
+    }
+    for (i = count; i > pos; i--) {
+        index[i * NJ_INDEX_SIZE]     = index[(i - 1) * NJ_INDEX_SIZE];
+        index[i * NJ_INDEX_SIZE + 1] = index[(i - 1) * NJ_INDEX_SIZE + 1];
+    }
+    NJ_INT16_WRITE(index + pos * NJ_INDEX_SIZE, que_id);
+    return 0;
+}
+
+static NJ_INT32 find_word(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle, NJ_CHAR *yomi, NJ_CHAR *hyouki) {
+    NJ_UINT8 *index;
+    NJ_UINT16 count, pos, que_id;
+    NJ_CHAR *str;
+    NJ_UINT8 slen;
+    NJ_INT16 ret;
+
+
+    index = LEARN_INDEX_TOP_ADDR(handle);
+    count = GET_LEARN_WORD_COUNT(handle);
+    ret = search_index_pos(iwnn, handle, index, count, yomi, 0, 0, &pos);
+    if (ret < 0) {
+        return ret;
+    }
+    for (; pos < count; pos++) {
+        que_id = GET_UINT16(index + pos * NJ_INDEX_SIZE);
+        str = get_string(iwnn, handle, que_id, &slen);
+        if ((str == NULL) || (nj_strcmp(yomi, str) != 0)) {
+            break;
+        }
+        str = get_hyouki(iwnn, handle, que_id, &slen);
+        if (str == NULL) {
+            return NJ_SET_ERR_VAL(NJ_FUNC_NJD_L_ADD_WORD, NJ_ERR_DIC_BROKEN);
+        }
+        if (nj_strcmp(hyouki, str) == 0) {
+            return que_id;
+        }
+    }
+    return -1;
+}
+
+static void remove_word(NJ_DIC_HANDLE handle, NJ_UINT16 que_id) {
+    NJ_UINT16 count;
+
+
+    count = GET_LEARN_WORD_COUNT(handle);
+    remove_index_entry(LEARN_INDEX_TOP_ADDR(handle), count, que_id);
+    remove_index_entry(LEARN_INDEX_TOP_ADDR2(handle), count, que_id);
+    SET_TYPE_ALLFLG(POS_TO_ADDRESS(handle, que_id), QUE_TYPE_EMPTY, 0, 0, 0);
+    SET_LEARN_WORD_COUNT(handle, count - 1);
+}
+
+static void write_que_string(NJ_DIC_HANDLE handle, NJ_UINT16 que_id, NJ_UINT8 *src, NJ_UINT16 size) {
+    NJ_UINT16 que_size, max, room;
+    NJ_UINT8 *dst;
+
+
+    que_size = QUE_SIZE(handle);
+    max = GET_LEARN_MAX_WORD_COUNT(handle);
+    dst = POS_TO_ADDRESS(handle, que_id) + LEARN_QUE_STRING_OFFSET;
+    room = que_size - LEARN_QUE_STRING_OFFSET;
+
+    while (size > 0) {
+        if (room == 0) {
+            
+            que_id = NEXT_QUE(que_id, max);
+            dst = POS_TO_ADDRESS(handle, que_id);
+            *dst++ = QUE_TYPE_NEXT;
+            room = que_size - 1;
+        }
+        *dst++ = *src++;
+        size--;
+        room--;
+    }
+}
+
+NJ_INT16 njd_l_init_area(NJ_DIC_HANDLE handle) {
+    NJ_UINT8 *ptr;
+    NJ_UINT32 size, i;
+
+
+    SET_LEARN_WORD_COUNT(handle, 0);
+    SET_LEARN_NEXT_WORD_POS(handle, 0);
+    NJ_INT16_WRITE(handle + POS_WRITE_FLG, 0);
+    NJ_INT16_WRITE(handle + POS_WRITE_FLG + 2, 0);
+
+    
+    ptr = LEARN_INDEX_TOP_ADDR(handle);
+    size = (NJ_UINT32)(LEARN_DATA_TOP_ADDR(handle) - ptr)
+        + (NJ_UINT32)QUE_SIZE(handle) * GET_LEARN_MAX_WORD_COUNT(handle);
+    for (i = 0; i < size; i++) {
+        *ptr++ = 0;
+    }
+    return 0;
+}
+
+NJ_INT16 njd_l_write_word(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle, NJ_LEARN_WORD_INFO *word,
+                          NJ_UINT8 overwrite) {
+    NJ_UINT16 max, que_size, need, count, que_id, i, id;
+    NJ_INT16 removed = 0;
+    NJ_UINT8 ybyte, kbyte;
+    NJ_UINT8 str[(NJ_MAX_USER_LEN + NJ_MAX_USER_KOUHO_LEN) * sizeof(NJ_CHAR)];
+    NJ_UINT8 *ptr;
+    NJ_INT32 found;
+    NJ_INT16 ret;
+
+
+    if ((word->yomi_len == 0) || (word->yomi_len > NJ_MAX_USER_LEN)) {
+        return NJ_SET_ERR_VAL(NJ_FUNC_NJD_L_ADD_WORD, NJ_ERR_USER_YOMI_INVALID);
+    }
+    if ((word->hyouki_len == 0) || (word->hyouki_len > NJ_MAX_USER_KOUHO_LEN)) {
+        return NJ_SET_ERR_VAL(NJ_FUNC_NJD_L_ADD_WORD, NJ_ERR_USER_KOUHO_INVALID);
+    }
+
+    max = GET_LEARN_MAX_WORD_COUNT(handle);
+    que_size = QUE_SIZE(handle);
+
+    
+    ybyte = (NJ_UINT8)(word->yomi_len * sizeof(NJ_CHAR));
+    nj_memcpy(str, (NJ_UINT8*)word->yomi, ybyte);
+    if (nj_strcmp(word->yomi, word->hyouki) == 0) {
+        kbyte = 0;
+    } else {
+        kbyte = (NJ_UINT8)(word->hyouki_len * sizeof(NJ_CHAR));
+        nj_memcpy(str + ybyte, (NJ_UINT8*)word->hyouki, kbyte);
+    }
+    need = get_que_count(que_size, (NJ_UINT16)(ybyte + kbyte));
+    if (need > max) {
+        return NJ_SET_ERR_VAL(NJ_FUNC_NJD_L_ADD_WORD, NJ_ERR_USER_DIC_FULL);
+    }
+
+    
+    found = find_word(iwnn, handle, word->yomi, word->hyouki);
+    if (found < -1) {
+        return (NJ_INT16)found;
+    }
+    if (found >= 0) {
+        if (!overwrite) {
+            return NJ_SET_ERR_VAL(NJ_FUNC_NJD_L_ADD_WORD, NJ_ERR_SAME_WORD);
+        }
+        remove_word(handle, (NJ_UINT16)found);
+    }
+
+    que_id = GET_LEARN_NEXT_WORD_POS(handle);
+    if (overwrite) {
+        
+        id = que_id;
+        for (i = 0; i < need; i++) {
+            found = get_word_head(handle, id);
+            if (found >= 0) {
+                remove_word(handle, (NJ_UINT16)found);
+                removed++;
+            }
+            id = NEXT_QUE(id, max);
+        }
+    } else {
+        
+        for (i = 0; i < max; i++) {
+            id = que_id;
+            for (count = 0; count < need; count++) {
+                if (get_word_head(handle, id) >= 0) {
+                    break;
+                }
+                id = NEXT_QUE(id, max);
+            }
+            if (count == need) {
+                break;
+            }
+            que_id = NEXT_QUE(que_id, max);
+        }
+        if (i == max) {
+            return NJ_SET_ERR_VAL(NJ_FUNC_NJD_L_ADD_WORD, NJ_ERR_USER_DIC_FULL);
+        }
+    }
+
+    
+    ptr = POS_TO_ADDRESS(handle, que_id);
+    SET_TYPE_ALLFLG(ptr, QUE_TYPE_JIRI, 0, 0, 0);
+    SET_FPOS_AND_YSIZE(ptr, word->f_hinsi, ybyte);
+    SET_BPOS_AND_KSIZE(ptr, word->b_hinsi, kbyte);
+    write_que_string(handle, que_id, str, (NJ_UINT16)(ybyte + kbyte));
+
+    count = GET_LEARN_WORD_COUNT(handle);
+    ret = insert_index_entry(iwnn, handle, LEARN_INDEX_TOP_ADDR(handle), count,
+                             word->yomi, 0, que_id);
+    if (ret < 0) {
+        return ret;
+    }
+    ret = insert_index_entry(iwnn, handle, LEARN_INDEX_TOP_ADDR2(handle), count,
+                             word->hyouki, 1, que_id);
+    if (ret < 0) {
+        return ret;
+    }
+    SET_LEARN_WORD_COUNT(handle, count + 1);
+
+    id = que_id;
+    for (i = 0; i < need; i++) {
+        id = NEXT_QUE(id, max);
+    }
+    SET_LEARN_NEXT_WORD_POS(handle, id);
+    NJ_INT16_WRITE(handle + POS_WRITE_FLG, count + 1);
+    NJ_INT16_WRITE(handle + POS_WRITE_FLG + 2, que_id);
+    return removed;
+}
+
+NJ_INT16 njd_l_delete_word_by_string(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle,
+                                     NJ_CHAR *yomi, NJ_CHAR *hyouki) {
+    NJ_INT32 found;
+
+
+    found = find_word(iwnn, handle, yomi, hyouki);
+    if (found < -1) {
+        return (NJ_INT16)found;
+    }
+    if (found < 0) {
+        return NJ_SET_ERR_VAL(NJ_FUNC_NJD_L_DELETE_WORD, NJ_ERR_WORD_NOT_FOUND);
+    }
+    remove_word(handle, (NJ_UINT16)found);
+    NJ_INT16_WRITE(handle + POS_WRITE_FLG, GET_LEARN_WORD_COUNT(handle));
+    return 0;
+}
+
+NJ_INT16 njd_l_get_word_count(NJ_DIC_HANDLE handle) {
+
+    return (NJ_INT16)GET_LEARN_WORD_COUNT(handle);
+}
+
+NJ_INT16 njd_l_get_word_info(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle, NJ_UINT16 index,
+                             NJ_LEARN_WORD_INFO *word) {
+    NJ_UINT16 que_id;
+    NJ_UINT8 *ptr;
+    NJ_CHAR *str;
+    NJ_UINT8 slen;
+
+
+    if (index >= GET_LEARN_WORD_COUNT(handle)) {
+        return NJ_SET_ERR_VAL(NJ_FUNC_NJD_L_GET_WORD, NJ_ERR_WORD_NOT_FOUND);
+    }
+    que_id = GET_UINT16(LEARN_INDEX_TOP_ADDR(handle) + index * NJ_INDEX_SIZE);
+    ptr = POS_TO_ADDRESS(handle, que_id);
+
+    str = get_string(iwnn, handle, que_id, &slen);
+    if (str == NULL) {
+        return NJ_SET_ERR_VAL(NJ_FUNC_NJD_L_GET_WORD, NJ_ERR_DIC_BROKEN);
+    }
+    nj_strcpy(word->yomi, str);
+    word->yomi_len = slen;
+
+    str = get_hyouki(iwnn, handle, que_id, &slen);
+    if (str == NULL) {
+        return NJ_SET_ERR_VAL(NJ_FUNC_NJD_L_GET_WORD, NJ_ERR_DIC_BROKEN);
+    }
+    nj_strcpy(word->hyouki, str);
+    word->hyouki_len = slen;
+
+    word->f_hinsi = GET_FPOS_FROM_DATA(ptr);
+    word->b_hinsi = GET_BPOS_FROM_DATA(ptr);
+    word->stem_b_hinsi = word->b_hinsi;
+    word->fzk_yomi_len = 0;
+    return 0;
+}
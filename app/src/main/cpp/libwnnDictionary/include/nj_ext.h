@@ -118,6 +118,13 @@ extern NJ_INT16 njd_l_get_candidate(NJ_CLASS *iwnn, NJ_WORD *word,
 extern NJ_INT16 njd_l_undo_learn(NJ_CLASS *iwnn, NJ_UINT16 undo_count);
 extern NJ_INT16 njd_l_check_dic(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle);
 extern NJ_INT16 njd_l_init_area(NJ_DIC_HANDLE handle);
+extern NJ_INT16 njd_l_write_word(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle,
+                                 NJ_LEARN_WORD_INFO *word, NJ_UINT8 overwrite);
+extern NJ_INT16 njd_l_delete_word_by_string(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle,
+                                 NJ_CHAR *yomi, NJ_CHAR *hyouki);
+extern NJ_INT16 njd_l_get_word_count(NJ_DIC_HANDLE handle);
+extern NJ_INT16 njd_l_get_word_info(NJ_CLASS *iwnn, NJ_DIC_HANDLE handle,
+                                 NJ_UINT16 index, NJ_LEARN_WORD_INFO *word);
 extern NJ_INT16 njd_l_make_space(NJ_CLASS *iwnn, NJ_UINT16 count, NJ_UINT8 mode);
 extern NJ_INT16 njd_l_get_relational_word(NJ_CLASS *iwnn, NJ_SEARCH_LOCATION *loc,
                                  NJ_WORD *word, NJ_DIC_FREQ *mdic_freq);
@@ -226,12 +226,6 @@ typedef struct {
     NJ_SEARCH_LOCATION loct;         
 } NJ_SEARCH_LOCATION_SET;
 
-typedef struct {
-    NJ_SEARCH_CONDITION cond;                   
-    NJ_SEARCH_LOCATION_SET loctset[NJ_MAX_DIC]; 
-} NJ_CURSOR;
-
-
 typedef struct {
     NJ_UINT8 hinsi_group;          
 #define NJ_HINSI_MEISI          0    
@@ -284,6 +278,21 @@ typedef struct {
     } fzk;
 } NJ_WORD;
 
+typedef struct {
+    NJ_UINT8  status;                                       
+    NJ_UINT8  count;                                        
+    NJ_INT16  advanced;                                     
+    NJ_UINT8  heap[NJ_MAX_DIC];                             
+    NJ_WORD   word[NJ_MAX_DIC];                             
+    NJ_CHAR   stroke[NJ_MAX_DIC][NJ_MAX_LEN + NJ_TERM_LEN]; 
+} NJ_SEARCH_MERGE;
+
+typedef struct {
+    NJ_SEARCH_CONDITION cond;                   
+    NJ_SEARCH_LOCATION_SET loctset[NJ_MAX_DIC]; 
+    NJ_SEARCH_MERGE merge;                      
+} NJ_CURSOR;
+
 #define NJ_GET_FPOS_FROM_STEM(s) ((NJ_UINT16)((s)->stem.info1 >> 7))
 #define NJ_GET_BPOS_FROM_STEM(s) ((NJ_UINT16)((s)->stem.info2 >> 7))
 
@@ -70,6 +70,22 @@ extern "C" {
 JNIEXPORT jlong JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_createWnnWork
   (JNIEnv *, jclass, jstring);
 
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    createWnnWorkFromImage
+ * Signature: (Ljava/lang/String;)J
+ */
+JNIEXPORT jlong JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_createWnnWorkFromImage
+  (JNIEnv *, jclass, jstring);
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    createWnnCursor
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_createWnnCursor
+  (JNIEnv *, jclass, jlong);
+
 /*
  * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
  * Method:    freeWnnWork
@@ -110,6 +126,14 @@ JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_sea
 JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_getNextWord
   (JNIEnv *, jclass, jlong, jint);
 
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    getNextWords
+ * Signature: (JII[I[I[I[I[C)I
+ */
+JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_getNextWords
+  (JNIEnv *, jclass, jlong, jint, jint, jintArray, jintArray, jintArray, jintArray, jcharArray);
+
 /*
  * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
  * Method:    getStroke
@@ -238,6 +262,14 @@ JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_sel
 JNIEXPORT jbyteArray JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_getConnectArray
   (JNIEnv *, jclass, jlong, jint);
 
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    getConnectBitArray
+ * Signature: (J)[B
+ */
+JNIEXPORT jbyteArray JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_getConnectBitArray
+  (JNIEnv *, jclass, jlong);
+
 /*
  * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
  * Method:    getNumberOfLeftPOS
@@ -286,6 +318,54 @@ JNIEXPORT jobjectArray JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImp
 JNIEXPORT jstring JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_createQueryStringBase
   (JNIEnv *, jclass, jlong, jint, jint, jstring);
 
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    setWritableDictionary
+ * Signature: (JI[BI)I
+ */
+JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_setWritableDictionary
+  (JNIEnv *, jclass, jlong, jint, jbyteArray, jint);
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    addWordToWritableDictionary
+ * Signature: (JILjava/lang/String;Ljava/lang/String;II)I
+ */
+JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_addWordToWritableDictionary
+  (JNIEnv *, jclass, jlong, jint, jstring, jstring, jint, jint);
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    removeWordFromWritableDictionary
+ * Signature: (JILjava/lang/String;Ljava/lang/String;)I
+ */
+JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_removeWordFromWritableDictionary
+  (JNIEnv *, jclass, jlong, jint, jstring, jstring);
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    clearWritableDictionary
+ * Signature: (JI)I
+ */
+JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_clearWritableDictionary
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    getWritableDictionaryWordCount
+ * Signature: (JI)I
+ */
+JNIEXPORT jint JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_getWritableDictionaryWordCount
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni
+ * Method:    getWritableDictionaryImage
+ * Signature: (JI)[B
+ */
+JNIEXPORT jbyteArray JNICALL Java_jp_co_omronsoft_openwnn_OpenWnnDictionaryImplJni_getWritableDictionaryImage
+  (JNIEnv *, jclass, jlong, jint);
+
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,576 @@
+/*
+ * Copyright (C) 2008-2012  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.omronsoft.openwnn;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.Window;
+import android.view.WindowManager;
+
+import java.util.ArrayList;
+
+/**
+ * The view drawing the candidates of the normal candidates view on one canvas.
+ * <br>
+ * {@link TextCandidatesViewManager} can use this view instead of a {@link android.widget.TextView}
+ * for each candidate.  The candidates are laid out once after they are changed, and a touch
+ * is given to the candidate by its range, so updating the candidates needs no layout of
+ * the view hierarchy unless the number of lines changes.
+ *
+ * @author Copyright (C) 2011 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class CandidateStripView extends View {
+    /**
+     * The listener of touches on the candidates.
+     */
+    public interface OnCandidateTouchListener {
+        /**
+         * Called when a candidate is clicked.
+         *
+         * @param index     Index of the candidate
+         */
+        void onCandidateClick(int index);
+
+        /**
+         * Called when a candidate is long-clicked.
+         *
+         * @param index     Index of the candidate
+         * @return          {@code true} if the long click is consumed
+         */
+        boolean onCandidateLongClick(int index);
+    }
+
+    /**
+     * A candidate in the view.
+     */
+    private static class Candidate {
+        /** The word */
+        WnnWord word;
+        /** The line of the candidate (from 0) */
+        int line;
+        /** The width when the line is not filled */
+        int width;
+        /** The left of the candidate */
+        int left;
+        /** The right of the candidate */
+        int right;
+        /** The text to draw (shortened if the candidate is too long) */
+        String text;
+        /** The left of the text */
+        float textX;
+        /** The icon drawn instead of the text ({@code null} if the text is drawn) */
+        Drawable icon;
+    }
+
+    /** Drawable state of the pressed candidate */
+    private static final int[] STATE_PRESSED = {android.R.attr.state_pressed};
+    /** Drawable state of the candidate not pressed */
+    private static final int[] STATE_NORMAL = {};
+
+    /** The candidates (the entries from {@code mCount} are reused) */
+    private ArrayList<Candidate> mCandidates = new ArrayList<>();
+    /** Number of the candidates */
+    private int mCount = 0;
+    /** Number of the lines */
+    private int mLineCount = 0;
+    /** Whether each line is filled with its candidates */
+    private boolean[] mLineFilled = new boolean[TextCandidatesViewManager.LINE_NUM_PORTRAIT];
+    /** Height of a line */
+    private int mLineHeight = 0;
+    /** Width kept empty at the right of the first line */
+    private int mTrailingWidth = 0;
+    /** Whether the candidates have to be laid out again */
+    private boolean mLayoutRequired = false;
+
+    /** Paint of the candidates */
+    private TextPaint mPaint;
+    /** Background of a candidate */
+    private Drawable mBackground;
+    /** Background of the focused candidate */
+    private Drawable mFocusedBackground;
+    /** Icon of the half-width space */
+    private Drawable mHalfSpaceIcon;
+    /** Icon of the full-width space */
+    private Drawable mFullSpaceIcon;
+
+    /** Index of the pressed candidate (-1 if none) */
+    private int mPressedIndex = -1;
+    /** Index of the focused candidate (-1 if none) */
+    private int mFocusedIndex = -1;
+    /** Whether the long click of the pressed candidate is done */
+    private boolean mLongClicked = false;
+    /** The listener of touches on the candidates */
+    private OnCandidateTouchListener mListener = null;
+
+    /** Alert dialog */
+    private Dialog mCandidateDialog = null;
+
+    /** Long click of the pressed candidate */
+    private Runnable mLongClick = new Runnable() {
+        public void run() {
+            if (mPressedIndex >= 0 && mListener != null) {
+                mLongClicked = mListener.onCandidateLongClick(mPressedIndex);
+            }
+        }
+    };
+
+    /**
+     * Constructor
+     *
+     * @param context    context
+     */
+    public CandidateStripView(Context context) {
+        super(context);
+        setSoundEffectsEnabled(false);
+        mPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        mBackground = getResources().getDrawable(R.drawable.cand_back);
+        mFocusedBackground = getResources().getDrawable(R.drawable.cand_back_focuse);
+        mHalfSpaceIcon = getResources().getDrawable(R.drawable.word_half_space);
+        mFullSpaceIcon = getResources().getDrawable(R.drawable.word_full_space);
+    }
+
+    /**
+     * Set the paint of the candidates.
+     *
+     * @param paint     The paint (copied)
+     * @param color     The color of the text
+     */
+    public void setTextPaint(TextPaint paint, int color) {
+        mPaint.set(paint);
+        mPaint.setColor(color);
+        mPaint.setTextAlign(Paint.Align.LEFT);
+        setLayoutRequired();
+    }
+
+    /**
+     * Set the height of a line.
+     *
+     * @param height    The height
+     */
+    public void setLineHeight(int height) {
+        mLineHeight = height;
+        requestLayout();
+        setLayoutRequired();
+    }
+
+    /**
+     * Get the height of a line.
+     *
+     * @return The height
+     */
+    public int getLineHeight() {
+        return mLineHeight;
+    }
+
+    /**
+     * Set the listener of touches on the candidates.
+     *
+     * @param listener  The listener
+     */
+    public void setOnCandidateTouchListener(OnCandidateTouchListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Remove all candidates.
+     */
+    public void clear() {
+        cancelPress();
+        mCount = 0;
+        mFocusedIndex = -1;
+        setLineCount(0);
+        setLayoutRequired();
+    }
+
+    /**
+     * Add a candidate at the tail.
+     *
+     * @param word      The candidate
+     * @param line      The line of the candidate (the same as or next to the line of the last candidate)
+     * @param width     The width of the candidate when the line is not filled
+     */
+    public void addCandidate(WnnWord word, int line, int width) {
+        Candidate cand;
+        if (mCount < mCandidates.size()) {
+            cand = mCandidates.get(mCount);
+        } else {
+            cand = new Candidate();
+            mCandidates.add(cand);
+        }
+        cand.word = word;
+        cand.line = line;
+        cand.width = width;
+        mCount++;
+
+        if (mLineCount <= line) {
+            setLineCount(line + 1);
+        }
+        setLayoutRequired();
+    }
+
+    /**
+     * Set whether a line is filled with its candidates.
+     * <br>
+     * The candidates of a line not filled are aligned left by their own width.
+     *
+     * @param line      The line
+     * @param filled    {@code true} if the line is filled
+     */
+    public void setLineFilled(int line, boolean filled) {
+        if (line < mLineCount) {
+            mLineFilled[line] = filled;
+            setLayoutRequired();
+        }
+    }
+
+    /**
+     * Set the width kept empty at the right of the first line.
+     *
+     * @param width     The width (0 if not kept)
+     */
+    public void setTrailingWidth(int width) {
+        if (mTrailingWidth != width) {
+            mTrailingWidth = width;
+            setLayoutRequired();
+        }
+    }
+
+    /**
+     * Set the focused candidate.
+     *
+     * @param index     Index of the candidate (-1 if none)
+     */
+    public void setFocusedIndex(int index) {
+        if (mFocusedIndex != index) {
+            mFocusedIndex = index;
+            invalidate();
+        }
+    }
+
+    /**
+     * Get the number of the candidates.
+     *
+     * @return The number of the candidates
+     */
+    public int getCandidateCount() {
+        return mCount;
+    }
+
+    /**
+     * Get the left of a candidate.
+     *
+     * @param index     Index of the candidate
+     * @return The left of the candidate
+     */
+    public int getCandidateLeft(int index) {
+        layoutCandidates();
+        return mCandidates.get(index).left;
+    }
+
+    /**
+     * Get the right of a candidate.
+     *
+     * @param index     Index of the candidate
+     * @return The right of the candidate
+     */
+    public int getCandidateRight(int index) {
+        layoutCandidates();
+        return mCandidates.get(index).right;
+    }
+
+    /**
+     * Get the top of a candidate.
+     *
+     * @param index     Index of the candidate
+     * @return The top of the candidate
+     */
+    public int getCandidateTop(int index) {
+        return mCandidates.get(index).line * mLineHeight;
+    }
+
+    /**
+     * Change the number of the lines.
+     *
+     * @param count     The number of the lines
+     */
+    private void setLineCount(int count) {
+        if (mLineFilled.length < count) {
+            boolean[] filled = new boolean[count];
+            System.arraycopy(mLineFilled, 0, filled, 0, mLineFilled.length);
+            mLineFilled = filled;
+        }
+        for (int i = mLineCount; i < count; i++) {
+            mLineFilled[i] = true;
+        }
+        if (mLineCount != count) {
+            mLineCount = count;
+            /* only the height of the view depends on the candidates */
+            requestLayout();
+        }
+    }
+
+    /**
+     * Lay out the candidates again before they are drawn.
+     */
+    private void setLayoutRequired() {
+        mLayoutRequired = true;
+        invalidate();
+    }
+
+    /**
+     * Lay out the candidates.
+     * <br>
+     * The positions and the texts to draw are made here once after the candidates are changed.
+     */
+    private void layoutCandidates() {
+        if (!mLayoutRequired) {
+            return;
+        }
+        mLayoutRequired = false;
+
+        int viewWidth = getWidth();
+        int start = 0;
+        while (start < mCount) {
+            int line = mCandidates.get(start).line;
+            int end = start;
+            int total = 0;
+            while (end < mCount && mCandidates.get(end).line == line) {
+                total += mCandidates.get(end).width;
+                end++;
+            }
+
+            /* share the rest of the line among the candidates like the weighted views */
+            int lineWidth = viewWidth - ((line == 0) ? mTrailingWidth : 0);
+            int rest = (mLineFilled[line] && total < lineWidth) ? (lineWidth - total) : 0;
+            int num = end - start;
+            int x = 0;
+            for (int i = 0; i < num; i++) {
+                Candidate cand = mCandidates.get(start + i);
+                int width = cand.width + (rest * (i + 1)) / num - (rest * i) / num;
+                cand.left = x;
+                cand.right = x + width;
+                x += width;
+                layoutText(cand);
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Make the text of a candidate to draw.
+     *
+     * @param cand      The candidate
+     */
+    private void layoutText(Candidate cand) {
+        String candidate = cand.word.candidate;
+        int width = cand.right - cand.left;
+        if (candidate.equals(" ")) {
+            cand.icon = mHalfSpaceIcon;
+        } else if (candidate.equals("　" /* full-width space */)) {
+            cand.icon = mFullSpaceIcon;
+        } else {
+            cand.icon = null;
+        }
+
+        if (cand.icon != null) {
+            cand.text = null;
+            cand.textX = cand.left + (width - cand.icon.getIntrinsicWidth()) / 2;
+            return;
+        }
+
+        float textWidth = mPaint.measureText(candidate);
+        if (width < textWidth) {
+            cand.text = TextUtils.ellipsize(candidate, mPaint, width, TextUtils.TruncateAt.END).toString();
+            textWidth = mPaint.measureText(cand.text);
+        } else {
+            cand.text = candidate;
+        }
+        cand.textX = cand.left + (width - textWidth) / 2;
+    }
+
+    /**
+     * Find the candidate at a position.
+     *
+     * @param x     The x-coordinate
+     * @param y     The y-coordinate
+     * @return      Index of the candidate; -1 if not found.
+     */
+    private int findCandidate(float x, float y) {
+        if (mLineHeight <= 0 || y < 0 || x < 0) {
+            return -1;
+        }
+        layoutCandidates();
+        int line = (int) y / mLineHeight;
+
+        /* the candidates are sorted by the line and the left */
+        int low = 0;
+        int high = mCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Candidate cand = mCandidates.get(mid);
+            if (cand.line < line || (cand.line == line && cand.right <= x)) {
+                low = mid + 1;
+            } else if (cand.line > line || cand.left > x) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Release the pressed candidate.
+     */
+    private void cancelPress() {
+        removeCallbacks(mLongClick);
+        if (mPressedIndex >= 0) {
+            mPressedIndex = -1;
+            invalidate();
+        }
+    }
+
+    /** @see android.view.View#onMeasure */
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), mLineCount * mLineHeight);
+    }
+
+    /** @see android.view.View#onSizeChanged */
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        setLayoutRequired();
+    }
+
+    /** @see android.view.View#onDraw */
+    @Override
+    protected void onDraw(Canvas canvas) {
+        layoutCandidates();
+
+        Paint.FontMetrics metrics = mPaint.getFontMetrics();
+        float baseline = (mLineHeight - metrics.ascent - metrics.descent) / 2;
+
+        if (mTrailingWidth > 0 && mLineCount > 0) {
+            mBackground.setState(STATE_NORMAL);
+            mBackground.setBounds(getWidth() - mTrailingWidth, 0, getWidth(), mLineHeight);
+            mBackground.draw(canvas);
+        }
+
+        for (int i = 0; i < mCount; i++) {
+            Candidate cand = mCandidates.get(i);
+            int top = cand.line * mLineHeight;
+
+            Drawable background;
+            if (i == mFocusedIndex) {
+                background = mFocusedBackground;
+            } else {
+                background = mBackground;
+                background.setState((i == mPressedIndex) ? STATE_PRESSED : STATE_NORMAL);
+            }
+            background.setBounds(cand.left, top, cand.right, top + mLineHeight);
+            background.draw(canvas);
+
+            if (cand.icon != null) {
+                int iconTop = top + (mLineHeight - cand.icon.getIntrinsicHeight()) / 2;
+                cand.icon.setBounds((int) cand.textX, iconTop,
+                        (int) cand.textX + cand.icon.getIntrinsicWidth(), iconTop + cand.icon.getIntrinsicHeight());
+                cand.icon.draw(canvas);
+            } else {
+                canvas.drawText(cand.text, cand.textX, top + baseline, mPaint);
+            }
+        }
+    }
+
+    /** @see android.view.View#onTouchEvent */
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_DOWN:
+                cancelPress();
+                mPressedIndex = findCandidate(event.getX(), event.getY());
+                if (mPressedIndex < 0) {
+                    return false;
+                }
+                mLongClicked = false;
+                postDelayed(mLongClick, ViewConfiguration.getLongPressTimeout());
+                invalidate();
+                return true;
+
+            case MotionEvent.ACTION_MOVE:
+                if (mPressedIndex >= 0 && mPressedIndex != findCandidate(event.getX(), event.getY())) {
+                    cancelPress();
+                }
+                return true;
+
+            case MotionEvent.ACTION_UP:
+                int index = mPressedIndex;
+                cancelPress();
+                if (index >= 0 && !mLongClicked && mListener != null) {
+                    mListener.onCandidateClick(index);
+                }
+                return true;
+
+            case MotionEvent.ACTION_CANCEL:
+                cancelPress();
+                return true;
+
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Display Dialog.
+     *
+     * @param builder  The Dialog builder,
+     */
+    public void displayCandidateDialog(Dialog builder) {
+        if (mCandidateDialog != null) {
+            mCandidateDialog.dismiss();
+            mCandidateDialog = null;
+        }
+        mCandidateDialog = builder;
+        Window window = mCandidateDialog.getWindow();
+        WindowManager.LayoutParams lp = window.getAttributes();
+        lp.token = getWindowToken();
+        lp.type = WindowManager.LayoutParams.TYPE_APPLICATION_ATTACHED_DIALOG;
+        window.setAttributes(lp);
+        window.addFlags(WindowManager.LayoutParams.FLAG_ALT_FOCUSABLE_IM);
+        mCandidateDialog.show();
+    }
+
+    /** @see android.view.View#onWindowVisibilityChanged */
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if ((visibility != VISIBLE) && (mCandidateDialog != null)) {
+            mCandidateDialog.dismiss();
+        }
+        if (visibility != VISIBLE) {
+            cancelPress();
+        }
+    }
+}
@@ -110,6 +110,16 @@ public abstract class CandidatesViewManager {
      */
     public abstract void displayCandidates(WnnEngine converter);
 
+    /**
+     * Display the candidates added to the converter being displayed.
+     * <br>
+     * The candidates after the last one read by {@link #displayCandidates(WnnEngine)}
+     * are displayed.  Nothing is done if {@code converter} is not displayed.
+     *
+     * @param converter  The {@link WnnEngine} given to {@link #displayCandidates(WnnEngine)}
+     */
+    public abstract void displayMoreCandidates(WnnEngine converter);
+
     /**
      * Clear and hide the candidates view.
      */
@@ -153,7 +163,8 @@ public abstract class CandidatesViewManager {
      * @param word  Display word,
      */
     protected void displayDialog(View view, final WnnWord word) {
-        if ((view instanceof CandidateTextView) && (null != mViewLongPressDialog)) {
+        if (((view instanceof CandidateTextView) || (view instanceof CandidateStripView))
+                && (null != mViewLongPressDialog)) {
             closeDialog();
             mDialog = new Dialog(view.getContext(), R.style.Dialog);
 
@@ -161,7 +172,11 @@ public abstract class CandidatesViewManager {
             text.setText(word.candidate);
 
             mDialog.setContentView(mViewLongPressDialog);
-            ((CandidateTextView) view).displayCandidateDialog(mDialog);
+            if (view instanceof CandidateStripView) {
+                ((CandidateStripView) view).displayCandidateDialog(mDialog);
+            } else {
+                ((CandidateTextView) view).displayCandidateDialog(mDialog);
+            }
         }
     }
 
@@ -62,18 +62,54 @@ public class ComposingText {
     /** Cursor position */
     protected int[] mCursor;
 
+    /** The strings of the layers ({@code null} if the layer is modified after the string is made) */
+    private String[] mLayerString;
+    /** The offsets of the segments in {@code mLayerString} (the offset of the end of the string at the tail) */
+    private int[][] mSegmentOffset;
+    /** Work area for making the strings of the layers */
+    private StringBuilder mLayerBuffer;
+
     /**
      * Constructor
      */
     public ComposingText() {
         mStringLayer = new ArrayList[MAX_LAYER];
         mCursor = new int[MAX_LAYER];
+        mLayerString = new String[MAX_LAYER];
+        mSegmentOffset = new int[MAX_LAYER][];
+        mLayerBuffer = new StringBuilder();
         for (int i = 0; i < MAX_LAYER; i++) {
             mStringLayer[i] = new ArrayList<>();
             mCursor[i] = 0;
         }
     }
 
+    /**
+     * Copy constructor
+     * <br>
+     * The segments of the source are duplicated, so the copy can be read
+     * while the source is being edited (a snapshot for the prediction worker).
+     *
+     * @param src       The composing text to copy
+     */
+    public ComposingText(ComposingText src) {
+        this();
+        for (int i = 0; i < MAX_LAYER; i++) {
+            ArrayList<StrSegment> strLayer = mStringLayer[i];
+            for (StrSegment seg : src.mStringLayer[i]) {
+                if (seg instanceof StrSegmentClause) {
+                    StrSegmentClause clause = (StrSegmentClause) seg;
+                    StrSegmentClause copy = new StrSegmentClause(clause.clause, clause.from, clause.to);
+                    copy.string = clause.string;
+                    strLayer.add(copy);
+                } else {
+                    strLayer.add(new StrSegment(seg.string, seg.from, seg.to));
+                }
+            }
+            mCursor[i] = src.mCursor[i];
+        }
+    }
+
     /**
      * Output internal information to the log.
      */
@@ -113,6 +149,51 @@ public class ComposingText {
         }
     }
 
+    /**
+     * Discard the string of a layer made by {@link #getLayerString(int)}.
+     * <br>
+     * This must be called whenever the segments of the layer are modified.
+     *
+     * @param layer     Layer
+     */
+    private void invalidate(int layer) {
+        mLayerString[layer] = null;
+    }
+
+    /**
+     * Get the string of a layer.
+     * <br>
+     * The string and the offsets of the segments ({@code mSegmentOffset}) are made
+     * once after the layer is modified, and shared until it is modified again.
+     *
+     * @param layer     Layer
+     * @return The string of the layer
+     */
+    private String getLayerString(int layer) {
+        String str = mLayerString[layer];
+        if (str != null) {
+            return str;
+        }
+
+        ArrayList<StrSegment> strLayer = mStringLayer[layer];
+        int size = strLayer.size();
+        int[] offset = mSegmentOffset[layer];
+        if (offset == null || offset.length <= size) {
+            offset = new int[Math.max(size + 1, (offset == null) ? 16 : offset.length * 2)];
+            mSegmentOffset[layer] = offset;
+        }
+        StringBuilder buf = mLayerBuffer;
+        buf.setLength(0);
+        for (int i = 0; i < size; i++) {
+            offset[i] = buf.length();
+            buf.append(strLayer.get(i).string);
+        }
+        offset[size] = buf.length();
+        str = buf.toString();
+        mLayerString[layer] = str;
+        return str;
+    }
+
     /**
      * Convert the range of segments to a string.
      *
@@ -123,14 +204,15 @@ public class ComposingText {
      */
     public String toString(int layer, int from, int to) {
         try {
-            StringBuilder buf = new StringBuilder();
-            ArrayList<StrSegment> strLayer = mStringLayer[layer];
-
-            for (int i = from; i <= to; i++) {
-                StrSegment ss = strLayer.get(i);
-                buf.append(ss.string);
+            String str = getLayerString(layer);
+            if (from > to) {
+                return "";
+            }
+            if (from < 0 || to >= mStringLayer[layer].size()) {
+                return null;
             }
-            return buf.toString();
+            int[] offset = mSegmentOffset[layer];
+            return str.substring(offset[from], offset[to + 1]);
         } catch (Exception ex) {
             return null;
         }
@@ -162,6 +244,7 @@ public class ComposingText {
 
         int uplayer = layer + 1;
         ArrayList<StrSegment> strUplayer = mStringLayer[uplayer];
+        invalidate(uplayer);
         if (strUplayer.size() <= 0) {
             /*
              * if there is no element on above layer,
@@ -263,6 +346,7 @@ public class ComposingText {
     public void insertStrSegment(int layer, StrSegment str) {
         int cursor = mCursor[layer];
         mStringLayer[layer].add(cursor, str);
+        invalidate(layer);
         modifyUpper(layer, cursor, 1, 0);
         setCursor(layer, cursor + 1);
     }
@@ -277,6 +361,7 @@ public class ComposingText {
     public void insertStrSegment(int layer1, int layer2, StrSegment str) {
         mStringLayer[layer1].add(mCursor[layer1], str);
         mCursor[layer1]++;
+        invalidate(layer1);
 
         for (int i = layer1 + 1; i <= layer2; i++) {
             int pos = mCursor[i - 1] - 1;
@@ -284,6 +369,7 @@ public class ComposingText {
             ArrayList<StrSegment> strLayer = mStringLayer[i];
             strLayer.add(mCursor[i], tmp);
             mCursor[i]++;
+            invalidate(i);
             for (int j = mCursor[i]; j < strLayer.size(); j++) {
                 StrSegment ss = strLayer.get(j);
                 ss.from++;
@@ -318,6 +404,7 @@ public class ComposingText {
         for (int i = str.length - 1; i >= 0; i--) {
             strLayer.add(from, str[i]);
         }
+        invalidate(layer);
 
         modifyUpper(layer, from, str.length, to - from + 1);
     }
@@ -442,6 +529,7 @@ public class ComposingText {
         for (int i = from; i <= to; i++) {
             strLayer.remove(from);
         }
+        invalidate(layer);
     }
 
     /**
@@ -467,6 +555,8 @@ public class ComposingText {
 
     /**
      * Get the string layer.
+     * <br>
+     * The segments must not be modified through the list, since the strings of the layers are kept.
      *
      * @param layer     Layer
      * @return          {@link ArrayList} of {@link StrSegment}; {@code null} if error.
@@ -572,6 +662,7 @@ public class ComposingText {
         for (int i = 0; i < MAX_LAYER; i++) {
             mStringLayer[i].clear();
             mCursor[i] = 0;
+            invalidate(i);
         }
     }
 }
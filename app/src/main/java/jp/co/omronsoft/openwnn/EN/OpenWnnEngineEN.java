@@ -24,6 +24,7 @@ import java.util.HashMap;
 import jp.co.omronsoft.openwnn.CandidateFilter;
 import jp.co.omronsoft.openwnn.ComposingText;
 import jp.co.omronsoft.openwnn.OpenWnnDictionaryImpl;
+import jp.co.omronsoft.openwnn.PredictionCache;
 import jp.co.omronsoft.openwnn.WnnDictionary;
 import jp.co.omronsoft.openwnn.WnnEngine;
 import jp.co.omronsoft.openwnn.WnnWord;
@@ -44,6 +45,10 @@ public class OpenWnnEngineEN implements WnnEngine {
     public static final int FREQ_USER = 500;
     /** Limitation of predicted candidates */
     public static final int PREDICT_LIMIT = 300;
+    /** Number of predicted candidates retrieved from the dictionary at once */
+    public static final int PREDICT_BATCH_SIZE = 20;
+    /** Number of the candidate lists of the prediction kept in the cache */
+    public static final int MAX_CACHED_PREDICTIONS = 32;
 
     /** OpenWnn dictionary */
     private WnnDictionary mDictionary;
@@ -59,6 +64,16 @@ public class OpenWnnEngineEN implements WnnEngine {
     private int mOutputNum;
     /** The candidate filter */
     private CandidateFilter mFilter = null;
+    /** Type of the dictionary ({@code DICT_DEFAULT} or {@code DICT_FOR_CORRECT_MISTYPE}) */
+    private int mDictType = DICT_FOR_CORRECT_MISTYPE;
+    /** The candidate lists of the prediction */
+    private PredictionCache mPredictionCache = new PredictionCache(MAX_CACHED_PREDICTIONS);
+    /** The key of the current prediction in {@code mPredictionCache} ({@code null} if not to be cached) */
+    private String mPredictionKey = null;
+    /** Whether all candidates are taken from {@code mPredictionCache} */
+    private boolean mCandidatesCached = false;
+    /** Whether the dictionaries are searched when the candidates after the cached ones are required */
+    private boolean mSearchPending = false;
 
     /**
      * Candidate's case
@@ -111,31 +126,40 @@ public class OpenWnnEngineEN implements WnnEngine {
      * @return A candidate; {@code null} if no candidate for the index.
      */
     private WnnWord getCandidate(int index) {
-        WnnWord word;
+        if (mCandidatesCached) {
+            return (index < mConvResult.size()) ? mConvResult.get(index) : null;
+        }
+
         /* search the candidate from the dictionaries */
         while (mConvResult.size() < PREDICT_LIMIT && index >= mConvResult.size()) {
-            while ((word = mDictionary.getNextWord()) != null) {
+            if (mSearchPending) {
+                /* continue the cached list (the words listed already are skipped) */
+                mSearchPending = false;
+                searchPrediction(mInputString);
+            }
+            int max = Math.max(index + 1 - mConvResult.size(), PREDICT_BATCH_SIZE);
+            WnnWord[] words = mDictionary.getNextWords(0, Math.min(max, PREDICT_LIMIT - mConvResult.size()));
+            if (words == null) {
+                break;
+            }
+            for (int i = 0; i < words.length; i++) {
+                WnnWord word = words[i];
                 /* adjust the case of letter */
                 char c = word.candidate.charAt(0);
                 if (mCandidateCase == CASE_LOWER) {
-                    if (Character.isLowerCase(c)) {
-                        break;
+                    if (!Character.isLowerCase(c)) {
+                        continue;
                     }
                 } else if (mCandidateCase == CASE_HEAD_UPPER) {
                     if (Character.isLowerCase(c)) {
                         word.candidate = Character.toUpperCase(c) + word.candidate.substring(1);
                     }
-                    break;
                 } else {
                     word.candidate = word.candidate.toUpperCase();
-                    break;
                 }
+                /* check duplication */
+                addCandidate(word);
             }
-            if (word == null) {
-                break;
-            }
-            /* check duplication */
-            addCandidate(word);
         }
 
         /* get the default candidates */
@@ -154,6 +178,11 @@ public class OpenWnnEngineEN implements WnnEngine {
         }
 
         if (index >= mConvResult.size()) {
+            if (mPredictionKey != null) {
+                /* all candidates are listed */
+                mPredictionCache.put(mPredictionKey, getPredictionReading(), mConvResult, true);
+                mPredictionKey = null;
+            }
             return null;
         }
         return mConvResult.get(index);
@@ -177,11 +206,38 @@ public class OpenWnnEngineEN implements WnnEngine {
         return true;
     }
 
+    /**
+     * Get the reading the current prediction depends on.
+     *
+     * @return The reading; {@code null} if the near-key patterns make the list depend on every word.
+     */
+    private String getPredictionReading() {
+        return (mDictType == DICT_FOR_CORRECT_MISTYPE) ? null : mSearchKey;
+    }
+
     private void clearCandidates() {
+        if (mPredictionKey != null && !mConvResult.isEmpty()) {
+            /* keep the candidates made so far to continue them later */
+            mPredictionCache.put(mPredictionKey, getPredictionReading(), mConvResult, false);
+        }
         mConvResult.clear();
         mCandTable.clear();
         mOutputNum = 0;
         mSearchKey = null;
+        mPredictionKey = null;
+        mCandidatesCached = false;
+        mSearchPending = false;
+    }
+
+    /**
+     * Get the prediction cache.
+     * <br>
+     * The hit and miss counts of the cache can be used to tune its size.
+     *
+     * @return The prediction cache
+     */
+    public PredictionCache getPredictionCache() {
+        return mPredictionCache;
     }
 
     /**
@@ -191,6 +247,7 @@ public class OpenWnnEngineEN implements WnnEngine {
      * @return            {@code true} if the dictionary is changed; {@code false} if not.
      */
     public boolean setDictionary(int type) {
+        mDictType = type;
         if (type == DICT_FOR_CORRECT_MISTYPE) {
             mDictionary.clearApproxPattern();
             mDictionary.setApproxPattern(WnnDictionary.APPROX_PATTERN_EN_QWERTY_NEAR);
@@ -269,6 +326,34 @@ public class OpenWnnEngineEN implements WnnEngine {
             return 0;
         }
 
+        /* use the list made for the same condition */
+        mPredictionKey = input + "\t" + mDictType + "\t" + ((mFilter == null) ? 0 : mFilter.filter);
+        ArrayList<WnnWord> cached = mPredictionCache.get(mPredictionKey);
+        if (cached != null) {
+            boolean complete = mPredictionCache.isComplete(mPredictionKey);
+            for (int i = 0; i < cached.size(); i++) {
+                addCandidate(cached.get(i));
+            }
+            if (complete) {
+                mPredictionKey = null;
+                mCandidatesCached = true;
+            } else {
+                /* search when the candidates after the cached ones are required */
+                mSearchPending = true;
+            }
+            return 1;
+        }
+
+        searchPrediction(input);
+        return 1;
+    }
+
+    /**
+     * Search the dictionaries for the prediction.
+     *
+     * @param input     The input string
+     */
+    private void searchPrediction(String input) {
         /* set dictionaries by the length of input */
         WnnDictionary dict = mDictionary;
         dict.setInUseState(true);
@@ -286,7 +371,6 @@ public class OpenWnnEngineEN implements WnnEngine {
 
         /* search dictionaries */
         dict.searchWord(WnnDictionary.SEARCH_PREFIX, WnnDictionary.ORDER_BY_FREQUENCY, mSearchKey);
-        return 1;
     }
 
     /** @see jp.co.omronsoft.openwnn.WnnEngine#convert */
@@ -321,7 +405,14 @@ public class OpenWnnEngineEN implements WnnEngine {
 
     /** @see jp.co.omronsoft.openwnn.WnnEngine#learn */
     public boolean learn(WnnWord word) {
-        return (mDictionary.learnWord(word) == 0);
+        invalidateCache(word.stroke);
+        int ret = mDictionary.learnWord(word);
+        /* the oldest word is removed if the learn dictionary is full */
+        String evicted = mDictionary.getEvictedStroke();
+        if (evicted != null) {
+            invalidateCache(evicted);
+        }
+        return (ret == 0);
     }
 
     /** @see jp.co.omronsoft.openwnn.WnnEngine#addWord */
@@ -330,6 +421,7 @@ public class OpenWnnEngineEN implements WnnEngine {
         dict.setInUseState(true);
         dict.addWordToUserDictionary(word);
         dict.setInUseState(false);
+        invalidateCache(word.stroke);
         return 0;
     }
 
@@ -339,9 +431,21 @@ public class OpenWnnEngineEN implements WnnEngine {
         dict.setInUseState(true);
         dict.removeWordFromUserDictionary(word);
         dict.setInUseState(false);
+        invalidateCache(word.stroke);
         return false;
     }
 
+    /**
+     * Remove the cached lists related to a changed word.
+     *
+     * @param stroke    The reading of the word
+     */
+    private void invalidateCache(String stroke) {
+        mPredictionCache.invalidate(stroke);
+        /* the current list may have the word before the change */
+        mPredictionKey = null;
+    }
+
     /** @see jp.co.omronsoft.openwnn.WnnEngine#setPreferences */
     public void setPreferences(SharedPreferences pref) {
     }
@@ -364,12 +468,16 @@ public class OpenWnnEngineEN implements WnnEngine {
                 dict.setInUseState(true);
                 dict.clearLearnDictionary();
                 dict.setInUseState(false);
+                mPredictionCache.clear();
+                mPredictionKey = null;
                 return true;
 
             case WnnEngine.DICTIONARY_TYPE_USER:
                 dict.setInUseState(true);
                 dict.clearUserDictionary();
                 dict.setInUseState(false);
+                mPredictionCache.clear();
+                mPredictionKey = null;
                 return true;
         }
         return false;
@@ -1281,6 +1281,32 @@ public class DefaultSoftKeyboardJAJP extends DefaultSoftKeyboard {
         return cycleTable;
     }
 
+    /**
+     * Get the toggle tables of the 12-key keyboard in current mode.
+     *
+     * @return The toggle tables; {@code null} if the characters are not input by toggling.
+     */
+    public String[][] getToggleTables() {
+        if (mCurrentKeyboardType != KEYBOARD_12KEY || mInputType != INPUT_TYPE_TOGGLE) {
+            return null;
+        }
+        return getCycleTable();
+    }
+
+    /**
+     * Get the toggle table of the key pressed last.
+     * <br>
+     * The character input last is toggled if the same key is pressed again.
+     *
+     * @return The toggle table; {@code null} if the last key is not a toggle key.
+     */
+    public String[] getLastToggleTable() {
+        if (getToggleTables() == null || mPrevInputKeyCode == 0 || mPrevInputKeyCode == KEYCODE_JP12_ASTER) {
+            return null;
+        }
+        return mCurrentCycleTable;
+    }
+
     /**
      * Get the replace table that is appropriate in current mode.
      *
@@ -19,8 +19,10 @@ package jp.co.omronsoft.openwnn.JAJP;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import jp.co.omronsoft.openwnn.WnnDictionary;
 import jp.co.omronsoft.openwnn.WnnPOS;
@@ -470,13 +472,48 @@ public class KanaConverter {
         put("Z", "Ｚ");
     }};
 
+    /** The first character of the tables indexed by Hiragana */
+    private static final char HIRAGANA_TABLE_FIRST = '\u3041';
+    /** The last character of the tables indexed by Hiragana (the prolonged sound mark) */
+    private static final char HIRAGANA_TABLE_LAST = '\u30fc';
+    /** The last character of the tables indexed by ASCII */
+    private static final char ASCII_TABLE_LAST = '\u007f';
+
+    /** Index of the table for full-width Katakana in {@code mHiraganaTables} */
+    private static final int TABLE_FULL_KATAKANA = 0;
+    /** Index of the table for half-width Katakana in {@code mHiraganaTables} */
+    private static final int TABLE_HALF_KATAKANA = 1;
+    /** Index of the table for half-width numeric in {@code mHiraganaTables} */
+    private static final int TABLE_HALF_NUMERIC = 2;
+    /** Index of the table for full-width numeric in {@code mHiraganaTables} */
+    private static final int TABLE_FULL_NUMERIC = 3;
+    /** Index of the table for half-width alphabet in {@code mHiraganaTables} */
+    private static final int TABLE_HALF_ALPHABET = 4;
+    /** Index of the table for full-width alphabet in {@code mHiraganaTables} */
+    private static final int TABLE_FULL_ALPHABET = 5;
+    /** Number of the tables used for Qwerty keyboard (Katakana only) */
+    private static final int TABLE_COUNT_QWERTY = 2;
+
+    /** Conversion rules indexed by Hiragana ({@code [table][c - HIRAGANA_TABLE_FIRST]}) */
+    private static final String[][] mHiraganaTables = {
+        compileTable(mFullKatakanaMap, HIRAGANA_TABLE_FIRST, HIRAGANA_TABLE_LAST),
+        compileTable(mHalfKatakanaMap, HIRAGANA_TABLE_FIRST, HIRAGANA_TABLE_LAST),
+        compileTable(mHalfNumericMap, HIRAGANA_TABLE_FIRST, HIRAGANA_TABLE_LAST),
+        compileTable(mFullNumericMap, HIRAGANA_TABLE_FIRST, HIRAGANA_TABLE_LAST),
+        compileTable(mHalfAlphabetMap, HIRAGANA_TABLE_FIRST, HIRAGANA_TABLE_LAST),
+        compileTable(mFullAlphabetMap, HIRAGANA_TABLE_FIRST, HIRAGANA_TABLE_LAST)
+    };
+
+    /** Conversion rule for full-width alphabet (QWERTY mode) indexed by ASCII */
+    private static final String[] mFullAlphabetTableQwerty = compileTable(mFullAlphabetMapQwerty, '\u0000', ASCII_TABLE_LAST);
+
     /** Decimal format using comma */
     private static final DecimalFormat mFormat = new DecimalFormat("###,###");
 
     /** List of the generated candidates */
     private List<WnnWord> mAddCandidateList;
-    /** Work area for generating string */
-    private StringBuffer mStringBuff;
+    /** Work areas for generating string (for each table of {@code mHiraganaTables}) */
+    private StringBuilder[] mStringBuff;
 
     /** part of speech (default) */
     private WnnPOS mPosDefault;
@@ -490,7 +527,33 @@ public class KanaConverter {
      */
     public KanaConverter() {
         mAddCandidateList = new ArrayList<>();
-        mStringBuff = new StringBuffer();
+        mStringBuff = new StringBuilder[mHiraganaTables.length];
+        for (int i = 0; i < mStringBuff.length; i++) {
+            mStringBuff[i] = new StringBuilder();
+        }
+    }
+
+    /**
+     * Make the table indexed by the character from a conversion rule.
+     * <br>
+     * The rules of more than one character are not used, since the input is converted character by character.
+     *
+     * @param map       The conversion rule
+     * @param first     The first character of the table
+     * @param last      The last character of the table
+     * @return The table
+     */
+    private static String[] compileTable(HashMap<String, String> map, char first, char last) {
+        String[] table = new String[last - first + 1];
+        Iterator<Map.Entry<String, String>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, String> entry = it.next();
+            String key = entry.getKey();
+            if (key.length() == 1 && first <= key.charAt(0) && key.charAt(0) <= last) {
+                table[key.charAt(0) - first] = entry.getValue();
+            }
+        }
+        return table;
     }
 
     /**
@@ -523,25 +586,29 @@ public class KanaConverter {
             return list;
         }
 
+        /* Convert the input by all tables at once */
+        boolean qwerty = (keyBoardMode == OpenWnnEngineJAJP.KEYBOARD_QWERTY);
+        int converted = createCandidateStrings(inputHiragana, (qwerty) ? TABLE_COUNT_QWERTY : mHiraganaTables.length);
+
         /* Create pseudo candidates for all keyboard type */
         /* Hiragana(reading) / Full width katakana / Half width katakana */
         list.add(new WnnWord(inputHiragana, inputHiragana));
-        if (createCandidateString(inputHiragana, mFullKatakanaMap, mStringBuff)) {
-            list.add(new WnnWord(mStringBuff.toString(), inputHiragana, mPosDefault));
+        if ((converted & (1 << TABLE_FULL_KATAKANA)) != 0) {
+            list.add(new WnnWord(mStringBuff[TABLE_FULL_KATAKANA].toString(), inputHiragana, mPosDefault));
         }
-        if (createCandidateString(inputHiragana, mHalfKatakanaMap, mStringBuff)) {
-            list.add(new WnnWord(mStringBuff.toString(), inputHiragana, mPosDefault));
+        if ((converted & (1 << TABLE_HALF_KATAKANA)) != 0) {
+            list.add(new WnnWord(mStringBuff[TABLE_HALF_KATAKANA].toString(), inputHiragana, mPosDefault));
         }
 
-        if (keyBoardMode == OpenWnnEngineJAJP.KEYBOARD_QWERTY) {
+        if (qwerty) {
             /* Create pseudo candidates for Qwerty keyboard */
             createPseudoCandidateListForQwerty(inputHiragana, inputRomaji);
         } else {
             /* Create pseudo candidates for 12key */
 
             /* Create pseudo candidates for half width numeric */
-            if (createCandidateString(inputHiragana, mHalfNumericMap, mStringBuff)) {
-                String convHanSuuji = mStringBuff.toString();
+            if ((converted & (1 << TABLE_HALF_NUMERIC)) != 0) {
+                String convHanSuuji = mStringBuff[TABLE_HALF_NUMERIC].toString();
                 String convNumComma = convertNumber(convHanSuuji);
                 list.add(new WnnWord(convHanSuuji, inputHiragana, mPosNumber));
                 if (convNumComma != null) {
@@ -550,13 +617,13 @@ public class KanaConverter {
             }
 
             /* Create pseudo candidates for full width numeric */
-            if (createCandidateString(inputHiragana, mFullNumericMap, mStringBuff)) {
-                list.add(new WnnWord(mStringBuff.toString(), inputHiragana, mPosNumber));
+            if ((converted & (1 << TABLE_FULL_NUMERIC)) != 0) {
+                list.add(new WnnWord(mStringBuff[TABLE_FULL_NUMERIC].toString(), inputHiragana, mPosNumber));
             }
 
             /* Create pseudo candidates for half width alphabet */
-            if (createCandidateString(inputHiragana, mHalfAlphabetMap, mStringBuff)) {
-                String convHanEiji = mStringBuff.toString();
+            if ((converted & (1 << TABLE_HALF_ALPHABET)) != 0) {
+                String convHanEiji = mStringBuff[TABLE_HALF_ALPHABET].toString();
                 String convHanEijiLower = convHanEiji.toLowerCase();
                 list.add(new WnnWord(convHanEijiLower, inputHiragana, mPosSymbol));
                 list.add(new WnnWord(convertCaps(convHanEijiLower), inputHiragana, mPosSymbol));
@@ -564,8 +631,8 @@ public class KanaConverter {
             }
 
             /* Create pseudo candidates for full width alphabet */
-            if (createCandidateString(inputHiragana, mFullAlphabetMap, mStringBuff)) {
-                String convZenEiji = mStringBuff.toString();
+            if ((converted & (1 << TABLE_FULL_ALPHABET)) != 0) {
+                String convZenEiji = mStringBuff[TABLE_FULL_ALPHABET].toString();
                 String convZenEijiLower = convZenEiji.toLowerCase(Locale.JAPAN);
                 list.add(new WnnWord(convZenEijiLower, inputHiragana, mPosSymbol));
                 list.add(new WnnWord(convertCaps(convZenEijiLower), inputHiragana, mPosSymbol));
@@ -592,8 +659,9 @@ public class KanaConverter {
         list.add(new WnnWord(inputRomaji.toUpperCase(), inputHiragana, mPosSymbol));
 
         /* Create pseudo candidates for the full width alphabet */
-        if (createCandidateString(inputRomaji, mFullAlphabetMapQwerty, mStringBuff)) {
-            String convZenEiji = mStringBuff.toString();
+        StringBuilder buff = mStringBuff[0];
+        if (createCandidateString(inputRomaji, mFullAlphabetTableQwerty, buff)) {
+            String convZenEiji = buff.toString();
             String convZenEijiLower = convZenEiji.toLowerCase(Locale.JAPAN);
             list.add(new WnnWord(convZenEiji, inputHiragana, mPosSymbol));
             list.add(new WnnWord(convZenEijiLower, inputHiragana, mPosSymbol));
@@ -602,20 +670,55 @@ public class KanaConverter {
         }
     }
 
+    /**
+     * Create the candidate strings of the tables of {@code mHiraganaTables}
+     * <br>
+     * The strings are made in {@code mStringBuff} by one pass over the input.
+     *
+     * @param input     The input string (Hiragana)
+     * @param count     Number of the tables to use (from the first one)
+     * @return          The bits of the tables which converted the whole input (bit {@code n} for table {@code n})
+     */
+    private int createCandidateStrings(String input, int count) {
+        int converted = (1 << count) - 1;
+        for (int t = 0; t < count; t++) {
+            mStringBuff[t].setLength(0);
+        }
+        for (int index = 0; index < input.length(); index++) {
+            int c = input.charAt(index) - HIRAGANA_TABLE_FIRST;
+            if (c < 0 || c > HIRAGANA_TABLE_LAST - HIRAGANA_TABLE_FIRST) {
+                return 0;
+            }
+            for (int t = 0; t < count; t++) {
+                if ((converted & (1 << t)) != 0) {
+                    String convChar = mHiraganaTables[t][c];
+                    if (convChar == null) {
+                        converted &= ~(1 << t);
+                    } else {
+                        mStringBuff[t].append(convChar);
+                    }
+                }
+            }
+            if (converted == 0) {
+                break;
+            }
+        }
+        return converted;
+    }
+
     /**
      * Create the candidate string
      * <br>
      * @param input     The input string
-     * @param map       The hash map
+     * @param table     The table indexed by ASCII
      * @param outBuf    The output string
      * @return          {@code true} if success
      */
-    private boolean createCandidateString(String input, HashMap<String, String> map, StringBuffer outBuf) {
-        if (outBuf.length() > 0) {
-            outBuf.delete(0, outBuf.length());
-        }
+    private boolean createCandidateString(String input, String[] table, StringBuilder outBuf) {
+        outBuf.setLength(0);
         for (int index = 0; index < input.length(); index++) {
-            String convChar = map.get(input.substring(index, index + 1));
+            char c = input.charAt(index);
+            String convChar = (c < table.length) ? table[c] : null;
             if (convChar == null) {
                 return false;
             }
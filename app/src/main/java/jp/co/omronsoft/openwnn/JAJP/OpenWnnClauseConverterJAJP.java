@@ -17,12 +17,18 @@
 package jp.co.omronsoft.openwnn.JAJP;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
 import jp.co.omronsoft.openwnn.CandidateFilter;
 import jp.co.omronsoft.openwnn.WnnClause;
+import jp.co.omronsoft.openwnn.WnnConnectMatrix;
 import jp.co.omronsoft.openwnn.WnnDictionary;
 import jp.co.omronsoft.openwnn.WnnPOS;
 import jp.co.omronsoft.openwnn.WnnSentence;
@@ -42,15 +48,20 @@ public class OpenWnnClauseConverterJAJP {
     /** Maximum limit length of input */
     public static final int MAX_INPUT_LENGTH = 50;
 
+    /** Maximum number of words held in each search cache */
+    private static final int MAX_CACHED_WORDS = 4000;
+
     /** search cache for unique independent words (jiritsugo) */
-    private HashMap<String, ArrayList<WnnWord>> mIndepWordBag;
+    private WordBagCache mIndepWordBag;
     /** search cache for all independent words (jiritsugo) */
-    private HashMap<String, ArrayList<WnnWord>> mAllIndepWordBag;
+    private WordBagCache mAllIndepWordBag;
     /** search cache for ancillary words (fuzokugo) */
-    private HashMap<String, ArrayList<WnnWord>> mFzkPatterns;
+    private WordBagCache mFzkPatterns;
+    /** compiled ancillary words (fuzokugo) dictionary */
+    private AncillaryWordAutomaton mFzkAutomaton;
 
     /** connect matrix for generating a clause */
-    private byte[][] mConnectMatrix;
+    private WnnConnectMatrix mConnectMatrix;
 
     /** dictionaries */
     private WnnDictionary mDictionary;
@@ -58,8 +69,29 @@ public class OpenWnnClauseConverterJAJP {
     /** candidates of conversion */
     private LinkedList mConvertResult;
 
-    /** work area for consecutive clause conversion */
-    private WnnSentence[] mSentenceBuffer;
+    /** Maximum number of sentences kept at each position of the lattice */
+    public static final int MAX_SENTENCES = 5;
+
+    /** Maximum number of the best clauses cached */
+    private static final int MAX_CACHED_CLAUSES = 2000;
+
+    /**
+     * work area for consecutive clause conversion (the lattice)
+     * <br>
+     * The nodes at each end position are sorted by the score (the former one first
+     * if the scores are same).  The nodes which are out of the width are also kept
+     * to rewind the lattice.
+     */
+    private ArrayList<LatticeNode>[] mLattice;
+    /** the input string of the lattice; {@code null} if the lattice is not valid */
+    private String mLatticeInput = null;
+    /** the width of the lattice */
+    private int mLatticeWidth = 0;
+
+    /** cache of the best clause for a reading (not the end of the sentence) */
+    private ClauseCache mBestClauses;
+    /** cache of the best clause for a reading (the end of the sentence) */
+    private ClauseCache mBestLastClauses;
 
     /** part of speech (default) */
     private WnnPOS mPosDefault;
@@ -76,37 +108,445 @@ public class OpenWnnClauseConverterJAJP {
     /** The candidate filter */
     private CandidateFilter mFilter = null;
 
+    /**
+     * Search cache of the words.
+     * <br>
+     * The least recently used strokes are dropped when the total number of
+     * the cached words exceeds the limit.
+     */
+    private static class WordBagCache extends LinkedHashMap<String, ArrayList<WnnWord>> {
+        /** Maximum number of the cached words */
+        private int mMaxWords;
+        /** Total number of the cached words */
+        private int mWordCount = 0;
+
+        /**
+         * Constructor
+         *
+         * @param maxWords  Maximum number of the cached words
+         */
+        WordBagCache(int maxWords) {
+            super(64, 0.75f, true);
+            mMaxWords = maxWords;
+        }
+
+        /** @see java.util.HashMap#put */
+        @Override
+        public ArrayList<WnnWord> put(String key, ArrayList<WnnWord> value) {
+            ArrayList<WnnWord> old = super.put(key, value);
+            if (old != null) {
+                mWordCount -= old.size();
+            }
+            mWordCount += value.size();
+            trim();
+            return old;
+        }
+
+        /**
+         * Remove the eldest lists until the number of the cached words is within the limit.
+         * <br>
+         * The list just put is kept even if it exceeds the limit by itself.
+         */
+        private void trim() {
+            Iterator<ArrayList<WnnWord>> it = values().iterator();
+            while (mWordCount > mMaxWords && size() > 1) {
+                mWordCount -= it.next().size();
+                it.remove();
+            }
+        }
+
+        /** @see java.util.HashMap#remove */
+        @Override
+        public ArrayList<WnnWord> remove(Object key) {
+            ArrayList<WnnWord> old = super.remove(key);
+            if (old != null) {
+                mWordCount -= old.size();
+            }
+            return old;
+        }
+
+        /** @see java.util.HashMap#clear */
+        @Override
+        public void clear() {
+            super.clear();
+            mWordCount = 0;
+        }
+    }
+
+    /**
+     * Node of the lattice for consecutive clause conversion.
+     * <br>
+     * A node is the last clause of a sentence which ends at a position of the input,
+     * linked to the node of the preceding part of the sentence.
+     */
+    private static class LatticeNode {
+        /** Score of the sentence up to this node */
+        int frequency;
+        /** The last clause */
+        WnnClause clause;
+        /** The node of the preceding part; {@code null} if the clause is at the top */
+        LatticeNode prev;
+        /** The start position of the clause */
+        int start;
+
+        /**
+         * Constructor
+         *
+         * @param frequency     Score of the sentence up to this node
+         * @param clause        The last clause
+         * @param prev          The node of the preceding part
+         * @param start         The start position of the clause
+         */
+        LatticeNode(int frequency, WnnClause clause, LatticeNode prev, int start) {
+            this.frequency = frequency;
+            this.clause = clause;
+            this.prev = prev;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Cache of the best clause for a reading.
+     * <br>
+     * The least recently used readings are dropped when the number of
+     * the cached clauses exceeds the limit.
+     */
+    private static class ClauseCache extends LinkedHashMap<String, WnnClause> {
+        /** Maximum number of the cached clauses */
+        private int mMaxClauses;
+
+        /**
+         * Constructor
+         *
+         * @param maxClauses    Maximum number of the cached clauses
+         */
+        ClauseCache(int maxClauses) {
+            super(64, 0.75f, true);
+            mMaxClauses = maxClauses;
+        }
+
+        /** @see java.util.LinkedHashMap#removeEldestEntry */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, WnnClause> eldest) {
+            return size() > mMaxClauses;
+        }
+
+        /**
+         * Remove the clauses whose reading starts with a string.
+         *
+         * @param prefix    The string
+         */
+        void removePrefix(String prefix) {
+            Iterator<String> keys = keySet().iterator();
+            while (keys.hasNext()) {
+                if (keys.next().startsWith(prefix)) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * The ancillary words (fuzokugo) dictionary compiled into a trie.
+     * <br>
+     * The dictionary is enumerated once by prefix searches when the dictionary
+     * is set.  Each node holds the words whose stroke ends there and their
+     * distinct part-of-speech pairs, so the sequences of ancillary words are
+     * built without searching the dictionary.  If the dictionary does not
+     * support the prefix search, the nodes are filled by exact searches on
+     * demand instead and each stroke is searched only once.
+     */
+    private static class AncillaryWordAutomaton {
+        /** Index of the ancillary words dictionary */
+        private static final int DICTIONARY_INDEX = 6;
+        /** Base frequency of the ancillary words */
+        private static final int FREQ_BASE = 400;
+        /** Highest frequency of the ancillary words */
+        private static final int FREQ_HIGH = 500;
+        /** Maximum number of nodes made by exact searches */
+        private static final int MAX_NODES = 20000;
+
+        /** Node of the trie */
+        static class Node {
+            /** Child nodes */
+            HashMap<Character, Node> children = null;
+            /** Words whose stroke ends at this node; {@code null} if not searched yet */
+            ArrayList<WnnWord> words = null;
+            /** Distinct left part-of-speech of {@code words} */
+            int[] left = null;
+            /** Distinct right part-of-speech of {@code words} (paired with {@code left}) */
+            int[] right = null;
+        }
+
+        /** The dictionary */
+        private WnnDictionary mDictionary;
+        /** Root of the trie */
+        private Node mRoot;
+        /** Number of nodes */
+        private int mNodeCount;
+        /** Number of nodes made by the prefix searches */
+        private int mCompiledNodeCount;
+        /** Whether all the words led by the enumerated characters are in the trie (see {@link #isEnumerated(char)}) */
+        private boolean mComplete;
+        /** Whether the dictionary is set up for the exact search */
+        private boolean mSearchReady;
+
+        /**
+         * Constructor
+         *
+         * @param dict  The dictionary
+         */
+        AncillaryWordAutomaton(WnnDictionary dict) {
+            mDictionary = dict;
+            mRoot = new Node();
+            mNodeCount = 1;
+            mComplete = compile();
+            if (!mComplete) {
+                mRoot = new Node();
+                mNodeCount = 1;
+            }
+            mCompiledNodeCount = mNodeCount;
+            dict.clearDictionary();
+        }
+
+        /**
+         * Check whether the words led by a character are enumerated by {@link #compile()}.
+         * <br>
+         * The words led by the other characters are filled by exact searches.
+         *
+         * @param c     The first character of the stroke
+         * @return {@code true} if enumerated.
+         */
+        private static boolean isEnumerated(char c) {
+            /* only hiragana and the prolonged sound mark */
+            return (c >= '\u3041' && c <= '\u3096') || c == '\u30FC';
+        }
+
+        /**
+         * Enumerate the dictionary by prefix searches.
+         *
+         * @return {@code true} if the words are enumerated; {@code false} if the prefix search is not supported.
+         */
+        private boolean compile() {
+            WnnDictionary dict = mDictionary;
+            dict.clearDictionary();
+            dict.clearApproxPattern();
+            dict.setDictionary(DICTIONARY_INDEX, FREQ_BASE, FREQ_HIGH);
+
+            boolean found = false;
+            for (char c = '\u3041'; c <= '\u30FC'; c++) {
+                if (!isEnumerated(c)) {
+                    continue;
+                }
+                if (dict.searchWord(WnnDictionary.SEARCH_PREFIX, WnnDictionary.ORDER_BY_FREQUENCY,
+                                    String.valueOf(c)) <= 0) {
+                    continue;
+                }
+                WnnWord word;
+                while ((word = dict.getNextWord()) != null) {
+                    if (word.stroke == null || word.stroke.length() == 0) {
+                        continue;
+                    }
+                    Node node = mRoot;
+                    for (int i = 0; i < word.stroke.length(); i++) {
+                        node = child(node, word.stroke.charAt(i), true);
+                        if (node.words == null) {
+                            node.words = new ArrayList<>(0);
+                        }
+                    }
+                    node.words.add(word);
+                    found = true;
+                }
+            }
+            if (found) {
+                setAllPosPairs(mRoot);
+            }
+            return found;
+        }
+
+        /**
+         * Get the child node.
+         *
+         * @param node      The parent node
+         * @param c         The character
+         * @param create    {@code true} to create the node if not exists
+         * @return The child node; {@code null} if not exists.
+         */
+        private Node child(Node node, char c, boolean create) {
+            Node next = (node.children != null) ? node.children.get(c) : null;
+            if (next == null && create) {
+                if (node.children == null) {
+                    node.children = new HashMap<>();
+                }
+                next = new Node();
+                node.children.put(c, next);
+                mNodeCount++;
+            }
+            return next;
+        }
+
+        /**
+         * Set the distinct part-of-speech pairs of all nodes in a sub-tree.
+         *
+         * @param node  The root of the sub-tree
+         */
+        private void setAllPosPairs(Node node) {
+            if (node.words == null) {
+                node.words = new ArrayList<>(0);
+            }
+            setPosPairs(node);
+            if (node.children != null) {
+                Iterator<Node> children = node.children.values().iterator();
+                while (children.hasNext()) {
+                    setAllPosPairs(children.next());
+                }
+            }
+        }
+
+        /**
+         * Set the distinct part-of-speech pairs of a node.
+         *
+         * @param node  The node
+         */
+        private void setPosPairs(Node node) {
+            int size = node.words.size();
+            int[] left = new int[size];
+            int[] right = new int[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                WnnPOS pos = node.words.get(i).partOfSpeech;
+                int j;
+                for (j = 0; j < count; j++) {
+                    if (left[j] == pos.left && right[j] == pos.right) {
+                        break;
+                    }
+                }
+                if (j == count) {
+                    left[count] = pos.left;
+                    right[count] = pos.right;
+                    count++;
+                }
+            }
+            node.left = (count == size) ? left : Arrays.copyOf(left, count);
+            node.right = (count == size) ? right : Arrays.copyOf(right, count);
+        }
+
+        /**
+         * Prepare for {@link #match(String, int, Node[])}.
+         * <br>
+         * Call this once before matching a new input.
+         */
+        void begin() {
+            mSearchReady = false;
+            if (mNodeCount - mCompiledNodeCount > MAX_NODES) {
+                if (mComplete) {
+                    /* drop the nodes made by exact searches */
+                    Iterator<Character> leads = mRoot.children.keySet().iterator();
+                    while (leads.hasNext()) {
+                        if (!isEnumerated(leads.next())) {
+                            leads.remove();
+                        }
+                    }
+                } else {
+                    mRoot = new Node();
+                }
+                mNodeCount = mCompiledNodeCount;
+            }
+        }
+
+        /**
+         * Match the words starting at a position of the input.
+         *
+         * @param input     The input string
+         * @param start     The start position
+         * @param nodes     Where to store the node of each end position ({@code nodes[end]}; {@code null} if no word)
+         */
+        void match(String input, int start, Node[] nodes) {
+            Node node = mRoot;
+            boolean complete = mComplete && start < input.length() && isEnumerated(input.charAt(start));
+            for (int end = start + 1; end <= input.length(); end++) {
+                nodes[end] = null;
+                if (node == null) {
+                    continue;
+                }
+                node = child(node, input.charAt(end - 1), !complete);
+                if (node == null) {
+                    continue;
+                }
+                if (node.words == null) {
+                    search(node, input.substring(start, end));
+                }
+                if (!node.words.isEmpty()) {
+                    nodes[end] = node;
+                }
+            }
+        }
+
+        /**
+         * Fill a node by the exact search.
+         *
+         * @param node      The node
+         * @param stroke    The stroke of the node
+         */
+        private void search(Node node, String stroke) {
+            WnnDictionary dict = mDictionary;
+            if (!mSearchReady) {
+                dict.clearDictionary();
+                dict.clearApproxPattern();
+                dict.setDictionary(DICTIONARY_INDEX, FREQ_BASE, FREQ_HIGH);
+                mSearchReady = true;
+            }
+            node.words = new ArrayList<>(0);
+            dict.searchWord(WnnDictionary.SEARCH_EXACT, WnnDictionary.ORDER_BY_FREQUENCY, stroke);
+            WnnWord word;
+            while ((word = dict.getNextWord()) != null) {
+                node.words.add(word);
+            }
+            setPosPairs(node);
+        }
+    }
+
     /**
      * Constructor
      */
     public OpenWnnClauseConverterJAJP() {
-        mIndepWordBag = new HashMap<>();
-        mAllIndepWordBag = new HashMap<>();
-        mFzkPatterns = new HashMap();
+        mIndepWordBag = new WordBagCache(MAX_CACHED_WORDS);
+        mAllIndepWordBag = new WordBagCache(MAX_CACHED_WORDS);
+        mFzkPatterns = new WordBagCache(MAX_CACHED_WORDS);
         mConvertResult = new LinkedList();
 
-        mSentenceBuffer = new WnnSentence[MAX_INPUT_LENGTH];
+        mLattice = new ArrayList[MAX_INPUT_LENGTH];
+        for (int i = 0; i < MAX_INPUT_LENGTH; i++) {
+            mLattice[i] = new ArrayList<>();
+        }
+        mBestClauses = new ClauseCache(MAX_CACHED_CLAUSES);
+        mBestLastClauses = new ClauseCache(MAX_CACHED_CLAUSES);
     }
 
     /**
      * Set the dictionary
+     * <br>
+     * The search caches are kept if the dictionary is not changed.
      *
      * @param dict  The dictionary for phrase conversion
      */
     public void setDictionary(WnnDictionary dict) {
-        /* get connect matrix */
-        mConnectMatrix = dict.getConnectMatrix();
+        if (dict != mDictionary || mConnectMatrix == null) {
+            /* get connect matrix */
+            mConnectMatrix = dict.getConnectBitMatrix();
+
+            /* clear work areas */
+            clearCache();
+
+            /* compile the ancillary words dictionary */
+            mFzkAutomaton = new AncillaryWordAutomaton(dict);
+        }
 
         /* clear dictionary settings */
         mDictionary = dict;
         dict.clearDictionary();
         dict.clearApproxPattern();
 
-        /* clear work areas */
-        mIndepWordBag.clear();
-        mAllIndepWordBag.clear();
-        mFzkPatterns.clear();
-
         /* get part of speech tags */
         mPosDefault = dict.getPOS(WnnDictionary.POS_TYPE_MEISI);
         mPosEndOfClause1 = dict.getPOS(WnnDictionary.POS_TYPE_V1);
@@ -114,12 +554,58 @@ public class OpenWnnClauseConverterJAJP {
         mPosEndOfClause3 = dict.getPOS(WnnDictionary.POS_TYPE_V3);
     }
 
+    /**
+     * Clear all search caches.
+     * <br>
+     * Call this when the user dictionary or the learning dictionary is initialized.
+     */
+    public void clearCache() {
+        mIndepWordBag.clear();
+        mAllIndepWordBag.clear();
+        mFzkPatterns.clear();
+        clearConversionCache();
+    }
+
+    /**
+     * Clear the results of consecutive clause conversion kept for the next conversion.
+     */
+    private void clearConversionCache() {
+        mBestClauses.clear();
+        mBestLastClauses.clear();
+        mLatticeInput = null;
+    }
+
+    /**
+     * Remove the search caches of a stroke.
+     * <br>
+     * Call this when a word of the stroke is added to or removed from
+     * the user dictionary or the learning dictionary.
+     *
+     * @param stroke    The stroke of the word
+     */
+    public void invalidateCache(String stroke) {
+        if (stroke == null) {
+            return;
+        }
+        /* ancillary words are not in the user/learning dictionaries */
+        mIndepWordBag.remove(stroke);
+        mAllIndepWordBag.remove(stroke);
+
+        /* the clauses whose stem may be the word */
+        mBestClauses.removePrefix(stroke);
+        mBestLastClauses.removePrefix(stroke);
+        mLatticeInput = null;
+    }
+
     /**
      * Set the candidate filter
      *
      * @param filter    The candidate filter
      */
     public void setFilter(CandidateFilter filter) {
+        if (filter != mFilter) {
+            clearConversionCache();
+        }
         mFilter = filter;
     }
 
@@ -158,22 +644,60 @@ public class OpenWnnClauseConverterJAJP {
      * @return The result of consecutive clause conversion; {@code null} if fail.
      */
     public WnnSentence consecutiveClauseConvert(String input) {
+        ArrayList<WnnSentence> sentences = consecutiveClauseConvert(input, 1);
+        return (sentences != null) ? sentences.get(0) : null;
+    }
+
+    /**
+     * Consecutive clause conversion (N-best).
+     * <br>
+     * The best sentences are returned in order of the score.  The first one is
+     * the same as the result of {@link #consecutiveClauseConvert(String)}; the others
+     * are the alternatives which may have different segmentations.
+     *
+     * @param input         The input string
+     * @param maxSentences  Maximum number of sentences (up to {@code MAX_SENTENCES})
+     * @return The results of consecutive clause conversion; {@code null} if fail.
+     */
+    public ArrayList<WnnSentence> consecutiveClauseConvert(String input, int maxSentences) {
+        int len = input.length();
+        if (len == 0 || len > MAX_INPUT_LENGTH || maxSentences <= 0) {
+            return null;
+        }
+        int width = Math.min(maxSentences, MAX_SENTENCES);
+
         LinkedList clauses = new LinkedList();
+        ArrayList<LatticeNode>[] lattice = mLattice;
 
-        /* clear the cache which is not matched */
-        for (int i = 0; i < input.length(); i++) {
-            mSentenceBuffer[i] = null;
+        /* rewind the lattice to the first start position affected by the change of input */
+        int first = 0;
+        if (mLatticeInput != null && mLatticeWidth == width) {
+            first = getUnchangedStart(mLatticeInput, input);
+        }
+        int oldLength = (mLatticeInput != null) ? mLatticeInput.length() : 0;
+        for (int i = first; i < len; i++) {
+            ArrayList<LatticeNode> nodes = lattice[i];
+            if (first == 0 || i >= oldLength) {
+                nodes.clear();
+            } else {
+                for (int j = nodes.size() - 1; j >= 0; j--) {
+                    if (nodes.get(j).start >= first) {
+                        nodes.remove(j);
+                    }
+                }
+            }
         }
-        WnnSentence[] sentence = mSentenceBuffer;
+        mLatticeInput = input;
+        mLatticeWidth = width;
 
         /* consecutive clause conversion */
-        for (int start = 0; start < input.length(); start++) {
-            if (start != 0 && sentence[start - 1] == null) {
+        for (int start = first; start < len; start++) {
+            if (start != 0 && lattice[start - 1].isEmpty()) {
                 continue;
             }
 
             /* limit the length of a clause */
-            int end = input.length();
+            int end = len;
             if (end > start + 20) {
                 end = start + 20;
             }
@@ -182,57 +706,124 @@ public class OpenWnnClauseConverterJAJP {
                 int idx = end - 1;
 
                 /* cutting a branch */
-                if (sentence[idx] != null) {
-                    if (start != 0) {
-                        if (sentence[idx].frequency > sentence[start - 1].frequency + CLAUSE_COST + FREQ_LEARN) {
-                            /* there may be no way to be the best sequence from the 'start' */
-                            break;
-                        }
-                    } else {
-                        if (sentence[idx].frequency > CLAUSE_COST + FREQ_LEARN) {
-                            /* there may be no way to be the best sequence from the 'start' */
-                            break;
-                        }
+                if (!lattice[idx].isEmpty()) {
+                    int base = (start != 0) ? lattice[start - 1].get(0).frequency : 0;
+                    if (lattice[idx].get(0).frequency > base + CLAUSE_COST + FREQ_LEARN) {
+                        /* there may be no way to be the best sequence from the 'start' */
+                        break;
                     }
                 }
 
                 String key = input.substring(start, end);
-                clauses.clear();
-                WnnClause bestClause;
-                if (end == input.length()) {
-                    /* get the clause which can be the end of the sentence */
-                    singleClauseConvert(clauses, key, mPosEndOfClause1, false);
-                } else {
-                    /* get the clause which is not the end of the sentence */
-                    singleClauseConvert(clauses, key, mPosEndOfClause3, false);
-                }
-                if (clauses.isEmpty()) {
-                    bestClause = defaultClause(key);
-                } else {
-                    bestClause = (WnnClause) clauses.get(0);
+                ClauseCache cache = (end == len) ? mBestLastClauses : mBestClauses;
+                WnnClause bestClause = cache.get(key);
+                if (bestClause == null) {
+                    clauses.clear();
+                    if (end == len) {
+                        /* get the clause which can be the end of the sentence */
+                        singleClauseConvert(clauses, key, mPosEndOfClause1, false);
+                    } else {
+                        /* get the clause which is not the end of the sentence */
+                        singleClauseConvert(clauses, key, mPosEndOfClause3, false);
+                    }
+                    if (clauses.isEmpty()) {
+                        bestClause = defaultClause(key);
+                    } else {
+                        bestClause = (WnnClause) clauses.get(0);
+                    }
+                    cache.put(key, bestClause);
                 }
 
-                /* make a sub-sentence */
-                WnnSentence ws;
+                /* connect the clause to the sentences which end at 'start - 1' */
                 if (start == 0) {
-                    ws = new WnnSentence(key, bestClause);
+                    addLatticeNode(idx, bestClause.frequency + CLAUSE_COST, bestClause, null, start, width);
                 } else {
-                    ws = new WnnSentence(sentence[start - 1], bestClause);
+                    ArrayList<LatticeNode> prevs = lattice[start - 1];
+                    int count = Math.min(prevs.size(), width);
+                    for (int i = 0; i < count; i++) {
+                        LatticeNode prev = prevs.get(i);
+                        if (!addLatticeNode(idx, prev.frequency + bestClause.frequency + CLAUSE_COST,
+                                            bestClause, prev, start, width)) {
+                            /* the following ones have lower scores */
+                            break;
+                        }
+                    }
                 }
-                ws.frequency += CLAUSE_COST;
+            }
+        }
 
-                /* update the best sub-sentence on the cache buffer */
-                if (sentence[idx] == null || (sentence[idx].frequency < ws.frequency)) {
-                    sentence[idx] = ws;
-                }
+        /* make the sentences from the nodes at the end */
+        ArrayList<LatticeNode> last = lattice[len - 1];
+        if (last.isEmpty()) {
+            return null;
+        }
+        int count = Math.min(last.size(), width);
+        ArrayList<WnnSentence> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LatticeNode node = last.get(i);
+            ArrayList<WnnClause> elements = new ArrayList<>();
+            for (LatticeNode n = node; n != null; n = n.prev) {
+                elements.add(n.clause);
             }
+            Collections.reverse(elements);
+
+            WnnSentence sentence = new WnnSentence(input, elements);
+            sentence.frequency = node.frequency;
+            sentence.attribute = elements.get(0).attribute;
+            result.add(sentence);
         }
+        return result;
+    }
 
-        /* return the result of the consecutive clause conversion */
-        if (sentence[input.length() - 1] != null) {
-            return sentence[input.length() - 1];
+    /**
+     * Get the first start position of clauses affected by the change of input.
+     * <br>
+     * The clauses from a start position are same if all of them are in
+     * the common prefix of the inputs and none of them is at the end of
+     * the input.  The lattice made from the start positions before it can be reused.
+     *
+     * @param oldInput  The previous input string
+     * @param newInput  The new input string
+     * @return The start position
+     */
+    private int getUnchangedStart(String oldInput, String newInput) {
+        int max = Math.min(oldInput.length(), newInput.length());
+        int common = 0;
+        while (common < max && oldInput.charAt(common) == newInput.charAt(common)) {
+            common++;
         }
-        return null;
+        /* 'start + 20' (the longest clause) must be in the prefix and before the end */
+        int limit = Math.min(common, max - 1);
+        return Math.max(0, limit - 20 + 1);
+    }
+
+    /**
+     * Add a node to the lattice.
+     * <br>
+     * The nodes at each end position are sorted by the score, and the node
+     * is added only if it is in the best {@code width} nodes.
+     *
+     * @param idx           The end position of the clause
+     * @param frequency     Score of the sentence up to the node
+     * @param clause        The clause
+     * @param prev          The node of the preceding part
+     * @param start         The start position of the clause
+     * @param width         Maximum number of nodes used at the position
+     * @return {@code true} if the node is added; {@code false} if the score is too low.
+     */
+    private boolean addLatticeNode(int idx, int frequency, WnnClause clause, LatticeNode prev, int start, int width) {
+        ArrayList<LatticeNode> nodes = mLattice[idx];
+
+        /* the former one is kept if the scores are same */
+        int pos = nodes.size();
+        while (pos > 0 && nodes.get(pos - 1).frequency < frequency) {
+            pos--;
+        }
+        if (pos >= width) {
+            return false;
+        }
+        nodes.add(pos, new LatticeNode(frequency, clause, prev, start));
+        return true;
     }
 
     /**
@@ -388,13 +979,7 @@ public class OpenWnnClauseConverterJAJP {
      * @return            {@code true} if there are connectable; {@code false} if otherwise
      */
     private boolean connectible(int right, int left) {
-        try {
-            if (mConnectMatrix[left][right] != 0) {
-                return true;
-            }
-        } catch (Exception ignored) {
-        }
-        return false;
+        return mConnectMatrix != null && mConnectMatrix.isConnectible(right, left);
     }
 
     /**
@@ -408,53 +993,60 @@ public class OpenWnnClauseConverterJAJP {
             return null;
         }
 
-        HashMap<String, ArrayList<WnnWord>> fzkPat = mFzkPatterns;
+        WordBagCache fzkPat = mFzkPatterns;
         ArrayList<WnnWord> fzks = fzkPat.get(input);
         if (fzks != null) {
             return fzks;
         }
 
-        /* set dictionaries */
-        WnnDictionary dict = mDictionary;
-        dict.clearDictionary();
-        dict.clearApproxPattern();
-        dict.setDictionary(6, 400, 500);
+        AncillaryWordAutomaton automaton = mFzkAutomaton;
+        automaton.begin();
 
-        for (int start = input.length() - 1; start >= 0; start--) {
+        /* patterns of the suffixes (kept here since the cache may drop them) */
+        int len = input.length();
+        ArrayList<WnnWord>[] suffixFzks = new ArrayList[len];
+        AncillaryWordAutomaton.Node[] nodes = new AncillaryWordAutomaton.Node[len + 1];
+        HashSet<Long> posPairs = new HashSet<>();
+        for (int start = len - 1; start >= 0; start--) {
             String key = input.substring(start);
 
             fzks = fzkPat.get(key);
             if (fzks != null) {
+                suffixFzks[start] = fzks;
                 continue;
             }
 
             fzks = new ArrayList<>();
-            mFzkPatterns.put(key, fzks);
 
-            /* search ancillary words */
-            dict.searchWord(WnnDictionary.SEARCH_EXACT, WnnDictionary.ORDER_BY_FREQUENCY, key);
-            WnnWord word;
-            while ((word = dict.getNextWord()) != null) {
-                fzks.add(word);
+            /* ancillary words starting at 'start' */
+            automaton.match(input, start, nodes);
+            if (nodes[len] != null) {
+                fzks.addAll(nodes[len].words);
             }
 
             /* concatenate sequence of ancillary words */
-            for (int end = input.length() - 1; end > start; end--) {
-                ArrayList<WnnWord> followFzks = fzkPat.get(input.substring(end));
-                if (followFzks == null || followFzks.isEmpty()) {
+            posPairs.clear();
+            for (int end = len - 1; end > start; end--) {
+                AncillaryWordAutomaton.Node node = nodes[end];
+                ArrayList<WnnWord> followFzks = suffixFzks[end];
+                if (node == null || followFzks == null || followFzks.isEmpty()) {
                     continue;
                 }
-                dict.searchWord(WnnDictionary.SEARCH_EXACT, WnnDictionary.ORDER_BY_FREQUENCY, input.substring(start, end));
-                while ((word = dict.getNextWord()) != null) {
+                int[] left = node.left;
+                int[] right = node.right;
+                for (int i = 0; i < left.length; i++) {
                     Iterator<WnnWord> followFzksi = followFzks.iterator();
                     while (followFzksi.hasNext()) {
                         WnnWord follow = followFzksi.next();
-                        if (connectible(word.partOfSpeech.right, follow.partOfSpeech.left)) {
-                            fzks.add(new WnnWord(key, key, new WnnPOS(word.partOfSpeech.left, follow.partOfSpeech.right)));
+                        if (connectible(right[i], follow.partOfSpeech.left)
+                                && posPairs.add(((long) left[i] << 32) | (follow.partOfSpeech.right & 0xffffffffL))) {
+                            fzks.add(new WnnWord(key, key, new WnnPOS(left[i], follow.partOfSpeech.right)));
                         }
                     }
                 }
             }
+            suffixFzks[start] = fzks;
+            fzkPat.put(key, fzks);
         }
         return fzks;
     }
@@ -486,7 +1078,6 @@ public class OpenWnnClauseConverterJAJP {
             words = new ArrayList<>();
             WnnWord word;
             if (all) {
-                mAllIndepWordBag.put(input, words);
                 dict.searchWord(WnnDictionary.SEARCH_EXACT, WnnDictionary.ORDER_BY_FREQUENCY, input);
                 /* store all words */
                 while ((word = dict.getNextWord()) != null) {
@@ -495,7 +1086,6 @@ public class OpenWnnClauseConverterJAJP {
                     }
                 }
             } else {
-                mIndepWordBag.put(input, words);
                 dict.searchWord(WnnDictionary.SEARCH_EXACT, WnnDictionary.ORDER_BY_FREQUENCY, input);
                 /* store a word which has an unique part of speech tag */
                 while ((word = dict.getNextWord()) != null) {
@@ -519,6 +1109,11 @@ public class OpenWnnClauseConverterJAJP {
                 }
             }
             addAutoGeneratedCandidates(input, words, all);
+            if (all) {
+                mAllIndepWordBag.put(input, words);
+            } else {
+                mIndepWordBag.put(input, words);
+            }
         }
         return words;
     }
@@ -23,12 +23,23 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import jp.co.omronsoft.openwnn.CandidateFilter;
 import jp.co.omronsoft.openwnn.ComposingText;
 import jp.co.omronsoft.openwnn.OpenWnnDictionaryImpl;
+import jp.co.omronsoft.openwnn.PredictionCache;
 import jp.co.omronsoft.openwnn.StrSegmentClause;
 import jp.co.omronsoft.openwnn.WnnClause;
+import jp.co.omronsoft.openwnn.WnnBoundedEngine;
 import jp.co.omronsoft.openwnn.WnnDictionary;
 import jp.co.omronsoft.openwnn.WnnEngine;
 import jp.co.omronsoft.openwnn.WnnSentence;
@@ -39,7 +50,7 @@ import jp.co.omronsoft.openwnn.WnnWord;
  *
  * @author Copyright (C) 2009-2011 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
  */
-public class OpenWnnEngineJAJP implements WnnEngine {
+public class OpenWnnEngineJAJP implements WnnBoundedEngine {
     /** Current dictionary type */
     private int mDictType = DIC_LANG_INIT;
     /** Dictionary type (default) */
@@ -77,6 +88,13 @@ public class OpenWnnEngineJAJP implements WnnEngine {
     public static final int MAX_OUTPUT_LENGTH = 50;
     /** Limitation of predicted candidates */
     public static final int PREDICT_LIMIT = 100;
+    /** Number of predicted candidates retrieved from the dictionary at once */
+    public static final int PREDICT_BATCH_SIZE = 20;
+    /** Number of sentences made by consecutive clause conversion */
+    public static final int CONVERT_SENTENCES = OpenWnnClauseConverterJAJP.MAX_SENTENCES;
+
+    /** Number of the candidate lists of the prediction kept in the cache */
+    public static final int MAX_CACHED_PREDICTIONS = 32;
 
     /** Limitation of candidates one-line */
     public static final int LIMIT_OF_CANDIDATES_1LINE = 500;
@@ -84,6 +102,9 @@ public class OpenWnnEngineJAJP implements WnnEngine {
     /** OpenWnn dictionary */
     private WnnDictionary mDictionaryJP;
 
+    /** The dictionary for the clause conversion (sharing the dictionaries of {@code mDictionaryJP}) */
+    private WnnDictionary mClauseDictionary;
+
     /** Word list */
     private ArrayList<WnnWord> mConvResult;
 
@@ -120,12 +141,81 @@ public class OpenWnnEngineJAJP implements WnnEngine {
     /** Whether displaying single clause candidates or not */
     private boolean mSingleClauseMode;
 
+    /** Number of the candidates shown in the first screen (-1 : no limit) */
+    private int mFirstCandidateCount = -1;
+
+    /** Whether the background stages of the prediction are waiting for {@link #requestRestCandidates()} */
+    private boolean mStagesDeferred;
+
+    /** Whether making the candidates is stopped by {@link #abort()} */
+    private volatile boolean mAborted = false;
+
     /** A result of consecutive clause conversion */
     private WnnSentence mConvertSentence;
 
+    /** The alternatives of {@code mConvertSentence} (including itself at the top) */
+    private ArrayList<WnnSentence> mConvertAlternatives;
+
+    /** The clauses of the alternatives which have the same reading as the clause to list */
+    private ArrayList<WnnClause> mClauseAlternatives;
+
     /** The candidate filter */
     private CandidateFilter mFilter = null;
 
+    /** The candidate lists of the prediction */
+    private PredictionCache mPredictionCache = new PredictionCache(MAX_CACHED_PREDICTIONS);
+
+    /** The key of the current prediction in {@code mPredictionCache} ({@code null} if not to be cached) */
+    private String mPredictionKey = null;
+
+    /** Whether the dictionaries are searched when the candidates after the cached ones are required */
+    private boolean mSearchPending;
+
+    /** Number of threads making the candidates of the single clause conversion */
+    private static final int STAGE_THREADS = 1;
+
+    /** Executor making the candidates of the single clause conversion in background */
+    private static ExecutorService sStageExecutor = null;
+
+    /** Candidates of the single clause conversion being made in background */
+    private Future<ArrayList<WnnWord>> mClauseStage = null;
+
+    /** The task of {@code mClauseStage} */
+    private ClauseStageTask mClauseStageTask = null;
+
+    /** Interval to check {@code mAborted} while waiting for a background stage (in milliseconds) */
+    private static final long STAGE_WAIT_INTERVAL = 20;
+
+    /**
+     * The task making the candidates of the single clause conversion in background.
+     */
+    private class ClauseStageTask implements Callable<ArrayList<WnnWord>> {
+        /** The input string */
+        private final String mInput;
+        /** Whether the stage is stopped (guarded by {@code mClauseConverter}) */
+        private boolean mStopped = false;
+
+        /**
+         * Constructor
+         *
+         * @param input     The input string
+         */
+        ClauseStageTask(String input) {
+            mInput = input;
+        }
+
+        /** @see java.util.concurrent.Callable#call */
+        public ArrayList<WnnWord> call() {
+            synchronized (mClauseConverter) {
+                if (mStopped) {
+                    /* the converter may be changed by the engine after stopStages() */
+                    return null;
+                }
+                return convertClause(mInput);
+            }
+        }
+    }
+
     /**
      * Constructor
      *
@@ -147,13 +237,27 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         mDictionaryJP.clearApproxPattern();
         mDictionaryJP.setInUseState(false);
 
+        /* the user/learning dictionary is merged with the fixed dictionaries by the engine */
+        if (mDictionaryJP instanceof OpenWnnDictionaryImpl) {
+            ((OpenWnnDictionaryImpl) mDictionaryJP).enableNativeWritableDictionary();
+        }
+
         /* work buffers */
         mConvResult = new ArrayList<>();
         mCandTable = new HashMap<>();
 
+        /* the clause converter searches with its own cursor not to break the prediction */
+        mClauseDictionary = mDictionaryJP.createCursor();
+        if (mClauseDictionary == null) {
+            mClauseDictionary = mDictionaryJP;
+        } else {
+            mClauseDictionary.clearDictionary();
+            mClauseDictionary.clearApproxPattern();
+        }
+
         /* converters */
         mClauseConverter = new OpenWnnClauseConverterJAJP();
-        mClauseConverter.setDictionary(mDictionaryJP);
+        mClauseConverter.setDictionary(mClauseDictionary);
         mKanaConverter = new KanaConverter();
     }
 
@@ -210,16 +314,33 @@ public class OpenWnnEngineJAJP implements WnnEngine {
             } else {
                 if (mConvResult.size() < PREDICT_LIMIT) {
                     /* get prefix matching words from the dictionaries */
+                    getWords:
                     while (index >= mConvResult.size()) {
-                        if ((word = mDictionaryJP.getNextWord()) == null) {
+                        if (mAborted) {
+                            return null;
+                        }
+                        if (mSearchPending) {
+                            /* continue the cached list (the words listed already are skipped) */
+                            mSearchPending = false;
+                            searchPrediction(mInputHiragana.length());
+                            if (!mStagesDeferred && mInputHiragana.length() > 0) {
+                                startStages();
+                            }
+                        }
+                        int max = Math.max(index + 1 - mConvResult.size(), getBatchSize());
+                        WnnWord[] words = mDictionaryJP.getNextWords(0, Math.min(max, PREDICT_LIMIT - mConvResult.size()));
+                        if (words == null) {
                             mGetCandidateFrom = 1;
                             break;
                         }
-                        if (!mExactMatchMode || mInputHiragana.equals(word.stroke)) {
-                            addCandidate(word);
-                            if (mConvResult.size() >= PREDICT_LIMIT) {
-                                mGetCandidateFrom = 1;
-                                break;
+                        for (int i = 0; i < words.length; i++) {
+                            word = words[i];
+                            if (!mExactMatchMode || mInputHiragana.equals(word.stroke)) {
+                                addCandidate(word);
+                                if (mConvResult.size() >= PREDICT_LIMIT) {
+                                    mGetCandidateFrom = 1;
+                                    break getWords;
+                                }
                             }
                         }
                     }
@@ -229,22 +350,35 @@ public class OpenWnnEngineJAJP implements WnnEngine {
             }
         }
 
+        if (mAborted && index >= mConvResult.size()) {
+            return null;
+        }
+
         /* get candidates by single clause conversion */
         if (mGetCandidateFrom == 1) {
-            Iterator<?> convResult = mClauseConverter.convert(mInputHiragana);
-            if (convResult != null) {
-                while (convResult.hasNext()) {
-                    addCandidate((WnnWord) convResult.next());
+            if (mClauseAlternatives != null) {
+                /* the clauses in the alternatives of consecutive clause conversion */
+                for (int i = 0; i < mClauseAlternatives.size(); i++) {
+                    addCandidate(mClauseAlternatives.get(i));
+                }
+            }
+            ArrayList<WnnWord> clauses = getStageResult(mClauseStage);
+            if (clauses == null) {
+                if (mAborted) {
+                    return null;
                 }
+                clauses = convertClause(mInputHiragana);
+            }
+            for (int i = 0; i < clauses.size(); i++) {
+                addCandidate(clauses.get(i));
             }
             /* end of candidates by single clause conversion */
             mGetCandidateFrom = 2;
         }
 
-        /* get candidates from Kana converter */
+        /* get candidates from Kana converter (made only when they are reached) */
         if (mGetCandidateFrom == 2) {
-            List<WnnWord> addCandidateList
-                    = mKanaConverter.createPseudoCandidateList(mInputHiragana, mInputRomaji, mKeyboardType);
+            List<WnnWord> addCandidateList = mKanaConverter.createPseudoCandidateList(mInputHiragana, mInputRomaji, mKeyboardType);
 
             Iterator<WnnWord> it = addCandidateList.iterator();
             while (it.hasNext()) {
@@ -255,11 +389,153 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         }
 
         if (index >= mConvResult.size()) {
+            if (mPredictionKey != null && mGetCandidateFrom == 3) {
+                /* all candidates are listed */
+                mPredictionCache.put(mPredictionKey, mInputHiragana, mConvResult, true);
+                mPredictionKey = null;
+            }
             return null;
         }
         return mConvResult.get(index);
     }
 
+    /**
+     * Get the number of the predicted candidates to retrieve from the dictionary at once.
+     * <br>
+     * While the first screen is listed, only the candidates shown in it are retrieved.
+     *
+     * @return The number of the candidates
+     */
+    private int getBatchSize() {
+        int rest = mFirstCandidateCount - mConvResult.size();
+        if (rest > 0 && rest < PREDICT_BATCH_SIZE) {
+            return rest;
+        }
+        return PREDICT_BATCH_SIZE;
+    }
+
+    /**
+     * Create the key of the current prediction for {@code mPredictionCache}.
+     *
+     * @return The key
+     */
+    private String createPredictionKey() {
+        StringBuilder key = new StringBuilder();
+        key.append(mInputHiragana).append('\t').append(mInputRomaji)
+            .append('\t').append(mDictType)
+            .append('\t').append(mKeyboardType)
+            .append('\t').append(mExactMatchMode)
+            .append('\t').append((mFilter == null) ? 0 : mFilter.filter);
+        if (mInputHiragana.length() == 0 && mPreviousWord != null) {
+            /* the link prediction */
+            key.append('\t').append(mPreviousWord.stroke).append('\t').append(mPreviousWord.candidate);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Get the prediction cache.
+     * <br>
+     * The hit and miss counts of the cache can be used to tune its size.
+     *
+     * @return The prediction cache
+     */
+    public PredictionCache getPredictionCache() {
+        return mPredictionCache;
+    }
+
+    /**
+     * Get the candidates of single clause conversion.
+     *
+     * @param input     The input string
+     * @return The candidates
+     */
+    private ArrayList<WnnWord> convertClause(String input) {
+        ArrayList<WnnWord> list = new ArrayList<>();
+        Iterator<?> convResult = mClauseConverter.convert(input);
+        if (convResult != null) {
+            while (convResult.hasNext()) {
+                list.add((WnnWord) convResult.next());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Start making the candidates of the single clause conversion in background.
+     * <br>
+     * The candidates are merged in {@link #getCandidate(int)} in the same order as the
+     * conversion runs there, so the first candidates of prediction are shown without
+     * waiting for them.  While the stage is running, the converter is locked.
+     */
+    private void startStages() {
+        synchronized (OpenWnnEngineJAJP.class) {
+            if (sStageExecutor == null) {
+                sStageExecutor = Executors.newFixedThreadPool(STAGE_THREADS, new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "OpenWnnCandidateStage");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+        }
+
+        /* the clause converter can run concurrently only with its own dictionary cursor */
+        if (mDictType != DIC_LANG_JP_EISUKANA && mClauseDictionary != mDictionaryJP) {
+            mClauseStageTask = new ClauseStageTask(mInputHiragana);
+            mClauseStage = sStageExecutor.submit(mClauseStageTask);
+        }
+    }
+
+    /**
+     * Cancel the background stages and wait until they stop using the converters.
+     * <br>
+     * A task which has already started but not taken the converter yet returns
+     * without using it, so the converter can be changed after this method.
+     */
+    private void stopStages() {
+        if (mClauseStage != null) {
+            mClauseStage.cancel(false);
+            synchronized (mClauseConverter) {
+                /* the running task has left the converter, and no task enters it later */
+                mClauseStageTask.mStopped = true;
+            }
+            mClauseStage = null;
+            mClauseStageTask = null;
+        }
+    }
+
+    /**
+     * Get the candidates made by a background stage.
+     *
+     * @param stage     The stage
+     * @return The candidates; {@code null} if the stage is not started, failed or {@link #abort()} is called.
+     */
+    private <T> T getStageResult(Future<T> stage) {
+        if (stage == null) {
+            return null;
+        }
+        try {
+            while (true) {
+                try {
+                    return stage.get(STAGE_WAIT_INTERVAL, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (mAborted) {
+                        return null;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            /* make the candidates on this thread */
+        } catch (CancellationException e) {
+            /* make the candidates on this thread */
+        }
+        return null;
+    }
+
     /**
      * Add a candidate to the conversion result buffer.
      * <br>
@@ -287,6 +563,11 @@ public class OpenWnnEngineJAJP implements WnnEngine {
      * Clear work area that hold candidates information.
      */
     private void clearCandidates() {
+        stopStages();
+        if (mPredictionKey != null && !mConvResult.isEmpty()) {
+            /* keep the candidates made so far to continue them later */
+            mPredictionCache.put(mPredictionKey, mInputHiragana, mConvResult, (mGetCandidateFrom == 3));
+        }
         mConvResult.clear();
         mCandTable.clear();
         mOutputNum = 0;
@@ -294,6 +575,11 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         mInputRomaji = null;
         mGetCandidateFrom = 0;
         mSingleClauseMode = false;
+        mClauseAlternatives = null;
+        mPredictionKey = null;
+        mSearchPending = false;
+        mStagesDeferred = false;
+        mAborted = false;
     }
 
     /**
@@ -357,6 +643,7 @@ public class OpenWnnEngineJAJP implements WnnEngine {
      * @param filter    The candidate filter
      */
     public void setFilter(CandidateFilter filter) {
+        stopStages();
         mFilter = filter;
         mClauseConverter.setFilter(filter);
     }
@@ -366,8 +653,9 @@ public class OpenWnnEngineJAJP implements WnnEngine {
      **********************************************************************/
     /** @see jp.co.omronsoft.openwnn.WnnEngine#init */
     public void init() {
+        stopStages();
         clearPreviousWord();
-        mClauseConverter.setDictionary(mDictionaryJP);
+        mClauseConverter.setDictionary(mClauseDictionary);
         mKanaConverter.setDictionary(mDictionaryJP);
     }
 
@@ -385,6 +673,45 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         /* set mInputHiragana and mInputRomaji */
         int len = setSearchKey(text, maxLen);
 
+        /* use the list made for the same condition */
+        mPredictionKey = createPredictionKey();
+        ArrayList<WnnWord> cached = mPredictionCache.get(mPredictionKey);
+        if (cached != null) {
+            boolean complete = mPredictionCache.isComplete(mPredictionKey);
+            for (int i = 0; i < cached.size(); i++) {
+                addCandidate(cached.get(i));
+            }
+            if (complete) {
+                mPredictionKey = null;
+                mGetCandidateFrom = 3;
+            } else {
+                /* search when the candidates after the cached ones are required */
+                mSearchPending = true;
+                mStagesDeferred = (mFirstCandidateCount >= 0);
+            }
+            return 1;
+        }
+
+        int ret = searchPrediction(len);
+        if (len > 0) {
+            /* make the candidates following the prediction in background */
+            if (mFirstCandidateCount < 0) {
+                startStages();
+            } else {
+                /* wait until the rest of the candidates are required */
+                mStagesDeferred = true;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Search the dictionaries for the prediction.
+     *
+     * @param len       Length of the input string
+     * @return Plus value if there are candidates; 0 if there is no candidate; minus value if a error occurs.
+     */
+    private int searchPrediction(int len) {
         /* set dictionaries by the length of input */
         setDictionaryForPrediction(len);
 
@@ -409,6 +736,27 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         }
     }
 
+    /** @see jp.co.omronsoft.openwnn.WnnBoundedEngine#setFirstCandidateCount */
+    public void setFirstCandidateCount(int count) {
+        mFirstCandidateCount = count;
+    }
+
+    /** @see jp.co.omronsoft.openwnn.WnnBoundedEngine#requestRestCandidates */
+    public void requestRestCandidates() {
+        if (mStagesDeferred) {
+            mStagesDeferred = false;
+            /* the stages of a continued list start after the search */
+            if (mGetCandidateFrom == 0 && !mSearchPending) {
+                startStages();
+            }
+        }
+    }
+
+    /** @see jp.co.omronsoft.openwnn.WnnBoundedEngine#abort */
+    public void abort() {
+        mAborted = true;
+    }
+
     /** @see jp.co.omronsoft.openwnn.WnnEngine#convert */
     public int convert(ComposingText text) {
         clearCandidates();
@@ -438,16 +786,24 @@ public class OpenWnnEngineJAJP implements WnnEngine {
             input = text.toString(ComposingText.LAYER1);
         }
 
-        WnnSentence sentence = null;
+        ArrayList<WnnSentence> sentences = null;
         if (input.length() != 0) {
-            sentence = mClauseConverter.consecutiveClauseConvert(input);
+            sentences = mClauseConverter.consecutiveClauseConvert(input, CONVERT_SENTENCES);
         }
         if (head != null) {
-            sentence = new WnnSentence(head, sentence);
+            if (sentences == null) {
+                sentences = new ArrayList<>();
+                sentences.add(new WnnSentence(head, (WnnSentence) null));
+            } else {
+                for (int i = 0; i < sentences.size(); i++) {
+                    sentences.set(i, new WnnSentence(head, sentences.get(i)));
+                }
+            }
         }
-        if (sentence == null) {
+        if (sentences == null) {
             return 0;
         }
+        WnnSentence sentence = sentences.get(0);
 
         StrSegmentClause[] ss = new StrSegmentClause[sentence.elements.size()];
         int pos = 0;
@@ -464,6 +820,7 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         text.replaceStrSegment(ComposingText.LAYER2, ss,
                 text.getCursor(ComposingText.LAYER2));
         mConvertSentence = sentence;
+        mConvertAlternatives = sentences;
 
         return 0;
     }
@@ -494,9 +851,12 @@ public class OpenWnnEngineJAJP implements WnnEngine {
 
     /** @see jp.co.omronsoft.openwnn.WnnEngine#learn */
     public boolean learn(WnnWord word) {
+        stopStages();
         int ret = -1;
-        if (word.partOfSpeech.right == 0) {
-            word.partOfSpeech = mDictionaryJP.getPOS(WnnDictionary.POS_TYPE_MEISI);
+        if (word.partOfSpeech.right == 0 && !(word instanceof WnnSentence)) {
+            /* the candidate may be shared with the cached lists, so it is not changed */
+            word = new WnnWord(word.id, word.candidate, word.stroke,
+                    mDictionaryJP.getPOS(WnnDictionary.POS_TYPE_MEISI), word.frequency, word.attribute);
         }
 
         WnnDictionary dict = mDictionaryJP;
@@ -510,6 +870,8 @@ public class OpenWnnEngineJAJP implements WnnEngine {
                     ret = dict.learnWord(wd);
                 }
                 mPreviousWord = wd;
+                invalidateCaches(wd.stroke);
+                invalidateEvictedWord();
                 if (ret != 0) {
                     break;
                 }
@@ -521,7 +883,8 @@ public class OpenWnnEngineJAJP implements WnnEngine {
                 ret = dict.learnWord(word);
             }
             mPreviousWord = word;
-            mClauseConverter.setDictionary(dict);
+            invalidateCaches(word.stroke);
+            invalidateEvictedWord();
         }
 
         return (ret == 0);
@@ -529,28 +892,56 @@ public class OpenWnnEngineJAJP implements WnnEngine {
 
     /** @see jp.co.omronsoft.openwnn.WnnEngine#addWord */
     public int addWord(WnnWord word) {
+        stopStages();
         mDictionaryJP.setInUseState(true);
         if (word.partOfSpeech.right == 0) {
             word.partOfSpeech = mDictionaryJP.getPOS(WnnDictionary.POS_TYPE_MEISI);
         }
         mDictionaryJP.addWordToUserDictionary(word);
         mDictionaryJP.setInUseState(false);
+        invalidateCaches(word.stroke);
         return 0;
     }
 
     /** @see jp.co.omronsoft.openwnn.WnnEngine#deleteWord */
     public boolean deleteWord(WnnWord word) {
+        stopStages();
         mDictionaryJP.setInUseState(true);
         mDictionaryJP.removeWordFromUserDictionary(word);
         mDictionaryJP.setInUseState(false);
+        invalidateCaches(word.stroke);
         return false;
     }
 
     /** @see jp.co.omronsoft.openwnn.WnnEngine#deleteCandidate */
     public void deleteCandidate(WnnWord word) {
+        stopStages();
         mDictionaryJP.setInUseState(true);
         mDictionaryJP.removeWordFromLearnDictionary(word);
         mDictionaryJP.setInUseState(false);
+        invalidateCaches(word.stroke);
+    }
+
+    /**
+     * Remove the cached results related to a changed word.
+     *
+     * @param stroke    The reading of the word
+     */
+    private void invalidateCaches(String stroke) {
+        mClauseConverter.invalidateCache(stroke);
+        mPredictionCache.invalidate(stroke);
+        /* the current list may have the word before the change */
+        mPredictionKey = null;
+    }
+
+    /**
+     * Remove the cached results related to the word removed from the full learn dictionary.
+     */
+    private void invalidateEvictedWord() {
+        String stroke = mDictionaryJP.getEvictedStroke();
+        if (stroke != null) {
+            invalidateCaches(stroke);
+        }
     }
 
     /** @see jp.co.omronsoft.openwnn.WnnEngine#setPreferences */
@@ -574,22 +965,67 @@ public class OpenWnnEngineJAJP implements WnnEngine {
         mInputHiragana = clause.stroke;
         mInputRomaji = clause.candidate;
 
+        /* find the clauses of the same reading in the alternatives */
+        int start = 0;
+        for (int i = 0; i < clausePosition; i++) {
+            start += mConvertSentence.elements.get(i).stroke.length();
+        }
+        mClauseAlternatives = new ArrayList<>();
+        if (mConvertAlternatives != null) {
+            for (int i = 0; i < mConvertAlternatives.size(); i++) {
+                WnnClause alt = findClause(mConvertAlternatives.get(i), start, clause.stroke.length());
+                if (alt != null) {
+                    mClauseAlternatives.add(alt);
+                }
+            }
+        }
+
+        startStages();
         return 1;
     }
 
+    /**
+     * Find the clause at the specified position of a sentence.
+     *
+     * @param sentence  The sentence
+     * @param start     The start position of the clause in the reading
+     * @param length    The length of the reading of the clause
+     * @return The clause; {@code null} if the sentence is not segmented there.
+     */
+    private WnnClause findClause(WnnSentence sentence, int start, int length) {
+        int pos = 0;
+        Iterator<WnnClause> it = sentence.elements.iterator();
+        while (it.hasNext() && pos <= start) {
+            WnnClause clause = it.next();
+            int len = clause.stroke.length();
+            if (pos == start && len == length) {
+                return clause;
+            }
+            pos += len;
+        }
+        return null;
+    }
+
     /** @see jp.co.omronsoft.openwnn.WnnEngine#initializeDictionary */
     public boolean initializeDictionary(int dictionary) {
+        stopStages();
         switch (dictionary) {
             case WnnEngine.DICTIONARY_TYPE_LEARN:
                 mDictionaryJP.setInUseState(true);
                 mDictionaryJP.clearLearnDictionary();
                 mDictionaryJP.setInUseState(false);
+                mClauseConverter.clearCache();
+                mPredictionCache.clear();
+                mPredictionKey = null;
                 return true;
 
             case WnnEngine.DICTIONARY_TYPE_USER:
                 mDictionaryJP.setInUseState(true);
                 mDictionaryJP.clearUserDictionary();
                 mDictionaryJP.setInUseState(false);
+                mClauseConverter.clearCache();
+                mPredictionCache.clear();
+                mPredictionKey = null;
                 return true;
         }
         return false;
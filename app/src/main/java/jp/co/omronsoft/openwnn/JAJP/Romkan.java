@@ -22,7 +22,6 @@ import java.util.HashMap;
 
 import jp.co.omronsoft.openwnn.ComposingText;
 import jp.co.omronsoft.openwnn.LetterConverter;
-import jp.co.omronsoft.openwnn.StrSegment;
 
 /**
  * The Romaji to Hiragana converter class for Japanese IME.
@@ -31,7 +30,7 @@ import jp.co.omronsoft.openwnn.StrSegment;
  */
 public class Romkan implements LetterConverter {
     /** HashMap for Romaji-to-Kana conversion (Japanese mode) */
-    private static final HashMap<String, String> romkanTable = new HashMap<>() {{
+    static final HashMap<String, String> romkanTable = new HashMap<>() {{
         put("", "っ");
 
         put("a", "あ"); put("i", "い"); put("u", "う"); put("e", "え"); put("o", "お");
@@ -207,9 +206,6 @@ public class Romkan implements LetterConverter {
         put("¥", "￥");
     }};
 
-    /** Max length of the target text */
-    private static final int MAX_LENGTH = 4;
-
     /**
      * Default constructor
      */
@@ -223,51 +219,7 @@ public class Romkan implements LetterConverter {
 
     /** @see LetterConverter#convert */
     public boolean convert(ComposingText text) {
-        int cursor = text.getCursor(1);
-
-        if (cursor <= 0) {
-            return false;
-        }
-
-        StrSegment[] str = new StrSegment[MAX_LENGTH];
-        int start = MAX_LENGTH;
-        int checkLength = Math.min(cursor, MAX_LENGTH);
-        for (int i = 1; i <= checkLength; i++) {
-            str[MAX_LENGTH - i] = text.getStrSegment(1, cursor - i);
-            start--;
-        }
-
-        StringBuilder key = new StringBuilder();
-        while (start < MAX_LENGTH) {
-            for (int i = start; i < MAX_LENGTH; i++) {
-                key.append(str[i].string);
-            }
-            boolean upper = Character.isUpperCase(key.charAt(key.length() - 1));
-            String match = Romkan.romkanTable.get(key.toString().toLowerCase());
-            if (match != null) {
-                if (upper) {
-                    match = match.toUpperCase();
-                }
-                StrSegment[] out;
-                if (match.length() == 1) {
-                    out = new StrSegment[1];
-                    out[0] = new StrSegment(match, str[start].from, str[MAX_LENGTH - 1].to);
-                    text.replaceStrSegment(ComposingText.LAYER1, out, MAX_LENGTH - start);
-                } else {
-                    out = new StrSegment[2];
-                    out[0] = new StrSegment(match.substring(0, match.length() - 1),
-                            str[start].from, str[MAX_LENGTH - 1].to - 1);
-                    out[1] = new StrSegment(match.substring(match.length() - 1),
-                            str[MAX_LENGTH - 1].to, str[MAX_LENGTH - 1].to);
-                    text.replaceStrSegment(1, out, MAX_LENGTH - start);
-                }
-                return true;
-            }
-            start++;
-            key.delete(0, key.length());
-        }
-
-        return false;
+        return RomkanTable.getInstance().convert(text, RomkanTable.TABLE_HIRAGANA);
     }
 
     /** @see LetterConverter#setPreferences */
@@ -22,7 +22,6 @@ import java.util.HashMap;
 
 import jp.co.omronsoft.openwnn.ComposingText;
 import jp.co.omronsoft.openwnn.LetterConverter;
-import jp.co.omronsoft.openwnn.StrSegment;
 
 /**
  * The Romaji to full-width Katakana converter class for Japanese IME.
@@ -31,7 +30,7 @@ import jp.co.omronsoft.openwnn.StrSegment;
  */
 public class RomkanFullKatakana implements LetterConverter {
     /** HashMap for Romaji-to-Kana conversion (Japanese mode) */
-    private static final HashMap<String, String> mRomkanTable = new HashMap<>() {{
+    static final HashMap<String, String> mRomkanTable = new HashMap<>() {{
         put("", "ッ");
 
         put("a", "ア"); put("i", "イ"); put("u", "ウ"); put("e", "エ"); put("o", "オ");
@@ -172,9 +171,6 @@ public class RomkanFullKatakana implements LetterConverter {
         put("?", "？");
     }};
 
-    /** Max length of the target text */
-    private static final int MAX_LENGTH = 4;
-
     /**
      * Default constructor
      */
@@ -184,62 +180,7 @@ public class RomkanFullKatakana implements LetterConverter {
 
     /** @see LetterConverter#convert */
     public boolean convert(ComposingText text) {
-        return convert(text, mRomkanTable);
-    }
-
-    /**
-     * convert Romaji to Full Katakana
-     *
-     * @param text              The input/output text
-     * @param table             HashMap for Romaji-to-Kana conversion
-     * @return                  {@code true} if conversion is completed; {@code false} if not
-     */
-    public static boolean convert(ComposingText text, HashMap<String, String> table) {
-        int cursor = text.getCursor(1);
-
-        if (cursor <= 0) {
-            return false;
-        }
-
-        StrSegment[] str = new StrSegment[MAX_LENGTH];
-        int start = MAX_LENGTH;
-        int checkLength = Math.min(cursor, MAX_LENGTH);
-        for (int i = 1; i <= checkLength; i++) {
-            str[MAX_LENGTH - i] = text.getStrSegment(1, cursor - i);
-            start--;
-        }
-
-        StringBuilder key = new StringBuilder();
-        while (start < MAX_LENGTH) {
-            for (int i = start; i < MAX_LENGTH; i++) {
-                key.append(str[i].string);
-            }
-            boolean upper = Character.isUpperCase(key.charAt(key.length() - 1));
-            String match = table.get(key.toString().toLowerCase());
-            if (match != null) {
-                if (upper) {
-                    match = match.toUpperCase();
-                }
-                StrSegment[] out;
-                if (match.length() == 1) {
-                    out = new StrSegment[1];
-                    out[0] = new StrSegment(match, str[start].from, str[MAX_LENGTH - 1].to);
-                    text.replaceStrSegment(ComposingText.LAYER1, out, MAX_LENGTH - start);
-                } else {
-                    out = new StrSegment[2];
-                    out[0] = new StrSegment(match.substring(0, match.length() - 1),
-                            str[start].from, str[MAX_LENGTH - 1].to - 1);
-                    out[1] = new StrSegment(match.substring(match.length() - 1),
-                            str[MAX_LENGTH - 1].to, str[MAX_LENGTH - 1].to);
-                    text.replaceStrSegment(1, out, MAX_LENGTH - start);
-                }
-                return true;
-            }
-            start++;
-            key.delete(0, key.length());
-        }
-
-        return false;
+        return RomkanTable.getInstance().convert(text, RomkanTable.TABLE_FULL_KATAKANA);
     }
 
     /** @see LetterConverter#setPreferences */
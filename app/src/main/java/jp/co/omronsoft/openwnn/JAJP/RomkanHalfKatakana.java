@@ -30,7 +30,7 @@ import jp.co.omronsoft.openwnn.LetterConverter;
  */
 public class RomkanHalfKatakana implements LetterConverter {
     /** HashMap for Romaji-to-Kana conversion (Japanese mode) */
-    private static final HashMap<String, String> mRomkanTable = new HashMap<>() {{
+    static final HashMap<String, String> mRomkanTable = new HashMap<>() {{
         put("", "ｯ");
 
         put("a", "ｱ"); put("i", "ｲ"); put("u", "ｳ"); put("e", "ｴ"); put("o", "ｵ");
@@ -175,7 +175,7 @@ public class RomkanHalfKatakana implements LetterConverter {
 
     /** @see LetterConverter#convert */
     public boolean convert(ComposingText text) {
-        return RomkanFullKatakana.convert(text, mRomkanTable);
+        return RomkanTable.getInstance().convert(text, RomkanTable.TABLE_HALF_KATAKANA);
     }
 
     /** @see LetterConverter#setPreferences */
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2008-2012  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.omronsoft.openwnn.JAJP;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jp.co.omronsoft.openwnn.ComposingText;
+import jp.co.omronsoft.openwnn.StrSegment;
+
+/**
+ * The compiled table of the Romaji-to-Kana conversion shared by {@link Romkan},
+ * {@link RomkanFullKatakana} and {@link RomkanHalfKatakana}.
+ * <br>
+ * The Romaji of the tables are stored in a trie in reverse order, so the
+ * segments before the cursor are matched by walking them backwards character by
+ * character.  No key string is made while matching.
+ *
+ * @author Copyright (C) 2009 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+class RomkanTable {
+    /** Table of the Romaji-to-Hiragana conversion */
+    public static final int TABLE_HIRAGANA = 0;
+    /** Table of the Romaji-to-full-width Katakana conversion */
+    public static final int TABLE_FULL_KATAKANA = 1;
+    /** Table of the Romaji-to-half-width Katakana conversion */
+    public static final int TABLE_HALF_KATAKANA = 2;
+
+    /** Max length of the target text (in segments) */
+    private static final int MAX_LENGTH = 4;
+
+    /** The table made from the tables of the converters */
+    private static final RomkanTable sTable = new RomkanTable(
+            Romkan.romkanTable, RomkanFullKatakana.mRomkanTable, RomkanHalfKatakana.mRomkanTable);
+
+    /**
+     * The result of a conversion (split in front of the last character).
+     */
+    private static class Output {
+        /** The result except the last character; the whole result if it is a character */
+        String head;
+        /** The last character of the result; {@code null} if the result is a character */
+        String tail;
+        /** {@code head} of the result in upper case */
+        String upperHead;
+        /** {@code tail} of the result in upper case */
+        String upperTail;
+
+        /**
+         * Constructor
+         *
+         * @param match     The result of the conversion
+         */
+        Output(String match) {
+            String upper = match.toUpperCase();
+            if (match.length() == 1) {
+                head = match;
+            } else {
+                head = match.substring(0, match.length() - 1);
+                tail = match.substring(match.length() - 1);
+            }
+            if (upper.length() == 1) {
+                upperHead = upper;
+            } else {
+                upperHead = upper.substring(0, upper.length() - 1);
+                upperTail = upper.substring(upper.length() - 1);
+            }
+        }
+    }
+
+    /**
+     * A node of the trie while the table is being made.
+     */
+    private static class Node {
+        /** The children by the character */
+        TreeMap<Character, Node> children = new TreeMap<>();
+        /** The results of the conversion for each table */
+        Output[] outputs;
+        /** The index of the node in the compiled trie */
+        int index;
+    }
+
+    /** Index of the first edge of each node (the edges of node {@code n} are {@code [mFirstEdge[n], mFirstEdge[n + 1])}) */
+    private int[] mFirstEdge;
+    /** The character of each edge (sorted for each node) */
+    private char[] mLabel;
+    /** The node which each edge leads to */
+    private int[] mTarget;
+    /** The results of the conversion for each table and node */
+    private Output[][] mOutput;
+
+    /**
+     * Constructor
+     *
+     * @param tables    The tables of the conversion (Romaji to the result)
+     */
+    @SafeVarargs
+    private RomkanTable(Map<String, String>... tables) {
+        Node root = new Node();
+        for (int t = 0; t < tables.length; t++) {
+            Iterator<Map.Entry<String, String>> it = tables[t].entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, String> entry = it.next();
+                String key = entry.getKey().toLowerCase();
+                if (key.length() == 0) {
+                    /* an empty Romaji never matches */
+                    continue;
+                }
+                Node node = root;
+                for (int i = key.length() - 1; i >= 0; i--) {
+                    Character c = key.charAt(i);
+                    Node child = node.children.get(c);
+                    if (child == null) {
+                        child = new Node();
+                        node.children.put(c, child);
+                    }
+                    node = child;
+                }
+                if (node.outputs == null) {
+                    node.outputs = new Output[tables.length];
+                }
+                node.outputs[t] = new Output(entry.getValue());
+            }
+        }
+
+        /* number the nodes in breadth-first order, and store the edges of each node in a row */
+        ArrayList<Node> nodes = new ArrayList<>();
+        nodes.add(root);
+        int edges = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            node.index = i;
+            nodes.addAll(node.children.values());
+            edges += node.children.size();
+        }
+
+        mFirstEdge = new int[nodes.size() + 1];
+        mLabel = new char[edges];
+        mTarget = new int[edges];
+        mOutput = new Output[tables.length][nodes.size()];
+        int edge = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            mFirstEdge[i] = edge;
+            Iterator<Map.Entry<Character, Node>> it = node.children.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Character, Node> entry = it.next();
+                mLabel[edge] = entry.getKey();
+                mTarget[edge] = entry.getValue().index;
+                edge++;
+            }
+            if (node.outputs != null) {
+                for (int t = 0; t < tables.length; t++) {
+                    mOutput[t][i] = node.outputs[t];
+                }
+            }
+        }
+        mFirstEdge[nodes.size()] = edge;
+    }
+
+    /**
+     * Get the table shared by the converters.
+     *
+     * @return The table
+     */
+    public static RomkanTable getInstance() {
+        return sTable;
+    }
+
+    /**
+     * Find the child of a node.
+     *
+     * @param node      The node
+     * @param c         The character of the edge
+     * @return The index of the child; {@code -1} if not found.
+     */
+    private int findChild(int node, char c) {
+        int low = mFirstEdge[node];
+        int high = mFirstEdge[node + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = mLabel[mid];
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return mTarget[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Convert the Romaji in front of the cursor of the layer 1.
+     * <br>
+     * The longest Romaji in the table is replaced by the result.
+     *
+     * @param text      The input/output text
+     * @param table     The table to use ({@code TABLE_HIRAGANA}, {@code TABLE_FULL_KATAKANA} or {@code TABLE_HALF_KATAKANA})
+     * @return          {@code true} if conversion is completed; {@code false} if not
+     */
+    public boolean convert(ComposingText text, int table) {
+        int cursor = text.getCursor(ComposingText.LAYER1);
+
+        if (cursor <= 0) {
+            return false;
+        }
+
+        Output[] outputs = mOutput[table];
+        int checkLength = Math.min(cursor, MAX_LENGTH);
+        int node = 0;
+        boolean upper = false;
+        boolean first = true;
+        Output match = null;
+        int matchLength = 0;
+        search:
+        for (int i = 1; i <= checkLength; i++) {
+            String str = text.getStrSegment(ComposingText.LAYER1, cursor - i).string;
+            for (int j = str.length() - 1; j >= 0; j--) {
+                char c = str.charAt(j);
+                if (first) {
+                    upper = Character.isUpperCase(c);
+                    first = false;
+                }
+                node = findChild(node, Character.toLowerCase(c));
+                if (node < 0) {
+                    break search;
+                }
+            }
+            if (outputs[node] != null) {
+                match = outputs[node];
+                matchLength = i;
+            }
+        }
+
+        if (match == null) {
+            return false;
+        }
+
+        int from = text.getStrSegment(ComposingText.LAYER1, cursor - matchLength).from;
+        int to = text.getStrSegment(ComposingText.LAYER1, cursor - 1).to;
+        String head = (upper) ? match.upperHead : match.head;
+        String tail = (upper) ? match.upperTail : match.tail;
+        StrSegment[] out;
+        if (tail == null) {
+            out = new StrSegment[1];
+            out[0] = new StrSegment(head, from, to);
+        } else {
+            out = new StrSegment[2];
+            out[0] = new StrSegment(head, from, to - 1);
+            out[1] = new StrSegment(tail, to, to);
+        }
+        text.replaceStrSegment(ComposingText.LAYER1, out, matchLength);
+        return true;
+    }
+}
@@ -136,6 +136,7 @@ public class OpenWnn extends InputMethodService {
         super.onDestroy();
         mCurrentIme = null;
         close();
+        OpenWnnDictionaryStore.closeAll();
     }
 
     /** @see android.inputmethodservice.InputMethodService#onKeyDown */
@@ -16,12 +16,13 @@
 
 package jp.co.omronsoft.openwnn;
 
-import android.content.ContentValues;
-import android.database.DatabaseUtils;
 import android.database.SQLException;
-import android.database.sqlite.SQLiteCursor;
 import android.database.sqlite.SQLiteDatabase;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+
 /**
  * The implementation class of WnnDictionary interface (JNI wrapper class).
  *
@@ -71,26 +72,6 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
     /** The column name of database  */
     protected static final String COLUMN_NAME_PREVIOUS_POS_RIGHT = "prevPosRight";
 
-    /** Query for normal search */
-    protected static final String NORMAL_QUERY =
-            "select distinct " + COLUMN_NAME_STROKE + "," +
-                    COLUMN_NAME_CANDIDATE + "," +
-                    COLUMN_NAME_POS_LEFT + "," +
-                    COLUMN_NAME_POS_RIGHT + "," +
-                    COLUMN_NAME_TYPE +
-                    " from " + TABLE_NAME_DIC + " where %s order by " +
-                    COLUMN_NAME_TYPE + " DESC, %s";
-
-    /** Query for link search */
-    protected static final String LINK_QUERY =
-            "select distinct " + COLUMN_NAME_STROKE + "," +
-                    COLUMN_NAME_CANDIDATE + "," +
-                    COLUMN_NAME_POS_LEFT + "," +
-                    COLUMN_NAME_POS_RIGHT + "," +
-                    COLUMN_NAME_TYPE +
-                    " from " + TABLE_NAME_DIC + " where %s = ? and %s = ? and %s order by " +
-                    COLUMN_NAME_TYPE + " DESC, %s";
-
     /** The max words of user dictionary */
     protected static final int MAX_WORDS_IN_USER_DICTIONARY = 100;
     /** The max words of learning dictionary */
@@ -112,16 +93,9 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
     protected final static int MAX_PATTERN_OF_APPROX = 6;
     /** Constants to define the upper limit of length of a query */
     protected final static int MAX_LENGTH_OF_QUERY = 50;
-    /**
-     * Constants to define the turn around time of query.
-     * <br>
-     * It can be set between 1 to {@code MAX_LENGTH_OF_QUERY}. If the length of query
-     * string is shorter than {@code FAST_QUERY_LENGTH}, the simple search logic is applied.
-     * Therefore, the turn around time for short query string is fast so that it is short.
-     * However, the difference of turn around time at the border length grows big.
-     * the value should be fixed carefully.
-     */
-    protected final static int FAST_QUERY_LENGTH = 20;
+
+    /** The maximum number of words retrieved from the fixed dictionary by one JNI call */
+    protected final static int GET_WORDS_BATCH_SIZE = 32;
 
     /*
      * DEFINITION OF PRIVATE FIELD
@@ -129,54 +103,58 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
     /** Internal work area for the dictionary search library */
     protected long mWnnWork;
 
+    /** The file path of the dictionary library */
+    protected String mDicLibPath;
+
+    /** The packed connect matrices shared for each dictionary library */
+    private static final HashMap<String, WnnConnectMatrix> sConnectMatrices = new HashMap<>();
+
     /** The file path of the writable dictionary */
     protected String mDicFilePath = "";
     /** The writable dictionary object */
     protected SQLiteDatabase mDbDic = null;
-    /** The search cursor of the writable dictionary */
-    protected SQLiteCursor mDbCursor = null;
-    /** The writable dictionary object Access helper */
-    protected OpenWnnSQLiteOpenHelper mDbOpenHelper = null;
+    /** The in-memory image of the writable dictionary */
+    protected OpenWnnDictionaryStore mStore = null;
+    /** The words found in the writable dictionary */
+    protected ArrayList<OpenWnnDictionaryStore.Entry> mSearchResult = null;
+    /** The position of the next word in {@code mSearchResult} */
+    protected int mSearchIndex = 0;
     /** The number of queried items */
     protected int mCountCursor = 0;
-    /** The type of the search cursor object */
-    protected int mTypeOfQuery = -1;
-
-    /** The query base strings for query operation */
-    protected String mExactQuerySqlOrderByFreq;
-    /** The query base strings for query operation */
-    protected String mExactQuerySqlOrderByKey;
-
-    /** The query base strings for query operation */
-    protected String mFullPrefixQuerySqlOrderByFreq;
-    /** The query base strings for query operation */
-    protected String mFastPrefixQuerySqlOrderByFreq;
-    /** The query base strings for query operation */
-    protected String mFullPrefixQuerySqlOrderByKey;
-    /** The query base strings for query operation */
-    protected String mFastPrefixQuerySqlOrderByKey;
-
-    /** The query base strings for query operation */
-    protected String mFullLinkQuerySqlOrderByFreq;
-    /** The query base strings for query operation */
-    protected String mFastLinkQuerySqlOrderByFreq;
-    /** The query base strings for query operation */
-    protected String mFullLinkQuerySqlOrderByKey;
-    /** The query base strings for query operation */
-    protected String mFastLinkQuerySqlOrderByKey;
-
-    /** The string array used by query operation (for "selection") */
-    protected String[] mExactQueryArgs = new String[1];
-    /** The string array used by query operation (for "selection") */
-    protected String[] mFullQueryArgs = new String[MAX_LENGTH_OF_QUERY * (MAX_PATTERN_OF_APPROX + 1)];
-    /** The string array used by query operation (for "selection") */
-    protected String[] mFastQueryArgs = new String[FAST_QUERY_LENGTH * (MAX_PATTERN_OF_APPROX + 1)];
+
+    /** The work area to retrieve the frequencies of words at once */
+    protected int[] mBatchFrequencies = new int[GET_WORDS_BATCH_SIZE];
+    /** The work area to retrieve the parts of speech at left side of words at once */
+    protected int[] mBatchLeftPartOfSpeeches = new int[GET_WORDS_BATCH_SIZE];
+    /** The work area to retrieve the parts of speech at right side of words at once */
+    protected int[] mBatchRightPartOfSpeeches = new int[GET_WORDS_BATCH_SIZE];
+    /** The work area to retrieve the lengths of stroke and candidate of words at once */
+    protected int[] mBatchLengths = new int[GET_WORDS_BATCH_SIZE * 2];
+    /** The work area to retrieve the packed strings of words at once */
+    protected char[] mBatchStrings = new char[GET_WORDS_BATCH_SIZE * (MAX_STROKE_LENGTH + MAX_CANDIDATE_LENGTH)];
 
     /** The Frequency offset of user dictionary */
     protected int mFrequencyOffsetOfUserDictionary = -1;
     /** The Frequency offset of learn dictionary */
     protected int mFrequencyOffsetOfLearnDictionary = -1;
 
+    /** The patterns of each character (the character and its approximate patterns) */
+    protected HashMap<Character, String[]> mApproxPatterns = new HashMap<>();
+
+    /**
+     * The generations of the words of {@code mStore} which the native writable dictionaries have
+     * ({@code null} if they are not used; -1 if not known).  It is shared with the cursors.
+     */
+    protected int[] mNativeGenerations = null;
+    /** The source of the snapshots of the native writable dictionaries */
+    private OpenWnnDictionaryStore.SnapshotSource mSnapshotSource = null;
+    /** The frequency parameters ({base, high}) of the native writable dictionaries for each type */
+    private int[][] mNativeFrequencies = {{-1, -1}, {-1, -1}};
+    /** Whether the native writable dictionaries are taken out of the search (while {@code mStore} is searched) */
+    private boolean mNativeExcluded = false;
+    /** The stroke of the word removed by the last learning ({@code null} if none) */
+    private String mEvictedStroke = null;
+
     /*
      * DEFINITION OF METHODS
      */
@@ -203,66 +181,57 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
     public OpenWnnDictionaryImpl(String dicLibPath, String dicFilePath) {
         /* Create the internal work area */
         this.mWnnWork = OpenWnnDictionaryImplJni.createWnnWork(dicLibPath);
+        mDicLibPath = dicLibPath;
 
-        if (this.mWnnWork != 0 && dicFilePath != null) {
-            /* Create query base strings */
-            String queryFullBaseString =
-                    OpenWnnDictionaryImplJni.createQueryStringBase(
-                            this.mWnnWork,
-                            MAX_LENGTH_OF_QUERY,
-                            MAX_PATTERN_OF_APPROX,
-                            COLUMN_NAME_STROKE);
-
-            String queryFastBaseString =
-                    OpenWnnDictionaryImplJni.createQueryStringBase(
-                            this.mWnnWork,
-                            FAST_QUERY_LENGTH,
-                            MAX_PATTERN_OF_APPROX,
-                            COLUMN_NAME_STROKE);
-
-
-            mExactQuerySqlOrderByFreq = String.format(
-                    NORMAL_QUERY,
-                    String.format("%s=?", COLUMN_NAME_STROKE), String.format("%s DESC", COLUMN_NAME_ID));
-
-            mExactQuerySqlOrderByKey = String.format(
-                    NORMAL_QUERY,
-                    String.format("%s=?", COLUMN_NAME_STROKE), COLUMN_NAME_STROKE);
-
-
-            mFullPrefixQuerySqlOrderByFreq = String.format(
-                    NORMAL_QUERY,
-                    queryFullBaseString, String.format("%s DESC", COLUMN_NAME_ID));
-
-            mFastPrefixQuerySqlOrderByFreq = String.format(
-                    NORMAL_QUERY,
-                    queryFastBaseString, String.format("%s DESC", COLUMN_NAME_ID));
-
-            mFullPrefixQuerySqlOrderByKey = String.format(
-                    NORMAL_QUERY,
-                    queryFullBaseString, COLUMN_NAME_STROKE);
-
-            mFastPrefixQuerySqlOrderByKey = String.format(
-                    NORMAL_QUERY,
-                    queryFastBaseString, COLUMN_NAME_STROKE);
-
+        openWritableDictionary(dicFilePath);
+    }
 
-            mFullLinkQuerySqlOrderByFreq = String.format(
-                    LINK_QUERY, COLUMN_NAME_PREVIOUS_STROKE, COLUMN_NAME_PREVIOUS_CANDIDATE,
-                    queryFullBaseString, String.format("%s DESC", COLUMN_NAME_ID));
+    /**
+     * The constructor of this class with a dictionary image file.
+     * <p>
+     * The dictionary data is read from the image file mapped into memory instead
+     * of the dictionary library.  The pages are read when they are used, and
+     * shared among processes.
+     *
+     * @param dicImage      The dictionary image file
+     * @param dicFilePath   The path name of writable dictionary (null if not use)
+     */
+    public OpenWnnDictionaryImpl(File dicImage, String dicFilePath) {
+        /* Create the internal work area */
+        mDicLibPath = dicImage.getAbsolutePath();
+        this.mWnnWork = OpenWnnDictionaryImplJni.createWnnWorkFromImage(mDicLibPath);
 
-            mFastLinkQuerySqlOrderByFreq = String.format(
-                    LINK_QUERY, COLUMN_NAME_PREVIOUS_STROKE, COLUMN_NAME_PREVIOUS_CANDIDATE,
-                    queryFastBaseString, String.format("%s DESC", COLUMN_NAME_ID));
+        openWritableDictionary(dicFilePath);
+    }
 
-            mFullLinkQuerySqlOrderByKey = String.format(
-                    LINK_QUERY, COLUMN_NAME_PREVIOUS_STROKE, COLUMN_NAME_PREVIOUS_CANDIDATE,
-                    queryFullBaseString, COLUMN_NAME_STROKE);
+    /**
+     * The constructor of this class sharing the dictionaries of another object.
+     * <p>
+     * Create a internal work area which refers the dictionaries loaded by {@code dic}.
+     * The writable dictionary is shared through {@link OpenWnnDictionaryStore}.
+     *
+     * @param dic   The dictionary object whose dictionaries are shared
+     */
+    protected OpenWnnDictionaryImpl(OpenWnnDictionaryImpl dic) {
+        /* Create the internal work area */
+        this.mWnnWork = OpenWnnDictionaryImplJni.createWnnCursor(dic.mWnnWork);
+        mDicLibPath = dic.mDicLibPath;
 
-            mFastLinkQuerySqlOrderByKey = String.format(
-                    LINK_QUERY, COLUMN_NAME_PREVIOUS_STROKE, COLUMN_NAME_PREVIOUS_CANDIDATE,
-                    queryFastBaseString, COLUMN_NAME_STROKE);
+        if (this.mWnnWork != 0 && dic.mStore != null) {
+            mStore = dic.mStore;
+            mDicFilePath = dic.mDicFilePath;
+            mNativeGenerations = dic.mNativeGenerations;
+        }
+    }
 
+    /**
+     * Open the writable dictionary.
+     *
+     * @param dicFilePath   The path name of writable dictionary (null if not use)
+     */
+    private void openWritableDictionary(String dicFilePath) {
+        if (this.mWnnWork != 0 && dicFilePath != null) {
+            mStore = OpenWnnDictionaryStore.getInstance(dicFilePath);
 
             try {
                 /* Create the database object */
@@ -271,6 +240,9 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
 
                 /* Create the table if not exist */
                 createDictionaryTable(TABLE_NAME_DIC);
+
+                /* Load the words into memory */
+                loadDictionaryStore();
             } catch (SQLException ignored) {
             }
         }
@@ -283,13 +255,144 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
     protected void finalize() {
         /* Free the internal work area */
         if (this.mWnnWork != 0) {
-            OpenWnnDictionaryImplJni.freeWnnWork(this.mWnnWork);
-            this.mWnnWork = 0;
+            if (mNativeGenerations != null) {
+                /* the snapshot is taken holding the lock of the store */
+                synchronized (mStore) {
+                    OpenWnnDictionaryImplJni.freeWnnWork(this.mWnnWork);
+                    this.mWnnWork = 0;
+                }
+            } else {
+                OpenWnnDictionaryImplJni.freeWnnWork(this.mWnnWork);
+                this.mWnnWork = 0;
+            }
 
             freeDatabase();
         }
     }
 
+    /**
+     * Search the user/learning dictionary by the native engine.
+     * <br>
+     * The words of {@code mStore} are copied into the native writable dictionaries and
+     * merged with the fixed dictionaries by the engine; only the link search, which
+     * the native writable dictionaries do not support, searches {@code mStore}.  The
+     * native dictionaries are restored from the snapshots saved by {@code mStore} if they
+     * have the current words, otherwise they are made from {@code mStore} again.
+     * <br>
+     * This must be called before {@link #createCursor()}.  The cursors must not search
+     * while the words are changed, and a search must be started again after the change.
+     */
+    public void enableNativeWritableDictionary() {
+        if (this.mWnnWork == 0 || mStore == null || mNativeGenerations != null) {
+            return;
+        }
+
+        int[] generations = {-1, -1};
+        synchronized (mStore) {
+            for (int type = TYPE_NAME_USER; type <= TYPE_NAME_LEARN; type++) {
+                int ret = OpenWnnDictionaryImplJni.setWritableDictionary(this.mWnnWork, getWritableIndex(type),
+                        mStore.readSnapshot(type), getMaxWords(type));
+                if (ret < 0) {
+                    /* search mStore as usual */
+                    return;
+                } else if (ret > 0) {
+                    generations[type] = mStore.getGeneration(type);
+                }
+            }
+            mNativeGenerations = generations;
+        }
+
+        mSnapshotSource = new OpenWnnDictionaryStore.SnapshotSource() {
+            public byte[] getSnapshot(int type) {
+                if (mWnnWork == 0 || mNativeGenerations[type] != mStore.getGeneration(type)) {
+                    return null;
+                }
+                return OpenWnnDictionaryImplJni.getWritableDictionaryImage(mWnnWork, getWritableIndex(type));
+            }
+        };
+        mStore.setSnapshotSource(mSnapshotSource);
+
+        synchronizeNativeDictionary();
+    }
+
+    /**
+     * Make the native writable dictionaries which do not have the current words of {@code mStore} again.
+     */
+    protected void synchronizeNativeDictionary() {
+        if (mNativeGenerations == null || !isWritable()) {
+            return;
+        }
+
+        synchronized (mStore) {
+            for (int type = TYPE_NAME_USER; type <= TYPE_NAME_LEARN; type++) {
+                int generation = mStore.getGeneration(type);
+                if (mNativeGenerations[type] == generation) {
+                    continue;
+                }
+
+                int index = getWritableIndex(type);
+                if (OpenWnnDictionaryImplJni.clearWritableDictionary(this.mWnnWork, index) < 0) {
+                    continue;
+                }
+                /* add the oldest word first */
+                boolean copied = true;
+                for (OpenWnnDictionaryStore.Entry entry : mStore.getEntries(type)) {
+                    copied &= (OpenWnnDictionaryImplJni.addWordToWritableDictionary(this.mWnnWork, index,
+                            entry.stroke, entry.candidate, entry.posLeft, entry.posRight) == 0);
+                }
+                if (copied) {
+                    mNativeGenerations[type] = generation;
+                    mStore.requestSnapshot(type);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether the native writable dictionary has the current words of {@code mStore}.
+     * <br>
+     * The changes of {@code mStore} are copied into the native dictionary only if this is {@code true}.
+     *
+     * @param type      The type of the words
+     * @return {@code true} if the native dictionary is used and has the current words.
+     */
+    private boolean isNativeSynchronized(int type) {
+        return (mNativeGenerations != null && mNativeGenerations[type] == mStore.getGeneration(type));
+    }
+
+    /**
+     * Record that the native writable dictionary has the current words of {@code mStore}.
+     *
+     * @param type          The type of the words
+     * @param copied    {@code true} if the changes were copied into the native dictionary
+     */
+    private void commitNativeChange(int type, boolean copied) {
+        if (copied) {
+            mNativeGenerations[type] = mStore.getGeneration(type);
+            mStore.requestSnapshot(type);
+        }
+    }
+
+    /**
+     * Get the index of the writable dictionary of a type.
+     *
+     * @param type      The type of the words
+     * @return {@code WnnDictionary.INDEX_USER_DICTIONARY} or {@code WnnDictionary.INDEX_LEARN_DICTIONARY}
+     */
+    private static int getWritableIndex(int type) {
+        return (type == TYPE_NAME_USER) ? WnnDictionary.INDEX_USER_DICTIONARY : WnnDictionary.INDEX_LEARN_DICTIONARY;
+    }
+
+    /**
+     * Get the maximum number of words of a type.
+     *
+     * @param type      The type of the words
+     * @return The maximum number of words
+     */
+    private static int getMaxWords(int type) {
+        return (type == TYPE_NAME_USER) ? MAX_WORDS_IN_USER_DICTIONARY : MAX_WORDS_IN_LEARN_DICTIONARY;
+    }
+
     /**
      * Create the table of writable dictionary.
      *
@@ -308,8 +411,22 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
                 COLUMN_NAME_PREVIOUS_POS_LEFT + " integer, " +
                 COLUMN_NAME_PREVIOUS_POS_RIGHT + " integer)";
 
+        /* The index for writing the journal (also made for the tables created by the older versions) */
+        String indexStr = "create index if not exists " + tableName + "_" + COLUMN_NAME_TYPE + "_" + COLUMN_NAME_STROKE +
+                " on " + tableName + " (" + COLUMN_NAME_TYPE + ", " + COLUMN_NAME_STROKE + ")";
+
         if (mDbDic != null) {
             mDbDic.execSQL(sqlStr);
+            mDbDic.execSQL(indexStr);
+        }
+    }
+
+    /**
+     * Load the words of the writable dictionary into {@code mStore} if not loaded yet.
+     */
+    protected void loadDictionaryStore() {
+        if (mDbDic != null && mStore != null && !mStore.isLoaded()) {
+            mStore.load(mDbDic, TABLE_NAME_DIC);
         }
     }
 
@@ -320,24 +437,19 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
         freeCursor();
 
         if (mDbDic != null) {
-            /* The SQLiteDataBase object must close() before releasing. */
-            mDbDic.close();
+            /* The connection is shared by the store and closed when it becomes idle. */
+            mStore.releaseDatabase(mDbDic);
             mDbDic = null;
-            mDbOpenHelper = null;
         }
     }
 
     /**
-     * Free the {@link SQLiteCursor} of writable dictionary.
+     * Free the search result of writable dictionary.
      */
     protected void freeCursor() {
-        if (mDbCursor != null) {
-            /* The SQLiteCursor object must close() before releasing. */
-            mDbCursor.close();
-            mDbCursor = null;
-
-            mTypeOfQuery = -1;
-        }
+        mSearchResult = null;
+        mSearchIndex = 0;
+        mCountCursor = 0;
     }
 
 
@@ -353,15 +465,35 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
      */
     public void setInUseState(boolean flag) {
         if (flag) {
-            if (mDbDic == null) {
-                mDbOpenHelper = new OpenWnnSQLiteOpenHelper(OpenWnn.getCurrentIme(), mDicFilePath);
-                mDbDic = mDbOpenHelper.getWritableDatabase();
+            if (mDbDic != null && !mDbDic.isOpen()) {
+                /* closed by the store; opened again */
+                mDbDic = null;
+            }
+            if (mDbDic == null && mStore != null) {
+                mDbDic = mStore.acquireDatabase(OpenWnn.getCurrentIme());
+                try {
+                    loadDictionaryStore();
+                } catch (SQLException e) {
+                    /* the words are loaded at the next time */
+                }
             }
+            synchronizeNativeDictionary();
         } else {
             freeDatabase();
         }
     }
 
+    /**
+     * @see jp.co.omronsoft.openwnn.WnnDictionary#createCursor
+     */
+    public WnnDictionary createCursor() {
+        if (this.mWnnWork == 0) {
+            return null;
+        }
+        OpenWnnDictionaryImpl cursor = new OpenWnnDictionaryImpl(this);
+        return cursor.isActive() ? cursor : null;
+    }
+
     /**
      * @see jp.co.omronsoft.openwnn.WnnDictionary#clearDictionary
      */
@@ -369,6 +501,10 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
         if (this.mWnnWork != 0) {
             mFrequencyOffsetOfUserDictionary = -1;
             mFrequencyOffsetOfLearnDictionary = -1;
+            for (int type = TYPE_NAME_USER; type <= TYPE_NAME_LEARN; type++) {
+                mNativeFrequencies[type][0] = -1;
+                mNativeFrequencies[type][1] = -1;
+            }
 
             return OpenWnnDictionaryImplJni.clearDictionaryParameters(this.mWnnWork);
         } else {
@@ -389,6 +525,9 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
                     } else {
                         mFrequencyOffsetOfUserDictionary = high;
                     }
+                    if (mNativeGenerations != null) {
+                        return setNativeDictionaryParameter(TYPE_NAME_USER, base, high);
+                    }
                     return 0;
                 case WnnDictionary.INDEX_LEARN_DICTIONARY:
                     if (base < 0 || high < 0 || base > high
@@ -397,6 +536,9 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
                     } else {
                         mFrequencyOffsetOfLearnDictionary = high;
                     }
+                    if (mNativeGenerations != null) {
+                        return setNativeDictionaryParameter(TYPE_NAME_LEARN, base, high);
+                    }
                     return 0;
                 default:
                     return OpenWnnDictionaryImplJni.setDictionaryParameter(this.mWnnWork, index, base, high);
@@ -407,7 +549,7 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
     }
 
     /**
-     * Query to the database
+     * Search the writable dictionary
      *
      * @param keyString     The key string
      * @param wnnWord      The previous word for link search
@@ -415,115 +557,117 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
      * @param order         The type of sort order
      */
     protected void createQuery(String keyString, WnnWord wnnWord, int operation, int order) {
-        int newTypeOfQuery, maxBindsOfQuery;
-        String querySqlOrderByFreq, querySqlOrderByKey;
-        String[] queryArgs;
-
         if (operation != WnnDictionary.SEARCH_LINK) {
             wnnWord = null;
         }
 
+        freeCursor();
+        if (order != WnnDictionary.ORDER_BY_FREQUENCY && order != WnnDictionary.ORDER_BY_KEY) {
+            return;
+        }
+
         switch (operation) {
             case WnnDictionary.SEARCH_EXACT:
-                querySqlOrderByFreq = mExactQuerySqlOrderByFreq;
-                querySqlOrderByKey = mExactQuerySqlOrderByKey;
-                newTypeOfQuery = 0;
-                queryArgs = mExactQueryArgs;
-
-                queryArgs[0] = keyString;
+                mSearchResult = mStore.searchExact(keyString, order);
                 break;
 
             case WnnDictionary.SEARCH_PREFIX:
             case WnnDictionary.SEARCH_LINK:
-                /* Select the suitable parameters for the query */
-                if (keyString.length() <= FAST_QUERY_LENGTH) {
-                    if (wnnWord != null) {
-                        querySqlOrderByFreq = mFastLinkQuerySqlOrderByFreq;
-                        querySqlOrderByKey = mFastLinkQuerySqlOrderByKey;
-                        newTypeOfQuery = 1;
-                    } else {
-                        querySqlOrderByFreq = mFastPrefixQuerySqlOrderByFreq;
-                        querySqlOrderByKey = mFastPrefixQuerySqlOrderByKey;
-                        newTypeOfQuery = 2;
-                    }
-                    maxBindsOfQuery = FAST_QUERY_LENGTH;
-                    queryArgs = mFastQueryArgs;
-                } else {
-                    if (wnnWord != null) {
-                        querySqlOrderByFreq = mFullLinkQuerySqlOrderByFreq;
-                        querySqlOrderByKey = mFullLinkQuerySqlOrderByKey;
-                        newTypeOfQuery = 3;
-                    } else {
-                        querySqlOrderByFreq = mFullPrefixQuerySqlOrderByFreq;
-                        querySqlOrderByKey = mFullPrefixQuerySqlOrderByKey;
-                        newTypeOfQuery = 4;
-                    }
-                    maxBindsOfQuery = MAX_LENGTH_OF_QUERY;
-                    queryArgs = mFullQueryArgs;
+                String[][] patterns = createPatterns(keyString);
+                if (patterns == null) {
+                    return;
                 }
-
                 if (wnnWord != null) {
-                    /* If link search is enabled, insert information of the previous word */
-                    String[] queryArgsTemp = OpenWnnDictionaryImplJni.createBindArray(this.mWnnWork, keyString, maxBindsOfQuery, MAX_PATTERN_OF_APPROX);
-
-                    queryArgs = new String[queryArgsTemp.length + 2];
-                    for (int i = 0; i < queryArgsTemp.length; i++) {
-                        queryArgs[i + 2] = queryArgsTemp[i];
-                    }
-
-                    queryArgs[0] = wnnWord.stroke;
-                    queryArgs[1] = wnnWord.candidate;
+                    mSearchResult = mStore.searchPrefix(patterns, wnnWord.stroke, wnnWord.candidate, order);
                 } else {
-                    queryArgs = OpenWnnDictionaryImplJni.createBindArray(this.mWnnWork, keyString, maxBindsOfQuery, MAX_PATTERN_OF_APPROX);
+                    mSearchResult = mStore.searchPrefix(patterns, null, null, order);
                 }
                 break;
 
             default:
-                mCountCursor = 0;
-                freeCursor();
                 return;
         }
 
-        /* Create the cursor and set arguments */
-        mCountCursor = 0;
-
-        if (mDbCursor == null || mTypeOfQuery != newTypeOfQuery) {
-            /* If the cursor is not exist or the type of query is changed, compile the query string and query words */
-            freeCursor();
+        mCountCursor = mSearchResult.size();
+    }
 
-            try {
-                switch (order) {
-                    case WnnDictionary.ORDER_BY_FREQUENCY:
-                        mDbCursor = (SQLiteCursor) mDbDic.rawQuery(querySqlOrderByFreq, queryArgs);
-                        break;
-                    case WnnDictionary.ORDER_BY_KEY:
-                        mDbCursor = (SQLiteCursor) mDbDic.rawQuery(querySqlOrderByKey, queryArgs);
-                        break;
-                    default:
-                        return;
+    /**
+     * Create the patterns of each character of the key string.
+     * <br>
+     * The patterns consist of the character and its approximate patterns set to the
+     * search engine (retrieved by {@link OpenWnnDictionaryImplJni#getApproxPattern}).
+     * They are kept for each character until the approximate patterns are changed.
+     *
+     * @param keyString     The key string
+     * @return The patterns of each position; {@code null} if an error occurs.
+     */
+    protected String[][] createPatterns(String keyString) {
+        int length = Math.min(keyString.length(), MAX_LENGTH_OF_QUERY);
+        String[][] patterns = new String[length][];
+        for (int pos = 0; pos < length; pos++) {
+            char c = keyString.charAt(pos);
+            String[] pattern = mApproxPatterns.get(c);
+            if (pattern == null) {
+                String[] approx = OpenWnnDictionaryImplJni.getApproxPattern(this.mWnnWork, String.valueOf(c));
+                if (approx == null) {
+                    return null;
                 }
-            } catch (SQLException e) {
-                return;
+                int count = Math.min(approx.length, MAX_PATTERN_OF_APPROX);
+                pattern = new String[count + 1];
+                pattern[0] = String.valueOf(c);
+                System.arraycopy(approx, 0, pattern, 1, count);
+                mApproxPatterns.put(c, pattern);
             }
+            patterns[pos] = pattern;
+        }
+        return patterns;
+    }
 
-            mTypeOfQuery = newTypeOfQuery;
-        } else {
-            /* If the cursor is exist, bind new arguments and re-query words (DO NOT recompile the query string) */
-            try {
-                mDbCursor.setSelectionArguments(queryArgs);
-                mDbCursor.requery();
-            } catch (SQLException e) {
-                return;
-            }
+    /**
+     * Check whether {@code mStore} is searched by the operation.
+     *
+     * @param operation    The search operation
+     * @return {@code false} if the words are searched in the native writable dictionaries.
+     */
+    protected boolean isStoreSearched(int operation) {
+        return (mNativeGenerations == null || operation == WnnDictionary.SEARCH_LINK
+                || !isNativeSynchronized(TYPE_NAME_USER) || !isNativeSynchronized(TYPE_NAME_LEARN));
+    }
+
+    /**
+     * Set the frequency parameters of a native writable dictionary.
+     *
+     * @param type      The type of the words
+     * @param base      The base frequency
+     * @param high      The maximum frequency
+     * @return 0 if no error occur; <0 if an error occur
+     */
+    private int setNativeDictionaryParameter(int type, int base, int high) {
+        mNativeFrequencies[type][0] = base;
+        mNativeFrequencies[type][1] = high;
+        if (mNativeExcluded) {
+            /* set when the native dictionaries have the words of mStore again */
+            return 0;
         }
+        return OpenWnnDictionaryImplJni.setDictionaryParameter(this.mWnnWork, getWritableIndex(type), base, high);
+    }
 
-        if (mDbCursor != null) {
-            /* If querying is succeed, count the number of words */
-            mCountCursor = mDbCursor.getCount();
-            if (mCountCursor == 0) {
-                /* If no word is retrieved, deactivate the cursor for reduce the resource */
-                mDbCursor.deactivate();
-            }
+    /**
+     * Take the native writable dictionaries out of the search while {@code mStore} is searched
+     * instead of them, and put them back after they have the words of {@code mStore} again.
+     */
+    private void updateNativeDictionaryParameters() {
+        if (mNativeGenerations == null) {
+            return;
+        }
+        boolean exclude = !isNativeSynchronized(TYPE_NAME_USER) || !isNativeSynchronized(TYPE_NAME_LEARN);
+        if (exclude == mNativeExcluded) {
+            return;
+        }
+        mNativeExcluded = exclude;
+        for (int type = TYPE_NAME_USER; type <= TYPE_NAME_LEARN; type++) {
+            OpenWnnDictionaryImplJni.setDictionaryParameter(this.mWnnWork, getWritableIndex(type),
+                    exclude ? -1 : mNativeFrequencies[type][0], exclude ? -1 : mNativeFrequencies[type][1]);
         }
     }
 
@@ -533,31 +677,19 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
     public int searchWord(int operation, int order, String keyString) {
         /* Unset the previous word information */
         OpenWnnDictionaryImplJni.clearResult(this.mWnnWork);
+        updateNativeDictionaryParameters();
 
-        /* Search to user/learn dictionary */
-        if (mDbDic != null && (mFrequencyOffsetOfUserDictionary >= 0 ||
+        /* Search to user/learn dictionary (searched by the engine if the native dictionaries are used) */
+        if (isWritable() && isStoreSearched(operation) && (mFrequencyOffsetOfUserDictionary >= 0 ||
                 mFrequencyOffsetOfLearnDictionary >= 0)) {
-            try {
-                if (keyString.length() > 0) {
-                    createQuery(keyString, null, operation, order);
-                    if (mDbCursor != null) {
-                        mDbCursor.moveToFirst();
-                    }
-                } else {
-                    /* If the key string is "", no word is retrieved */
-                    if (mDbCursor != null) {
-                        mDbCursor.deactivate();
-                    }
-                    mCountCursor = 0;
-                }
-            } catch (SQLException e) {
-                if (mDbCursor != null) {
-                    mDbCursor.deactivate();
-                }
-                mCountCursor = 0;
+            if (keyString.length() > 0) {
+                createQuery(keyString, null, operation, order);
+            } else {
+                /* If the key string is "", no word is retrieved */
+                freeCursor();
             }
         } else {
-            mCountCursor = 0;
+            freeCursor();
         }
 
         /* Search to fixed dictionary */
@@ -580,22 +712,14 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
             return -1;
         }
 
+        updateNativeDictionaryParameters();
+
         /* Search to user/learn dictionary with link information */
-        if (mDbDic != null && (mFrequencyOffsetOfUserDictionary >= 0 ||
+        if (isWritable() && isStoreSearched(operation) && (mFrequencyOffsetOfUserDictionary >= 0 ||
                 mFrequencyOffsetOfLearnDictionary >= 0)) {
-            try {
-                createQuery(keyString, wnnWord, operation, order);
-                if (mDbCursor != null) {
-                    mDbCursor.moveToFirst();
-                }
-            } catch (SQLException e) {
-                if (mDbCursor != null) {
-                    mDbCursor.deactivate();
-                }
-                mCountCursor = 0;
-            }
+            createQuery(keyString, wnnWord, operation, order);
         } else {
-            mCountCursor = 0;
+            freeCursor();
         }
 
         /* Search to fixed dictionary with link information */
@@ -629,55 +753,16 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
      */
     public WnnWord getNextWord(int length) {
         if (this.mWnnWork != 0) {
-            if (mDbDic != null && mDbCursor != null && mCountCursor > 0) {
-                /* If the user/learn dictionary is queried, get the result from the user/learn dictionary */
-                WnnWord result = new WnnWord();
-                try {
-                    /* Skip results if that is not contained the type of search or length of stroke is not equal specified length */
-                    while (mCountCursor > 0 &&
-                            ((mFrequencyOffsetOfUserDictionary < 0 && mDbCursor.getInt(4) == TYPE_NAME_USER) ||
-                                    (mFrequencyOffsetOfLearnDictionary < 0 && mDbCursor.getInt(4) == TYPE_NAME_LEARN) ||
-                                    (length > 0 && mDbCursor.getString(0).length() != length))) {
-                        mDbCursor.moveToNext();
-                        mCountCursor--;
-                    }
-
-                    if (mCountCursor > 0) {
-                        /* Get the information of word */
-                        result.stroke = mDbCursor.getString(0);
-                        result.candidate = mDbCursor.getString(1);
-                        result.partOfSpeech.left = mDbCursor.getInt(2);
-                        result.partOfSpeech.right = mDbCursor.getInt(3);
-
-                        if (mDbCursor.getInt(4) == TYPE_NAME_USER) {
-                            result.frequency = mFrequencyOffsetOfUserDictionary;
-                        } else {
-                            result.frequency = mFrequencyOffsetOfLearnDictionary;
-                        }
-
-                        /* Move cursor to next result. If the next result is not exist, deactivate the cursor */
-                        mDbCursor.moveToNext();
-                        if (--mCountCursor <= 0) {
-                            mDbCursor.deactivate();
-                        }
-
-                        return result;
-                    } else {
-                        /* if no result is found, terminate the searching of user/learn dictionary */
-                        mDbCursor.deactivate();
-                        result = null;
-                    }
-                } catch (SQLException e) {
-                    mDbCursor.deactivate();
-                    mCountCursor = 0;
-                    result = null;
-                }
+            /* If the user/learn dictionary is queried, get the result from the user/learn dictionary */
+            WnnWord result = getNextWordFromDatabase(length);
+            if (result != null) {
+                return result;
             }
 
             /* Get the result from fixed dictionary */
             int res = OpenWnnDictionaryImplJni.getNextWord(this.mWnnWork, length);
             if (res > 0) {
-                WnnWord result = new WnnWord();
+                result = new WnnWord();
                 if (result != null) {
                     result.stroke = OpenWnnDictionaryImplJni.getStroke(this.mWnnWork);
                     result.candidate = OpenWnnDictionaryImplJni.getCandidate(this.mWnnWork);
@@ -699,43 +784,121 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
     }
 
     /**
-     * @see jp.co.omronsoft.openwnn.WnnDictionary#getUserDictionaryWords
+     * @see jp.co.omronsoft.openwnn.WnnDictionary#getNextWords
      */
-    public WnnWord[] getUserDictionaryWords() {
-        if (this.mWnnWork != 0 && mDbDic != null) {
-            int numOfWords, i;
-            SQLiteCursor cursor = null;
+    public WnnWord[] getNextWords(int length, int max) {
+        if (this.mWnnWork == 0 || max <= 0) {
+            return null;
+        }
 
-            try {
-                /* Count all words in the user dictionary */
-                cursor = (SQLiteCursor) mDbDic.query(
-                        TABLE_NAME_DIC,
-                        new String[]{COLUMN_NAME_STROKE, COLUMN_NAME_CANDIDATE},
-                        String.format("%s=%d", COLUMN_NAME_TYPE, TYPE_NAME_USER),
-                        null, null, null, null);
-                numOfWords = cursor.getCount();
-
-                if (numOfWords > 0) {
-                    /* Retrieve all words in the user dictionary */
-                    WnnWord[] words = new WnnWord[numOfWords];
-
-                    cursor.moveToFirst();
-                    for (i = 0; i < numOfWords; i++) {
-                        words[i] = new WnnWord();
-                        words[i].stroke = cursor.getString(0);
-                        words[i].candidate = cursor.getString(1);
-                        cursor.moveToNext();
-                    }
+        WnnWord[] words = new WnnWord[max];
+        int count = 0;
 
-                    return words;
+        /* The words in the user/learn dictionary precede the words in the fixed dictionary */
+        while (count < max) {
+            WnnWord word = getNextWordFromDatabase(length);
+            if (word == null) {
+                break;
+            }
+            words[count++] = word;
+        }
+
+        /* Get the results from fixed dictionary (some words at once) */
+        while (count < max) {
+            int res = OpenWnnDictionaryImplJni.getNextWords(this.mWnnWork, length,
+                    Math.min(max - count, GET_WORDS_BATCH_SIZE), mBatchFrequencies,
+                    mBatchLeftPartOfSpeeches, mBatchRightPartOfSpeeches, mBatchLengths, mBatchStrings);
+            if (res <= 0) {
+                /* No result is found or an error occur (It is regarded as "No result is found".) */
+                break;
+            }
+
+            int offset = 0;
+            for (int i = 0; i < res; i++) {
+                WnnWord word = new WnnWord();
+                word.stroke = new String(mBatchStrings, offset, mBatchLengths[i * 2]);
+                offset += mBatchLengths[i * 2];
+                word.candidate = new String(mBatchStrings, offset, mBatchLengths[i * 2 + 1]);
+                offset += mBatchLengths[i * 2 + 1];
+                word.frequency = mBatchFrequencies[i];
+                word.partOfSpeech.left = mBatchLeftPartOfSpeeches[i];
+                word.partOfSpeech.right = mBatchRightPartOfSpeeches[i];
+                words[count++] = word;
+            }
+        }
+
+        if (count == 0) {
+            return null;
+        } else if (count < max) {
+            WnnWord[] result = new WnnWord[count];
+            System.arraycopy(words, 0, result, 0, count);
+            return result;
+        }
+        return words;
+    }
+
+    /**
+     * Retrieve a searched word information from the user/learn dictionary.
+     *
+     * @param length    >0 if only the result of specified length is retrieved; 0 if no condition exist
+     * @return An instance of WnnWord; null if no more result exists in the user/learn dictionary.
+     */
+    protected WnnWord getNextWordFromDatabase(int length) {
+        if (mSearchResult != null && mCountCursor > 0) {
+            /* Skip results if that is not contained the type of search or length of stroke is not equal specified length */
+            OpenWnnDictionaryStore.Entry entry = mSearchResult.get(mSearchIndex);
+            while ((mFrequencyOffsetOfUserDictionary < 0 && entry.type == TYPE_NAME_USER) ||
+                    (mFrequencyOffsetOfLearnDictionary < 0 && entry.type == TYPE_NAME_LEARN) ||
+                    (length > 0 && entry.stroke.length() != length)) {
+                mSearchIndex++;
+                if (--mCountCursor <= 0) {
+                    /* if no result is found, terminate the searching of user/learn dictionary */
+                    freeCursor();
+                    return null;
                 }
-            } catch (SQLException e) {
-                /* An error occurs */
-                return null;
-            } finally {
-                if (cursor != null) {
-                    cursor.close();
+                entry = mSearchResult.get(mSearchIndex);
+            }
+
+            /* Get the information of word */
+            WnnWord result = new WnnWord();
+            result.stroke = entry.stroke;
+            result.candidate = entry.candidate;
+            result.partOfSpeech.left = entry.posLeft;
+            result.partOfSpeech.right = entry.posRight;
+
+            if (entry.type == TYPE_NAME_USER) {
+                result.frequency = mFrequencyOffsetOfUserDictionary;
+            } else {
+                result.frequency = mFrequencyOffsetOfLearnDictionary;
+            }
+
+            /* Move to next result. If the next result is not exist, release the result */
+            mSearchIndex++;
+            if (--mCountCursor <= 0) {
+                freeCursor();
+            }
+            return result;
+        }
+        return null;
+    }
+
+    /**
+     * @see jp.co.omronsoft.openwnn.WnnDictionary#getUserDictionaryWords
+     */
+    public WnnWord[] getUserDictionaryWords() {
+        if (this.mWnnWork != 0 && isWritable()) {
+            /* Retrieve all words in the user dictionary */
+            ArrayList<OpenWnnDictionaryStore.Entry> entries = mStore.getEntries(TYPE_NAME_USER);
+            int numOfWords = entries.size();
+
+            if (numOfWords > 0) {
+                WnnWord[] words = new WnnWord[numOfWords];
+                for (int i = 0; i < numOfWords; i++) {
+                    words[i] = new WnnWord();
+                    words[i].stroke = entries.get(i).stroke;
+                    words[i].candidate = entries.get(i).candidate;
                 }
+                return words;
             }
         }
         return null;
@@ -745,6 +908,7 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
      * @see jp.co.omronsoft.openwnn.WnnDictionary#clearApproxPattern
      */
     public void clearApproxPattern() {
+        mApproxPatterns.clear();
         if (this.mWnnWork != 0) {
             OpenWnnDictionaryImplJni.clearApproxPatterns(this.mWnnWork);
         }
@@ -754,6 +918,7 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
      * @see jp.co.omronsoft.openwnn.WnnDictionary#setApproxPattern
      */
     public int setApproxPattern(String src, String dst) {
+        mApproxPatterns.clear();
         if (this.mWnnWork != 0) {
             return OpenWnnDictionaryImplJni.setApproxPattern(this.mWnnWork, src, dst);
         } else {
@@ -765,6 +930,7 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
      * @see jp.co.omronsoft.openwnn.WnnDictionary#setApproxPattern
      */
     public int setApproxPattern(int approxPattern) {
+        mApproxPatterns.clear();
         if (this.mWnnWork != 0) {
             return OpenWnnDictionaryImplJni.setApproxPattern(this.mWnnWork, approxPattern);
         } else {
@@ -799,6 +965,30 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
         return result;
     }
 
+    /**
+     * @see jp.co.omronsoft.openwnn.WnnDictionary#getConnectBitMatrix
+     */
+    public WnnConnectMatrix getConnectBitMatrix() {
+        if (this.mWnnWork == 0) {
+            return new WnnConnectMatrix(new byte[1][1]);
+        }
+
+        synchronized (sConnectMatrices) {
+            WnnConnectMatrix matrix = sConnectMatrices.get(mDicLibPath);
+            if (matrix == null) {
+                int lcount = OpenWnnDictionaryImplJni.getNumberOfLeftPOS(this.mWnnWork);
+                int rcount = OpenWnnDictionaryImplJni.getNumberOfRightPOS(this.mWnnWork);
+                byte[] packed = OpenWnnDictionaryImplJni.getConnectBitArray(this.mWnnWork);
+                if (lcount < 0 || rcount < 0 || packed == null) {
+                    return null;
+                }
+                matrix = new WnnConnectMatrix(lcount, rcount, packed);
+                sConnectMatrices.put(mDicLibPath, matrix);
+            }
+            return matrix;
+        }
+    }
+
     /**
      * @see jp.co.omronsoft.openwnn.WnnDictionary#getPOS
      */
@@ -820,8 +1010,8 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
      * @see jp.co.omronsoft.openwnn.WnnDictionary#clearUserDictionary
      */
     public int clearUserDictionary() {
-        if (mDbDic != null) {
-            mDbDic.execSQL(String.format("delete from %s where %s=%d", TABLE_NAME_DIC, COLUMN_NAME_TYPE, TYPE_NAME_USER));
+        if (isWritable()) {
+            clearWords(TYPE_NAME_USER);
         }
 
         /* If no writable dictionary exists, no error occurs. */
@@ -832,8 +1022,8 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
      * @see jp.co.omronsoft.openwnn.WnnDictionary#clearLearnDictionary
      */
     public int clearLearnDictionary() {
-        if (mDbDic != null) {
-            mDbDic.execSQL(String.format("delete from %s where %s=%d", TABLE_NAME_DIC, COLUMN_NAME_TYPE, TYPE_NAME_LEARN));
+        if (isWritable()) {
+            clearWords(TYPE_NAME_LEARN);
         }
 
         /* If no writable dictionary exists, no error occurs. */
@@ -841,79 +1031,82 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
     }
 
     /**
-     * @see jp.co.omronsoft.openwnn.WnnDictionary#addWordToUserDictionary
+     * Remove all words of a type from {@code mStore} and the native writable dictionary.
+     *
+     * @param type      The type of the words
      */
-    public int addWordToUserDictionary(WnnWord[] word) {
-        int result = 0;
+    protected void clearWords(int type) {
+        synchronized (mStore) {
+            mStore.clear(type);
+            boolean copied = (mNativeGenerations != null &&
+                    OpenWnnDictionaryImplJni.clearWritableDictionary(this.mWnnWork, getWritableIndex(type)) >= 0);
+            commitNativeChange(type, copied);
+        }
+    }
 
-        if (mDbDic != null) {
-            SQLiteCursor cursor;
+    /**
+     * Add a word to {@code mStore} and the native writable dictionary.
+     * <br>
+     * This must be called holding the lock of {@code mStore}.
+     *
+     * @param entry     The word
+     * @param copy      {@code true} to copy the word into the native dictionary
+     * @return {@code true} if the word is copied into the native dictionary
+     */
+    protected boolean addWord(OpenWnnDictionaryStore.Entry entry, boolean copy) {
+        mStore.add(entry);
+        /*
+         * The words overwritten in the native learning dictionary (a positive result) are still
+         * in mStore, so the native dictionary does not have the same words any more.
+         */
+        return copy && OpenWnnDictionaryImplJni.addWordToWritableDictionary(this.mWnnWork,
+                getWritableIndex(entry.type), entry.stroke, entry.candidate, entry.posLeft, entry.posRight) == 0;
+    }
 
-            /* Count all words in the user dictionary */
-            cursor = (SQLiteCursor) mDbDic.query(
-                    TABLE_NAME_DIC,
-                    new String[]{COLUMN_NAME_ID},
-                    String.format("%s=%d", COLUMN_NAME_TYPE, TYPE_NAME_USER),
-                    null, null, null, null);
+    /**
+     * Remove a word from {@code mStore} and the native writable dictionary.
+     * <br>
+     * This must be called holding the lock of {@code mStore}.
+     *
+     * @param type          The type of the word
+     * @param stroke        The stroke
+     * @param candidate     The candidate
+     * @param copy          {@code true} to remove the word from the native dictionary
+     * @return {@code true} if the word is removed from the native dictionary
+     */
+    protected boolean removeWord(int type, String stroke, String candidate, boolean copy) {
+        mStore.remove(type, stroke, candidate);
+        return copy && OpenWnnDictionaryImplJni.removeWordFromWritableDictionary(this.mWnnWork,
+                getWritableIndex(type), stroke, candidate) >= 0;
+    }
 
-            int count = cursor.getCount();
-            cursor.close();
+    /**
+     * @see jp.co.omronsoft.openwnn.WnnDictionary#addWordToUserDictionary
+     */
+    public int addWordToUserDictionary(WnnWord[] word) {
+        int result = 0;
 
-            if (count + word.length > MAX_WORDS_IN_USER_DICTIONARY) {
-                /* If user dictionary is full, an error occurs. */
-                return -1;
-            } else {
-                mDbDic.beginTransaction();
-                try {
-                    StringBuilder strokeSQL = new StringBuilder();
-                    StringBuilder candidateSQL = new StringBuilder();
+        if (isWritable()) {
+            synchronized (mStore) {
+                /* Count all words in the user dictionary */
+                int count = mStore.count(TYPE_NAME_USER);
 
+                if (count + word.length > MAX_WORDS_IN_USER_DICTIONARY) {
+                    /* If user dictionary is full, an error occurs. */
+                    return -1;
+                } else {
+                    boolean copied = isNativeSynchronized(TYPE_NAME_USER);
                     for (int index = 0; index < word.length; index++) {
-                        if (word[index].stroke.length() > 0 && word[index].stroke.length() <= MAX_STROKE_LENGTH &&
-                                word[index].candidate.length() > 0 && word[index].candidate.length() <= MAX_CANDIDATE_LENGTH) {
-                            strokeSQL.setLength(0);
-                            candidateSQL.setLength(0);
-                            DatabaseUtils.appendEscapedSQLString(strokeSQL, word[index].stroke);
-                            DatabaseUtils.appendEscapedSQLString(candidateSQL, word[index].candidate);
-
-                            cursor = (SQLiteCursor) mDbDic.query(
-                                    TABLE_NAME_DIC,
-                                    new String[]{COLUMN_NAME_ID},
-                                    String.format("%s=%d and %s=%s and %s=%s",
-                                            COLUMN_NAME_TYPE, TYPE_NAME_USER,
-                                            COLUMN_NAME_STROKE, strokeSQL,
-                                            COLUMN_NAME_CANDIDATE, candidateSQL),
-                                    null, null, null, null);
-
-                            if (cursor.getCount() > 0) {
+                        if (isValidWord(word[index])) {
+                            if (mStore.contains(TYPE_NAME_USER, word[index].stroke, word[index].candidate)) {
                                 /* if the specified word is exist, an error reported and skipped that word. */
                                 result = -2;
                             } else {
-                                ContentValues content = new ContentValues();
-
-                                content.clear();
-                                content.put(COLUMN_NAME_TYPE, TYPE_NAME_USER);
-                                content.put(COLUMN_NAME_STROKE, word[index].stroke);
-                                content.put(COLUMN_NAME_CANDIDATE, word[index].candidate);
-                                content.put(COLUMN_NAME_POS_LEFT, word[index].partOfSpeech.left);
-                                content.put(COLUMN_NAME_POS_RIGHT, word[index].partOfSpeech.right);
-
-                                mDbDic.insert(TABLE_NAME_DIC, null, content);
+                                copied = addWord(createEntry(TYPE_NAME_USER, word[index], null), copied);
                             }
-
-                            cursor.close();
-                            cursor = null;
                         }
                     }
-                    mDbDic.setTransactionSuccessful();
-                } catch (SQLException e) {
-                    /* An error occurs */
-                    return -1;
-                } finally {
-                    mDbDic.endTransaction();
-                    if (cursor != null) {
-                        cursor.close();
-                    }
+                    commitNativeChange(TYPE_NAME_USER, copied);
                 }
             }
         }
@@ -936,35 +1129,16 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
      * @see jp.co.omronsoft.openwnn.WnnDictionary#removeWordFromUserDictionary
      */
     public int removeWordFromUserDictionary(WnnWord[] word) {
-        if (mDbDic != null) {
-            /* Remove the specified word */
-            mDbDic.beginTransaction();
-            try {
-                StringBuilder strokeSQL = new StringBuilder();
-                StringBuilder candidateSQL = new StringBuilder();
-
+        if (isWritable()) {
+            synchronized (mStore) {
+                /* Remove the specified word */
+                boolean copied = isNativeSynchronized(TYPE_NAME_USER);
                 for (int index = 0; index < word.length; index++) {
-                    if (word[index].stroke.length() > 0 && word[index].stroke.length() <= MAX_STROKE_LENGTH &&
-                            word[index].candidate.length() > 0 && word[index].candidate.length() <= MAX_CANDIDATE_LENGTH) {
-                        strokeSQL.setLength(0);
-                        candidateSQL.setLength(0);
-                        DatabaseUtils.appendEscapedSQLString(strokeSQL, word[index].stroke);
-                        DatabaseUtils.appendEscapedSQLString(candidateSQL, word[index].candidate);
-
-                        mDbDic.delete(TABLE_NAME_DIC,
-                                String.format("%s=%d and %s=%s and %s=%s",
-                                        COLUMN_NAME_TYPE, TYPE_NAME_USER,
-                                        COLUMN_NAME_STROKE, strokeSQL,
-                                        COLUMN_NAME_CANDIDATE, candidateSQL),
-                                null);
+                    if (isValidWord(word[index])) {
+                        copied = removeWord(TYPE_NAME_USER, word[index].stroke, word[index].candidate, copied);
                     }
                 }
-                mDbDic.setTransactionSuccessful();
-            } catch (SQLException e) {
-                /* An error occurs */
-                return -1;
-            } finally {
-                mDbDic.endTransaction();
+                commitNativeChange(TYPE_NAME_USER, copied);
             }
         }
 
@@ -991,96 +1165,29 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
 
     /**
      * Learn the word with connection.
+     * <br>
+     * The word is written into the database later in one transaction with
+     * the other words learned at the same time.
      *
      * @param word              The word to learn
      * @param previousWord      The word which is selected previously.
      * @return 0 if success; minus value if fail.
      */
     public int learnWord(WnnWord word, WnnWord previousWord) {
-        if (mDbDic != null) {
-            StringBuilder previousStrokeSQL = new StringBuilder();
-            StringBuilder previousCandidateSQL = new StringBuilder();
-
-            if (previousWord != null &&
-                    previousWord.stroke.length() > 0 && previousWord.stroke.length() <= MAX_STROKE_LENGTH &&
-                    previousWord.candidate.length() > 0 && previousWord.candidate.length() <= MAX_CANDIDATE_LENGTH) {
-                DatabaseUtils.appendEscapedSQLString(previousStrokeSQL, previousWord.stroke);
-                DatabaseUtils.appendEscapedSQLString(previousCandidateSQL, previousWord.candidate);
-                /* If the information of previous word is set, perform the link learning */
-            }
-
-            if (word.stroke.length() > 0 && word.stroke.length() <= MAX_STROKE_LENGTH &&
-                    word.candidate.length() > 0 && word.candidate.length() <= MAX_CANDIDATE_LENGTH) {
-                StringBuilder strokeSQL = new StringBuilder();
-                StringBuilder candidateSQL = new StringBuilder();
-                DatabaseUtils.appendEscapedSQLString(strokeSQL, word.stroke);
-                DatabaseUtils.appendEscapedSQLString(candidateSQL, word.candidate);
-
-                SQLiteCursor cursor;
-
-                /* Count the number of registered words and retrieve that words ascending by the ID */
-                cursor = (SQLiteCursor) mDbDic.query(
-                        TABLE_NAME_DIC,
-                        new String[]{COLUMN_NAME_STROKE, COLUMN_NAME_CANDIDATE},
-                        String.format("%s=%d", COLUMN_NAME_TYPE, TYPE_NAME_LEARN),
-                        null, null, null,
-                        String.format("%s ASC", COLUMN_NAME_ID));
-
-                if (cursor.getCount() >= MAX_WORDS_IN_LEARN_DICTIONARY) {
+        mEvictedStroke = null;
+        if (isWritable() && isValidWord(word)) {
+            synchronized (mStore) {
+                boolean copied = isNativeSynchronized(TYPE_NAME_LEARN);
+                if (mStore.count(TYPE_NAME_LEARN) >= MAX_WORDS_IN_LEARN_DICTIONARY) {
                     /* If a registering space is short, delete the words that contain same stroke and candidate to the oldest word */
-                    mDbDic.beginTransaction();
-                    try {
-                        cursor.moveToFirst();
-
-                        StringBuilder oldestStrokeSQL = new StringBuilder();
-                        StringBuilder oldestCandidateSQL = new StringBuilder();
-                        DatabaseUtils.appendEscapedSQLString(oldestStrokeSQL, cursor.getString(0));
-                        DatabaseUtils.appendEscapedSQLString(oldestCandidateSQL, cursor.getString(1));
-
-                        mDbDic.delete(TABLE_NAME_DIC,
-                                String.format("%s=%d and %s=%s and %s=%s",
-                                        COLUMN_NAME_TYPE, TYPE_NAME_LEARN,
-                                        COLUMN_NAME_STROKE, oldestStrokeSQL,
-                                        COLUMN_NAME_CANDIDATE, oldestCandidateSQL),
-                                null);
-
-                        mDbDic.setTransactionSuccessful();
-                    } catch (SQLException e) {
-                        return -1;
-                    } finally {
-                        mDbDic.endTransaction();
-                        cursor.close();
-                    }
-                } else {
-                    cursor.close();
+                    OpenWnnDictionaryStore.Entry oldest = mStore.getOldest(TYPE_NAME_LEARN);
+                    copied = removeWord(TYPE_NAME_LEARN, oldest.stroke, oldest.candidate, copied);
+                    mEvictedStroke = oldest.stroke;
                 }
 
                 /* learning the word */
-                ContentValues content = new ContentValues();
-
-                content.clear();
-                content.put(COLUMN_NAME_TYPE, TYPE_NAME_LEARN);
-                content.put(COLUMN_NAME_STROKE, word.stroke);
-                content.put(COLUMN_NAME_CANDIDATE, word.candidate);
-                content.put(COLUMN_NAME_POS_LEFT, word.partOfSpeech.left);
-                content.put(COLUMN_NAME_POS_RIGHT, word.partOfSpeech.right);
-                if (previousWord != null) {
-                    content.put(COLUMN_NAME_PREVIOUS_STROKE, previousWord.stroke);
-                    content.put(COLUMN_NAME_PREVIOUS_CANDIDATE, previousWord.candidate);
-                    content.put(COLUMN_NAME_PREVIOUS_POS_LEFT, previousWord.partOfSpeech.left);
-                    content.put(COLUMN_NAME_PREVIOUS_POS_RIGHT, previousWord.partOfSpeech.right);
-                }
-
-                mDbDic.beginTransaction();
-                try {
-                    mDbDic.insert(TABLE_NAME_DIC, null, content);
-                    mDbDic.setTransactionSuccessful();
-                } catch (SQLException e) {
-                    mDbDic.endTransaction();
-                    return -1;
-                } finally {
-                    mDbDic.endTransaction();
-                }
+                copied = addWord(createEntry(TYPE_NAME_LEARN, word, previousWord), copied);
+                commitNativeChange(TYPE_NAME_LEARN, copied);
             }
         }
 
@@ -1088,34 +1195,22 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
         return 0;
     }
 
+    /**
+     * @see jp.co.omronsoft.openwnn.WnnDictionary#getEvictedStroke
+     */
+    public String getEvictedStroke() {
+        return mEvictedStroke;
+    }
+
     /**
      * @see jp.co.omronsoft.openwnn.WnnDictionary#removeWordFromLearnDictionary
      */
     public int removeWordFromLearnDictionary(WnnWord word) {
-        if (mDbDic != null) {
-
-            if (word.stroke.length() > 0 && word.stroke.length() <= MAX_STROKE_LENGTH &&
-                    word.candidate.length() > 0 && word.candidate.length() <= MAX_CANDIDATE_LENGTH) {
-                StringBuilder strokeSQL = new StringBuilder();
-                StringBuilder candidateSQL = new StringBuilder();
-                DatabaseUtils.appendEscapedSQLString(strokeSQL, word.stroke);
-                DatabaseUtils.appendEscapedSQLString(candidateSQL, word.candidate);
-
-                mDbDic.beginTransaction();
-                try {
-                    mDbDic.delete(TABLE_NAME_DIC,
-                            String.format("%s=%d and %s=%s and %s=%s",
-                                    COLUMN_NAME_TYPE, TYPE_NAME_LEARN,
-                                    COLUMN_NAME_STROKE, strokeSQL,
-                                    COLUMN_NAME_CANDIDATE, candidateSQL),
-                            null);
-
-                    mDbDic.setTransactionSuccessful();
-                } catch (SQLException e) {
-                    return -1;
-                } finally {
-                    mDbDic.endTransaction();
-                }
+        if (isWritable() && isValidWord(word)) {
+            synchronized (mStore) {
+                boolean copied = isNativeSynchronized(TYPE_NAME_LEARN);
+                copied = removeWord(TYPE_NAME_LEARN, word.stroke, word.candidate, copied);
+                commitNativeChange(TYPE_NAME_LEARN, copied);
             }
         }
 
@@ -1123,4 +1218,48 @@ public class OpenWnnDictionaryImpl implements WnnDictionary {
         return 0;
     }
 
+    /**
+     * Check whether the writable dictionary is available.
+     *
+     * @return {@code true} if the words of the writable dictionary are loaded.
+     */
+    protected boolean isWritable() {
+        return (mStore != null && mStore.isLoaded());
+    }
+
+    /**
+     * Check the lengths of the stroke and candidate of a word.
+     *
+     * @param word      The word
+     * @return {@code true} if the word can be registered to the writable dictionary.
+     */
+    protected boolean isValidWord(WnnWord word) {
+        return (word.stroke.length() > 0 && word.stroke.length() <= MAX_STROKE_LENGTH &&
+                word.candidate.length() > 0 && word.candidate.length() <= MAX_CANDIDATE_LENGTH);
+    }
+
+    /**
+     * Create a word of the writable dictionary with a new ID.
+     *
+     * @param type              The type of the word
+     * @param word              The word
+     * @param previousWord      The previous word for link learning ({@code null} if no link)
+     * @return The word of the writable dictionary
+     */
+    protected OpenWnnDictionaryStore.Entry createEntry(int type, WnnWord word, WnnWord previousWord) {
+        OpenWnnDictionaryStore.Entry entry = new OpenWnnDictionaryStore.Entry();
+        entry.id = mStore.newId();
+        entry.type = type;
+        entry.stroke = word.stroke;
+        entry.candidate = word.candidate;
+        entry.posLeft = word.partOfSpeech.left;
+        entry.posRight = word.partOfSpeech.right;
+        if (previousWord != null) {
+            entry.prevStroke = previousWord.stroke;
+            entry.prevCandidate = previousWord.candidate;
+            entry.prevPosLeft = previousWord.partOfSpeech.left;
+            entry.prevPosRight = previousWord.partOfSpeech.right;
+        }
+        return entry;
+    }
 }
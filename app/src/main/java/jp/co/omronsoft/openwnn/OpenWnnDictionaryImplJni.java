@@ -182,6 +182,27 @@ public class OpenWnnDictionaryImplJni {
      */
     public static native long createWnnWork(String dicLibPath);
 
+    /**
+     * Create a internal work area with a dictionary image file.
+     * A internal work area is allocated dynamically, and the specified dictionary image file
+     * is mapped into memory read-only.
+     *
+     * @param dicImagePath  The path of the dictionary image file
+     * @return The internal work area or null
+     */
+    public static native long createWnnWorkFromImage(String dicImagePath);
+
+    /**
+     * Create a internal work area which shares the dictionaries of another work area.
+     * The search state is allocated for each work area, so the work areas can be used
+     * on different threads at the same time.  The dictionaries are released when all
+     * the work areas are free.
+     *
+     * @param work      The internal work area whose dictionaries are shared
+     * @return The internal work area or null
+     */
+    public static native long createWnnCursor(long work);
+
     /**
      * Free the internal work area.
      * The specified work area and the loaded dictionary library is free.
@@ -241,6 +262,29 @@ public class OpenWnnDictionaryImplJni {
      */
     public static native int getNextWord(long work, int length);
 
+    /**
+     * Retrieve some word informations at once.
+     * <p>
+     * The words are retrieved in the same order as {@code getNextWord()}, and the word information is
+     * stored to the specified arrays. The stroke and the candidate of each word are packed to {@code strings}
+     * in order, and their lengths are stored to {@code lengths[2 * n]} and {@code lengths[2 * n + 1]}.
+     * The last retrieved word is also stored to the internal work area.
+     *
+     * @see jp.co.omronsoft.openwnn.WnnDictionary#getNextWords
+     * @param work                  The internal work area
+     * @param length                >0 if only the result of specified length is retrieved; 0 if no condition exist
+     * @param max                   The maximum number of words to retrieve
+     * @param frequencies           The array to store the frequencies (at least {@code max} elements)
+     * @param leftPartOfSpeeches    The array to store the parts of speech at left side (at least {@code max} elements)
+     * @param rightPartOfSpeeches   The array to store the parts of speech at right side (at least {@code max} elements)
+     * @param lengths               The array to store the lengths of strings (at least {@code max * 2} elements)
+     * @param strings               The buffer to store the packed strings
+     * @return The number of retrieved words; 0 if no result is retrieved; <0 if an error occur
+     */
+    public static native int getNextWords(long work, int length, int max, int[] frequencies,
+                                          int[] leftPartOfSpeeches, int[] rightPartOfSpeeches,
+                                          int[] lengths, char[] strings);
+
     /**
      * Retrieve the key string from the current word information.
      *
@@ -389,6 +433,19 @@ public class OpenWnnDictionaryImplJni {
      */
     public static native byte[] getConnectArray(long work, int leftPartOfSpeech);
 
+    /**
+     * Retrieve the packed connect matrix
+     * <br>
+     * The rows of the left part of speech 1 to {@link #getNumberOfLeftPOS(long)} are
+     * stored in order.  Each row has {@code (getNumberOfRightPOS(work) + 7) / 8} bytes,
+     * and the right part of speech {@code r} is the bit {@code (0x80 >> ((r - 1) % 8))}
+     * of the byte {@code (r - 1) / 8}.
+     *
+     * @param work                  The internal work area
+     * @return The packed connect matrix; {@code null} if an error occurs.
+     */
+    public static native byte[] getConnectBitArray(long work);
+
     /**
      * Retrieve the number of the part of speeches at left side.
      *
@@ -452,4 +509,74 @@ public class OpenWnnDictionaryImplJni {
      * @return The string for querying
      */
     public static native String createQueryStringBase(long work, int maxBindsOfQuery, int maxPatternOfApprox, String keyColumnName);
+
+    /**
+     * Set the writable dictionary searched by the engine.
+     * <br>
+     * The dictionary is shared with the cursors of the work area.  If the image
+     * is invalid or does not have the size for {@code maxWords}, an empty
+     * dictionary is created.  It is searched after it is set by
+     * {@link #setDictionaryParameter} with the same index.
+     *
+     * @param work          The internal work area
+     * @param index         {@code WnnDictionary.INDEX_USER_DICTIONARY} or {@code WnnDictionary.INDEX_LEARN_DICTIONARY}
+     * @param image         The image got by {@link #getWritableDictionaryImage} ({@code null} to create an empty dictionary)
+     * @param maxWords      The maximum number of words
+     * @return 1 if the image is loaded; 0 if an empty dictionary is created; <0 if an error occur
+     */
+    public static native int setWritableDictionary(long work, int index, byte[] image, int maxWords);
+
+    /**
+     * Add a word to the writable dictionary.
+     * <br>
+     * If the learning dictionary has no room at the next position, the words there are removed.
+     *
+     * @param work          The internal work area
+     * @param index         {@code WnnDictionary.INDEX_USER_DICTIONARY} or {@code WnnDictionary.INDEX_LEARN_DICTIONARY}
+     * @param stroke        The stroke
+     * @param candidate     The candidate
+     * @param left          The part of speech at left side
+     * @param right         The part of speech at right side
+     * @return 0 if success; >0 the number of the words removed from the learning dictionary to make room;
+     *         <0 if an error occur (the word already exists in the user dictionary, etc.)
+     */
+    public static native int addWordToWritableDictionary(long work, int index, String stroke, String candidate, int left, int right);
+
+    /**
+     * Remove a word from the writable dictionary.
+     *
+     * @param work          The internal work area
+     * @param index         {@code WnnDictionary.INDEX_USER_DICTIONARY} or {@code WnnDictionary.INDEX_LEARN_DICTIONARY}
+     * @param stroke        The stroke
+     * @param candidate     The candidate
+     * @return 0 if success (or the word does not exist); <0 if an error occur
+     */
+    public static native int removeWordFromWritableDictionary(long work, int index, String stroke, String candidate);
+
+    /**
+     * Remove all words of the writable dictionary.
+     *
+     * @param work          The internal work area
+     * @param index         {@code WnnDictionary.INDEX_USER_DICTIONARY} or {@code WnnDictionary.INDEX_LEARN_DICTIONARY}
+     * @return 0 if success; <0 if an error occur
+     */
+    public static native int clearWritableDictionary(long work, int index);
+
+    /**
+     * Get the number of words in the writable dictionary.
+     *
+     * @param work          The internal work area
+     * @param index         {@code WnnDictionary.INDEX_USER_DICTIONARY} or {@code WnnDictionary.INDEX_LEARN_DICTIONARY}
+     * @return The number of words; <0 if an error occur
+     */
+    public static native int getWritableDictionaryWordCount(long work, int index);
+
+    /**
+     * Get the image of the writable dictionary.
+     *
+     * @param work          The internal work area
+     * @param index         {@code WnnDictionary.INDEX_USER_DICTIONARY} or {@code WnnDictionary.INDEX_LEARN_DICTIONARY}
+     * @return The image; {@code null} if the dictionary is not set
+     */
+    public static native byte[] getWritableDictionaryImage(long work, int index);
 }
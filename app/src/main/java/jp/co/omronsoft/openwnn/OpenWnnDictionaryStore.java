@@ -0,0 +1,1181 @@
+/*
+ * Copyright (C) 2008-2012  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.omronsoft.openwnn;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * The in-memory image of the writable (user/learning) dictionary.
+ * <br>
+ * All words of a writable dictionary file are loaded once and kept sorted by
+ * the stroke, so the search of {@link OpenWnnDictionaryImpl} is done without
+ * querying the database.  The database is only used to persist the changes.
+ * <br>
+ * The changes are written behind: they are recorded in a journal and written
+ * into the database in one transaction by a background thread.  The learned
+ * words are written after {@code FLUSH_DELAY_MS_LEARN} so that the words of a
+ * sentence are written at once; the other changes are written immediately.
+ * <br>
+ * The database connection (in the write-ahead logging mode) is also shared.
+ * It is opened at the first use and counted by {@link #acquireDatabase} and
+ * {@link #releaseDatabase}; it is closed {@code CLOSE_DELAY_MS_IDLE} after the
+ * last release, or by {@link #closeAll} when the IME is destroyed (then the
+ * journal thread is also quit; it is started again at the next change).
+ * <br>
+ * The words may also be kept in the native writable dictionaries searched by the
+ * engine (see {@link OpenWnnDictionaryImpl#enableNativeWritableDictionary}).  Their
+ * images are saved beside the database file by the journal thread as the snapshots
+ * ({@link #requestSnapshot}); a snapshot is used only if it is tagged with the
+ * current words of the store, so the database remains the master copy.
+ * <br>
+ * One instance is shared by every {@link OpenWnnDictionaryImpl} which uses the same file.
+ *
+ * @author Copyright (C) 2008-2012 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class OpenWnnDictionaryStore {
+    /** The word of the writable dictionary (a row of the database) */
+    public static class Entry {
+        /** The row ID (a bigger ID is a newer word) */
+        public long id;
+        /** The type of the word ({@code TYPE_NAME_USER} or {@code TYPE_NAME_LEARN}) */
+        public int type;
+        /** The stroke */
+        public String stroke;
+        /** The candidate */
+        public String candidate;
+        /** The part of speech at left side */
+        public int posLeft;
+        /** The part of speech at right side */
+        public int posRight;
+        /** The stroke of the previous word ({@code null} if no link) */
+        public String prevStroke;
+        /** The candidate of the previous word ({@code null} if no link) */
+        public String prevCandidate;
+        /** The part of speech at left side of the previous word */
+        public int prevPosLeft;
+        /** The part of speech at right side of the previous word */
+        public int prevPosRight;
+
+        /**
+         * Whether this entry is the same word as the specified one.
+         *
+         * @param type          The type of the word
+         * @param stroke        The stroke
+         * @param candidate     The candidate
+         * @return {@code true} if same.
+         */
+        public boolean isSameWord(int type, String stroke, String candidate) {
+            return this.type == type && this.stroke.equals(stroke) && this.candidate.equals(candidate);
+        }
+    }
+
+    /** The source of the images of the native writable dictionaries */
+    public interface SnapshotSource {
+        /**
+         * Get the image of the native writable dictionary (called holding the lock of the store).
+         *
+         * @param type      The type of the words
+         * @return The image; {@code null} if the dictionary does not have the current words.
+         */
+        byte[] getSnapshot(int type);
+    }
+
+    /** The order of the search result (type DESC, ID DESC) */
+    private static final Comparator<Entry> ORDER_BY_FREQUENCY = new Comparator<Entry>() {
+        public int compare(Entry a, Entry b) {
+            if (a.type != b.type) {
+                return (a.type > b.type) ? -1 : 1;
+            }
+            return (a.id > b.id) ? -1 : ((a.id < b.id) ? 1 : 0);
+        }
+    };
+
+    /** The order of the search result (type DESC, stroke ASC) */
+    private static final Comparator<Entry> ORDER_BY_KEY = new Comparator<Entry>() {
+        public int compare(Entry a, Entry b) {
+            if (a.type != b.type) {
+                return (a.type > b.type) ? -1 : 1;
+            }
+            return a.stroke.compareTo(b.stroke);
+        }
+    };
+
+    /** The order of the index (stroke ASC, ID ASC) */
+    private static final Comparator<Entry> ORDER_OF_INDEX = new Comparator<Entry>() {
+        public int compare(Entry a, Entry b) {
+            int ret = a.stroke.compareTo(b.stroke);
+            if (ret != 0) {
+                return ret;
+            }
+            return (a.id < b.id) ? -1 : ((a.id > b.id) ? 1 : 0);
+        }
+    };
+
+    /** The change recorded in the journal */
+    private static class JournalEntry {
+        /** Definition for {@code JournalEntry.operation} (insert a row) */
+        static final int INSERT = 0;
+        /** Definition for {@code JournalEntry.operation} (delete the rows of a word) */
+        static final int DELETE = 1;
+        /** Definition for {@code JournalEntry.operation} (delete all rows of a type) */
+        static final int CLEAR = 2;
+
+        /** The operation */
+        int operation;
+        /** The type of the word */
+        int type;
+        /** The word to insert; the stroke and candidate to delete */
+        Entry entry;
+
+        /**
+         * Constructor
+         *
+         * @param operation     The operation
+         * @param type          The type of the word
+         * @param entry         The word ({@code null} for {@code CLEAR})
+         */
+        JournalEntry(int operation, int type, Entry entry) {
+            this.operation = operation;
+            this.type = type;
+            this.entry = entry;
+        }
+    }
+
+    /** Delay time(msec.) to write the learned words into the database */
+    private static final int FLUSH_DELAY_MS_LEARN = 1000;
+
+    /** Delay time(msec.) to close the database after the last use */
+    private static final int CLOSE_DELAY_MS_IDLE = 60000;
+
+    /** Message for {@code mFlushHandler} (write the journal into the database) */
+    private static final int MSG_FLUSH = 0;
+
+    /** Message for {@code mFlushHandler} (close the database if not used) */
+    private static final int MSG_CLOSE = 1;
+
+    /** Message for {@code mFlushHandler} (close the database when it is not used, and quit the thread) */
+    private static final int MSG_CLOSE_AND_QUIT = 2;
+
+    /** Message for {@code mFlushHandler} (save the snapshot; {@code arg1} is the type) */
+    private static final int MSG_SNAPSHOT = 3;
+
+    /** The suffixes of the snapshot files for each type */
+    private static final String[] SNAPSHOT_SUFFIX = {".user", ".learn"};
+
+    /** The instances for each dictionary file */
+    private static final HashMap<String, OpenWnnDictionaryStore> sStores = new HashMap<>();
+
+    /** The words sorted by the stroke */
+    private ArrayList<Entry> mIndex = new ArrayList<>();
+
+    /** Whether the words have been loaded from the database */
+    private boolean mLoaded = false;
+
+    /** The words of each type in ascending order of the ID (the oldest word first) */
+    private HashMap<Integer, LinkedHashMap<Long, Entry>> mEntriesByType = new HashMap<>();
+
+    /** The ID given to the next word */
+    private long mNextId = 1;
+
+    /** The path name of writable dictionary */
+    private String mDicFilePath;
+
+    /** The changes not written into the database yet */
+    private ArrayList<JournalEntry> mJournal = new ArrayList<>();
+
+    /** Thread writing the journal into the database */
+    private HandlerThread mFlushThread = null;
+
+    /** {@code Handler} of the thread writing the journal */
+    private Handler mFlushHandler = null;
+
+    /** Lock object for the database connection */
+    private final Object mDatabaseLock = new Object();
+
+    /** The database connection ({@code null} if not opened) */
+    private SQLiteDatabase mDatabase = null;
+
+    /** Number of the users of {@code mDatabase} */
+    private int mDatabaseRefCount = 0;
+
+    /** Whether {@link #closeAll} waits for the last release of {@code mDatabase} */
+    private boolean mClosePending = false;
+
+    /** The context used to open the database */
+    private Context mContext = null;
+
+    /** The compiled statement to insert a row (for {@code mDatabase}) */
+    private SQLiteStatement mInsertStatement = null;
+
+    /** The compiled statement to delete the rows of a word (for {@code mDatabase}) */
+    private SQLiteStatement mDeleteStatement = null;
+
+    /** The compiled statement to delete all rows of a type (for {@code mDatabase}) */
+    private SQLiteStatement mClearStatement = null;
+
+    /** The generations of the words of each type (counted up at every change) */
+    private int[] mGenerations = new int[SNAPSHOT_SUFFIX.length];
+
+    /** The source of the snapshots ({@code null} if not set) */
+    private WeakReference<SnapshotSource> mSnapshotSource = null;
+
+    /**
+     * Constructor
+     *
+     * @param dicFilePath   The path name of writable dictionary
+     */
+    private OpenWnnDictionaryStore(String dicFilePath) {
+        mDicFilePath = dicFilePath;
+    }
+
+    /**
+     * Get the store of the writable dictionary file.
+     *
+     * @param dicFilePath   The path name of writable dictionary
+     * @return The store of the file
+     */
+    public static OpenWnnDictionaryStore getInstance(String dicFilePath) {
+        synchronized (sStores) {
+            OpenWnnDictionaryStore store = sStores.get(dicFilePath);
+            if (store == null) {
+                store = new OpenWnnDictionaryStore(dicFilePath);
+                sStores.put(dicFilePath, store);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Close the databases of all stores.
+     * <br>
+     * The journals not written yet are written before closing.  A database still
+     * used is closed at its last release.
+     */
+    public static void closeAll() {
+        synchronized (sStores) {
+            for (OpenWnnDictionaryStore store : sStores.values()) {
+                store.requestClose();
+            }
+        }
+    }
+
+    /**
+     * Get the database connection of the writable dictionary.
+     * <br>
+     * The connection is opened if not opened yet.  It must be released by
+     * {@link #releaseDatabase} after use.
+     *
+     * @param context   The context ({@code null} to use the context of the last open)
+     * @return The database
+     * @throws SQLException if the database cannot be opened
+     */
+    public SQLiteDatabase acquireDatabase(Context context) {
+        synchronized (mDatabaseLock) {
+            if (context != null) {
+                mContext = context;
+            }
+            if (mDatabase == null || !mDatabase.isOpen()) {
+                OpenWnnSQLiteOpenHelper helper = new OpenWnnSQLiteOpenHelper(mContext, mDicFilePath);
+                helper.setWriteAheadLoggingEnabled(true);
+                mDatabase = helper.getWritableDatabase();
+                mDatabaseRefCount = 0;
+                mInsertStatement = null;
+            }
+            mDatabaseRefCount++;
+            return mDatabase;
+        }
+    }
+
+    /**
+     * Release the database connection got by {@link #acquireDatabase}.
+     * <br>
+     * The connection is closed after {@code CLOSE_DELAY_MS_IDLE} if it is not used again.
+     *
+     * @param db    The database
+     */
+    public void releaseDatabase(SQLiteDatabase db) {
+        synchronized (mDatabaseLock) {
+            if (db != mDatabase || mDatabaseRefCount == 0) {
+                /* already closed */
+                return;
+            }
+            if (--mDatabaseRefCount == 0) {
+                Handler handler = getFlushHandler();
+                handler.removeMessages(MSG_CLOSE);
+                if (mClosePending) {
+                    /* requested by closeAll() while it was used */
+                    handler.sendEmptyMessage(MSG_CLOSE_AND_QUIT);
+                } else {
+                    handler.sendEmptyMessageDelayed(MSG_CLOSE, CLOSE_DELAY_MS_IDLE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Request to write the journal and close the database (by {@link #closeAll}).
+     */
+    private void requestClose() {
+        Handler handler;
+        synchronized (this) {
+            if (mFlushHandler == null) {
+                /* neither the database nor the journal thread is used */
+                return;
+            }
+            handler = mFlushHandler;
+        }
+        for (int type = 0; type < SNAPSHOT_SUFFIX.length; type++) {
+            if (handler.hasMessages(MSG_SNAPSHOT, SNAPSHOT_SUFFIX[type])) {
+                handler.removeMessages(MSG_SNAPSHOT, SNAPSHOT_SUFFIX[type]);
+                handler.sendMessage(handler.obtainMessage(MSG_SNAPSHOT, type, 0, SNAPSHOT_SUFFIX[type]));
+            }
+        }
+
+        handler.removeMessages(MSG_FLUSH);
+        handler.removeMessages(MSG_CLOSE);
+        handler.sendEmptyMessage(MSG_FLUSH);
+        handler.sendEmptyMessage(MSG_CLOSE_AND_QUIT);
+    }
+
+    /**
+     * Close the database and quit the journal thread (on the journal thread).
+     * <br>
+     * If the database is used, they are done at the last release of it.
+     *
+     * @param handler   The handler which has received the request
+     */
+    private void closeAndQuit(Handler handler) {
+        synchronized (mDatabaseLock) {
+            if (mDatabaseRefCount > 0) {
+                mClosePending = true;
+                return;
+            }
+            mClosePending = false;
+            closeDatabase();
+        }
+
+        synchronized (this) {
+            if (handler != mFlushHandler
+                    || handler.hasMessages(MSG_FLUSH) || handler.hasMessages(MSG_SNAPSHOT)) {
+                /* already quit, or changed after the request (quit at the next request) */
+                return;
+            }
+            mFlushThread.quitSafely();
+            mFlushThread = null;
+            mFlushHandler = null;
+        }
+    }
+
+    /**
+     * Close the database if it is not used (on the journal thread).
+     */
+    private void closeDatabase() {
+        synchronized (mDatabaseLock) {
+            if (mDatabase == null || mDatabaseRefCount > 0) {
+                return;
+            }
+            mDatabase.close();
+            mDatabase = null;
+            mDatabaseRefCount = 0;
+            mInsertStatement = null;
+            mDeleteStatement = null;
+            mClearStatement = null;
+        }
+    }
+
+    /**
+     * Whether the words have been loaded from the database.
+     *
+     * @return {@code true} if loaded.
+     */
+    public synchronized boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * Load all words from the database.
+     *
+     * @param db        The database
+     * @param table     The table name of writable dictionary
+     * @throws SQLException if an error occurs
+     */
+    public synchronized void load(SQLiteDatabase db, String table) {
+        ArrayList<Entry> index = new ArrayList<>();
+        long maxId = 0;
+
+        Cursor cursor = db.query(table,
+                new String[]{OpenWnnDictionaryImpl.COLUMN_NAME_ID,
+                        OpenWnnDictionaryImpl.COLUMN_NAME_TYPE,
+                        OpenWnnDictionaryImpl.COLUMN_NAME_STROKE,
+                        OpenWnnDictionaryImpl.COLUMN_NAME_CANDIDATE,
+                        OpenWnnDictionaryImpl.COLUMN_NAME_POS_LEFT,
+                        OpenWnnDictionaryImpl.COLUMN_NAME_POS_RIGHT,
+                        OpenWnnDictionaryImpl.COLUMN_NAME_PREVIOUS_STROKE,
+                        OpenWnnDictionaryImpl.COLUMN_NAME_PREVIOUS_CANDIDATE,
+                        OpenWnnDictionaryImpl.COLUMN_NAME_PREVIOUS_POS_LEFT,
+                        OpenWnnDictionaryImpl.COLUMN_NAME_PREVIOUS_POS_RIGHT},
+                null, null, null, null, null);
+        try {
+            for (boolean exist = cursor.moveToFirst(); exist; exist = cursor.moveToNext()) {
+                Entry entry = new Entry();
+                entry.id = cursor.getLong(0);
+                entry.type = cursor.getInt(1);
+                entry.stroke = cursor.getString(2);
+                entry.candidate = cursor.getString(3);
+                entry.posLeft = cursor.getInt(4);
+                entry.posRight = cursor.getInt(5);
+                entry.prevStroke = cursor.getString(6);
+                entry.prevCandidate = cursor.getString(7);
+                entry.prevPosLeft = cursor.getInt(8);
+                entry.prevPosRight = cursor.getInt(9);
+                if (entry.stroke == null || entry.candidate == null) {
+                    continue;
+                }
+                index.add(entry);
+                if (entry.id > maxId) {
+                    maxId = entry.id;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Collections.sort(index, ORDER_BY_FREQUENCY);
+        mEntriesByType.clear();
+        for (int i = index.size() - 1; i >= 0; i--) {
+            Entry entry = index.get(i);
+            getEntriesByType(entry.type).put(entry.id, entry);
+        }
+
+        Collections.sort(index, ORDER_OF_INDEX);
+        mIndex = index;
+        mNextId = maxId + 1;
+        mLoaded = true;
+        for (int type = 0; type < mGenerations.length; type++) {
+            mGenerations[type]++;
+        }
+    }
+
+    /**
+     * Give a new ID.
+     *
+     * @return The ID bigger than the IDs of all words
+     */
+    public synchronized long newId() {
+        return mNextId++;
+    }
+
+    /**
+     * Add a word.
+     *
+     * @param entry     The word to add (its ID is given by {@link #newId()})
+     */
+    public synchronized void add(Entry entry) {
+        if (entry.id >= mNextId) {
+            mNextId = entry.id + 1;
+        }
+        int pos = Collections.binarySearch(mIndex, entry, ORDER_OF_INDEX);
+        mIndex.add((pos < 0) ? (-pos - 1) : pos, entry);
+        getEntriesByType(entry.type).put(entry.id, entry);
+        updateGeneration(entry.type);
+
+        mJournal.add(new JournalEntry(JournalEntry.INSERT, entry.type, entry));
+        requestFlush(entry.type);
+    }
+
+    /**
+     * Remove all rows of a word.
+     *
+     * @param type          The type of the word
+     * @param stroke        The stroke
+     * @param candidate     The candidate
+     * @return The number of removed rows
+     */
+    public synchronized int remove(int type, String stroke, String candidate) {
+        int removed = 0;
+        LinkedHashMap<Long, Entry> entries = getEntriesByType(type);
+        for (int i = lowerBound(stroke); i < mIndex.size(); ) {
+            Entry entry = mIndex.get(i);
+            if (!entry.stroke.equals(stroke)) {
+                break;
+            }
+            if (entry.isSameWord(type, stroke, candidate)) {
+                mIndex.remove(i);
+                entries.remove(entry.id);
+                removed++;
+            } else {
+                i++;
+            }
+        }
+        updateGeneration(type);
+
+        /* the rows not written yet need not to be inserted */
+        Iterator<JournalEntry> it = mJournal.iterator();
+        while (it.hasNext()) {
+            JournalEntry op = it.next();
+            if (op.operation == JournalEntry.INSERT && op.entry.isSameWord(type, stroke, candidate)) {
+                it.remove();
+            }
+        }
+        Entry word = new Entry();
+        word.type = type;
+        word.stroke = stroke;
+        word.candidate = candidate;
+        mJournal.add(new JournalEntry(JournalEntry.DELETE, type, word));
+        requestFlush(type);
+        return removed;
+    }
+
+    /**
+     * Remove all words of a type.
+     *
+     * @param type      The type of the words
+     */
+    public synchronized void clear(int type) {
+        ArrayList<Entry> index = new ArrayList<>(mIndex.size());
+        for (Entry entry : mIndex) {
+            if (entry.type != type) {
+                index.add(entry);
+            }
+        }
+        mIndex = index;
+        getEntriesByType(type).clear();
+        updateGeneration(type);
+
+        /* the changes not written yet are overwritten */
+        Iterator<JournalEntry> it = mJournal.iterator();
+        while (it.hasNext()) {
+            if (it.next().type == type) {
+                it.remove();
+            }
+        }
+        mJournal.add(new JournalEntry(JournalEntry.CLEAR, type, null));
+        requestFlush(type);
+    }
+
+    /**
+     * Get the number of words of a type.
+     *
+     * @param type      The type of the words
+     * @return The number of rows
+     */
+    public synchronized int count(int type) {
+        return getEntriesByType(type).size();
+    }
+
+    /**
+     * Get the generation of the words of a type.
+     * <br>
+     * The generation is changed whenever the words of the type are changed.
+     *
+     * @param type      The type of the words
+     * @return The generation
+     */
+    public synchronized int getGeneration(int type) {
+        return mGenerations[type];
+    }
+
+    /**
+     * Count up the generation of the words of a type.
+     *
+     * @param type      The type of the words
+     */
+    private void updateGeneration(int type) {
+        if (0 <= type && type < mGenerations.length) {
+            mGenerations[type]++;
+        }
+    }
+
+    /**
+     * Get the oldest word of a type.
+     *
+     * @param type      The type of the words
+     * @return The word which has the smallest ID; {@code null} if no word exists.
+     */
+    public synchronized Entry getOldest(int type) {
+        Iterator<Entry> it = getEntriesByType(type).values().iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /**
+     * Check whether a word exists.
+     *
+     * @param type          The type of the word
+     * @param stroke        The stroke
+     * @param candidate     The candidate
+     * @return {@code true} if exists.
+     */
+    public synchronized boolean contains(int type, String stroke, String candidate) {
+        for (int i = lowerBound(stroke); i < mIndex.size(); i++) {
+            Entry entry = mIndex.get(i);
+            if (!entry.stroke.equals(stroke)) {
+                break;
+            }
+            if (entry.isSameWord(type, stroke, candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the words of a type.
+     *
+     * @param type      The type of the words
+     * @return The words in ascending order of the ID
+     */
+    public synchronized ArrayList<Entry> getEntries(int type) {
+        return new ArrayList<>(getEntriesByType(type).values());
+    }
+
+    /**
+     * Set the source of the snapshots.
+     * <br>
+     * The source is referred weakly; the snapshots are not saved after it is collected.
+     *
+     * @param source    The source ({@code null} to stop saving the snapshots)
+     */
+    public synchronized void setSnapshotSource(SnapshotSource source) {
+        mSnapshotSource = (source != null) ? new WeakReference<>(source) : null;
+    }
+
+    /**
+     * Request to save the snapshot of a type.
+     * <br>
+     * The snapshot of the learned words is saved after {@code FLUSH_DELAY_MS_LEARN}
+     * as the journal is; the other snapshots are saved immediately.
+     *
+     * @param type      The type of the words
+     */
+    public void requestSnapshot(int type) {
+        Handler handler = getFlushHandler();
+        Object token = SNAPSHOT_SUFFIX[type];
+        if (type != OpenWnnDictionaryImpl.TYPE_NAME_LEARN) {
+            handler.removeMessages(MSG_SNAPSHOT, token);
+            handler.sendMessage(handler.obtainMessage(MSG_SNAPSHOT, type, 0, token));
+        } else if (!handler.hasMessages(MSG_SNAPSHOT, token)) {
+            handler.sendMessageDelayed(handler.obtainMessage(MSG_SNAPSHOT, type, 0, token), FLUSH_DELAY_MS_LEARN);
+        }
+    }
+
+    /**
+     * Read the snapshot of a type.
+     *
+     * @param type      The type of the words
+     * @return The image of the native writable dictionary; {@code null} if the snapshot
+     *         does not exist or it does not have the current words.
+     */
+    public synchronized byte[] readSnapshot(int type) {
+        if (!mLoaded) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(mDicFilePath + SNAPSHOT_SUFFIX[type]));
+            long signature = in.readLong();
+            int count = in.readInt();
+            if (signature != getSignature(type) || count != count(type)) {
+                return null;
+            }
+            byte[] image = new byte[in.readInt()];
+            in.readFully(image);
+            return image;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Save the snapshot of a type (on the journal thread).
+     * <br>
+     * The snapshot is tagged with the signature and the number of the words of the
+     * store at the time.  It is written into a
+     * temporary file and renamed not to leave a broken file.
+     *
+     * @param type      The type of the words
+     */
+    private void writeSnapshot(int type) {
+        byte[] image;
+        long signature;
+        int count;
+        synchronized (this) {
+            SnapshotSource source = (mSnapshotSource != null) ? mSnapshotSource.get() : null;
+            if (source == null || !mLoaded) {
+                return;
+            }
+            image = source.getSnapshot(type);
+            if (image == null) {
+                return;
+            }
+            signature = getSignature(type);
+            count = count(type);
+        }
+
+        File file = new File(mDicFilePath + SNAPSHOT_SUFFIX[type]);
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(temp));
+            out.writeLong(signature);
+            out.writeInt(count);
+            out.writeInt(image.length);
+            out.write(image);
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            Log.e("OpenWnn", "OpenWnnDictionaryStore:writeSnapshot " + e.toString());
+            temp.delete();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the signature of the words of a type.
+     *
+     * @param type      The type of the words
+     * @return The hash of the IDs, strokes and candidates of the words in ascending order of the ID
+     */
+    private long getSignature(int type) {
+        long signature = 0;
+        for (Entry entry : getEntriesByType(type).values()) {
+            signature = signature * 31 + entry.id;
+            signature = signature * 31 + entry.stroke.hashCode();
+            signature = signature * 31 + entry.candidate.hashCode();
+        }
+        return signature;
+    }
+
+    /**
+     * Get the words of a type in ascending order of the ID.
+     *
+     * @param type      The type of the words
+     * @return The map of the ID to the word
+     */
+    private LinkedHashMap<Long, Entry> getEntriesByType(int type) {
+        LinkedHashMap<Long, Entry> entries = mEntriesByType.get(type);
+        if (entries == null) {
+            entries = new LinkedHashMap<>();
+            mEntriesByType.put(type, entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Search words whose stroke is equal to the key.
+     *
+     * @param key       The key string
+     * @param order     {@code WnnDictionary.ORDER_BY_FREQUENCY} or {@code WnnDictionary.ORDER_BY_KEY}
+     * @return The words found (no duplicate)
+     */
+    public synchronized ArrayList<Entry> searchExact(String key, int order) {
+        ArrayList<Entry> result = new ArrayList<>();
+        for (int i = lowerBound(key); i < mIndex.size(); i++) {
+            Entry entry = mIndex.get(i);
+            if (!entry.stroke.equals(key)) {
+                break;
+            }
+            result.add(entry);
+        }
+        return distinct(result, order);
+    }
+
+    /**
+     * Search words by the patterns of each character of the key.
+     * <br>
+     * {@code patterns[i]} is the list of strings which may appear at the position {@code i}
+     * of the stroke (the character of the key and its approximate patterns).  ASCII letters
+     * are compared ignoring the case, as the {@code LIKE} operator of the database does.
+     *
+     * @param patterns          The patterns of each position
+     * @param prevStroke        The stroke of the previous word ({@code null} if not link search)
+     * @param prevCandidate     The candidate of the previous word ({@code null} if not link search)
+     * @param order             {@code WnnDictionary.ORDER_BY_FREQUENCY} or {@code WnnDictionary.ORDER_BY_KEY}
+     * @return The words found (no duplicate)
+     */
+    public synchronized ArrayList<Entry> searchPrefix(String[][] patterns, String prevStroke,
+                                                      String prevCandidate, int order) {
+        ArrayList<Entry> result = new ArrayList<>();
+
+        if (patterns.length == 0) {
+            for (Entry entry : mIndex) {
+                if (isLinked(entry, prevStroke, prevCandidate)) {
+                    result.add(entry);
+                }
+            }
+        } else {
+            /* scan only the ranges of the first characters */
+            HashSet<Character> heads = new HashSet<>();
+            for (String pattern : patterns[0]) {
+                char c = pattern.charAt(0);
+                heads.add(c);
+                heads.add(toOtherCase(c));
+            }
+            for (char head : heads) {
+                for (int i = lowerBound(String.valueOf(head)); i < mIndex.size(); i++) {
+                    Entry entry = mIndex.get(i);
+                    if (entry.stroke.length() == 0 || entry.stroke.charAt(0) != head) {
+                        break;
+                    }
+                    if (isLinked(entry, prevStroke, prevCandidate) && matches(entry.stroke, patterns)) {
+                        result.add(entry);
+                    }
+                }
+            }
+        }
+        return distinct(result, order);
+    }
+
+    /**
+     * Request to write the journal into the database.
+     *
+     * @param type      The type of the changed word
+     */
+    private void requestFlush(int type) {
+        Handler handler = getFlushHandler();
+        if (type != OpenWnnDictionaryImpl.TYPE_NAME_LEARN) {
+            handler.removeMessages(MSG_FLUSH);
+            handler.sendEmptyMessage(MSG_FLUSH);
+        } else if (!handler.hasMessages(MSG_FLUSH)) {
+            handler.sendEmptyMessageDelayed(MSG_FLUSH, FLUSH_DELAY_MS_LEARN);
+        }
+    }
+
+    /**
+     * Get the {@code Handler} of the journal thread (the thread is started if not started yet).
+     *
+     * @return The handler
+     */
+    private synchronized Handler getFlushHandler() {
+        if (mFlushHandler == null) {
+            mFlushThread = new HandlerThread("OpenWnnDictionaryJournal");
+            mFlushThread.start();
+            mFlushHandler = new Handler(mFlushThread.getLooper()) {
+                @Override
+                public void handleMessage(Message msg) {
+                    switch (msg.what) {
+                        case MSG_FLUSH:
+                            flushJournal();
+                            break;
+
+                        case MSG_CLOSE:
+                            closeDatabase();
+                            break;
+
+                        case MSG_CLOSE_AND_QUIT:
+                            closeAndQuit(this);
+                            break;
+
+                        case MSG_SNAPSHOT:
+                            writeSnapshot(msg.arg1);
+                            break;
+
+                        default:
+                            break;
+                    }
+                }
+            };
+        }
+        return mFlushHandler;
+    }
+
+    /**
+     * Write the journal into the database in one transaction (on the journal thread).
+     */
+    private void flushJournal() {
+        ArrayList<JournalEntry> journal;
+        synchronized (this) {
+            if (mJournal.isEmpty()) {
+                return;
+            }
+            journal = mJournal;
+            mJournal = new ArrayList<>();
+        }
+
+        SQLiteDatabase db = null;
+        try {
+            synchronized (mDatabaseLock) {
+                if (mContext == null && OpenWnn.getCurrentIme() == null) {
+                    /* retry at the next change */
+                    synchronized (this) {
+                        journal.addAll(mJournal);
+                        mJournal = journal;
+                    }
+                    return;
+                }
+                db = acquireDatabase(OpenWnn.getCurrentIme());
+                if (mInsertStatement == null) {
+                    compileStatements(db);
+                }
+            }
+
+            db.beginTransaction();
+            try {
+                for (JournalEntry op : journal) {
+                    switch (op.operation) {
+                        case JournalEntry.INSERT:
+                            bindEntry(mInsertStatement, op.entry);
+                            mInsertStatement.executeInsert();
+                            break;
+
+                        case JournalEntry.DELETE:
+                            mDeleteStatement.bindLong(1, op.type);
+                            mDeleteStatement.bindString(2, op.entry.stroke);
+                            mDeleteStatement.bindString(3, op.entry.candidate);
+                            mDeleteStatement.executeUpdateDelete();
+                            break;
+
+                        case JournalEntry.CLEAR:
+                            mClearStatement.bindLong(1, op.type);
+                            mClearStatement.executeUpdateDelete();
+                            break;
+
+                        default:
+                            break;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException e) {
+            Log.e("OpenWnn", "OpenWnnDictionaryStore:flushJournal " + e.toString());
+        } finally {
+            if (db != null) {
+                releaseDatabase(db);
+            }
+        }
+    }
+
+    /**
+     * Compile the statements to write the journal.
+     * <br>
+     * The statements use the index over the type and the stroke
+     * (see {@link OpenWnnDictionaryImpl#createDictionaryTable}).
+     *
+     * @param db    The database
+     */
+    private void compileStatements(SQLiteDatabase db) {
+        String table = OpenWnnDictionaryImpl.TABLE_NAME_DIC;
+
+        mInsertStatement = db.compileStatement("insert into " + table + " ("
+                + OpenWnnDictionaryImpl.COLUMN_NAME_ID + ", "
+                + OpenWnnDictionaryImpl.COLUMN_NAME_TYPE + ", "
+                + OpenWnnDictionaryImpl.COLUMN_NAME_STROKE + ", "
+                + OpenWnnDictionaryImpl.COLUMN_NAME_CANDIDATE + ", "
+                + OpenWnnDictionaryImpl.COLUMN_NAME_POS_LEFT + ", "
+                + OpenWnnDictionaryImpl.COLUMN_NAME_POS_RIGHT + ", "
+                + OpenWnnDictionaryImpl.COLUMN_NAME_PREVIOUS_STROKE + ", "
+                + OpenWnnDictionaryImpl.COLUMN_NAME_PREVIOUS_CANDIDATE + ", "
+                + OpenWnnDictionaryImpl.COLUMN_NAME_PREVIOUS_POS_LEFT + ", "
+                + OpenWnnDictionaryImpl.COLUMN_NAME_PREVIOUS_POS_RIGHT
+                + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+
+        mDeleteStatement = db.compileStatement("delete from " + table + " where "
+                + OpenWnnDictionaryImpl.COLUMN_NAME_TYPE + " = ? and "
+                + OpenWnnDictionaryImpl.COLUMN_NAME_STROKE + " = ? and "
+                + OpenWnnDictionaryImpl.COLUMN_NAME_CANDIDATE + " = ?");
+
+        mClearStatement = db.compileStatement("delete from " + table + " where "
+                + OpenWnnDictionaryImpl.COLUMN_NAME_TYPE + " = ?");
+    }
+
+    /**
+     * Bind a word to the insert statement.
+     *
+     * @param statement     The insert statement
+     * @param entry         The word of the writable dictionary
+     */
+    private static void bindEntry(SQLiteStatement statement, Entry entry) {
+        statement.clearBindings();
+        statement.bindLong(1, entry.id);
+        statement.bindLong(2, entry.type);
+        statement.bindString(3, entry.stroke);
+        statement.bindString(4, entry.candidate);
+        statement.bindLong(5, entry.posLeft);
+        statement.bindLong(6, entry.posRight);
+        if (entry.prevStroke != null) {
+            statement.bindString(7, entry.prevStroke);
+            statement.bindString(8, entry.prevCandidate);
+            statement.bindLong(9, entry.prevPosLeft);
+            statement.bindLong(10, entry.prevPosRight);
+        }
+    }
+
+    /**
+     * Check the link information of a word.
+     *
+     * @param entry             The word
+     * @param prevStroke        The stroke of the previous word ({@code null} if not link search)
+     * @param prevCandidate     The candidate of the previous word ({@code null} if not link search)
+     * @return {@code true} if the word follows the previous word or it is not link search.
+     */
+    private static boolean isLinked(Entry entry, String prevStroke, String prevCandidate) {
+        if (prevStroke == null) {
+            return true;
+        }
+        return prevStroke.equals(entry.prevStroke) && prevCandidate.equals(entry.prevCandidate);
+    }
+
+    /**
+     * Check whether a stroke matches the patterns.
+     *
+     * @param stroke        The stroke
+     * @param patterns      The patterns of each position
+     * @return {@code true} if the stroke matches the patterns of all positions.
+     */
+    private static boolean matches(String stroke, String[][] patterns) {
+        for (int pos = 0; pos < patterns.length; pos++) {
+            boolean found = false;
+            for (String pattern : patterns[pos]) {
+                if (regionMatches(stroke, pos, pattern)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compare a region of the stroke ignoring the case of ASCII letters.
+     *
+     * @param stroke        The stroke
+     * @param offset        The start position in the stroke
+     * @param pattern       The string to compare
+     * @return {@code true} if the region matches.
+     */
+    private static boolean regionMatches(String stroke, int offset, String pattern) {
+        int len = pattern.length();
+        if (offset + len > stroke.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            char a = stroke.charAt(offset + i);
+            char b = pattern.charAt(i);
+            if (a != b && a != toOtherCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the other case of an ASCII letter.
+     *
+     * @param c     The character
+     * @return The other case of the letter; {@code c} itself if it is not an ASCII letter.
+     */
+    private static char toOtherCase(char c) {
+        if ('a' <= c && c <= 'z') {
+            return (char) (c - 'a' + 'A');
+        } else if ('A' <= c && c <= 'Z') {
+            return (char) (c - 'A' + 'a');
+        }
+        return c;
+    }
+
+    /**
+     * Get the first position in the index whose stroke is not less than the key.
+     *
+     * @param key       The key string
+     * @return The position in the index
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = mIndex.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mIndex.get(mid).stroke.compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Sort the words and remove the duplicates.
+     * <br>
+     * The words which have the same type, stroke, candidate and parts of speech are
+     * regarded as duplicates; the newest one is left.
+     *
+     * @param words     The words
+     * @param order     {@code WnnDictionary.ORDER_BY_FREQUENCY} or {@code WnnDictionary.ORDER_BY_KEY}
+     * @return The sorted words
+     */
+    private static ArrayList<Entry> distinct(ArrayList<Entry> words, int order) {
+        Collections.sort(words, ORDER_BY_FREQUENCY);
+
+        ArrayList<Entry> result = new ArrayList<>(words.size());
+        HashSet<String> keys = new HashSet<>();
+        for (Entry entry : words) {
+            String key = entry.type + "\t" + entry.posLeft + "\t" + entry.posRight + "\t" +
+                    entry.stroke + "\t" + entry.candidate;
+            if (keys.add(key)) {
+                result.add(entry);
+            }
+        }
+
+        if (order == WnnDictionary.ORDER_BY_KEY) {
+            Collections.sort(result, ORDER_BY_KEY);
+        }
+        return result;
+    }
+}
@@ -141,6 +141,12 @@ public class OpenWnnJAJP extends OpenWnn {
     /** Message for {@code mHandler} (close) */
     private static final int MSG_CLOSE = 2;
 
+    /** Message for {@code mHandler} (display the result of the prediction worker) */
+    private static final int MSG_PREDICTION_FINISHED = 3;
+
+    /** Message for {@code mHandler} (display the rest of the candidates read by the prediction worker) */
+    private static final int MSG_PREDICTION_CONTINUED = 4;
+
     /** Delay time(msec.) to start prediction after key input when the candidates view is not shown. */
     private static final int PREDICTION_DELAY_MS_1ST = 200;
 
@@ -400,6 +406,15 @@ public class OpenWnnJAJP extends OpenWnn {
                 case MSG_PREDICTION:
                     updatePrediction();
                     break;
+                case MSG_PREDICTION_FINISHED:
+                    if (mPredictionWorker.isCurrent(msg.arg2)) {
+                        displayPrediction(msg.arg1, (WnnEngine) msg.obj);
+                        prefetchNextPrediction();
+                    }
+                    break;
+                case MSG_PREDICTION_CONTINUED:
+                    mCandidatesViewManager.displayMoreCandidates((WnnEngine) msg.obj);
+                    break;
                 case MSG_CLOSE:
                     if (mConverterJAJP != null)
                         mConverterJAJP.close();
@@ -412,6 +427,9 @@ public class OpenWnnJAJP extends OpenWnn {
         }
     };
 
+    /** Worker executing the prediction out of the UI thread */
+    private PredictionWorker mPredictionWorker = new PredictionWorker(mHandler, MSG_PREDICTION_FINISHED, MSG_PREDICTION_CONTINUED);
+
     /** The candidate filter */
     private CandidateFilter mFilter;
 
@@ -487,6 +505,7 @@ public class OpenWnnJAJP extends OpenWnn {
     /** @see jp.co.omronsoft.openwnn.OpenWnn#onStartInputView */
     @Override
     public void onStartInputView(EditorInfo attribute, boolean restarting) {
+        mPredictionWorker.reset();
 
         SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(this);
         if (restarting) {
@@ -642,14 +661,17 @@ public class OpenWnnJAJP extends OpenWnn {
                 return onKeyLongPressEvent(ev.keyEvent);
 
             case OpenWnnEvent.INITIALIZE_LEARNING_DICTIONARY:
+                mPredictionWorker.reset();
                 mConverterEN.initializeDictionary(WnnEngine.DICTIONARY_TYPE_LEARN);
                 mConverterJAJP.initializeDictionary(WnnEngine.DICTIONARY_TYPE_LEARN);
                 return true;
 
             case OpenWnnEvent.INITIALIZE_USER_DICTIONARY:
+                mPredictionWorker.reset();
                 return mConverterJAJP.initializeDictionary(WnnEngine.DICTIONARY_TYPE_USER);
 
             case OpenWnnEvent.LIST_WORDS_IN_USER_DICTIONARY:
+                mPredictionWorker.cancel();
                 mUserDictionaryWords = mConverterJAJP.getUserDictionaryWords();
                 return true;
 
@@ -668,14 +690,17 @@ public class OpenWnnJAJP extends OpenWnn {
                 break;
 
             case OpenWnnEvent.ADD_WORD:
+                mPredictionWorker.reset();
                 mConverterJAJP.addWord(ev.word);
                 return true;
 
             case OpenWnnEvent.DELETE_WORD:
+                mPredictionWorker.reset();
                 mConverterJAJP.deleteWord(ev.word);
                 return true;
 
             case OpenWnnEvent.DELETE_CANDIDATE:
+                mPredictionWorker.reset();
                 mConverterJAJP.deleteCandidate(ev.word);
                 return true;
 
@@ -1249,6 +1274,7 @@ public class OpenWnnJAJP extends OpenWnn {
                         if (!mEngineState.isConvertState()) {
                             initializeScreen();
                             if (mConverter != null) {
+                                mPredictionWorker.reset();
                                 mConverter.init();
                             }
                         } else {
@@ -1337,6 +1363,7 @@ public class OpenWnnJAJP extends OpenWnn {
                         }
                         if (isEnableL2Converter()) {
                             /* initialize the converter */
+                            mPredictionWorker.reset();
                             mConverter.init();
                         }
                         mStatus = STATUS_INPUT_EDIT;
@@ -1350,6 +1377,7 @@ public class OpenWnnJAJP extends OpenWnn {
                         }
                         if (isEnableL2Converter()) {
                             /* initialize the converter */
+                            mPredictionWorker.reset();
                             mConverter.init();
                         }
                         mStatus = STATUS_INPUT_EDIT;
@@ -1523,22 +1551,91 @@ public class OpenWnnJAJP extends OpenWnn {
 
     /** Thread for updating the candidates view */
     private void updatePrediction() {
+        int maxLen = getMaxLengthForPrediction();
+        if (isEnableL2Converter() && !mEngineState.isSymbolList()) {
+            /* predict on the worker thread with a snapshot of the composing text */
+            mPredictionWorker.request(mConverter, mComposingText, 0, maxLen);
+            return;
+        }
+
+        /* the symbol list is not used by the worker */
+        mPredictionWorker.invalidate();
         int candidates = 0;
+        if (mEngineState.isSymbolList()) {
+            candidates = mConverter.predict(mComposingText, 0, maxLen);
+        }
+        displayPrediction(candidates, mConverter);
+    }
+
+    /**
+     * Get the maximum length of a word to predict.
+     *
+     * @return The maximum length (-1 : no limit)
+     */
+    private int getMaxLengthForPrediction() {
+        return mExactMatchMode ? mComposingText.getCursor(ComposingText.LAYER1) : -1;
+    }
+
+    /**
+     * Predict the probable next composing texts in background.
+     * <br>
+     * On the 12-key keyboard, the next key toggles the last character or appends
+     * the top character of another key.  Their predictions are made while the worker
+     * is idle, so the next update of the candidates is answered from the cache.
+     */
+    private void prefetchNextPrediction() {
+        if (mConverter != mConverterJAJP || !isEnableL2Converter() || mEngineState.isSymbolList()
+                || mEngineState.isConvertState() || !(mInputViewManager instanceof DefaultSoftKeyboardJAJP)) {
+            return;
+        }
+        DefaultSoftKeyboardJAJP keyboard = (DefaultSoftKeyboardJAJP) mInputViewManager;
+        String[][] tables = keyboard.getToggleTables();
         int cursor = mComposingText.getCursor(ComposingText.LAYER1);
-        if (isEnableL2Converter() || mEngineState.isSymbolList()) {
-            if (mExactMatchMode) {
-                /* exact matching */
-                candidates = mConverter.predict(mComposingText, 0, cursor);
-            } else {
-                /* normal prediction */
-                candidates = mConverter.predict(mComposingText, 0, -1);
+        int size = mComposingText.size(ComposingText.LAYER1);
+        if (tables == null || cursor == 0 || cursor != size || mExactMatchMode) {
+            return;
+        }
+
+        /* toggle the last character by the same key */
+        String[] last = keyboard.getLastToggleTable();
+        if ((mStatus & ~STATUS_CANDIDATE_FULL) != STATUS_INPUT) {
+            last = null;
+        }
+        if (last != null) {
+            String prevChar = mComposingText.getStrSegment(ComposingText.LAYER1, cursor - 1).string;
+            String c = searchToggleCharacter(prevChar, last, false);
+            if (c != null) {
+                ComposingText text = new ComposingText(mComposingText);
+                text.delete(ComposingText.LAYER1, false);
+                text.insertStrSegment(ComposingText.LAYER0, ComposingText.LAYER1, new StrSegment(c));
+                mPredictionWorker.prefetch(mConverter, text, 0, -1);
+            }
+        }
+
+        /* input a character by another key */
+        if (size >= LIMIT_INPUT_NUMBER) {
+            return;
+        }
+        for (int i = 0; i < tables.length; i++) {
+            if (tables[i] != last) {
+                ComposingText text = new ComposingText(mComposingText);
+                text.insertStrSegment(ComposingText.LAYER0, ComposingText.LAYER1, new StrSegment(tables[i][0]));
+                mPredictionWorker.prefetch(mConverter, text, 0, -1);
             }
         }
+    }
 
+    /**
+     * Display the result of the prediction.
+     *
+     * @param candidates    The result of {@link WnnEngine#predict(ComposingText, int, int)}
+     * @param converter     The engine to get the candidates from
+     */
+    private void displayPrediction(int candidates, WnnEngine converter) {
         /* update the candidates view */
         if (candidates > 0) {
             mHasContinuedPrediction = ((mComposingText.size(ComposingText.LAYER1) == 0) && !mEngineState.isSymbolList());
-            mCandidatesViewManager.displayCandidates(mConverter);
+            mCandidatesViewManager.displayCandidates(converter);
         } else {
             mCandidatesViewManager.clearCandidates();
         }
@@ -1676,6 +1773,7 @@ public class OpenWnnJAJP extends OpenWnn {
 
         if (mConverter != null) {
             /* initialize the converter */
+            mPredictionWorker.reset();
             mConverter.init();
         }
         updateViewStatusForPrediction(true, true);
@@ -1766,6 +1864,9 @@ public class OpenWnnJAJP extends OpenWnn {
      * Update the candidates view.
      */
     private void updateCandidateView() {
+        /* the result for the previous composing text is no longer displayed */
+        mPredictionWorker.invalidate();
+
         switch (mTargetLayer) {
             case ComposingText.LAYER0:
             case ComposingText.LAYER1: /* prediction */
@@ -1774,7 +1875,11 @@ public class OpenWnnJAJP extends OpenWnn {
                     if ((mComposingText.size(ComposingText.LAYER1) != 0) && !mEngineState.isConvertState()) {
 
                         mHandler.removeMessages(MSG_PREDICTION);
-                        if (mCandidatesViewManager.getCurrentView().isShown()) {
+                        if (isEnableL2Converter() && !mEngineState.isSymbolList()
+                                && mPredictionWorker.isCached(mConverter, mComposingText, 0, getMaxLengthForPrediction())) {
+                            /* the prediction has been made in advance */
+                            updatePrediction();
+                        } else if (mCandidatesViewManager.getCurrentView().isShown()) {
                             mHandler.sendMessageDelayed(mHandler.obtainMessage(MSG_PREDICTION), PREDICTION_DELAY_MS_SHOWING_CANDIDATE);
                         } else {
                             mHandler.sendMessageDelayed(mHandler.obtainMessage(MSG_PREDICTION), PREDICTION_DELAY_MS_1ST);
@@ -1789,6 +1894,7 @@ public class OpenWnnJAJP extends OpenWnn {
                 }
                 break;
             case ComposingText.LAYER2: /* convert */
+                mPredictionWorker.cancel();
                 if (mCommitCount == 0) {
                     mHandler.removeMessages(MSG_PREDICTION);
                     mConverter.convert(mComposingText);
@@ -2066,10 +2172,13 @@ public class OpenWnnJAJP extends OpenWnn {
      * @param state  Engine's state to be updated
      */
     private void updateEngineState(EngineState state) {
+        /* the worker is reset only where the engine is changed (setDictionary(), breakSequence(), ...) */
         EngineState myState = mEngineState;
+        boolean languageChanged = false;
 
         /* language */
         if ((state.dictionarySet != EngineState.INVALID) && (myState.dictionarySet != state.dictionarySet)) {
+            languageChanged = true;
 
             switch (state.dictionarySet) {
                 case EngineState.DICTIONARYSET_EN:
@@ -2166,6 +2275,13 @@ public class OpenWnnJAJP extends OpenWnn {
 
         /* keyboard type */
         if (state.keyboard != EngineState.INVALID) {
+            if (languageChanged || (myState.keyboard != state.keyboard)) {
+                /* the predictions made for the previous keyboard are discarded */
+                mPredictionWorker.reset();
+            } else {
+                /* the same settings are set again; the worker only has to leave the engine */
+                mPredictionWorker.cancel();
+            }
             switch (state.keyboard) {
                 case EngineState.KEYBOARD_12KEY:
                     mConverterJAJP.setKeyboardType(OpenWnnEngineJAJP.KEYBOARD_KEYPAD12);
@@ -2192,6 +2308,9 @@ public class OpenWnnJAJP extends OpenWnn {
      * @param mode  Definition of dictionaries
      */
     private void setDictionary(int mode) {
+        /* the predictions made with the previous dictionaries are discarded */
+        mPredictionWorker.reset();
+
         int target = mode;
         switch (target) {
 
@@ -2509,6 +2628,7 @@ public class OpenWnnJAJP extends OpenWnn {
      */
     private void learnWord(WnnWord word) {
         if (mEnableLearning && word != null) {
+            mPredictionWorker.reset();
             mConverter.learn(word);
         }
     }
@@ -2522,6 +2642,7 @@ public class OpenWnnJAJP extends OpenWnn {
         ComposingText composingText = mComposingText;
 
         if (mEnableLearning && composingText.size(ComposingText.LAYER2) > index) {
+            mPredictionWorker.reset();
             StrSegment seg = composingText.getStrSegment(ComposingText.LAYER2, index);
             if (seg instanceof StrSegmentClause) {
                 mConverter.learn(((StrSegmentClause) seg).clause);
@@ -2622,6 +2743,7 @@ public class OpenWnnJAJP extends OpenWnn {
                 break;
         }
 
+        mPredictionWorker.reset();
         if (mFilter.filter == 0) {
             mConverterEN.setFilter(null);
             mConverterJAJP.setFilter(null);
@@ -2685,6 +2807,7 @@ public class OpenWnnJAJP extends OpenWnn {
         mExactMatchMode = false;
         mStatus = STATUS_INIT;
         mHandler.removeMessages(MSG_PREDICTION);
+        mPredictionWorker.invalidate();
         View candidateView = mCandidatesViewManager.getCurrentView();
         if ((candidateView != null) && candidateView.isShown()) {
             mCandidatesViewManager.clearCandidates();
@@ -2815,6 +2938,7 @@ public class OpenWnnJAJP extends OpenWnn {
     /** @see OpenWnn#close */
     @Override
     protected void close() {
+        mPredictionWorker.quit();
         mHandler.sendMessageDelayed(mHandler.obtainMessage(MSG_CLOSE), 0);
     }
 
@@ -2823,6 +2947,7 @@ public class OpenWnnJAJP extends OpenWnn {
      */
     private void breakSequence() {
         mEnableAutoDeleteSpace = false;
+        mPredictionWorker.reset();
         mConverterJAJP.breakSequence();
         mConverterEN.breakSequence();
     }
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2008-2012  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.omronsoft.openwnn;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The cache of the candidate lists of the prediction.
+ * <br>
+ * A list is put when all of its candidates are listed, or when the prediction is
+ * replaced by another one with the candidates made so far ({@code complete} is
+ * {@code false}); the engine continues such a list by searching again when more
+ * candidates are required.  The words in the lists are shared with the engine
+ * and the candidates view, so they must not be changed.
+ * <br>
+ * The lists are kept in the LRU order.  Each list is keyed by the engine with
+ * every condition of the prediction (the reading, the dictionary, the keyboard,
+ * the previous word, the filter, ...), and remembers the reading it depends on.
+ * A change of a word in the writable dictionaries removes only the lists whose
+ * reading is related to the stroke of the word.
+ *
+ * @author Copyright (C) 2008-2012 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class PredictionCache {
+    /** The cached list */
+    private static class Entry {
+        /** The normalized reading ({@code null} if it depends on every word) */
+        String reading;
+        /** The candidates */
+        ArrayList<WnnWord> candidates;
+        /** Whether all candidates are listed */
+        boolean complete;
+    }
+
+    /** The lists */
+    private final LinkedHashMap<String, Entry> mEntries;
+
+    /** Number of the lists found */
+    private int mHitCount = 0;
+
+    /** Number of the lists not found */
+    private int mMissCount = 0;
+
+    /**
+     * Constructor
+     *
+     * @param maxEntries    Maximum number of the lists
+     */
+    public PredictionCache(final int maxEntries) {
+        mEntries = new LinkedHashMap<String, Entry>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get a list.
+     *
+     * @param key   The key of the prediction
+     * @return The candidates; {@code null} if not cached.
+     */
+    public ArrayList<WnnWord> get(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return entry.candidates;
+    }
+
+    /**
+     * Check whether a cached list has all candidates.
+     *
+     * @param key   The key of the prediction
+     * @return {@code true} if the list is cached and complete.
+     */
+    public boolean isComplete(String key) {
+        Entry entry = mEntries.get(key);
+        return (entry != null) && entry.complete;
+    }
+
+    /**
+     * Put a list.
+     * <br>
+     * A list which is not complete does not replace a complete one of the same key.
+     *
+     * @param key           The key of the prediction
+     * @param reading       The reading predicted ({@code null} if the list depends on every word,
+     *                      e.g. it is made with the approximate patterns which are not normalized)
+     * @param candidates    The candidates (a copy of the list is kept)
+     * @param complete      {@code true} if all candidates are listed;
+     *                      {@code false} if the list has only the candidates made so far.
+     */
+    public void put(String key, String reading, ArrayList<WnnWord> candidates, boolean complete) {
+        if (!complete && isComplete(key)) {
+            return;
+        }
+        Entry entry = new Entry();
+        entry.reading = (reading == null) ? null : normalize(reading);
+        entry.candidates = new ArrayList<>(candidates);
+        entry.complete = complete;
+        mEntries.put(key, entry);
+    }
+
+    /**
+     * Remove the lists which may be changed by a word.
+     * <br>
+     * A list is removed if its reading is a prefix of the stroke (the word is predicted)
+     * or the stroke is a prefix of its reading (the word is a part of the conversion).
+     *
+     * @param stroke    The stroke of the word learned, added or deleted
+     */
+    public void invalidate(String stroke) {
+        if (stroke == null) {
+            clear();
+            return;
+        }
+        String key = normalize(stroke);
+        Iterator<Entry> it = mEntries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.reading == null || key.startsWith(entry.reading) || entry.reading.startsWith(key)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all lists.
+     */
+    public void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * Get the number of the lists found.
+     *
+     * @return The number of hits
+     */
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Get the number of the lists not found.
+     *
+     * @return The number of misses
+     */
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Reset the counters.
+     */
+    public void resetCount() {
+        mHitCount = 0;
+        mMissCount = 0;
+    }
+
+    /**
+     * Normalize a reading for comparison.
+     * <br>
+     * The variants matched by the approximate patterns of the 12-key keyboard
+     * (voiced marks and small kana) and the case of letters are folded.
+     *
+     * @param reading   The reading
+     * @return The normalized reading
+     */
+    private static String normalize(String reading) {
+        String str = Normalizer.normalize(reading, Normalizer.Form.NFD);
+        StringBuilder buf = new StringBuilder(str.length());
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+                case '\u3099': /* combining voiced sound mark */
+                case '\u309A': /* combining semi-voiced sound mark */
+                    continue;
+
+                case 'ぁ': case 'ぃ': case 'ぅ': case 'ぇ': case 'ぉ':
+                case 'っ': case 'ゃ': case 'ゅ': case 'ょ': case 'ゎ':
+                    /* small hiragana */
+                    c++;
+                    break;
+
+                default:
+                    c = Character.toLowerCase(c);
+                    break;
+            }
+            buf.append(c);
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,728 @@
+/*
+ * Copyright (C) 2008-2012  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.omronsoft.openwnn;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The worker class which executes the prediction out of the UI thread.
+ * <br>
+ * Each request is numbered by a generation.  A new request, {@link #invalidate()}
+ * or {@link #cancel()} makes the running request stale; the engine is asked to
+ * stop ({@link WnnBoundedEngine#abort()}), the worker stops it between candidates
+ * and the result is never posted.  So {@link #cancel()} waits for a batch of the
+ * search at most, not for the whole prediction.  The result of a finished
+ * request is posted to the UI handler as a {@link WnnEngine} which returns the
+ * prefetched candidates.  When they run out, the rest is read on the worker
+ * and the same {@link WnnEngine} is posted again; a speculative prediction
+ * running then is stopped.
+ * <br>
+ * The engine is only used on the worker thread; it must not be used from the UI
+ * thread while a request is running.  Call {@link #cancel()} before using it,
+ * or {@link #reset()} before changing it.
+ * <br>
+ * The results are kept in a small cache keyed by the composing text, and the
+ * worker can predict the probable next composing texts speculatively while it is
+ * idle ({@link #prefetch}).  A request found in the cache is answered at once.
+ * The cache is kept over {@link #cancel()}, and cleared by {@link #reset()}
+ * since the engine (dictionaries, settings) is changed after it.
+ *
+ * @author Copyright (C) 2009-2011 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class PredictionWorker {
+    /** Number of candidates fetched on the worker before the result is posted */
+    private static final int PREFETCH_CANDIDATES = 30;
+
+    /** Number of results kept in the cache */
+    private static final int MAX_CACHED_RESULTS = 16;
+
+    /** Message for the worker's {@code Handler} (execute prediction) */
+    private static final int MSG_PREDICT = 0;
+
+    /** Message for the worker's {@code Handler} (execute speculative prediction) */
+    private static final int MSG_PREFETCH = 1;
+
+    /** Message for the worker's {@code Handler} (read the rest of the candidates) */
+    private static final int MSG_CONTINUE = 2;
+
+    /** {@code Handler} of the UI thread which receives the results */
+    private Handler mResultHandler;
+
+    /** Message code (what) of the result posted to {@code mResultHandler} */
+    private int mResultMessage;
+
+    /** Message code (what) of the rest of the candidates posted to {@code mResultHandler} */
+    private int mContinuedMessage;
+
+    /** Thread executing the prediction */
+    private HandlerThread mThread = null;
+
+    /** {@code Handler} of the worker thread */
+    private Handler mWorkerHandler = null;
+
+    /** Generation of the latest request */
+    private volatile int mGeneration = 0;
+
+    /** The request whose prediction is loaded in the engine ({@code null} if unknown) */
+    private volatile Request mEngineRequest = null;
+
+    /** Number of candidates read from the engine for {@code mEngineRequest} (used on the worker only) */
+    private int mEngineReadCount = 0;
+
+    /** Lock held while the running request is switched or stopped */
+    private final Object mRunningLock = new Object();
+
+    /** The request being executed on the worker ({@code null} if the worker is idle, guarded by {@code mRunningLock}) */
+    private Request mRunningRequest = null;
+
+    /** The results of the recent requests (guarded by itself) */
+    private final LinkedHashMap<String, Result> mResultCache = new LinkedHashMap<String, Result>(MAX_CACHED_RESULTS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+            return size() > MAX_CACHED_RESULTS;
+        }
+    };
+
+    /** Request of the prediction */
+    private static class Request {
+        /** Generation of the request */
+        int generation;
+        /** The conversion engine */
+        WnnEngine engine;
+        /** Snapshot of the composing text */
+        ComposingText text;
+        /** The minimum length of a word to predict */
+        int minLen;
+        /** The maximum length of a word to predict */
+        int maxLen;
+        /** The key of the result cache */
+        String key;
+        /** Whether the request is a speculative prediction */
+        boolean speculative;
+        /** The result whose rest of the candidates is read ({@code null} for a prediction) */
+        Result continued;
+        /** The candidates which receive the rest ({@code null} for a prediction) */
+        PrefetchedCandidates target;
+        /** Whether the engine has been stopped for the request */
+        volatile boolean aborted;
+    }
+
+    /** Result of the prediction */
+    private static class Result {
+        /** The request */
+        Request request;
+        /** The result of {@link WnnEngine#predict(ComposingText, int, int)} */
+        int result;
+        /** Prefetched candidates */
+        ArrayList<WnnWord> candidates;
+        /** Whether {@code candidates} holds all of the candidates */
+        boolean complete;
+    }
+
+    /**
+     * Constructor
+     * <br>
+     * The result is posted as a message whose {@code arg1} is the result of
+     * {@link WnnEngine#predict(ComposingText, int, int)}, {@code arg2} is the generation
+     * and {@code obj} is the candidates ({@link WnnEngine}).  When the rest of
+     * the candidates has been read, the same {@code obj} is posted again as a message
+     * whose {@code what} is {@code whatContinued}.
+     *
+     * @param handler           {@code Handler} of the UI thread
+     * @param what              Message code of the result
+     * @param whatContinued     Message code of the rest of the candidates
+     */
+    public PredictionWorker(Handler handler, int what, int whatContinued) {
+        mResultHandler = handler;
+        mResultMessage = what;
+        mContinuedMessage = whatContinued;
+    }
+
+    /**
+     * Request the prediction.
+     *
+     * @param engine    The conversion engine
+     * @param text      The input string (a snapshot is taken)
+     * @param minLen    The minimum length of a word to predict (0  : no limit)
+     * @param maxLen    The maximum length of a word to predict (-1 : no limit)
+     * @return The generation of the request
+     */
+    public int request(WnnEngine engine, ComposingText text, int minLen, int maxLen) {
+        if (mThread == null) {
+            mThread = new HandlerThread("OpenWnnPrediction");
+            mThread.start();
+            mWorkerHandler = new Handler(mThread.getLooper()) {
+                @Override
+                public void handleMessage(Message msg) {
+                    if (msg.what == MSG_PREDICT) {
+                        predict((Request) msg.obj);
+                    } else if (msg.what == MSG_PREFETCH) {
+                        prefetch((Request) msg.obj);
+                    } else if (msg.what == MSG_CONTINUE) {
+                        continuePrediction((Request) msg.obj);
+                    }
+                }
+            };
+        }
+
+        Request req = createRequest(++mGeneration, engine, text, minLen, maxLen);
+        abortStaleRequest();
+
+        mWorkerHandler.removeMessages(MSG_PREDICT);
+        mWorkerHandler.removeMessages(MSG_PREFETCH);
+        mWorkerHandler.removeMessages(MSG_CONTINUE);
+
+        Result cached = getCachedResult(req);
+        if (cached != null) {
+            postResult(cached, req.generation);
+        } else {
+            mWorkerHandler.sendMessage(mWorkerHandler.obtainMessage(MSG_PREDICT, req));
+        }
+        return req.generation;
+    }
+
+    /**
+     * Request the speculative prediction of a probable next composing text.
+     * <br>
+     * The prediction is executed when the worker is idle, and its result is only kept in
+     * the cache.  It is dropped when a new request is made or the current one is invalidated.
+     *
+     * @param engine    The conversion engine
+     * @param text      The probable next input string (a snapshot is taken)
+     * @param minLen    The minimum length of a word to predict (0  : no limit)
+     * @param maxLen    The maximum length of a word to predict (-1 : no limit)
+     */
+    public void prefetch(WnnEngine engine, ComposingText text, int minLen, int maxLen) {
+        if (mWorkerHandler == null) {
+            return;
+        }
+        Request req = createRequest(mGeneration, engine, text, minLen, maxLen);
+        req.speculative = true;
+        if (getCachedResult(req) == null) {
+            mWorkerHandler.sendMessage(mWorkerHandler.obtainMessage(MSG_PREFETCH, req));
+        }
+    }
+
+    /**
+     * Check whether the result of the prediction is in the cache.
+     *
+     * @param engine    The conversion engine
+     * @param text      The input string
+     * @param minLen    The minimum length of a word to predict (0  : no limit)
+     * @param maxLen    The maximum length of a word to predict (-1 : no limit)
+     * @return {@code true} if {@link #request} is answered from the cache.
+     */
+    public boolean isCached(WnnEngine engine, ComposingText text, int minLen, int maxLen) {
+        return getCachedResult(createRequest(mGeneration, engine, text, minLen, maxLen)) != null;
+    }
+
+    /**
+     * Create a request.
+     *
+     * @param generation    The generation of the request
+     * @param engine        The conversion engine
+     * @param text          The input string (a snapshot is taken)
+     * @param minLen        The minimum length of a word to predict
+     * @param maxLen        The maximum length of a word to predict
+     * @return The request
+     */
+    private Request createRequest(int generation, WnnEngine engine, ComposingText text, int minLen, int maxLen) {
+        Request req = new Request();
+        req.generation = generation;
+        req.engine = engine;
+        req.text = new ComposingText(text);
+        req.minLen = minLen;
+        req.maxLen = maxLen;
+        req.key = minLen + "," + maxLen + "," + text.toString(ComposingText.LAYER1)
+                + "\t" + text.toString(ComposingText.LAYER0);
+        return req;
+    }
+
+    /**
+     * Get the cached result of a request.
+     *
+     * @param req   The request
+     * @return The result; {@code null} if not cached.
+     */
+    private Result getCachedResult(Request req) {
+        synchronized (mResultCache) {
+            Result result = mResultCache.get(req.key);
+            if (result != null && result.request.engine != req.engine) {
+                return null;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Make the running request stale without waiting for the worker.
+     */
+    public void invalidate() {
+        mGeneration++;
+        abortStaleRequest();
+    }
+
+    /**
+     * Stop the engine if the request running on the worker became stale.
+     */
+    private void abortStaleRequest() {
+        synchronized (mRunningLock) {
+            Request running = mRunningRequest;
+            if (running != null && !isCurrent(running.generation)) {
+                abortRunningRequest();
+            }
+        }
+    }
+
+    /**
+     * Stop the engine for the request running on the worker (holding {@code mRunningLock}).
+     * <br>
+     * The worker cannot switch to another request while the engine is stopped.
+     */
+    private void abortRunningRequest() {
+        Request running = mRunningRequest;
+        if (running != null && running.engine instanceof WnnBoundedEngine) {
+            running.aborted = true;
+            ((WnnBoundedEngine) running.engine).abort();
+        }
+    }
+
+    /**
+     * Cancel the requests and wait until the worker stops using the engine.
+     * <br>
+     * The running request is stopped first, so this method waits for a batch
+     * of the search at most.
+     */
+    public void cancel() {
+        mGeneration++;
+        if (mWorkerHandler != null) {
+            mWorkerHandler.removeMessages(MSG_PREDICT);
+            mWorkerHandler.removeMessages(MSG_PREFETCH);
+            mWorkerHandler.removeMessages(MSG_CONTINUE);
+        }
+        /* the engine may be used and changed by the caller */
+        mEngineRequest = null;
+        synchronized (mRunningLock) {
+            abortRunningRequest();
+            try {
+                while (mRunningRequest != null) {
+                    mRunningLock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Cancel the requests and discard the results made with the current engine.
+     * <br>
+     * Call this method before the engine (dictionaries, settings, learned words)
+     * is changed.
+     */
+    public void reset() {
+        cancel();
+        synchronized (mResultCache) {
+            mResultCache.clear();
+        }
+    }
+
+    /**
+     * Check whether the result of a request is still valid.
+     *
+     * @param generation    The generation of the request
+     * @return {@code true} if no newer request is made.
+     */
+    public boolean isCurrent(int generation) {
+        return generation == mGeneration;
+    }
+
+    /**
+     * Stop the worker thread.
+     */
+    public void quit() {
+        reset();
+        if (mThread != null) {
+            mThread.quit();
+            mThread = null;
+            mWorkerHandler = null;
+        }
+    }
+
+    /**
+     * Execute the prediction (on the worker thread).
+     *
+     * @param req   The request
+     */
+    private void predict(Request req) {
+        Result result = execute(req);
+        if (result != null && isCurrent(req.generation)) {
+            postResult(result, req.generation);
+        }
+    }
+
+    /**
+     * Execute the speculative prediction (on the worker thread).
+     *
+     * @param req   The request
+     */
+    private void prefetch(Request req) {
+        if (getCachedResult(req) == null) {
+            execute(req);
+        }
+    }
+
+    /**
+     * Execute the prediction and put the result into the cache (on the worker thread).
+     *
+     * @param req   The request
+     * @return The result; {@code null} if the request became stale or the engine was stopped.
+     */
+    private Result execute(Request req) {
+        Result result = new Result();
+        result.request = req;
+        result.candidates = new ArrayList<>(PREFETCH_CANDIDATES);
+
+        if (!startRequest(req)) {
+            return null;
+        }
+        try {
+            mEngineRequest = req;
+            result.result = req.engine.predict(req.text, req.minLen, req.maxLen);
+            if (result.result > 0 && !fetchCandidates(req, result.candidates, PREFETCH_CANDIDATES)) {
+                return null;
+            }
+            mEngineReadCount = result.candidates.size();
+            result.complete = (result.result <= 0 || result.candidates.size() < PREFETCH_CANDIDATES);
+        } finally {
+            finishRequest(req);
+        }
+        if (req.aborted) {
+            /* the engine may have been stopped after the candidates were read;
+             * the list may be cut short, so it is neither cached nor posted */
+            return null;
+        }
+
+        synchronized (mResultCache) {
+            mResultCache.put(req.key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Read the rest of the candidates and post them (on the worker thread).
+     *
+     * @param req   The request
+     */
+    private void continuePrediction(Request req) {
+        Result continued = req.continued;
+        Request loaded = continued.request;
+        Result result = new Result();
+        result.request = loaded;
+        result.result = continued.result;
+        result.candidates = new ArrayList<>(continued.candidates);
+
+        if (!startRequest(req)) {
+            return;
+        }
+        try {
+            int count = result.candidates.size();
+            if (mEngineRequest != loaded || mEngineReadCount != count) {
+                /* load the prediction again, and skip the candidates already read */
+                mEngineRequest = loaded;
+                mEngineReadCount = 0;
+                req.engine.predict(loaded.text, loaded.minLen, loaded.maxLen);
+                ArrayList<WnnWord> skipped = new ArrayList<>(count);
+                if (!fetchCandidates(req, skipped, count)) {
+                    return;
+                }
+                mEngineReadCount = skipped.size();
+            }
+            if (req.engine instanceof WnnBoundedEngine) {
+                ((WnnBoundedEngine) req.engine).requestRestCandidates();
+            }
+            if (!fetchCandidates(req, result.candidates, Integer.MAX_VALUE)) {
+                return;
+            }
+            mEngineReadCount += result.candidates.size() - count;
+            result.complete = true;
+        } finally {
+            finishRequest(req);
+        }
+        if (req.aborted) {
+            return;
+        }
+
+        synchronized (mResultCache) {
+            if (mResultCache.get(loaded.key) == continued) {
+                mResultCache.put(loaded.key, result);
+            }
+        }
+        req.target.mContinuedResult = result;
+        mResultHandler.sendMessage(mResultHandler.obtainMessage(mContinuedMessage, req.target));
+    }
+
+    /**
+     * Request the rest of the candidates (on the UI thread).
+     * <br>
+     * A speculative prediction is stopped since the rest is being waited for.
+     *
+     * @param target    The candidates which receive the rest
+     * @param continued The result whose rest is read
+     * @return The request; {@code null} if the worker has been stopped.
+     */
+    private Request requestContinuation(PrefetchedCandidates target, Result continued) {
+        if (mWorkerHandler == null) {
+            return null;
+        }
+        Request req = new Request();
+        req.generation = mGeneration;
+        req.engine = continued.request.engine;
+        req.key = continued.request.key;
+        req.continued = continued;
+        req.target = target;
+
+        mWorkerHandler.removeMessages(MSG_PREFETCH);
+        synchronized (mRunningLock) {
+            Request running = mRunningRequest;
+            if (running != null && running.speculative) {
+                abortRunningRequest();
+            }
+        }
+        mWorkerHandler.sendMessageAtFrontOfQueue(mWorkerHandler.obtainMessage(MSG_CONTINUE, req));
+        return req;
+    }
+
+    /**
+     * Start running a request on the worker.
+     *
+     * @param req   The request
+     * @return {@code false} if the request has become stale.
+     */
+    private boolean startRequest(Request req) {
+        synchronized (mRunningLock) {
+            if (!isCurrent(req.generation)) {
+                return false;
+            }
+            mRunningRequest = req;
+            return true;
+        }
+    }
+
+    /**
+     * Finish running a request on the worker, and wake up {@link #cancel()}.
+     *
+     * @param req   The request
+     */
+    private void finishRequest(Request req) {
+        synchronized (mRunningLock) {
+            if (req.aborted || !isCurrent(req.generation)) {
+                /* the engine has been stopped, or may be changed after cancel() */
+                mEngineRequest = null;
+            }
+            mRunningRequest = null;
+            mRunningLock.notifyAll();
+        }
+    }
+
+    /**
+     * Read the candidates from the engine (on the worker thread).
+     *
+     * @param req       The request loaded in the engine
+     * @param list      The list to add the candidates
+     * @param count     Number of candidates to add
+     * @return {@code false} if the request became stale or the engine was stopped.
+     */
+    private boolean fetchCandidates(Request req, ArrayList<WnnWord> list, int count) {
+        for (int i = 0; i < count; i++) {
+            if (req.aborted || !isCurrent(req.generation)) {
+                return false;
+            }
+            WnnWord word = req.engine.getNextCandidate();
+            if (word == null) {
+                /* the engine may have been stopped by abort() */
+                return !req.aborted;
+            }
+            list.add(word);
+        }
+        return true;
+    }
+
+    /**
+     * Post a result to the UI handler.
+     *
+     * @param result        The result
+     * @param generation    The generation of the request answered
+     */
+    private void postResult(Result result, int generation) {
+        Message msg = mResultHandler.obtainMessage(mResultMessage, result.result, generation,
+                new PrefetchedCandidates(result));
+        mResultHandler.sendMessage(msg);
+    }
+
+    /**
+     * The candidates of a finished request.
+     * <br>
+     * The prefetched candidates are returned first.  When they run out,
+     * {@link #getNextCandidate()} returns {@code null} and the rest is read on the worker;
+     * this object is posted again once they can be returned.  If another prediction has
+     * been loaded in the engine since, the prediction is executed again and the
+     * prefetched candidates are skipped.
+     */
+    private class PrefetchedCandidates implements WnnBoundedEngine {
+        /** The conversion engine */
+        private WnnEngine mEngine;
+        /** The result of the request */
+        private Result mResult;
+        /** Prefetched candidates */
+        private ArrayList<WnnWord> mCandidates;
+        /** Index of the next prefetched candidate */
+        private int mIndex = 0;
+        /** The request reading the rest of the candidates ({@code null} if not requested) */
+        private Request mContinuation = null;
+        /** The result holding the rest of the candidates ({@code null} until it is read) */
+        private volatile Result mContinuedResult = null;
+
+        /**
+         * Constructor
+         *
+         * @param result        The result of the request
+         */
+        PrefetchedCandidates(Result result) {
+            mEngine = result.request.engine;
+            mResult = result;
+            mCandidates = result.candidates;
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#getNextCandidate */
+        public WnnWord getNextCandidate() {
+            Result continued = mContinuedResult;
+            if (continued != null && mIndex >= mCandidates.size()) {
+                mResult = continued;
+                mCandidates = continued.candidates;
+                mContinuedResult = null;
+            }
+            if (mIndex < mCandidates.size()) {
+                return mCandidates.get(mIndex++);
+            }
+            if (!mResult.complete && (mContinuation == null || mContinuation.aborted
+                    || !isCurrent(mContinuation.generation))) {
+                mContinuation = requestContinuation(this, mResult);
+            }
+            return null;
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#init */
+        public void init() {
+            mEngine.init();
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#close */
+        public void close() {
+            mEngine.close();
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#predict */
+        public int predict(ComposingText text, int minLen, int maxLen) {
+            return mEngine.predict(text, minLen, maxLen);
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#convert */
+        public int convert(ComposingText text) {
+            return mEngine.convert(text);
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#searchWords */
+        public int searchWords(String key) {
+            return mEngine.searchWords(key);
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#searchWords */
+        public int searchWords(WnnWord word) {
+            return mEngine.searchWords(word);
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#getUserDictionaryWords */
+        public WnnWord[] getUserDictionaryWords() {
+            return mEngine.getUserDictionaryWords();
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#learn */
+        public boolean learn(WnnWord word) {
+            return mEngine.learn(word);
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#addWord */
+        public int addWord(WnnWord word) {
+            return mEngine.addWord(word);
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#deleteWord */
+        public boolean deleteWord(WnnWord word) {
+            return mEngine.deleteWord(word);
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#initializeDictionary */
+        public boolean initializeDictionary(int dictionary) {
+            return mEngine.initializeDictionary(dictionary);
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#initializeDictionary */
+        public boolean initializeDictionary(int dictionary, int type) {
+            return mEngine.initializeDictionary(dictionary, type);
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#setPreferences */
+        public void setPreferences(SharedPreferences pref) {
+            mEngine.setPreferences(pref);
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#breakSequence */
+        public void breakSequence() {
+            mEngine.breakSequence();
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnEngine#makeCandidateListOf */
+        public int makeCandidateListOf(int clausePosition) {
+            return mEngine.makeCandidateListOf(clausePosition);
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnBoundedEngine#setFirstCandidateCount */
+        public void setFirstCandidateCount(int count) {
+            if (mEngine instanceof WnnBoundedEngine) {
+                ((WnnBoundedEngine) mEngine).setFirstCandidateCount(count);
+            }
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnBoundedEngine#requestRestCandidates */
+        public void requestRestCandidates() {
+            /* the rest is requested on the worker when the prefetched candidates run out */
+        }
+
+        /** @see jp.co.omronsoft.openwnn.WnnBoundedEngine#abort */
+        public void abort() {
+            /* the engine is stopped by the worker only */
+        }
+    }
+}
@@ -179,6 +179,15 @@ public class SymbolList implements WnnEngine {
         return (mCurrentList != null);
     }
 
+    /**
+     * Get the symbols of the current list.
+     *
+     * @return The symbols; {@code null} if no list is set.
+     */
+    public ArrayList<String> getCurrentList() {
+        return mCurrentList;
+    }
+
     /***********************************************************************
      * WnnEngine's interface
      **********************************************************************/
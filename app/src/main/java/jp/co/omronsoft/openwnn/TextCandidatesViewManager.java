@@ -21,6 +21,7 @@ import android.content.SharedPreferences;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.graphics.Rect;
+import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.media.AudioManager;
 import android.os.Handler;
@@ -53,7 +54,9 @@ import android.widget.ScrollView;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
 /**
  * The default candidates view manager class using {@link EditText}.
@@ -89,6 +92,11 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
     private static final int MSG_SET_CANDIDATES = 1;
     /** Handler for select Candidate */
     private static final int MSG_SELECT_CANDIDATES = 2;
+    /** Handler for measuring the symbols in advance */
+    private static final int MSG_WARM_TEXT_WIDTH_CACHE = 3;
+
+    /** Maximum number of the widths in {@code mTextWidthCache} */
+    private static final int MAX_TEXT_WIDTH_CACHE = 512;
 
     /** NUmber of Candidate display lines */
     private static final int SETTING_NUMBER_OF_LINEMAX = 5;
@@ -182,6 +190,22 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
     private int mTextColor = 0;
     /** Template object for each candidate and normal/full view change button */
     private TextView mViewCandidateTemplate;
+    /** The view drawing the candidates of the normal view instead of {@code mTextViewArray1st} */
+    private CandidateStripView mCandidateStrip;
+    /** Whether the candidates of the normal view are drawn by {@code mCandidateStrip} */
+    private boolean mUseCandidateStrip = false;
+    /** The width of each candidate drawn with the paint of {@code mViewCandidateTemplate} (LRU order) */
+    private LinkedHashMap<String, Integer> mTextWidthCache
+            = new LinkedHashMap<String, Integer>(MAX_TEXT_WIDTH_CACHE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > MAX_TEXT_WIDTH_CACHE;
+        }
+    };
+    /** The text size which the widths in {@code mTextWidthCache} are measured with */
+    private float mTextWidthCacheSize = 0;
+    /** The typeface which the widths in {@code mTextWidthCache} are measured with */
+    private Typeface mTextWidthCacheTypeface = null;
     /** Number of candidates in full view */
     private int mFullViewWordCount;
     /** Number of candidates in the current line (in full view) */
@@ -272,6 +296,10 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
                     }
                     break;
 
+                case MSG_WARM_TEXT_WIDTH_CACHE:
+                    warmTextWidthCache((ArrayList<?>) msg.obj);
+                    break;
+
                 default:
                     break;
             }
@@ -362,16 +390,49 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
         if (v instanceof TextView) {
             TextView text = (TextView) v;
             int wordcount = text.getId();
-            WnnWord word = list.get(wordcount);
+            onClickCandidate(list.get(wordcount));
+        }
+    }
 
-            if (mHandler.hasMessages(MSG_SET_CANDIDATES)) {
-                mWnnWordSelectedList.add(word);
+    /**
+     * Select the clicked candidate.
+     * @param word  The candidate
+     */
+    private void onClickCandidate(WnnWord word) {
+        if (mHandler.hasMessages(MSG_SET_CANDIDATES)) {
+            mWnnWordSelectedList.add(word);
+            return;
+        }
+        clearFocusCandidate();
+        selectCandidate(word);
+    }
+
+    /** Event listener for touching a candidate on the candidate strip */
+    private CandidateStripView.OnCandidateTouchListener mCandidateOnTouchStrip
+            = new CandidateStripView.OnCandidateTouchListener() {
+        public void onCandidateClick(int index) {
+            if (!mCandidateStrip.isShown()) {
                 return;
             }
+            playSoundAndVibration();
+            onClickCandidate(mWnnWordArray1st.get(index));
+        }
+
+        public boolean onCandidateLongClick(int index) {
+            if ((mViewLongPressDialog == null) || !mEnableCandidateLongClick) {
+                return false;
+            }
+
+            if (!mCandidateStrip.isShown()) {
+                return true;
+            }
+
+            mWord = mWnnWordArray1st.get(index);
             clearFocusCandidate();
-            selectCandidate(word);
+            displayDialog(mCandidateStrip, mWord);
+            return true;
         }
-    }
+    };
 
     /**
      * Handle a long click event on the candidate.
@@ -423,6 +484,8 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
     public View initView(OpenWnn parent, int width, int height) {
         mWnn = parent;
         mViewWidth = width;
+        /* the view is made again on the configuration change */
+        mTextWidthCache.clear();
         Resources r = mWnn.getResources();
         mCandidateMinimumWidth = r.getDimensionPixelSize(R.dimen.cand_minimum_width);
         mCandidateMinimumHeight = r.getDimensionPixelSize(R.dimen.cand_minimum_height);
@@ -454,6 +517,7 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
         mViewCandidateList2nd = mViewBody.findViewById(R.id.candidates_2nd_view);
 
         mTextColor = r.getColor(R.color.candidate_text);
+        mCandidateStrip.setTextPaint(mViewCandidateTemplate.getPaint(), mTextColor);
 
         mReadMoreButton = mViewBody.findViewById(R.id.read_more_button);
         mReadMoreButton.setOnTouchListener(new View.OnTouchListener() {
@@ -583,6 +647,14 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
             }
             mViewCandidateList1st.addView(lineView);
         }
+
+        mCandidateStrip = new CandidateStripView(mViewBodyScroll.getContext());
+        mCandidateStrip.setLayoutParams(new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+        mCandidateStrip.setLineHeight(getCandidateMinimumHeight());
+        mCandidateStrip.setOnCandidateTouchListener(mCandidateOnTouchStrip);
+        mCandidateStrip.setVisibility(View.GONE);
+        mViewCandidateList1st.addView(mCandidateStrip);
     }
 
     /** @see CandidatesViewManager#getCurrentView */
@@ -595,6 +667,9 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
         boolean readMore = setViewLayout(type);
 
         if (readMore) {
+            if (mConverter instanceof WnnBoundedEngine) {
+                ((WnnBoundedEngine) mConverter).requestRestCandidates();
+            }
             displayCandidates(this.mConverter, false, -1);
         } else {
             if (type == CandidatesViewManager.VIEW_TYPE_NORMAL) {
@@ -718,6 +793,9 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
 
         clearCandidates();
         mConverter = converter;
+        if (converter instanceof WnnBoundedEngine) {
+            ((WnnBoundedEngine) converter).setFirstCandidateCount(getFirstCandidateCount());
+        }
         mWnn.onEvent(new OpenWnnEvent(OpenWnnEvent.LIST_CANDIDATES_NORMAL));
 
         mViewCandidateTemplate.setVisibility(View.VISIBLE);
@@ -725,12 +803,49 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
 
         displayCandidates(converter, true, getMaxLine());
 
+        if (converter instanceof SymbolList) {
+            mHandler.removeMessages(MSG_WARM_TEXT_WIDTH_CACHE);
+            Message m = mHandler.obtainMessage(MSG_WARM_TEXT_WIDTH_CACHE,
+                    ((SymbolList) converter).getCurrentList());
+            mHandler.sendMessage(m);
+        }
+
         if (mIsSymbolMode) {
             mIsFullView = true;
             mWnn.onEvent(new OpenWnnEvent(OpenWnnEvent.LIST_CANDIDATES_FULL));
         }
     }
 
+    /** @see CandidatesViewManager#displayMoreCandidates */
+    public void displayMoreCandidates(WnnEngine converter) {
+        if (converter != mConverter || !mCreateCandidateDone) {
+            /* the rest is read when the list is displayed further */
+            return;
+        }
+
+        mCreateCandidateDone = false;
+        if (mIsFullView) {
+            displayCandidates(converter, false, -1);
+        } else {
+            displayCandidates(converter, true, getMaxLine());
+        }
+    }
+
+    /**
+     * Get the number of the candidates which the first screen can hold.
+     * <br>
+     * One more candidate is counted to know whether the candidates can be read more.
+     *
+     * @return The number of the candidates
+     */
+    private int getFirstCandidateCount() {
+        int minWidth = getCandidateMinimumWidth();
+        if (mViewWidth <= 0 || minWidth <= 0) {
+            return -1;
+        }
+        return getMaxLine() * (mViewWidth / minWidth) + 1;
+    }
+
     /** @see CandidatesViewManager#getMaxLine */
     private int getMaxLine() {
         int maxLine = (mPortrait) ? mPortraitNumberOfLine : mLandscapeNumberOfLine;
@@ -971,6 +1086,16 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
                 mLineLength = nextEnd;
             }
 
+            if (isCandidateStripUsed()) {
+                int width = Math.max(measureText(word.candidate, 0, word.candidate.length()),
+                        getCandidateMinimumWidth());
+                mCandidateStrip.addCandidate(word, mLineCount - 1, width);
+                mNormalViewWordCountOfLine++;
+                mWnnWordArray1st.add(mWordCount1st, word);
+                mWordCount1st++;
+                return;
+            }
+
             LinearLayout lineView = (LinearLayout) mViewCandidateList1st.getChildAt(mLineCount - 1);
             textView = (TextView) lineView.getChildAt(mNormalViewWordCountOfLine);
 
@@ -1108,6 +1233,7 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
         if (mIsSymbolMode) {
             mReadMoreButton.setVisibility(View.GONE);
             mViewCandidateTemplate.setVisibility(View.GONE);
+            updateCandidateStripTrailer();
             return;
         }
 
@@ -1129,17 +1255,47 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
         if (resid != 0) {
             mReadMoreButton.setImageResource(resid);
         }
+        updateCandidateStripTrailer();
+    }
+
+    /**
+     * Keep the space of {@code mViewCandidateTemplate} on {@code mCandidateStrip}.
+     */
+    private void updateCandidateStripTrailer() {
+        if (mViewCandidateTemplate.getVisibility() == View.VISIBLE) {
+            mCandidateStrip.setTrailingWidth(getCandidateMinimumWidth());
+        } else {
+            mCandidateStrip.setTrailingWidth(0);
+        }
+    }
+
+    /**
+     * Whether the candidates of the normal view are drawn by {@code mCandidateStrip}.
+     *
+     * @return {@code true} if {@code mCandidateStrip} is used.
+     */
+    private boolean isCandidateStripUsed() {
+        return mUseCandidateStrip && !mIsSymbolMode;
     }
 
     /**
      * Clear the list of the normal candidate view.
      */
     private void clearNormalViewCandidate() {
+        boolean useStrip = isCandidateStripUsed();
+        mCandidateStrip.clear();
+        mCandidateStrip.setVisibility(useStrip ? View.VISIBLE : View.GONE);
+
         LinearLayout candidateList = mViewCandidateList1st;
         int lineNum = candidateList.getChildCount();
         for (int i = 0; i < lineNum; i++) {
+            View child = candidateList.getChildAt(i);
+            if (child == mCandidateStrip) {
+                continue;
+            }
+            child.setVisibility(useStrip ? View.GONE : View.VISIBLE);
 
-            LinearLayout lineView = (LinearLayout) candidateList.getChildAt(i);
+            LinearLayout lineView = (LinearLayout) child;
             int size = lineView.getChildCount();
             for (int j = 0; j < size; j++) {
                 View v = lineView.getChildAt(j);
@@ -1198,6 +1354,7 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
             } else {
                 mSound = null;
             }
+            mUseCandidateStrip = pref.getBoolean("candidate_strip", false);
             setNumeberOfDisplayLines();
         } catch (Exception ex) {
             Log.e("OpenWnn", "NO VIBRATOR");
@@ -1398,7 +1555,52 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
         }
 
         TextPaint paint = mViewCandidateTemplate.getPaint();
-        return (int) paint.measureText(text, start, end);
+        if (!(text instanceof String) || (start != 0) || (end != text.length())) {
+            return (int) paint.measureText(text, start, end);
+        }
+        return getTextWidth((String) text, paint);
+    }
+
+    /**
+     * Get the width of a candidate through {@code mTextWidthCache}.
+     *
+     * @param text      The candidate
+     * @param paint     The paint of {@code mViewCandidateTemplate}
+     * @return The width of the candidate
+     */
+    private int getTextWidth(String text, TextPaint paint) {
+        if ((paint.getTextSize() != mTextWidthCacheSize) || (paint.getTypeface() != mTextWidthCacheTypeface)) {
+            mTextWidthCache.clear();
+            mTextWidthCacheSize = paint.getTextSize();
+            mTextWidthCacheTypeface = paint.getTypeface();
+        }
+
+        Integer width = mTextWidthCache.get(text);
+        if (width == null) {
+            width = (int) paint.measureText(text);
+            mTextWidthCache.put(text, width);
+        }
+        return width;
+    }
+
+    /**
+     * Measure the symbols of a list into {@code mTextWidthCache} in advance.
+     *
+     * @param symbols   The symbols ({@code null} if none)
+     */
+    private void warmTextWidthCache(ArrayList<?> symbols) {
+        if ((symbols == null) || (mViewCandidateTemplate == null)) {
+            return;
+        }
+
+        TextPaint paint = mViewCandidateTemplate.getPaint();
+        int size = Math.min(symbols.size(), MAX_TEXT_WIDTH_CACHE);
+        for (int i = 0; i < size; i++) {
+            String symbol = (String) symbols.get(i);
+            if (symbol.length() >= 3) {
+                getTextWidth(symbol, paint);
+            }
+        }
     }
 
     /**
@@ -1426,7 +1628,6 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
      * Create a layout for the next line.
      */
     private void createNextLineFor1st() {
-        LinearLayout lineView = (LinearLayout) mViewCandidateList1st.getChildAt(mLineCount - 1);
         float weight = 0;
         if (mLineLength < mCandidateLeftAlignThreshold) {
             if (mLineCount == 1) {
@@ -1436,6 +1637,15 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
             weight = 1.0f;
         }
 
+        if (isCandidateStripUsed()) {
+            mCandidateStrip.setLineFilled(mLineCount - 1, (weight != 0));
+            mLineLength = 0;
+            mNormalViewWordCountOfLine = 0;
+            mLineCount++;
+            return;
+        }
+
+        LinearLayout lineView = (LinearLayout) mViewCandidateList1st.getChildAt(mLineCount - 1);
         LinearLayout.LayoutParams params
                 = new LinearLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
                 ViewGroup.LayoutParams.WRAP_CONTENT,
@@ -1677,6 +1887,17 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
             view.setPadding(0, 0, 0, 0);
         }
 
+        mCandidateStrip.setFocusedIndex(FOCUS_NONE);
+        if (isCandidateStripFocused()) {
+            mFocusedView = null;
+            mCandidateStrip.setFocusedIndex(mCurrentFocusIndex);
+
+            int focusedViewTop = getViewTopOnScreen(mCandidateStrip)
+                    + mCandidateStrip.getCandidateTop(mCurrentFocusIndex);
+            scrollToFocusedCandidate(focusedViewTop, focusedViewTop + mCandidateStrip.getLineHeight());
+            return;
+        }
+
         TextView v = getFocusedView();
         mFocusedView = v;
         if (v != null) {
@@ -1684,19 +1905,37 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
             v.setBackgroundResource(R.drawable.cand_back_focuse);
             v.setPadding(0, 0, 0, 0);
 
-            int viewBodyTop = getViewTopOnScreen(mViewBodyScroll);
-            int viewBodyBottom = viewBodyTop + mViewBodyScroll.getHeight();
             int focusedViewTop = getViewTopOnScreen(v);
-            int focusedViewBottom = focusedViewTop + v.getHeight();
+            scrollToFocusedCandidate(focusedViewTop, focusedViewTop + v.getHeight());
+        }
+    }
 
-            if (focusedViewBottom > viewBodyBottom) {
-                mViewBodyScroll.scrollBy(0, (focusedViewBottom - viewBodyBottom));
-            } else if (focusedViewTop < viewBodyTop) {
-                mViewBodyScroll.scrollBy(0, (focusedViewTop - viewBodyTop));
-            }
+    /**
+     * Scroll the view to show the focused candidate.
+     *
+     * @param focusedViewTop     The top of the candidate on screen
+     * @param focusedViewBottom  The bottom of the candidate on screen
+     */
+    private void scrollToFocusedCandidate(int focusedViewTop, int focusedViewBottom) {
+        int viewBodyTop = getViewTopOnScreen(mViewBodyScroll);
+        int viewBodyBottom = viewBodyTop + mViewBodyScroll.getHeight();
+
+        if (focusedViewBottom > viewBodyBottom) {
+            mViewBodyScroll.scrollBy(0, (focusedViewBottom - viewBodyBottom));
+        } else if (focusedViewTop < viewBodyTop) {
+            mViewBodyScroll.scrollBy(0, (focusedViewTop - viewBodyTop));
         }
     }
 
+    /**
+     * Whether the focused candidate is drawn by {@code mCandidateStrip}.
+     *
+     * @return {@code true} if the focused candidate is on {@code mCandidateStrip}.
+     */
+    private boolean isCandidateStripFocused() {
+        return (mCurrentFocusIndex != FOCUS_NONE) && mHasFocusedArray1st && isCandidateStripUsed();
+    }
+
     /**
      * Clear focus to selected candidate.
      */
@@ -1707,6 +1946,9 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
             view.setPadding(0, 0, 0, 0);
             mFocusedView = null;
         }
+        if (mCandidateStrip != null) {
+            mCandidateStrip.setFocusedIndex(FOCUS_NONE);
+        }
 
         mFocusAxisX = 0;
         mHasFocusedArray1st = true;
@@ -1781,9 +2023,11 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
 
     /**
      * Get View of focus candidate.
+     * <br>
+     * {@code null} is returned if the candidate is drawn by the candidate strip.
      */
     public TextView getFocusedView() {
-        if (mCurrentFocusIndex == FOCUS_NONE) {
+        if ((mCurrentFocusIndex == FOCUS_NONE) || isCandidateStripFocused()) {
             return null;
         }
         TextView t;
@@ -1807,19 +2051,21 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
             setViewStatusOfFocusedCandidate();
         }
 
-        int size1st = mTextViewArray1st.size();
+        boolean useStrip = isCandidateStripUsed();
+        int size1st = useStrip ? mCandidateStrip.getCandidateCount() : mTextViewArray1st.size();
         if (mHasFocusedArray1st && (size1st == 0)) {
             mHasFocusedArray1st = false;
         }
+        boolean onStrip = useStrip && mHasFocusedArray1st;
         ArrayList<TextView> list = mHasFocusedArray1st ? mTextViewArray1st : mTextViewArray2nd;
-        int size = list.size();
+        int size = onStrip ? size1st : list.size();
         int start = (mCurrentFocusIndex == FOCUS_NONE) ? 0 : (mCurrentFocusIndex + direction);
 
         int index = -1;
         boolean hasChangedLine = false;
         for (int i = start; (0 <= i) && (i < size); i += direction) {
-            TextView view = list.get(i);
-            if (!view.isShown()) {
+            TextView view = onStrip ? null : list.get(i);
+            if (!(onStrip ? mCandidateStrip.isShown() : view.isShown())) {
                 break;
             }
 
@@ -1828,9 +2074,10 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
             }
 
             if (updown) {
-                int left = view.getLeft();
+                int left = onStrip ? mCandidateStrip.getCandidateLeft(i) : view.getLeft();
+                int right = onStrip ? mCandidateStrip.getCandidateRight(i) : view.getRight();
                 if ((left <= mFocusAxisX)
-                        && (mFocusAxisX < view.getRight())) {
+                        && (mFocusAxisX < right)) {
                     index = i;
                     break;
                 }
@@ -1852,7 +2099,11 @@ public class TextCandidatesViewManager extends CandidatesViewManager implements
             mCurrentFocusIndex = index;
             setViewStatusOfFocusedCandidate();
             if (!updown) {
-                mFocusAxisX = getFocusedView().getLeft();
+                if (onStrip) {
+                    mFocusAxisX = mCandidateStrip.getCandidateLeft(mCurrentFocusIndex);
+                } else {
+                    mFocusAxisX = getFocusedView().getLeft();
+                }
             }
         } else {
             if (mCanReadMore && (0 < size1st)) {
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2008-2012  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.omronsoft.openwnn;
+
+/**
+ * The interface of the text converter which can make the candidates
+ * for the first screen of the candidates view before the rest of them.
+ * <br>
+ * The converter lists the first candidates of the prediction at once,
+ * and makes the rest (such as the candidates of the clause conversion)
+ * when they are required by {@link #getNextCandidate()} or
+ * {@link #requestRestCandidates()}.
+ *
+ * @author Copyright (C) 2009, OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public interface WnnBoundedEngine extends WnnEngine {
+    /**
+     * Set the number of the candidates shown in the first screen.
+     * <br>
+     * It takes effect from the next {@link #predict(ComposingText, int, int)}.
+     *
+     * @param count     The number of the candidates (-1 : no limit)
+     */
+    void setFirstCandidateCount(int count);
+
+    /**
+     * Start making the rest of the candidates.
+     * <br>
+     * OpenWnn calls this method when all of the candidates are going to be shown.
+     */
+    void requestRestCandidates();
+
+    /**
+     * Stop making the candidates of the current prediction.
+     * <br>
+     * This method may be called from another thread while the converter is used.
+     * {@link #getNextCandidate()} returns {@code null} instead of making a new candidate
+     * until the next prediction or conversion starts.
+     */
+    void abort();
+}
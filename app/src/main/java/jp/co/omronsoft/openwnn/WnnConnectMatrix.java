@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2008-2012  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.omronsoft.openwnn;
+
+/**
+ * The connect matrix of the part of speeches packed in a bit set.
+ * <br>
+ * The object is immutable and can be shared among the dictionaries.
+ *
+ * @author Copyright (C) 2009-2011 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class WnnConnectMatrix {
+    /** Number of the part of speeches at left side */
+    private final int mLeftCount;
+
+    /** Number of the part of speeches at right side */
+    private final int mRightCount;
+
+    /** Number of {@code long} words in a row */
+    private final int mStride;
+
+    /** The bit set (the bit {@code right} of the row {@code left}; 1-origin) */
+    private final long[] mBits;
+
+    /**
+     * Constructor
+     *
+     * @param leftCount     Number of the part of speeches at left side
+     * @param rightCount    Number of the part of speeches at right side
+     * @param packed        The packed rows of the left part of speech 1 to {@code leftCount}
+     *                      (see {@link OpenWnnDictionaryImplJni#getConnectBitArray(long)})
+     */
+    public WnnConnectMatrix(int leftCount, int rightCount, byte[] packed) {
+        this(leftCount, rightCount);
+
+        int rowBytes = (rightCount + 7) / 8;
+        for (int left = 1; left <= leftCount; left++) {
+            int offset = (left - 1) * rowBytes;
+            for (int right = 1; right <= rightCount; right++) {
+                int i = right - 1;
+                if ((packed[offset + i / 8] & (0x80 >> (i % 8))) != 0) {
+                    set(left, right);
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param matrix    The connect matrix ({@code matrix[left][right] != 0} if connectible)
+     */
+    public WnnConnectMatrix(byte[][] matrix) {
+        this(matrix.length - 1, maxRowLength(matrix) - 1);
+
+        for (int left = 0; left < matrix.length; left++) {
+            byte[] row = matrix[left];
+            if (row == null) {
+                continue;
+            }
+            for (int right = 0; right < row.length; right++) {
+                if (row[right] != 0) {
+                    set(left, right);
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor (empty matrix)
+     *
+     * @param leftCount     Number of the part of speeches at left side
+     * @param rightCount    Number of the part of speeches at right side
+     */
+    private WnnConnectMatrix(int leftCount, int rightCount) {
+        mLeftCount = Math.max(leftCount, 0);
+        mRightCount = Math.max(rightCount, 0);
+        mStride = (mRightCount + 1 + 63) >>> 6;
+        mBits = new long[(mLeftCount + 1) * mStride];
+    }
+
+    /**
+     * Get the length of the longest row.
+     *
+     * @param matrix    The connect matrix
+     * @return The length
+     */
+    private static int maxRowLength(byte[][] matrix) {
+        int max = 0;
+        for (int i = 0; i < matrix.length; i++) {
+            if (matrix[i] != null && matrix[i].length > max) {
+                max = matrix[i].length;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Set the bit of a pair.
+     *
+     * @param left      Left attribute of the following word
+     * @param right     Right attribute of the preceding word
+     */
+    private void set(int left, int right) {
+        mBits[left * mStride + (right >>> 6)] |= 1L << right;
+    }
+
+    /**
+     * Check the part-of-speeches are connectable.
+     *
+     * @param right     Right attribute of the preceding word/clause
+     * @param left      Left attribute of the following word/clause
+     * @return {@code true} if there are connectable; {@code false} if otherwise or out of range.
+     */
+    public boolean isConnectible(int right, int left) {
+        if (left < 0 || left > mLeftCount || right < 0 || right > mRightCount) {
+            return false;
+        }
+        return (mBits[left * mStride + (right >>> 6)] & (1L << right)) != 0;
+    }
+
+    /**
+     * Get the number of the part of speeches at left side.
+     *
+     * @return The number
+     */
+    public int getLeftCount() {
+        return mLeftCount;
+    }
+
+    /**
+     * Get the number of the part of speeches at right side.
+     *
+     * @return The number
+     */
+    public int getRightCount() {
+        return mRightCount;
+    }
+}
@@ -118,6 +118,16 @@ public interface WnnDictionary {
      */
     void setInUseState(boolean flag);
 
+    /**
+     * Create a dictionary object which shares the loaded dictionaries.
+     * <p>
+     * The created object has its own search state (the dictionary settings, the approximate
+     * patterns and the search result), so it can be used on a different thread from this object.
+     *
+     * @return The dictionary object; {@code null} if an error occurs.
+     */
+    WnnDictionary createCursor();
+
     /**
      * Clear all dictionary settings.
      * <p>
@@ -264,6 +274,19 @@ public interface WnnDictionary {
      */
     WnnWord getNextWord(int length);
 
+    /**
+     * Retrieve some searched words information at once.
+     * <p>
+     * It returns words information from top of the {@code searchWord()}'s result in the same order
+     * as {@link #getNextWord(int)}. To get all word's information of the result, call this method
+     * repeatedly until it returns null.
+     *
+     * @param length    >0 if only the result of specified length is retrieved; 0 if no condition exist
+     * @param max       The maximum number of words to retrieve
+     * @return The array of WnnWord (its length is 1 to {@code max}); null if no result or an error occurs.
+     */
+    WnnWord[] getNextWords(int length, int max);
+
     /**
      * Retrieve all word in the user dictionary.
      *
@@ -278,6 +301,15 @@ public interface WnnDictionary {
      */
     byte[][] getConnectMatrix();
 
+    /**
+     * Retrieve the connect matrix packed in a bit set.
+     * <br>
+     * The matrix is shared among the dictionaries of the same dictionary library.
+     *
+     * @return The connect matrix; null if an error occurs.
+     */
+    WnnConnectMatrix getConnectBitMatrix();
+
     /**
      * Retrieve the part of speech information specified POS type.
      *
@@ -360,6 +392,16 @@ public interface WnnDictionary {
      */
     int learnWord(WnnWord word, WnnWord previousWord);
 
+    /**
+     * Get the stroke of the word removed by the last learning.
+     * <br>
+     * The oldest word is removed when the learn dictionary is full.  The results
+     * made with the removed word should be discarded with it.
+     *
+     * @return The stroke; {@code null} if no word was removed.
+     */
+    String getEvictedStroke();
+
     /**
      * Remove the word from learn dictionary.
      *
@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2008-2012  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.omronsoft.openwnn.JAJP;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Random;
+
+import jp.co.omronsoft.openwnn.WnnClause;
+import jp.co.omronsoft.openwnn.WnnDictionary;
+import jp.co.omronsoft.openwnn.WnnPOS;
+import jp.co.omronsoft.openwnn.WnnSentence;
+import jp.co.omronsoft.openwnn.WnnWord;
+
+import org.junit.Test;
+
+/**
+ * The test of the consecutive clause conversion of {@link OpenWnnClauseConverterJAJP}.
+ *
+ * @author Copyright (C) 2009-2011 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class OpenWnnClauseConverterJAJPTest {
+    /** Number of the random dictionaries */
+    private static final int DICTIONARY_COUNT = 4;
+
+    /** Maximum length of the random inputs */
+    private static final int MAX_LENGTH = 30;
+
+    /**
+     * Make a converter which has no conversion cache.
+     *
+     * @param dict  The dictionary
+     * @return The converter
+     */
+    private static OpenWnnClauseConverterJAJP newConverter(WnnDictionary dict) {
+        OpenWnnClauseConverterJAJP converter = new OpenWnnClauseConverterJAJP();
+        converter.setDictionary(dict);
+        return converter;
+    }
+
+    /**
+     * Describe a sentence with its clauses for the comparison.
+     *
+     * @param sentence  The sentence
+     * @return The description
+     */
+    private static String describe(WnnSentence sentence) {
+        if (sentence == null) {
+            return null;
+        }
+        StringBuilder str = new StringBuilder();
+        str.append(sentence.candidate).append('/').append(sentence.stroke)
+            .append(" freq=").append(sentence.frequency)
+            .append(" attr=").append(sentence.attribute)
+            .append(" pos=").append(sentence.partOfSpeech.left).append(',').append(sentence.partOfSpeech.right);
+        for (WnnClause clause : sentence.elements) {
+            str.append(" [").append(clause.candidate).append('/').append(clause.stroke)
+                .append(' ').append(clause.frequency).append(']');
+        }
+        return str.toString();
+    }
+
+    /**
+     * Describe the N-best sentences.
+     *
+     * @param sentences     The sentences
+     * @return The description
+     */
+    private static String describe(ArrayList<WnnSentence> sentences) {
+        if (sentences == null) {
+            return null;
+        }
+        StringBuilder str = new StringBuilder();
+        for (WnnSentence sentence : sentences) {
+            str.append(describe(sentence)).append('\n');
+        }
+        return str.toString();
+    }
+
+    /**
+     * The consecutive clause conversion before the N-best lattice (single best, no reuse).
+     * <br>
+     * The best clause of each part is made by the private methods of {@code oracle}.
+     */
+    private static class SingleBestConverter {
+        /** The converter making the clauses */
+        private OpenWnnClauseConverterJAJP mOracle;
+        /** {@code singleClauseConvert(LinkedList, String, WnnPOS, boolean)} */
+        private Method mSingleClauseConvert;
+        /** {@code defaultClause(String)} */
+        private Method mDefaultClause;
+        /** The part of speech at the end of a sentence */
+        private WnnPOS mPosEndOfClause1;
+        /** The part of speech at the end of a clause in a sentence */
+        private WnnPOS mPosEndOfClause3;
+        /** The cost of a clause */
+        private int mClauseCost;
+        /** The frequency of the learning dictionary */
+        private int mFreqLearn;
+
+        /**
+         * Constructor
+         *
+         * @param dict  The dictionary
+         */
+        SingleBestConverter(WnnDictionary dict) throws Exception {
+            mOracle = newConverter(dict);
+            Class<OpenWnnClauseConverterJAJP> c = OpenWnnClauseConverterJAJP.class;
+            mSingleClauseConvert = c.getDeclaredMethod("singleClauseConvert",
+                    LinkedList.class, String.class, WnnPOS.class, boolean.class);
+            mSingleClauseConvert.setAccessible(true);
+            mDefaultClause = c.getDeclaredMethod("defaultClause", String.class);
+            mDefaultClause.setAccessible(true);
+            mPosEndOfClause1 = dict.getPOS(WnnDictionary.POS_TYPE_V1);
+            mPosEndOfClause3 = dict.getPOS(WnnDictionary.POS_TYPE_V3);
+            Field field = c.getDeclaredField("CLAUSE_COST");
+            field.setAccessible(true);
+            mClauseCost = field.getInt(null);
+            field = c.getDeclaredField("FREQ_LEARN");
+            field.setAccessible(true);
+            mFreqLearn = field.getInt(null);
+        }
+
+        /**
+         * Convert (the algorithm of the single best sentence).
+         *
+         * @param input     The input string
+         * @return The result; {@code null} if fail.
+         */
+        WnnSentence convert(String input) throws Exception {
+            LinkedList clauses = new LinkedList();
+            WnnSentence[] sentence = new WnnSentence[input.length()];
+
+            for (int start = 0; start < input.length(); start++) {
+                if (start != 0 && sentence[start - 1] == null) {
+                    continue;
+                }
+                int end = Math.min(input.length(), start + 20);
+                for (; end > start; end--) {
+                    int idx = end - 1;
+
+                    /* cutting a branch */
+                    if (sentence[idx] != null) {
+                        int base = (start != 0) ? sentence[start - 1].frequency : 0;
+                        if (sentence[idx].frequency > base + mClauseCost + mFreqLearn) {
+                            break;
+                        }
+                    }
+
+                    String key = input.substring(start, end);
+                    clauses.clear();
+                    WnnPOS terminal = (end == input.length()) ? mPosEndOfClause1 : mPosEndOfClause3;
+                    mSingleClauseConvert.invoke(mOracle, clauses, key, terminal, false);
+                    WnnClause bestClause = clauses.isEmpty()
+                            ? (WnnClause) mDefaultClause.invoke(mOracle, key) : (WnnClause) clauses.get(0);
+
+                    WnnSentence ws = (start == 0) ? new WnnSentence(key, bestClause)
+                            : new WnnSentence(sentence[start - 1], bestClause);
+                    ws.frequency += mClauseCost;
+
+                    if (sentence[idx] == null || (sentence[idx].frequency < ws.frequency)) {
+                        sentence[idx] = ws;
+                    }
+                }
+            }
+            return sentence[input.length() - 1];
+        }
+    }
+
+    /**
+     * The first of the N-best sentences is the single best sentence of the
+     * algorithm before the lattice, including its frequency and attribute.
+     */
+    @Test
+    public void testFirstSentenceIsSingleBest() throws Exception {
+        Random rnd = new Random(8);
+        for (int d = 0; d < DICTIONARY_COUNT; d++) {
+            StubDictionary dict = new StubDictionary(d);
+            SingleBestConverter reference = new SingleBestConverter(dict);
+            for (int i = 0; i < 300; i++) {
+                String input = dict.randomText(rnd, 1 + rnd.nextInt(MAX_LENGTH));
+                String expected = describe(reference.convert(input));
+
+                ArrayList<WnnSentence> sentences = newConverter(dict).consecutiveClauseConvert(
+                        input, OpenWnnClauseConverterJAJP.MAX_SENTENCES);
+                assertNotNull(input, sentences);
+                assertEquals(input, expected, describe(sentences.get(0)));
+                assertEquals(input, expected, describe(newConverter(dict).consecutiveClauseConvert(input)));
+
+                assertTrue(input, sentences.size() <= OpenWnnClauseConverterJAJP.MAX_SENTENCES);
+                for (int j = 0; j < sentences.size(); j++) {
+                    assertEquals(input, sentences.get(j).stroke);
+                    if (j > 0) {
+                        assertTrue(input, sentences.get(j - 1).frequency >= sentences.get(j).frequency);
+                    }
+                }
+            }
+        }
+    }
+
+    /** The conversion of an invalid input fails. */
+    @Test
+    public void testInvalidInput() {
+        OpenWnnClauseConverterJAJP converter = newConverter(new StubDictionary(0));
+        assertNull(converter.consecutiveClauseConvert(""));
+        assertNull(converter.consecutiveClauseConvert("あ", 0));
+        char[] input = new char[OpenWnnClauseConverterJAJP.MAX_INPUT_LENGTH + 1];
+        Arrays.fill(input, 'あ');
+        assertNull(converter.consecutiveClauseConvert(new String(input)));
+    }
+
+    /**
+     * The lattice reused over random edits (append, delete, replace and insert)
+     * gives the same sentences as a converter without the cache.
+     */
+    @Test
+    public void testReusedLatticeIsSameAsFresh() {
+        Random rnd = new Random(9);
+        for (int d = 0; d < DICTIONARY_COUNT; d++) {
+            StubDictionary dict = new StubDictionary(d);
+            OpenWnnClauseConverterJAJP converter = newConverter(dict);
+            StringBuilder input = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                edit(rnd, dict, input);
+                if (input.length() == 0) {
+                    continue;
+                }
+                /* the width is changed sometimes, which rebuilds the lattice */
+                int width = (rnd.nextInt(10) == 0) ? 1 + rnd.nextInt(OpenWnnClauseConverterJAJP.MAX_SENTENCES)
+                        : OpenWnnClauseConverterJAJP.MAX_SENTENCES;
+                String str = input.toString();
+                assertEquals(str, describe(newConverter(dict).consecutiveClauseConvert(str, width)),
+                        describe(converter.consecutiveClauseConvert(str, width)));
+            }
+        }
+    }
+
+    /**
+     * The sentences after a word is learned and its stroke is invalidated are
+     * the same as the ones of a converter without the cache.
+     */
+    @Test
+    public void testInvalidateCache() {
+        Random rnd = new Random(10);
+        for (int d = 0; d < DICTIONARY_COUNT; d++) {
+            StubDictionary dict = new StubDictionary(d);
+            OpenWnnClauseConverterJAJP converter = newConverter(dict);
+            for (int i = 0; i < 50; i++) {
+                String input = dict.randomText(rnd, 1 + rnd.nextInt(MAX_LENGTH));
+                converter.consecutiveClauseConvert(input, OpenWnnClauseConverterJAJP.MAX_SENTENCES);
+
+                /* learn a word in the input */
+                int start = rnd.nextInt(input.length());
+                int end = start + 1 + rnd.nextInt(Math.min(4, input.length() - start));
+                String stroke = input.substring(start, end);
+                dict.learnWord(new WnnWord(stroke, stroke));
+                converter.invalidateCache(stroke);
+
+                assertEquals(input, describe(newConverter(dict).consecutiveClauseConvert(
+                        input, OpenWnnClauseConverterJAJP.MAX_SENTENCES)),
+                        describe(converter.consecutiveClauseConvert(input, OpenWnnClauseConverterJAJP.MAX_SENTENCES)));
+            }
+        }
+    }
+
+    /**
+     * Edit an input at random.
+     *
+     * @param rnd       The random numbers
+     * @param dict      The dictionary
+     * @param input     The input to edit
+     */
+    private static void edit(Random rnd, StubDictionary dict, StringBuilder input) {
+        int length = input.length();
+        char c = StubDictionary.ALPHABET.charAt(rnd.nextInt(StubDictionary.ALPHABET.length()));
+        switch (rnd.nextInt(7)) {
+            case 0:
+            case 1:
+                if (length < MAX_LENGTH) {
+                    input.append(c);
+                }
+                break;
+            case 2:
+                if (length > 0) {
+                    input.deleteCharAt(length - 1);
+                }
+                break;
+            case 3:
+                if (length > 0) {
+                    input.deleteCharAt(rnd.nextInt(length));
+                }
+                break;
+            case 4:
+                if (length > 0) {
+                    input.setCharAt(rnd.nextInt(length), c);
+                }
+                break;
+            case 5:
+                if (length < MAX_LENGTH) {
+                    input.insert(rnd.nextInt(length + 1), c);
+                }
+                break;
+            default:
+                /* a word of the dictionary */
+                input.append(dict.randomText(rnd, 1 + rnd.nextInt(MAX_LENGTH)));
+                input.setLength(Math.min(input.length(), MAX_LENGTH));
+                break;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2008-2012  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.omronsoft.openwnn.JAJP;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+
+import jp.co.omronsoft.openwnn.WnnConnectMatrix;
+import jp.co.omronsoft.openwnn.WnnDictionary;
+import jp.co.omronsoft.openwnn.WnnPOS;
+import jp.co.omronsoft.openwnn.WnnWord;
+
+/**
+ * The dictionary on memory for the tests of the converters (no JNI).
+ * <br>
+ * The words and the connect matrix are made of random numbers.  Only the
+ * exact and the prefix searches are supported; the frequency of a word is
+ * mapped to the range set by {@link #setDictionary(int, int, int)}.
+ *
+ * @author Copyright (C) 2009-2011 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+class StubDictionary implements WnnDictionary {
+    /** The characters of the strokes */
+    static final String ALPHABET = "あいかきしたてなーア";
+
+    /** Number of the part of speeches */
+    private static final int POS_COUNT = 12;
+
+    /** The scale of the frequency of a word (mapped to [base, high]) */
+    private static final int RANK_MAX = 100;
+
+    /** A word in the dictionary */
+    private static class Entry {
+        /** The candidate */
+        String candidate;
+        /** The stroke */
+        String stroke;
+        /** The part of speech */
+        WnnPOS pos;
+        /** The frequency in {@code [0, RANK_MAX]} */
+        int rank;
+    }
+
+    /** The words of each dictionary index */
+    private final HashMap<Integer, ArrayList<Entry>> mWords = new HashMap<>();
+
+    /** The frequency ranges ({@code {base, high}}) of the dictionaries in use */
+    private final HashMap<Integer, int[]> mInUse = new HashMap<>();
+
+    /** The connect matrix */
+    private final byte[][] mMatrix;
+
+    /** The part of speeches of {@link #getPOS(int)} */
+    private final WnnPOS[] mPos = new WnnPOS[POS_TYPE_KIGOU + 1];
+
+    /** The result of the last search */
+    private Iterator<WnnWord> mResult = null;
+
+    /** The random numbers */
+    private final Random mRandom;
+
+    /**
+     * Constructor
+     *
+     * @param seed  The seed of the random numbers
+     */
+    StubDictionary(long seed) {
+        mRandom = new Random(seed);
+        Random rnd = mRandom;
+
+        mMatrix = new byte[POS_COUNT + 1][POS_COUNT + 1];
+        for (int left = 1; left <= POS_COUNT; left++) {
+            for (int right = 1; right <= POS_COUNT; right++) {
+                mMatrix[left][right] = (byte) ((rnd.nextInt(5) < 2) ? 1 : 0);
+            }
+        }
+        for (int i = 0; i < mPos.length; i++) {
+            mPos[i] = randomPos();
+        }
+
+        /* independent words (4, 5; some of them are long) and ancillary words (6) */
+        for (int i = 0; i < 400; i++) {
+            addWord((i % 3 == 0) ? 4 : 5, randomStroke((i % 20 == 0) ? 18 : 4));
+        }
+        for (int i = 0; i < 40; i++) {
+            addWord(6, randomStroke(3));
+        }
+    }
+
+    /**
+     * Make a random part of speech.
+     *
+     * @return The part of speech
+     */
+    private WnnPOS randomPos() {
+        return new WnnPOS(1 + mRandom.nextInt(POS_COUNT), 1 + mRandom.nextInt(POS_COUNT));
+    }
+
+    /**
+     * Make a random stroke.
+     *
+     * @param maxLength     The maximum length
+     * @return The stroke
+     */
+    String randomStroke(int maxLength) {
+        int length = 1 + mRandom.nextInt(maxLength);
+        StringBuilder stroke = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            stroke.append(ALPHABET.charAt(mRandom.nextInt(ALPHABET.length())));
+        }
+        return stroke.toString();
+    }
+
+    /**
+     * Make a random text of the strokes in the dictionary and random characters.
+     *
+     * @param rnd       The random numbers
+     * @param length    The length
+     * @return The text
+     */
+    String randomText(Random rnd, int length) {
+        ArrayList<Entry> words = mWords.get(5);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            if (rnd.nextInt(4) == 0) {
+                text.append(ALPHABET.charAt(rnd.nextInt(ALPHABET.length())));
+            } else {
+                text.append(words.get(rnd.nextInt(words.size())).stroke);
+            }
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    /**
+     * Add a word with a random candidate, part of speech and frequency.
+     *
+     * @param index     The dictionary index
+     * @param stroke    The stroke
+     */
+    void addWord(int index, String stroke) {
+        Entry entry = new Entry();
+        entry.stroke = stroke;
+        entry.candidate = stroke.toUpperCase() + mRandom.nextInt(10);
+        entry.pos = randomPos();
+        entry.rank = mRandom.nextInt(RANK_MAX + 1);
+        ArrayList<Entry> words = mWords.get(index);
+        if (words == null) {
+            words = new ArrayList<>();
+            mWords.put(index, words);
+        }
+        words.add(entry);
+    }
+
+    /** @see WnnDictionary#isActive */
+    public boolean isActive() {
+        return true;
+    }
+
+    /** @see WnnDictionary#setInUseState */
+    public void setInUseState(boolean flag) {
+    }
+
+    /** @see WnnDictionary#createCursor */
+    public WnnDictionary createCursor() {
+        return null;
+    }
+
+    /** @see WnnDictionary#clearDictionary */
+    public int clearDictionary() {
+        mInUse.clear();
+        return 0;
+    }
+
+    /** @see WnnDictionary#setDictionary */
+    public int setDictionary(int index, int base, int high) {
+        if (base < 0 || high < 0) {
+            mInUse.remove(index);
+        } else {
+            mInUse.put(index, new int[] {base, high});
+        }
+        return 0;
+    }
+
+    /** @see WnnDictionary#clearApproxPattern */
+    public void clearApproxPattern() {
+    }
+
+    /** @see WnnDictionary#setApproxPattern */
+    public int setApproxPattern(String src, String dst) {
+        return 0;
+    }
+
+    /** @see WnnDictionary#setApproxPattern */
+    public int setApproxPattern(int approxPattern) {
+        return 0;
+    }
+
+    /** @see WnnDictionary#searchWord */
+    public int searchWord(int operation, int order, String keyString) {
+        ArrayList<WnnWord> result = new ArrayList<>();
+        for (int index = INDEX_LEARN_DICTIONARY; index <= 6; index++) {
+            int[] range = mInUse.get(index);
+            ArrayList<Entry> words = mWords.get(index);
+            if (range == null || words == null) {
+                continue;
+            }
+            for (int i = 0; i < words.size(); i++) {
+                Entry entry = words.get(i);
+                boolean match = (operation == SEARCH_EXACT) ? entry.stroke.equals(keyString)
+                        : (operation == SEARCH_PREFIX) && entry.stroke.startsWith(keyString);
+                if (!match) {
+                    continue;
+                }
+                int frequency = range[0] + (range[1] - range[0]) * entry.rank / RANK_MAX;
+                WnnWord word = new WnnWord(entry.candidate, entry.stroke, entry.pos, frequency);
+                int pos = result.size();
+                while (pos > 0 && result.get(pos - 1).frequency < frequency) {
+                    pos--;
+                }
+                result.add(pos, word);
+            }
+        }
+        mResult = result.iterator();
+        return result.size();
+    }
+
+    /** @see WnnDictionary#searchWord */
+    public int searchWord(int operation, int order, String keyString, WnnWord wnnWord) {
+        return searchWord(operation, order, keyString);
+    }
+
+    /** @see WnnDictionary#getNextWord */
+    public WnnWord getNextWord() {
+        return (mResult != null && mResult.hasNext()) ? mResult.next() : null;
+    }
+
+    /** @see WnnDictionary#getNextWord */
+    public WnnWord getNextWord(int length) {
+        return getNextWord();
+    }
+
+    /** @see WnnDictionary#getNextWords */
+    public WnnWord[] getNextWords(int length, int max) {
+        return new WnnWord[0];
+    }
+
+    /** @see WnnDictionary#getUserDictionaryWords */
+    public WnnWord[] getUserDictionaryWords() {
+        return new WnnWord[0];
+    }
+
+    /** @see WnnDictionary#getConnectMatrix */
+    public byte[][] getConnectMatrix() {
+        return mMatrix;
+    }
+
+    /** @see WnnDictionary#getConnectBitMatrix */
+    public WnnConnectMatrix getConnectBitMatrix() {
+        return new WnnConnectMatrix(mMatrix);
+    }
+
+    /** @see WnnDictionary#getPOS */
+    public WnnPOS getPOS(int type) {
+        return (type >= 0 && type < mPos.length) ? mPos[type] : new WnnPOS();
+    }
+
+    /** @see WnnDictionary#clearUserDictionary */
+    public int clearUserDictionary() {
+        mWords.remove(INDEX_USER_DICTIONARY);
+        return 0;
+    }
+
+    /** @see WnnDictionary#clearLearnDictionary */
+    public int clearLearnDictionary() {
+        mWords.remove(INDEX_LEARN_DICTIONARY);
+        return 0;
+    }
+
+    /** @see WnnDictionary#addWordToUserDictionary */
+    public int addWordToUserDictionary(WnnWord[] word) {
+        for (int i = 0; i < word.length; i++) {
+            addWordToUserDictionary(word[i]);
+        }
+        return 0;
+    }
+
+    /** @see WnnDictionary#addWordToUserDictionary */
+    public int addWordToUserDictionary(WnnWord word) {
+        addWord(INDEX_USER_DICTIONARY, word.stroke);
+        return 0;
+    }
+
+    /** @see WnnDictionary#removeWordFromUserDictionary */
+    public int removeWordFromUserDictionary(WnnWord[] word) {
+        return 0;
+    }
+
+    /** @see WnnDictionary#removeWordFromUserDictionary */
+    public int removeWordFromUserDictionary(WnnWord word) {
+        return 0;
+    }
+
+    /** @see WnnDictionary#learnWord */
+    public int learnWord(WnnWord word) {
+        addWord(INDEX_LEARN_DICTIONARY, word.stroke);
+        return 0;
+    }
+
+    /** @see WnnDictionary#learnWord */
+    public int learnWord(WnnWord word, WnnWord previousWord) {
+        return learnWord(word);
+    }
+
+    /** @see WnnDictionary#getEvictedStroke */
+    public String getEvictedStroke() {
+        return null;
+    }
+
+    /** @see WnnDictionary#removeWordFromLearnDictionary */
+    public int removeWordFromLearnDictionary(WnnWord word) {
+        return 0;
+    }
+}
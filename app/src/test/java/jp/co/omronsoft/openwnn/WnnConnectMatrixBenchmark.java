@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2008-2012  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.omronsoft.openwnn;
+
+import java.util.Random;
+
+/**
+ * The timing harness of the connect matrix lookup ({@code byte[][]} and {@link WnnConnectMatrix}).
+ * <br>
+ * This is not a unit test; run it on the JVM with the test classes in the class path:
+ * <pre>
+ * java -cp &lt;classes&gt;:&lt;test classes&gt; jp.co.omronsoft.openwnn.WnnConnectMatrixBenchmark [left] [right] [out of range %]
+ * </pre>
+ * The pairs looked up are random, and some of them are out of range as the
+ * part of speeches of the learned words can be.  The times printed are the
+ * best of the rounds in nanoseconds per lookup.
+ *
+ * @author Copyright (C) 2009-2011 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class WnnConnectMatrixBenchmark {
+    /** Number of the pairs looked up in a round */
+    private static final int PAIR_COUNT = 1 << 20;
+
+    /** Number of the rounds (the first half warms up the JIT) */
+    private static final int ROUND_COUNT = 20;
+
+    /** Sink of the results to keep the lookups alive */
+    private static int sSink = 0;
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args  The number of the left and right part of speeches, and the percentage of the pairs out of range
+     */
+    public static void main(String[] args) {
+        int leftCount = (args.length > 0) ? Integer.parseInt(args[0]) : 600;
+        int rightCount = (args.length > 1) ? Integer.parseInt(args[1]) : 600;
+        int outOfRange = (args.length > 2) ? Integer.parseInt(args[2]) : 1;
+
+        Random rnd = new Random(0);
+        byte[][] matrix = WnnConnectMatrixTest.randomMatrix(rnd, leftCount, rightCount, false);
+        WnnConnectMatrix bits = new WnnConnectMatrix(matrix);
+
+        int[] rights = new int[PAIR_COUNT];
+        int[] lefts = new int[PAIR_COUNT];
+        for (int i = 0; i < PAIR_COUNT; i++) {
+            boolean out = rnd.nextInt(100) < outOfRange;
+            rights[i] = (out && rnd.nextBoolean()) ? rightCount + 1 + rnd.nextInt(100) : rnd.nextInt(rightCount + 1);
+            lefts[i] = (out) ? leftCount + 1 + rnd.nextInt(100) : rnd.nextInt(leftCount + 1);
+        }
+
+        long bestArray = Long.MAX_VALUE;
+        long bestBits = Long.MAX_VALUE;
+        for (int round = 0; round < ROUND_COUNT; round++) {
+            long start = System.nanoTime();
+            int count = 0;
+            for (int i = 0; i < PAIR_COUNT; i++) {
+                if (WnnConnectMatrixTest.connectible(matrix, rights[i], lefts[i])) {
+                    count++;
+                }
+            }
+            long array = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int countBits = 0;
+            for (int i = 0; i < PAIR_COUNT; i++) {
+                if (bits.isConnectible(rights[i], lefts[i])) {
+                    countBits++;
+                }
+            }
+            long bitSet = System.nanoTime() - start;
+
+            if (count != countBits) {
+                throw new IllegalStateException("different results: " + count + " != " + countBits);
+            }
+            sSink += count;
+            if (round >= ROUND_COUNT / 2) {
+                bestArray = Math.min(bestArray, array);
+                bestBits = Math.min(bestBits, bitSet);
+            }
+        }
+
+        System.out.printf("matrix %d x %d, %d%% out of range (%d)%n", leftCount, rightCount, outOfRange, sSink);
+        System.out.printf("  byte[][]         : %.2f ns/lookup, %d bytes%n",
+                (double) bestArray / PAIR_COUNT, (long) (leftCount + 1) * (rightCount + 1));
+        System.out.printf("  WnnConnectMatrix : %.2f ns/lookup, %d bytes%n",
+                (double) bestBits / PAIR_COUNT, (long) (leftCount + 1) * (((rightCount + 1 + 63) >>> 6) * 8));
+    }
+}
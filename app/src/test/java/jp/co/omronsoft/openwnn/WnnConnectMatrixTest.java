@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2008-2012  OMRON SOFTWARE Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jp.co.omronsoft.openwnn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The test of {@link WnnConnectMatrix} against the {@code byte[][]} connect matrix.
+ *
+ * @author Copyright (C) 2009-2011 OMRON SOFTWARE CO., LTD.  All Rights Reserved.
+ */
+public class WnnConnectMatrixTest {
+    /** Number of the random matrices checked */
+    private static final int MATRIX_COUNT = 200;
+
+    /**
+     * Look up the {@code byte[][]} connect matrix as the clause converter did before the bit set.
+     *
+     * @param matrix    The connect matrix
+     * @param right     Right attribute of the preceding word/clause
+     * @param left      Left attribute of the following word/clause
+     * @return {@code true} if there are connectable; {@code false} if otherwise
+     */
+    static boolean connectible(byte[][] matrix, int right, int left) {
+        try {
+            if (matrix[left][right] != 0) {
+                return true;
+            }
+        } catch (Exception ignored) {
+        }
+        return false;
+    }
+
+    /**
+     * Make a random connect matrix.
+     *
+     * @param rnd           The random numbers
+     * @param leftCount     Number of the part of speeches at left side
+     * @param rightCount    Number of the part of speeches at right side
+     * @param ragged        Whether the rows may be short or {@code null}
+     * @return The matrix (index 0 is not a part of speech and is left 0)
+     */
+    static byte[][] randomMatrix(Random rnd, int leftCount, int rightCount, boolean ragged) {
+        byte[][] matrix = new byte[leftCount + 1][];
+        for (int left = 0; left <= leftCount; left++) {
+            if (ragged && rnd.nextInt(8) == 0) {
+                continue;
+            }
+            int length = (ragged) ? rnd.nextInt(rightCount + 2) : rightCount + 1;
+            matrix[left] = new byte[length];
+            for (int right = 1; right < length; right++) {
+                if (left > 0 && rnd.nextInt(3) == 0) {
+                    matrix[left][right] = (byte) (1 + rnd.nextInt(255));
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Pack the rows 1 to {@code leftCount} as {@link OpenWnnDictionaryImplJni#getConnectBitArray(long)} does.
+     *
+     * @param matrix        The connect matrix
+     * @param leftCount     Number of the part of speeches at left side
+     * @param rightCount    Number of the part of speeches at right side
+     * @return The packed rows
+     */
+    private static byte[] pack(byte[][] matrix, int leftCount, int rightCount) {
+        int rowBytes = (rightCount + 7) / 8;
+        byte[] packed = new byte[leftCount * rowBytes];
+        for (int left = 1; left <= leftCount; left++) {
+            for (int right = 1; right <= rightCount; right++) {
+                if (matrix[left][right] != 0) {
+                    int i = right - 1;
+                    packed[(left - 1) * rowBytes + i / 8] |= (byte) (0x80 >> (i % 8));
+                }
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Compare every pair including the ones out of range.
+     *
+     * @param matrix    The connect matrix
+     * @param bits      The bit set made of {@code matrix}
+     */
+    private static void assertSameMatrix(byte[][] matrix, WnnConnectMatrix bits) {
+        int maxRight = 0;
+        for (byte[] row : matrix) {
+            if (row != null) {
+                maxRight = Math.max(maxRight, row.length);
+            }
+        }
+        for (int left = -2; left <= matrix.length + 1; left++) {
+            for (int right = -2; right <= maxRight + 65; right++) {
+                assertEquals("left=" + left + " right=" + right,
+                        connectible(matrix, right, left), bits.isConnectible(right, left));
+            }
+        }
+        assertFalse(bits.isConnectible(0, Integer.MAX_VALUE));
+        assertFalse(bits.isConnectible(Integer.MIN_VALUE, 1));
+    }
+
+    /** The matrix made of {@code byte[][]} answers as the array does. */
+    @Test
+    public void testByteMatrix() {
+        Random rnd = new Random(1);
+        for (int i = 0; i < MATRIX_COUNT; i++) {
+            byte[][] matrix = randomMatrix(rnd, rnd.nextInt(150), rnd.nextInt(150), (i % 2) == 1);
+            assertSameMatrix(matrix, new WnnConnectMatrix(matrix));
+        }
+    }
+
+    /** The matrix made of the packed rows answers as the unpacked array does. */
+    @Test
+    public void testPackedMatrix() {
+        Random rnd = new Random(2);
+        for (int i = 0; i < MATRIX_COUNT; i++) {
+            int leftCount = rnd.nextInt(150);
+            int rightCount = rnd.nextInt(150);
+            byte[][] matrix = randomMatrix(rnd, leftCount, rightCount, false);
+            WnnConnectMatrix bits = new WnnConnectMatrix(leftCount, rightCount, pack(matrix, leftCount, rightCount));
+            assertEquals(leftCount, bits.getLeftCount());
+            assertEquals(rightCount, bits.getRightCount());
+            assertSameMatrix(matrix, bits);
+        }
+    }
+
+    /** The empty matrix used without a rule dictionary connects nothing. */
+    @Test
+    public void testEmptyMatrix() {
+        byte[][] matrix = new byte[1][1];
+        assertSameMatrix(matrix, new WnnConnectMatrix(matrix));
+        assertSameMatrix(new byte[0][], new WnnConnectMatrix(new byte[0][]));
+    }
+}